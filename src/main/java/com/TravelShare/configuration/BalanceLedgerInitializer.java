@@ -0,0 +1,39 @@
+package com.TravelShare.configuration;
+
+import com.TravelShare.repository.GroupRepository;
+import com.TravelShare.repository.ParticipantBalanceRepository;
+import com.TravelShare.service.BalanceLedgerService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Backfill sổ cái participant_balance cho các group đã tồn tại trước khi có bảng này.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BalanceLedgerInitializer implements CommandLineRunner {
+
+    private final GroupRepository groupRepository;
+    private final ParticipantBalanceRepository participantBalanceRepository;
+    private final BalanceLedgerService balanceLedgerService;
+
+    @Override
+    public void run(String... args) {
+        Set<Long> initializedGroupIds = participantBalanceRepository.findDistinctGroupIds();
+        int rebuilt = 0;
+        for (Long groupId : groupRepository.findAllIds()) {
+            if (!initializedGroupIds.contains(groupId)) {
+                balanceLedgerService.rebuildGroup(groupId);
+                rebuilt++;
+            }
+        }
+        if (rebuilt > 0) {
+            log.info("Initialized balance ledger for {} groups", rebuilt);
+        }
+    }
+}
@@ -1,37 +1,47 @@
 package com.TravelShare.configuration;
 
+import com.TravelShare.service.PersistentCacheStore;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.SimpleCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 @Configuration
 @EnableCaching
+@EnableConfigurationProperties(CacheProperties.class)
 public class CacheConfig {
+    // Các cache mà code dùng qua @Cacheable, luôn được tạo kể cả khi chưa cấu hình
+    private static final List<String> DEFAULT_CACHE_NAMES = List.of("ocr-cache", "general-cache");
 
     @Bean
-    public CacheManager cacheManager() {
-        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
-        cacheManager.setCaffeine(Caffeine.newBuilder()
-                .maximumSize(1000)                          // Tối đa 1000 entries
-                .expireAfterWrite(24, TimeUnit.HOURS)       // Hết hạn sau 24 giờ
-                .recordStats());                            // Ghi lại thống kê
-        
-        // Đặt tên cache
-        cacheManager.setCacheNames(java.util.Arrays.asList("ocr-cache", "general-cache", "exchange-rates"));
-        
+    public CacheManager cacheManager(CacheProperties cacheProperties, PersistentCacheStore persistentCacheStore) {
+        DEFAULT_CACHE_NAMES.forEach(name -> cacheProperties.getSpecs().putIfAbsent(name, new CacheProperties.CacheSpec()));
+
+        List<Cache> caches = new ArrayList<>();
+        // Kích thước, TTL và việc ghi xuống DB cấu hình riêng cho từng cache (app.cache.specs)
+        for (Map.Entry<String, CacheProperties.CacheSpec> entry : cacheProperties.getSpecs().entrySet()) {
+            CacheProperties.CacheSpec spec = entry.getValue();
+            CaffeineCache memory = new CaffeineCache(entry.getKey(), Caffeine.newBuilder()
+                    .maximumSize(spec.getMaximumSize())
+                    .expireAfterWrite(spec.getTtl())
+                    .recordStats()                          // Ghi lại thống kê
+                    .build());
+            caches.add(spec.isPersistent()
+                    ? new TwoTierCache(memory, persistentCacheStore, spec.getTtl())
+                    : memory);
+        }
+
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(caches);
         return cacheManager;
     }
-    
-    @Bean
-    public Caffeine<Object, Object> caffeineConfig() {
-        return Caffeine.newBuilder()
-                .maximumSize(500)                           // Cache cho OCR
-                .expireAfterWrite(12, TimeUnit.HOURS)       // Hết hạn sau 12 giờ
-                .recordStats();
-    }
 }
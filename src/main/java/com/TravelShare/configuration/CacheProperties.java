@@ -0,0 +1,29 @@
+package com.TravelShare.configuration;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cấu hình riêng cho từng cache theo tên (app.cache.specs.&lt;tên cache&gt;).
+ */
+@Data
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@ConfigurationProperties(prefix = "app.cache")
+public class CacheProperties {
+    Map<String, CacheSpec> specs = new LinkedHashMap<>();
+
+    @Data
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class CacheSpec {
+        long maximumSize = 1000;
+        Duration ttl = Duration.ofHours(24);
+        // Ghi xuống DB (tầng 2) để giữ lại qua các lần khởi động lại
+        boolean persistent = false;
+    }
+}
@@ -1,50 +1,96 @@
 package com.TravelShare.configuration;
 
-import com.TravelShare.dto.request.IntrospectRequest;
-import com.TravelShare.service.AuthenticationService;
-import com.nimbusds.jose.JOSEException;
+import com.TravelShare.repository.RefreshTokenRepository;
+import com.TravelShare.service.TokenRevocationService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtTimestampValidator;
 import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.spec.SecretKeySpec;
-import java.text.ParseException;
-import java.util.Objects;
+import java.time.Duration;
+import java.time.Instant;
 
+/**
+ * Giải mã JWT một lần duy nhất (chữ ký HS512 + hạn dùng) bằng decoder dựng sẵn, rồi cache Jwt đã xác thực
+ * đến đúng thời điểm token hết hạn. Request sau với cùng token chỉ còn kiểm tra jti trong danh sách đã logout (bộ nhớ).
+ */
 @Component
 public class CustomJwtDecoder implements JwtDecoder {
+    private static final long MAX_CACHED_TOKENS = 10_000;
+
     @Value("${jwt.signerKey}")
     private String signerKey;
 
     @Autowired
-    private AuthenticationService authenticationService;
+    private TokenRevocationService tokenRevocationService;
 
-    private NimbusJwtDecoder nimbusJwtDecoder = null;
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
 
-    @Override
-    public Jwt decode(String token) throws JwtException {
+    private NimbusJwtDecoder nimbusJwtDecoder;
 
-        try {
-            var response = authenticationService.introspect(
-                    IntrospectRequest.builder().token(token).build());
+    private final Cache<String, Jwt> verifiedTokens = Caffeine.newBuilder()
+            .maximumSize(MAX_CACHED_TOKENS)
+            .expireAfter(new Expiry<String, Jwt>() {
+                @Override
+                public long expireAfterCreate(String token, Jwt jwt, long currentTime) {
+                    return Math.max(0, Duration.between(Instant.now(), jwt.getExpiresAt()).toNanos());
+                }
 
-            if (!response.isValid()) throw new JwtException("Token invalid");
-        } catch (JOSEException | ParseException e) {
-            throw new JwtException(e.getMessage());
-        }
+                @Override
+                public long expireAfterUpdate(String token, Jwt jwt, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
 
-        if (Objects.isNull(nimbusJwtDecoder)) {
-            SecretKeySpec secretKeySpec = new SecretKeySpec(signerKey.getBytes(), "HS512");
-            nimbusJwtDecoder = NimbusJwtDecoder.withSecretKey(secretKeySpec)
-                    .macAlgorithm(MacAlgorithm.HS512)
-                    .build();
-        }
+                @Override
+                public long expireAfterRead(String token, Jwt jwt, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
 
-        return nimbusJwtDecoder.decode(token);
+    @PostConstruct
+    void init() {
+        SecretKeySpec secretKeySpec = new SecretKeySpec(signerKey.getBytes(), "HS512");
+        nimbusJwtDecoder = NimbusJwtDecoder.withSecretKey(secretKeySpec)
+                .macAlgorithm(MacAlgorithm.HS512)
+                .build();
+        // Không cho phép lệch giờ, giống kiểm tra hạn dùng trước đây
+        nimbusJwtDecoder.setJwtValidator(new JwtTimestampValidator(Duration.ZERO));
     }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        Jwt jwt = verifiedTokens.getIfPresent(token);
+        if (jwt == null) {
+            jwt = nimbusJwtDecoder.decode(token);
+            if (jwt.getExpiresAt() == null) {
+                throw new JwtException("Token invalid");
+            }
+            // Refresh token hiếm khi dùng làm bearer: luôn kiểm tra trạng thái thu hồi trong DB, không cache
+            if ("refresh".equals(jwt.getClaimAsString("tokenType"))) {
+                if (refreshTokenRepository.findByIdAndRevoked(jwt.getId(), false).isEmpty()) {
+                    throw new JwtException("Token invalid");
+                }
+                return jwt;
+            }
+            verifiedTokens.put(token, jwt);
+        }
+
+        if (tokenRevocationService.isRevoked(jwt.getId())) {
+            verifiedTokens.invalidate(token);
+            throw new JwtException("Token invalid");
+        }
+        return jwt;
     }
+}
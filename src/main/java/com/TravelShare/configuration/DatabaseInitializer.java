@@ -7,11 +7,11 @@ import com.TravelShare.repository.CurrencyRepository;
 import com.TravelShare.repository.CategoryRepository;
 import com.TravelShare.repository.UserRepository;
 import com.TravelShare.service.CurrencyService;
+import com.TravelShare.service.PasswordHashingService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
@@ -26,7 +26,7 @@ public class DatabaseInitializer implements CommandLineRunner {
 
 
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
     private final CurrencyRepository currencyRepository;
     private final CategoryRepository categoryRepository;
     private final CurrencyService currencyService;
@@ -58,7 +58,7 @@ public class DatabaseInitializer implements CommandLineRunner {
             log.info("Creating user account: {}", username);
             User user = User.builder()
                     .username(username)
-                    .password(passwordEncoder.encode(rawPassword))
+                    .password(passwordHashingService.hash(rawPassword))
                     .email(email)
                     .fullName(fullName)
                     .role("USER")
@@ -78,7 +78,7 @@ public class DatabaseInitializer implements CommandLineRunner {
             log.info("Creating admin account");
             User admin = User.builder()
                     .username(adminUsername)
-                    .password(passwordEncoder.encode(adminPassword))
+                    .password(passwordHashingService.hash(adminPassword))
                     .email(adminEmail)
                     .fullName("System Administrator")
                     .role("ADMIN")
@@ -0,0 +1,28 @@
+package com.TravelShare.configuration;
+
+import com.TravelShare.service.SpendingRollupService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Backfill bảng spending_rollup từ các expense đã tồn tại trước khi có bảng này.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SpendingRollupInitializer implements CommandLineRunner {
+
+    private final SpendingRollupService spendingRollupService;
+
+    @Override
+    public void run(String... args) {
+        if (spendingRollupService.isEmpty()) {
+            int buckets = spendingRollupService.rebuildAll();
+            if (buckets > 0) {
+                log.info("Initialized spending rollups with {} buckets", buckets);
+            }
+        }
+    }
+}
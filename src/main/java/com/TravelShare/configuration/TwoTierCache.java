@@ -0,0 +1,166 @@
+package com.TravelShare.configuration;
+
+import com.TravelShare.service.PersistentCacheStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache hai tầng: tầng 1 Caffeine trong bộ nhớ, tầng 2 bảng cache_entry (ghi xuyên - write-through).
+ * Miss ở tầng 1 sẽ đọc tầng 2 và nạp ngược lên tầng 1, nên kết quả đã trả tiền (vd. OCR) không mất sau khi deploy.
+ * Lỗi ở tầng 2 chỉ được log và đếm, cache vẫn hoạt động như cache bộ nhớ bình thường.
+ */
+@Slf4j
+public class TwoTierCache implements Cache {
+    private final CaffeineCache memory;
+    private final PersistentCacheStore store;
+    private final Duration ttl;
+
+    private final AtomicLong storeHits = new AtomicLong();
+    private final AtomicLong storeMisses = new AtomicLong();
+    private final AtomicLong storeWrites = new AtomicLong();
+    private final AtomicLong storeErrors = new AtomicLong();
+
+    public TwoTierCache(CaffeineCache memory, PersistentCacheStore store, Duration ttl) {
+        this.memory = memory;
+        this.store = store;
+        this.ttl = ttl;
+    }
+
+    @Override
+    public String getName() {
+        return memory.getName();
+    }
+
+    @Override
+    public com.github.benmanes.caffeine.cache.Cache<Object, Object> getNativeCache() {
+        return memory.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        ValueWrapper cached = memory.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        Object stored = loadFromStore(key);
+        if (stored == null) {
+            return null;
+        }
+        memory.put(key, stored);
+        return new SimpleValueWrapper(stored);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        // Caffeine đảm bảo mỗi key chỉ có một lần nạp tại một thời điểm
+        return memory.get(key, () -> {
+            Object stored = loadFromStore(key);
+            if (stored != null) {
+                return (T) stored;
+            }
+            T value = valueLoader.call();
+            writeToStore(key, value);
+            return value;
+        });
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        memory.put(key, value);
+        writeToStore(key, value);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = memory.putIfAbsent(key, value);
+        if (existing == null) {
+            writeToStore(key, value);
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        memory.evict(key);
+        try {
+            store.evict(getName(), key.toString());
+        } catch (RuntimeException e) {
+            storeErrors.incrementAndGet();
+            log.warn("Failed to evict {}/{} from persistent cache: {}", getName(), key, e.getMessage());
+        }
+    }
+
+    @Override
+    public void clear() {
+        memory.clear();
+        try {
+            store.clear(getName());
+        } catch (RuntimeException e) {
+            storeErrors.incrementAndGet();
+            log.warn("Failed to clear persistent cache {}: {}", getName(), e.getMessage());
+        }
+    }
+
+    public long getStoreHits() {
+        return storeHits.get();
+    }
+
+    public long getStoreMisses() {
+        return storeMisses.get();
+    }
+
+    public long getStoreWrites() {
+        return storeWrites.get();
+    }
+
+    public long getStoreErrors() {
+        return storeErrors.get();
+    }
+
+    private Object loadFromStore(Object key) {
+        try {
+            Optional<Object> stored = store.get(getName(), key.toString());
+            if (stored.isPresent()) {
+                storeHits.incrementAndGet();
+                return stored.get();
+            }
+            storeMisses.incrementAndGet();
+        } catch (Exception e) {
+            storeErrors.incrementAndGet();
+            log.warn("Failed to read {}/{} from persistent cache: {}", getName(), key, e.getMessage());
+        }
+        return null;
+    }
+
+    private void writeToStore(Object key, Object value) {
+        if (value == null) {
+            return;
+        }
+        try {
+            store.put(getName(), key.toString(), value, ttl);
+            storeWrites.incrementAndGet();
+        } catch (Exception e) {
+            storeErrors.incrementAndGet();
+            log.warn("Failed to write {}/{} to persistent cache: {}", getName(), key, e.getMessage());
+        }
+    }
+}
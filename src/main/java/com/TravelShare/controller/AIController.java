@@ -3,15 +3,25 @@ package com.TravelShare.controller;
 import com.TravelShare.dto.request.ChatRequest;
 import com.TravelShare.dto.request.OCRRequest;
 import com.TravelShare.dto.response.ApiResponse;
+import com.TravelShare.dto.response.CacheStatsResponse;
+import com.TravelShare.dto.response.ChatStreamStatsResponse;
 import com.TravelShare.dto.response.OCRResponse;
+import com.TravelShare.dto.response.ReceiptPreParserStatsResponse;
 import com.TravelShare.dto.response.SimpleChatResponse;
 import com.TravelShare.service.AIService;
+import com.TravelShare.service.BulkOcrService;
+import com.TravelShare.service.CacheStatsService;
+import com.TravelShare.service.ChatStreamService;
+import com.TravelShare.service.ReceiptPreParser;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
 
 @RestController
 @RequestMapping("/ai")
@@ -19,6 +29,10 @@ import org.springframework.web.multipart.MultipartFile;
 @Slf4j
 public class AIController {
     private final AIService aiService;
+    private final CacheStatsService cacheStatsService;
+    private final BulkOcrService bulkOcrService;
+    private final ChatStreamService chatStreamService;
+    private final ReceiptPreParser receiptPreParser;
 
     /**
      * Chat endpoint - Text conversation với AI
@@ -38,6 +52,25 @@ public class AIController {
         }
     }
 
+    /**
+     * Chat stream endpoint - Token được đẩy về qua SSE (event "token"), kết thúc bằng event "done"
+     */
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChat(@RequestBody ChatRequest request) {
+        return chatStreamService.streamChat(request);
+    }
+
+    /**
+     * Chat stream statistics endpoint - time-to-first-token và token usage
+     */
+    @GetMapping("/chat/stream/stats")
+    public ApiResponse<ChatStreamStatsResponse> getChatStreamStats() {
+        return ApiResponse.<ChatStreamStatsResponse>builder()
+                .code(1000)
+                .result(chatStreamService.getStats())
+                .build();
+    }
+
 
     /**
      * OCR endpoint - Process receipt image và extract thông tin
@@ -83,6 +116,27 @@ public class AIController {
         }
     }
 
+    /**
+     * Bulk OCR endpoint - Xử lý nhiều hóa đơn, trả từng kết quả qua SSE (event "result") ngay khi xong,
+     * cuối cùng là event "complete" kèm thống kê
+     */
+    @PostMapping(value = "/ocr/process-receipts", consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter processReceipts(@RequestParam("files") List<MultipartFile> files) {
+        return bulkOcrService.processReceipts(files);
+    }
+
+    /**
+     * Thống kê bước đọc hóa đơn cục bộ từ mã QR (tỷ lệ không cần gọi model)
+     */
+    @GetMapping("/ocr/pre-parser/stats")
+    public ApiResponse<ReceiptPreParserStatsResponse> getPreParserStats() {
+        return ApiResponse.<ReceiptPreParserStatsResponse>builder()
+                .code(1000)
+                .result(receiptPreParser.getStats())
+                .build();
+    }
+
     /**
      * Health check endpoint cho AI service
      */
@@ -99,11 +153,10 @@ public class AIController {
      * Cache statistics endpoint
      */
     @GetMapping("/cache/stats")
-    public ApiResponse<String> getCacheStats() {
-        return ApiResponse.<String>builder()
+    public ApiResponse<List<CacheStatsResponse>> getCacheStats() {
+        return ApiResponse.<List<CacheStatsResponse>>builder()
                 .code(1000)
-                .result("Cache statistics")
-                .message("Xem logs để biết cache statistics")
+                .result(cacheStatsService.getStats())
                 .build();
     }
 
@@ -0,0 +1,76 @@
+package com.TravelShare.controller;
+
+import com.TravelShare.dto.response.ApiResponse;
+import com.TravelShare.dto.response.SpendingReconciliationResponse;
+import com.TravelShare.dto.response.SpendingSeriesResponse;
+import com.TravelShare.entity.SpendingRollup.ScopeType;
+import com.TravelShare.service.SpendingRollupService;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/analytics/spending")
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class AnalyticsController {
+    SpendingRollupService spendingRollupService;
+
+    /**
+     * Chi tiêu của group theo thời gian; mặc định 30 ngày gần nhất, theo ngày.
+     */
+    @GetMapping("/group/{groupId}")
+    public ApiResponse<SpendingSeriesResponse> getGroupSpending(
+            @PathVariable Long groupId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "DAY") SpendingSeriesResponse.Granularity granularity) {
+        return ApiResponse.<SpendingSeriesResponse>builder()
+                .result(spendingRollupService.getSeries(ScopeType.GROUP, groupId.toString(), from, to, granularity))
+                .build();
+    }
+
+    /**
+     * Chi tiêu của user (các expense user là người trả) trên mọi group.
+     */
+    @GetMapping("/user/{userId}")
+    public ApiResponse<SpendingSeriesResponse> getUserSpending(
+            @PathVariable String userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "DAY") SpendingSeriesResponse.Granularity granularity) {
+        return ApiResponse.<SpendingSeriesResponse>builder()
+                .result(spendingRollupService.getSeries(ScopeType.USER, userId, from, to, granularity))
+                .build();
+    }
+
+    @GetMapping("/group/{groupId}/verify")
+    public ApiResponse<SpendingReconciliationResponse> verifyGroupSpending(@PathVariable Long groupId) {
+        return ApiResponse.<SpendingReconciliationResponse>builder()
+                .result(spendingRollupService.verify(ScopeType.GROUP, groupId.toString()))
+                .build();
+    }
+
+    @GetMapping("/user/{userId}/verify")
+    public ApiResponse<SpendingReconciliationResponse> verifyUserSpending(@PathVariable String userId) {
+        return ApiResponse.<SpendingReconciliationResponse>builder()
+                .result(spendingRollupService.verify(ScopeType.USER, userId))
+                .build();
+    }
+
+    /**
+     * Tính lại toàn bộ rollup từ bảng expense; chỉ dành cho admin.
+     */
+    @PostMapping("/rebuild")
+    public ApiResponse<Integer> rebuildSpending() {
+        return ApiResponse.<Integer>builder()
+                .result(spendingRollupService.rebuildAllAsAdmin())
+                .build();
+    }
+}
@@ -9,6 +9,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -51,4 +52,15 @@ public class ExchangeRateController {
                 .result(response)
                 .build();
     }
+
+    @PostMapping("/refresh")
+    public ApiResponse<Boolean> refreshRates() {
+        boolean refreshed = exchangeRateService.refreshRates();
+
+        return ApiResponse.<Boolean>builder()
+                .code(refreshed ? 1000 : 1001)
+                .message(refreshed ? "Success" : "Refresh failed, serving last snapshot")
+                .result(refreshed)
+                .build();
+    }
 }
@@ -3,15 +3,22 @@ package com.TravelShare.controller;
 import com.TravelShare.dto.request.ExpenseCreationRequest;
 import com.TravelShare.dto.request.ExpenseUpdateRequest;
 import com.TravelShare.dto.response.ApiResponse;
+import com.TravelShare.dto.response.ExpenseImportResponse;
+import com.TravelShare.dto.response.ExpensePageResponse;
+import com.TravelShare.dto.response.ExpenseReconversionJobResponse;
 import com.TravelShare.dto.response.ExpenseResponse;
 import com.TravelShare.dto.response.UserExpenseSummaryResponse;
+import com.TravelShare.service.ExpenseImportService;
+import com.TravelShare.service.ExpenseReconversionService;
 import com.TravelShare.service.ExpenseService;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -23,6 +30,8 @@ import java.util.List;
 @Slf4j
 public class ExpenseController {
     ExpenseService expenseService;
+    ExpenseReconversionService expenseReconversionService;
+    ExpenseImportService expenseImportService;
 
     @GetMapping
     public ApiResponse<List<ExpenseResponse>> getAllExpenses() {
@@ -38,16 +47,52 @@ public class ExpenseController {
                 .build();
     }
 
+    @GetMapping("/group/{groupId}/page")
+    public ApiResponse<ExpensePageResponse> getExpensePageByGroupId(
+            @PathVariable Long groupId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return ApiResponse.<ExpensePageResponse>builder()
+                .result(expenseService.getExpensePageByGroupId(groupId, cursor, size))
+                .build();
+    }
+
+    @PostMapping("/group/{groupId}/reconvert")
+    public ApiResponse<ExpenseReconversionJobResponse> reconvertGroupExpenses(@PathVariable Long groupId) {
+        return ApiResponse.<ExpenseReconversionJobResponse>builder()
+                .result(expenseReconversionService.startGroupReconversion(groupId))
+                .build();
+    }
+
+    @PostMapping(value = "/group/{groupId}/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ApiResponse<ExpenseImportResponse> importExpenses(@PathVariable Long groupId,
+                                                             @RequestParam("file") MultipartFile file) {
+        return ApiResponse.<ExpenseImportResponse>builder()
+                .result(expenseImportService.importExpenses(groupId, file))
+                .build();
+    }
+
+    @GetMapping("/reconversion/{jobId}")
+    public ApiResponse<ExpenseReconversionJobResponse> getReconversionJob(@PathVariable String jobId) {
+        return ApiResponse.<ExpenseReconversionJobResponse>builder()
+                .result(expenseReconversionService.getJob(jobId))
+                .build();
+    }
+
     @GetMapping("/user/{userId}")
     public ApiResponse<UserExpenseSummaryResponse> getAllExpensesByUserId(@PathVariable String userId,
         @RequestParam(required = false) LocalDate startDate,
         @RequestParam(required = false) LocalDate endDate,
         @RequestParam(required = false) Long groupId,
-        @RequestParam(required = false) Long categoryId
+        @RequestParam(required = false) Long categoryId,
+        @RequestParam(defaultValue = "false") boolean includeExpenses,
+        @RequestParam(defaultValue = "0") int page,
+        @RequestParam(defaultValue = "20") int size
     )
     {
         return ApiResponse.<UserExpenseSummaryResponse>builder()
-                .result(expenseService.getUserExpenseSummary(userId, startDate, endDate, groupId, categoryId))
+                .result(expenseService.getUserExpenseSummary(userId, startDate, endDate, groupId, categoryId,
+                        includeExpenses, page, size))
                 .build();
     }
 
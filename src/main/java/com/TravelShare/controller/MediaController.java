@@ -3,6 +3,7 @@ package com.TravelShare.controller;
 import com.TravelShare.dto.response.ApiResponse;
 import com.TravelShare.dto.response.MediaResponse;
 import com.TravelShare.service.MediaService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
@@ -103,7 +104,9 @@ public class MediaController {
     }
 
     @GetMapping("/download/{fileName}")
-    public ResponseEntity<Resource> downloadMedia(@PathVariable String fileName) throws IOException {
-        return mediaService.downloadFile(fileName);
+    public ResponseEntity<Resource> downloadMedia(@PathVariable String fileName,
+                                                  @RequestParam(required = false) String variant,
+                                                  HttpServletRequest request) throws IOException {
+        return mediaService.downloadFile(fileName, variant, request);
     }
 }
@@ -1,13 +1,20 @@
 package com.TravelShare.controller;
 
 import com.TravelShare.dto.request.NotificationCreationRequest;
+import com.TravelShare.dto.request.NotificationReadRequest;
 import com.TravelShare.dto.response.ApiResponse;
+import com.TravelShare.dto.response.NotificationFeedResponse;
+import com.TravelShare.dto.response.NotificationPipelineStatsResponse;
 import com.TravelShare.dto.response.NotificationResponse;
+import com.TravelShare.dto.response.UnreadCountResponse;
 import com.TravelShare.entity.User;
 import com.TravelShare.exception.AppException;
 import com.TravelShare.exception.ErrorCode;
 import com.TravelShare.repository.UserRepository;
+import com.TravelShare.service.NotificationDispatcher;
+import com.TravelShare.service.NotificationReadStateService;
 import com.TravelShare.service.NotificationService;
+import jakarta.validation.Valid;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
@@ -26,6 +33,8 @@ import java.util.List;
 @Slf4j
 public class NotificationController {
     final NotificationService notificationService;
+    final NotificationDispatcher notificationDispatcher;
+    final NotificationReadStateService notificationReadStateService;
     final UserRepository userRepository;
 
     @GetMapping("/group/{groupId}")
@@ -41,23 +50,71 @@ public class NotificationController {
             @RequestParam(required = false) String type,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate) {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
         return ApiResponse.<List<NotificationResponse>>builder()
-                .result(notificationService.getNotificationsByUser(user, groupId, type, fromDate, toDate))
+                .result(notificationService.getNotificationsByUser(currentUser(), groupId, type, fromDate, toDate))
+                .build();
+    }
+
+    @GetMapping("/my/feed")
+    public ApiResponse<NotificationFeedResponse> getMyNotificationFeed(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) Long groupId,
+            @RequestParam(required = false) String type) {
+        return ApiResponse.<NotificationFeedResponse>builder()
+                .result(notificationService.getNotificationFeed(currentUser(), groupId, type, cursor, size))
+                .build();
+    }
+
+    // Số thông báo mới hơn một cursor của feed (since = nextCursor hoặc cursor client đã lưu), không dùng mốc đã đọc
+    @GetMapping("/my/new-count")
+    public ApiResponse<Long> getMyNewNotificationCount(
+            @RequestParam(required = false) String since,
+            @RequestParam(required = false) Long groupId) {
+        return ApiResponse.<Long>builder()
+                .result(notificationService.countNewNotifications(currentUser(), groupId, since))
+                .build();
+    }
+
+    @GetMapping("/my/unread-count")
+    public ApiResponse<UnreadCountResponse> getMyUnreadCount() {
+        return ApiResponse.<UnreadCountResponse>builder()
+                .result(notificationReadStateService.getUnreadCount(currentUser()))
+                .build();
+    }
+
+    @PostMapping("/my/read")
+    public ApiResponse<UnreadCountResponse> markRead(@RequestBody @Valid NotificationReadRequest request) {
+        return ApiResponse.<UnreadCountResponse>builder()
+                .result(notificationReadStateService.markRead(currentUser(), request))
+                .build();
+    }
+
+    @PostMapping("/my/read-all")
+    public ApiResponse<UnreadCountResponse> markAllRead() {
+        return ApiResponse.<UnreadCountResponse>builder()
+                .result(notificationReadStateService.markAllRead(currentUser()))
                 .build();
     }
 
     @PostMapping
     public ApiResponse<NotificationResponse> createNotification(@RequestBody NotificationCreationRequest request) {
-        // Lấy user hiện tại từ SecurityContextHolder
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User creator = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
-
         return ApiResponse.<NotificationResponse>builder()
-                .result(notificationService.createNotification(request, creator))
+                .result(notificationService.createNotification(request, currentUser()))
                 .build();
     }
+
+    @GetMapping("/pipeline/stats")
+    public ApiResponse<NotificationPipelineStatsResponse> getPipelineStats() {
+        return ApiResponse.<NotificationPipelineStatsResponse>builder()
+                .result(notificationDispatcher.getStats())
+                .build();
+    }
+
+    // Lấy user hiện tại từ SecurityContextHolder
+    private User currentUser() {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        return userRepository.findByUsername(username)
+                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+    }
 }
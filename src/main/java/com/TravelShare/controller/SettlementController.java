@@ -3,12 +3,15 @@ package com.TravelShare.controller;
 import com.TravelShare.dto.request.SettlementCreationRequest;
 import com.TravelShare.dto.request.SettlementUpdateRequest;
 import com.TravelShare.dto.response.ApiResponse;
+import com.TravelShare.dto.response.BalanceReconciliationResponse;
 import com.TravelShare.dto.response.BalanceResponse;
 import com.TravelShare.dto.response.SettlementResponse;
+import com.TravelShare.dto.response.UserBalanceDashboardResponse;
 import com.TravelShare.entity.Group;
 import com.TravelShare.exception.AppException;
 import com.TravelShare.exception.ErrorCode;
 import com.TravelShare.repository.GroupRepository;
+import com.TravelShare.service.SettlementPlanner;
 import com.TravelShare.service.SettlementService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
@@ -40,6 +43,17 @@ public class SettlementController {
                 .build();
     }
 
+    @GetMapping("/user/{userId}/groups/dashboard")
+    public ApiResponse<UserBalanceDashboardResponse> getUserBalanceDashboard(
+            @PathVariable String userId,
+            @RequestParam(name = "page", defaultValue = "0") int page,
+            @RequestParam(name = "size", defaultValue = "20") int size,
+            @RequestParam(name = "includeTotals", defaultValue = "false") boolean includeTotals) {
+        return ApiResponse.<UserBalanceDashboardResponse>builder()
+                .result(settlementService.getUserBalanceDashboard(userId, page, size, includeTotals))
+                .build();
+    }
+
     @GetMapping("/group/{groupId}/balances")
     public ApiResponse<List<BalanceResponse>> getTripBalances(@PathVariable Long groupId) {
         Group group = groupRepository.findById(groupId)
@@ -52,8 +66,24 @@ public class SettlementController {
                 .build();
     }
 
+    @GetMapping("/group/{groupId}/balances/verify")
+    public ApiResponse<BalanceReconciliationResponse> verifyTripBalances(@PathVariable Long groupId) {
+        return ApiResponse.<BalanceReconciliationResponse>builder()
+                .result(settlementService.verifyBalances(groupId))
+                .build();
+    }
+
+    @PostMapping("/group/{groupId}/balances/rebuild")
+    public ApiResponse<List<BalanceResponse>> rebuildTripBalances(@PathVariable Long groupId) {
+        return ApiResponse.<List<BalanceResponse>>builder()
+                .result(settlementService.rebuildBalances(groupId))
+                .build();
+    }
+
     @GetMapping("/group/{groupId}/suggested")
-    public ApiResponse<List<SettlementResponse>> getSuggestedSettlements(@PathVariable Long groupId, @RequestParam(name = "userOnly", required = false, defaultValue = "false") boolean userOnly, HttpServletRequest request) {
+    public ApiResponse<List<SettlementResponse>> getSuggestedSettlements(@PathVariable Long groupId, @RequestParam(name = "userOnly", required = false, defaultValue = "false") boolean userOnly,
+                                                                          @RequestParam(name = "mode", required = false, defaultValue = "GREEDY") SettlementPlanner.PlanMode mode,
+                                                                          HttpServletRequest request) {
         Principal principal = request.getUserPrincipal();
         List<SettlementResponse> suggestions;
 
@@ -61,9 +91,9 @@ public class SettlementController {
             // Lấy username từ token (sub)
             String username = principal.getName();
 
-            suggestions = settlementService.suggestSettlements(groupId, username);
+            suggestions = settlementService.suggestSettlements(groupId, username, mode);
         } else {
-            suggestions = settlementService.suggestSettlements(groupId);
+            suggestions = settlementService.suggestSettlements(groupId, null, mode);
         }
         return ApiResponse.<List<SettlementResponse>>builder()
                 .result(suggestions)
@@ -0,0 +1,41 @@
+package com.TravelShare.controller;
+
+import com.TravelShare.dto.request.SyncBatchRequest;
+import com.TravelShare.dto.response.ApiResponse;
+import com.TravelShare.dto.response.SyncBatchResponse;
+import com.TravelShare.dto.response.SyncStatsResponse;
+import com.TravelShare.service.SyncBatchService;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/sync")
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class SyncController {
+    SyncBatchService syncBatchService;
+
+    /**
+     * Áp dụng các thay đổi expense / settlement client ghi lại khi offline, theo thứ tự, trong một transaction.
+     * Gửi lại cùng Idempotency-Key sau khi batch đã commit sẽ nhận lại kết quả cũ (replayed = true).
+     */
+    @PostMapping("/batch")
+    public ApiResponse<SyncBatchResponse> applyBatch(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestBody SyncBatchRequest request) {
+        return ApiResponse.<SyncBatchResponse>builder()
+                .result(syncBatchService.applyBatch(idempotencyKey, request))
+                .build();
+    }
+
+    @GetMapping("/stats")
+    public ApiResponse<SyncStatsResponse> getStats() {
+        return ApiResponse.<SyncStatsResponse>builder()
+                .result(syncBatchService.getStats())
+                .build();
+    }
+}
@@ -0,0 +1,31 @@
+package com.TravelShare.dto.request;
+
+import com.TravelShare.entity.Expense;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Một dòng trong file import (CSV hoặc phần tử của mảng JSON).
+ * Cột CSV: title, amount, currency, category, expenseDate, participantId, description, splitType, splits
+ * với splits dạng "participantId:giá trị;participantId:giá trị" (số tiền hoặc phần trăm tùy splitType).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ExpenseImportRow {
+    String title;
+    String description;
+    BigDecimal amount;
+    String currency; // Bỏ trống: dùng currency mặc định của group
+    Long category;
+    LocalDate expenseDate; // Bỏ trống: hôm nay
+    Long participantId; // Người trả, bỏ trống: người import
+    Expense.SplitType splitType; // Bỏ trống: EQUAL
+    List<ExpenseSplitCreationRequest> splits;
+}
@@ -11,4 +11,6 @@ import lombok.experimental.FieldDefaults;
 public class GroupUpdateRequest {
     String name;
     Long categoryId;
+    // Đổi default currency sẽ quy đổi lại toàn bộ expense của group ở chế độ nền
+    String defaultCurrency;
 }
@@ -0,0 +1,18 @@
+package com.TravelShare.dto.request;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class NotificationReadRequest {
+    @NotNull(message = "Group ID is required")
+    Long groupId;
+
+    @NotNull(message = "Last seen notification ID is required")
+    Long lastSeenNotificationId; // Id thông báo mới nhất mà user đã xem trong group
+}
@@ -0,0 +1,15 @@
+package com.TravelShare.dto.request;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SyncBatchRequest {
+    List<SyncOperationRequest> operations; // Áp dụng theo đúng thứ tự
+}
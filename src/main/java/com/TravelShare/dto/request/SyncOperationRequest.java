@@ -0,0 +1,31 @@
+package com.TravelShare.dto.request;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Một thay đổi client ghi lại khi offline. payload có cùng dạng với body của endpoint tương ứng
+ * (ExpenseCreationRequest, ExpenseUpdateRequest, SettlementCreationRequest, SettlementUpdateRequest).
+ * Để sửa / xóa một expense vừa tạo trong cùng batch (chưa có id), dùng targetOperationId trỏ tới operation tạo nó.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SyncOperationRequest {
+    String clientOperationId;
+    OperationType type;
+    Long targetId;
+    String targetOperationId;
+    JsonNode payload;
+
+    public enum OperationType {
+        CREATE_EXPENSE,
+        UPDATE_EXPENSE,
+        DELETE_EXPENSE,
+        CREATE_SETTLEMENT,
+        UPDATE_SETTLEMENT_STATUS
+    }
+}
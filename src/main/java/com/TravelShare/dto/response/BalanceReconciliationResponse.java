@@ -0,0 +1,21 @@
+package com.TravelShare.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BalanceReconciliationResponse {
+    Long groupId;
+    boolean consistent;
+    List<Long> mismatchedParticipantIds;
+    Map<Long, BigDecimal> ledgerBalances;
+    Map<Long, BigDecimal> recomputedBalances;
+}
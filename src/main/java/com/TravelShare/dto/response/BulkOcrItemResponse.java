@@ -0,0 +1,22 @@
+package com.TravelShare.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BulkOcrItemResponse {
+    int index; // Vị trí của file trong request
+    String fileName;
+    ItemStatus status;
+    OCRResponse result;
+    String error;
+    long durationMs;
+
+    public enum ItemStatus {
+        SUCCESS, FAILED, TIMEOUT
+    }
+}
@@ -0,0 +1,16 @@
+package com.TravelShare.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BulkOcrSummaryResponse {
+    int total;
+    int succeeded;
+    int failed; // Gồm cả các file bị timeout
+    long durationMs;
+}
@@ -0,0 +1,25 @@
+package com.TravelShare.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class CacheStatsResponse {
+    String name;
+    boolean persistent;
+    long size; // Số entry trong bộ nhớ
+    long hitCount;
+    long missCount;
+    double hitRate;
+    long evictionCount;
+    // Chỉ có với cache persistent
+    Long persistedEntries;
+    Long storeHits; // Miss bộ nhớ nhưng tìm thấy trong DB
+    Long storeMisses;
+    Long storeWrites;
+    Long storeErrors;
+}
@@ -0,0 +1,22 @@
+package com.TravelShare.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ChatStreamStatsResponse {
+    long activeStreams;
+    long started;
+    long completed;
+    long cancelled; // Client ngắt kết nối hoặc stream hết hạn
+    long failed;
+    double averageTimeToFirstTokenMs;
+    long maxTimeToFirstTokenMs;
+    long promptTokens;
+    long completionTokens;
+    long totalTokens;
+}
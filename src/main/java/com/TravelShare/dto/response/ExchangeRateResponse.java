@@ -15,6 +15,8 @@ public class ExchangeRateResponse {
     private String toCurrency;
     private BigDecimal rate;
     private LocalDateTime timestamp;
+    // Không có snapshot tại ngày yêu cầu, tỷ giá trả về là của một ngày sau đó (thường là tỷ giá hiện tại)
+    private boolean historicalFallback;
     private boolean success;
     private String errorMessage;
 }
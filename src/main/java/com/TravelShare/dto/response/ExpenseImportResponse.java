@@ -0,0 +1,33 @@
+package com.TravelShare.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ExpenseImportResponse {
+    Long groupId;
+    int totalRows;
+    int imported;
+    int failed;
+    BigDecimal totalAmount; // Tổng đã quy đổi sang currency mặc định của group
+    String currency;
+    long durationMs;
+    List<RowError> errors; // Tối đa MAX_REPORTED_ERRORS dòng
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class RowError {
+        int row; // Số thứ tự dòng dữ liệu, bắt đầu từ 1
+        String message;
+    }
+}
@@ -0,0 +1,17 @@
+package com.TravelShare.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ExpensePageResponse {
+    List<ExpenseResponse> items;
+    String nextCursor; // Truyền lại ở lần gọi sau để lấy trang tiếp theo, null nếu đã hết
+    boolean hasMore;
+}
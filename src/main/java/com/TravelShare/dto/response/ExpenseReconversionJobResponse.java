@@ -0,0 +1,35 @@
+package com.TravelShare.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ExpenseReconversionJobResponse {
+    String jobId;
+    Long groupId;
+    String targetCurrency;
+    JobStatus status;
+    long totalExpenses;
+    long processedExpenses;
+    long convertedExpenses;
+    long failedExpenses;
+    // Expense không có tỷ giá lịch sử tại expenseDate nên đã được quy đổi theo tỷ giá hiện tại
+    long currentRateFallbackExpenses;
+    List<Long> currentRateFallbackExpenseIds;
+    LocalDateTime startedAt;
+    LocalDateTime finishedAt;
+    String errorMessage;
+
+    public enum JobStatus {
+        RUNNING, COMPLETED, FAILED
+    }
+}
@@ -4,6 +4,7 @@ import com.TravelShare.entity.*;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 import java.time.LocalDateTime;
+import java.util.Map;
 
 @Data
 @NoArgsConstructor
@@ -22,4 +23,5 @@ public class MediaResponse {
     String description;
     LocalDateTime uploadedAt;
     UserResponse uploadedBy;
+    Map<String, String> variants; // Tên variant (thumb, small, medium) -> URL, rỗng nếu không phải ảnh
 }
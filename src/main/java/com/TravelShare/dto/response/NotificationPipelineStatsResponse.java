@@ -0,0 +1,22 @@
+package com.TravelShare.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class NotificationPipelineStatsResponse {
+    int queueDepth; // Số thông báo đang chờ ghi
+    int queueCapacity;
+    int workers;
+    long enqueued; // Tổng số thông báo đã nhận vào hàng đợi
+    long dropped; // Bị bỏ do hàng đợi đầy
+    long persisted; // Đã ghi DB thành công
+    long failed; // Ghi DB thất bại
+    long batches;
+    double averageLatencyMs; // Từ lúc enqueue đến lúc ghi xong
+    long maxLatencyMs;
+}
@@ -13,6 +13,10 @@ public record OCRResponse(
         @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
         LocalDateTime date,         // Ngày giao dịch
         String description,         // Mô tả chi tiêu
-        String categoryName        // TÊN CATEGORY tự động nhận diện
+        String categoryName,       // TÊN CATEGORY tự động nhận diện
+        Double similarity          // Độ tương đồng với hóa đơn đã quét trước đó của cùng người dùng (1.0 = cùng ảnh), null nếu không giống hóa đơn nào
 ) {
+    public OCRResponse withSimilarity(Double similarity) {
+        return new OCRResponse(merchantName, amount, date, description, categoryName, similarity);
+    }
 }
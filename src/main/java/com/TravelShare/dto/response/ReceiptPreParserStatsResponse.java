@@ -0,0 +1,18 @@
+package com.TravelShare.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ReceiptPreParserStatsResponse {
+    long attempts; // Số hóa đơn đi qua bước đọc cục bộ
+    long qrDetected; // Có mã QR đọc được
+    long localHits; // Trả kết quả không cần gọi model
+    long fallbacks; // Phải gọi model
+    double hitRate;
+    double averageParseMicros;
+}
@@ -0,0 +1,36 @@
+package com.TravelShare.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SpendingBucketResponse {
+    LocalDate bucketStart; // Ngày đầu của bucket (thứ Hai với WEEK, ngày 1 với MONTH)
+    long expenseCount;
+    Map<String, BigDecimal> totalsByCurrency; // Theo currency gốc
+    List<CategorySpending> categories;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class CategorySpending {
+        Long categoryId;
+        String currencyCode;
+        BigDecimal originalTotal;
+        BigDecimal convertedTotal; // Theo currency mặc định của group; không có với series của USER
+        long expenseCount;
+    }
+}
@@ -0,0 +1,20 @@
+package com.TravelShare.dto.response;
+
+import com.TravelShare.entity.SpendingRollup;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SpendingReconciliationResponse {
+    SpendingRollup.ScopeType scopeType;
+    String scopeId;
+    boolean consistent;
+    int checkedBuckets;
+    List<String> mismatchedBuckets; // "ngày|categoryId|currency"
+}
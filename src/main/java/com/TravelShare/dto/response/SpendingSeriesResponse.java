@@ -0,0 +1,26 @@
+package com.TravelShare.dto.response;
+
+import com.TravelShare.entity.SpendingRollup;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SpendingSeriesResponse {
+    SpendingRollup.ScopeType scopeType;
+    String scopeId;
+    Granularity granularity;
+    LocalDate from;
+    LocalDate to;
+    List<SpendingBucketResponse> buckets; // Chỉ các bucket có chi tiêu, theo thứ tự thời gian
+
+    public enum Granularity {
+        DAY, WEEK, MONTH
+    }
+}
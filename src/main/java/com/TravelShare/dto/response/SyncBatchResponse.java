@@ -0,0 +1,21 @@
+package com.TravelShare.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SyncBatchResponse {
+    String idempotencyKey;
+    boolean committed; // false: cả batch đã bị rollback, client có thể sửa và gửi lại với cùng key
+    boolean replayed; // true: kết quả lưu từ lần gửi trước, không có gì được áp dụng lại
+    int total;
+    int applied;
+    long durationMs;
+    List<SyncOperationResult> results;
+}
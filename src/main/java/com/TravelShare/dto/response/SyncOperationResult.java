@@ -0,0 +1,27 @@
+package com.TravelShare.dto.response;
+
+import com.TravelShare.dto.request.SyncOperationRequest.OperationType;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SyncOperationResult {
+    int index; // Vị trí của operation trong batch
+    String clientOperationId;
+    OperationType type;
+    OperationStatus status;
+    Object result; // ExpenseResponse / SettlementResponse, null với DELETE_EXPENSE
+    Integer errorCode;
+    String error;
+
+    public enum OperationStatus {
+        APPLIED, // Đã áp dụng và commit
+        ROLLED_BACK, // Thành công nhưng bị hoàn tác vì operation khác trong batch lỗi
+        FAILED,
+        SKIPPED // Không chạy vì operation trước đó lỗi
+    }
+}
@@ -0,0 +1,19 @@
+package com.TravelShare.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SyncStatsResponse {
+    long batches;
+    long committedBatches;
+    long rolledBackBatches;
+    long replayedBatches;
+    long operationsApplied;
+    double averageBatchMs;
+    double averageOperationMs; // So sánh với thời gian của một lần gọi API riêng lẻ cho mỗi thay đổi
+}
@@ -0,0 +1,16 @@
+package com.TravelShare.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class UnreadCountResponse {
+    long total; // Tổng số thông báo chưa đọc
+    Map<Long, Long> byGroup; // groupId -> số chưa đọc, chỉ gồm group có thông báo chưa đọc
+}
@@ -0,0 +1,25 @@
+package com.TravelShare.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserBalanceDashboardResponse {
+    List<BalanceResponse> balances;
+    int page;
+    int size;
+    long totalElements;
+    int totalPages;
+    // Tổng số dư trên tất cả group, theo currency mặc định của group (chỉ có khi includeTotals=true)
+    Map<String, BigDecimal> totalsByCurrency;
+}
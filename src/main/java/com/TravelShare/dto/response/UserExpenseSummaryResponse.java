@@ -18,5 +18,12 @@ public class UserExpenseSummaryResponse {
     //Multi-currency totals
     Map<String, BigDecimal> totalsByOriginalCurrency;
 
+    long expenseCount;
+
+    // Trang chi tiết, chỉ có khi includeExpenses=true
     List<ExpenseResponse> expenses;
+    Integer page;
+    Integer size;
+    Long totalElements;
+    Integer totalPages;
 }
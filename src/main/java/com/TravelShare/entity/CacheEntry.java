@@ -0,0 +1,43 @@
+package com.TravelShare.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Tầng 2 (bền vững) của các cache được cấu hình persistent, giá trị lưu dạng JSON kèm tên class.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(name = "cache_entry",
+        uniqueConstraints = @UniqueConstraint(name = "uk_cache_entry_name_key", columnNames = {"cache_name", "cache_key"}),
+        indexes = @Index(name = "idx_cache_entry_expires", columnList = "expires_at"))
+public class CacheEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    @Column(name = "cache_name", nullable = false, length = 100)
+    String cacheName;
+
+    @Column(name = "cache_key", nullable = false, length = 512)
+    String cacheKey;
+
+    @Column(nullable = false)
+    String valueType;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    String value;
+
+    @Column(name = "expires_at", nullable = false)
+    LocalDateTime expiresAt;
+
+    LocalDateTime createdAt;
+}
@@ -0,0 +1,44 @@
+package com.TravelShare.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Tỷ giá đã lấy được từ nguồn bên ngoài, lưu theo ngày: 1 baseCurrency = rate quoteCurrency.
+ * Dùng làm fallback khi API lỗi và làm lịch sử tỷ giá.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(name = "exchange_rate_snapshot",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"base_currency", "quote_currency", "rate_date"}),
+        indexes = @Index(name = "idx_exchange_rate_snapshot_base_date", columnList = "base_currency, rate_date"))
+public class ExchangeRateSnapshot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    @Column(name = "base_currency", nullable = false, length = 3)
+    String baseCurrency;
+
+    @Column(name = "quote_currency", nullable = false, length = 3)
+    String quoteCurrency;
+
+    @Column(nullable = false, precision = 19, scale = 6)
+    BigDecimal rate;
+
+    @Column(name = "rate_date", nullable = false)
+    LocalDate rateDate;
+
+    @Column(nullable = false)
+    LocalDateTime fetchedAt;
+}
@@ -16,7 +16,8 @@ import java.util.Set;
 @AllArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Entity
-@Table(name="expense")
+@Table(name="expense",
+        indexes = @Index(name = "idx_expense_group_date_id", columnList = "group_id, expense_date, id"))
 public class Expense {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,46 @@
+package com.TravelShare.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Kết quả của một batch đồng bộ offline đã áp dụng, theo idempotency key của từng người dùng.
+ * Client gửi lại cùng key (do timeout, mất mạng) sẽ nhận lại đúng kết quả cũ mà không áp dụng lại thay đổi.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(name = "idempotency_record",
+        uniqueConstraints = @UniqueConstraint(name = "uk_idempotency_record_user_key", columnNames = {"user_id", "idempotency_key"}),
+        indexes = @Index(name = "idx_idempotency_record_expires", columnList = "expires_at"))
+public class IdempotencyRecord {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    @Column(name = "user_id", nullable = false)
+    String userId;
+
+    @Column(name = "idempotency_key", nullable = false, length = 128)
+    String idempotencyKey;
+
+    // SHA-256 của danh sách operation, để phát hiện cùng key nhưng nội dung khác
+    @Column(name = "request_hash", nullable = false, length = 64)
+    String requestHash;
+
+    @Column(name = "response_body", columnDefinition = "TEXT")
+    String responseBody;
+
+    @Column(name = "created_at", nullable = false)
+    LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    LocalDateTime expiresAt;
+}
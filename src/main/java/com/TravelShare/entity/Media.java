@@ -13,6 +13,7 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Entity
+@Table(indexes = @Index(name = "idx_media_content_hash", columnList = "content_hash"))
 public class Media {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -39,6 +40,10 @@ public class Media {
     @Column(nullable = false)
     String fileUrl;
 
+    // SHA-256 của nội dung, trỏ tới MediaBlob; null với các file upload trước khi có lưu trữ theo nội dung
+    @Column(name = "content_hash", length = 64)
+    String contentHash;
+
     String description;
 
     @Column(nullable = false)
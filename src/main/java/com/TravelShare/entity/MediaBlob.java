@@ -0,0 +1,36 @@
+package com.TravelShare.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * File vật lý lưu theo nội dung (SHA-256). Nhiều Media có cùng nội dung dùng chung một blob,
+ * refCount đếm số Media đang trỏ tới; file chỉ bị xóa khi refCount về 0.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(name = "media_blob")
+public class MediaBlob {
+    @Id
+    @Column(name = "content_hash", length = 64)
+    String contentHash;
+
+    @Column(nullable = false)
+    String storagePath;
+
+    @Column(nullable = false)
+    Long size;
+
+    @Column(nullable = false)
+    Integer refCount;
+
+    LocalDateTime createdAt;
+}
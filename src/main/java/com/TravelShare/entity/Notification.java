@@ -13,6 +13,10 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Entity
+@Table(indexes = {
+        // Phục vụ feed phân trang keyset theo (created_at, id) trong từng group
+        @Index(name = "idx_notification_group_created", columnList = "group_id, created_at, id")
+})
 public class Notification {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
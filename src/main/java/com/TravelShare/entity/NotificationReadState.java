@@ -0,0 +1,38 @@
+package com.TravelShare.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+
+/**
+ * Mốc đã đọc của user trong một group: mọi thông báo có id <= lastSeenNotificationId coi như đã đọc.
+ * Mỗi (user, group) chỉ có một dòng, nên không cần lưu trạng thái đọc cho từng thông báo.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(name = "notification_read_state",
+        uniqueConstraints = @UniqueConstraint(name = "uk_notification_read_state_user_group",
+                columnNames = {"user_id", "group_id"}))
+public class NotificationReadState {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    @Column(name = "user_id", nullable = false)
+    String userId;
+
+    @Column(name = "group_id", nullable = false)
+    Long groupId;
+
+    @Column(nullable = false)
+    Long lastSeenNotificationId;
+
+    LocalDateTime updatedAt;
+}
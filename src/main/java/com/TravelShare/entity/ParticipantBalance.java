@@ -0,0 +1,35 @@
+package com.TravelShare.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Số dư hiện tại của một participant trong group (group default currency).
+ * Được cập nhật theo delta mỗi khi expense/settlement thay đổi, thay vì tính lại toàn bộ.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(name = "participant_balance",
+        indexes = @Index(name = "idx_participant_balance_group", columnList = "group_id"))
+public class ParticipantBalance {
+    @Id
+    @Column(name = "participant_id")
+    Long participantId;
+
+    @Column(name = "group_id", nullable = false)
+    Long groupId;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    BigDecimal balance;
+
+    LocalDateTime updatedAt;
+}
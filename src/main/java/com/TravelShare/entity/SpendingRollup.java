@@ -0,0 +1,62 @@
+package com.TravelShare.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Tổng chi theo ngày, category và currency gốc, cho một group hoặc một user (người trả).
+ * Được cập nhật theo delta khi expense được tạo / sửa / xóa, nên biểu đồ chi tiêu không phải quét bảng expense.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(name = "spending_rollup",
+        uniqueConstraints = @UniqueConstraint(name = "uk_spending_rollup_bucket",
+                columnNames = {"scope_type", "scope_id", "bucket_date", "category_id", "currency_code"}))
+public class SpendingRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "scope_type", nullable = false, length = 10)
+    ScopeType scopeType;
+
+    // Id của group hoặc user, tùy scopeType
+    @Column(name = "scope_id", nullable = false)
+    String scopeId;
+
+    @Column(name = "bucket_date", nullable = false)
+    LocalDate bucketDate;
+
+    @Column(name = "category_id", nullable = false)
+    Long categoryId;
+
+    @Column(name = "currency_code", nullable = false, length = 10)
+    String currencyCode;
+
+    @Column(name = "original_total", nullable = false, precision = 14, scale = 2)
+    BigDecimal originalTotal;
+
+    // Theo currency mặc định của group, chỉ cộng được trong phạm vi một group
+    @Column(name = "converted_total", nullable = false, precision = 14, scale = 2)
+    BigDecimal convertedTotal;
+
+    @Column(name = "expense_count", nullable = false)
+    long expenseCount;
+
+    LocalDateTime updatedAt;
+
+    public enum ScopeType {
+        GROUP, USER
+    }
+}
@@ -2,6 +2,7 @@ package com.TravelShare.event;
 
 import com.TravelShare.entity.Expense;
 import com.TravelShare.entity.User;
+import com.TravelShare.service.SpendingRollupService;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
@@ -14,10 +15,14 @@ import org.springframework.context.ApplicationEvent;
 public class ExpenseUpdatedEvent extends ApplicationEvent {
     final Expense expense;
     final User updater;
+    // Expense trước khi sửa, để trừ khỏi bucket chi tiêu cũ
+    final SpendingRollupService.Contribution previousSpending;
 
-    public ExpenseUpdatedEvent(Object source, Expense expense, User updater) {
+    public ExpenseUpdatedEvent(Object source, Expense expense, User updater,
+                               SpendingRollupService.Contribution previousSpending) {
         super(source);
         this.expense = expense;
         this.updater = updater;
+        this.previousSpending = previousSpending;
     }
 }
@@ -0,0 +1,31 @@
+package com.TravelShare.event;
+
+import com.TravelShare.entity.User;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import org.springframework.context.ApplicationEvent;
+
+import java.math.BigDecimal;
+
+@Getter
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ExpensesImportedEvent extends ApplicationEvent {
+    final Long groupId;
+    final String groupName;
+    final int count;
+    final BigDecimal totalAmount;
+    final String currency;
+    final User creator;
+
+    public ExpensesImportedEvent(Object source, Long groupId, String groupName, int count,
+                                 BigDecimal totalAmount, String currency, User creator) {
+        super(source);
+        this.groupId = groupId;
+        this.groupName = groupName;
+        this.count = count;
+        this.totalAmount = totalAmount;
+        this.currency = currency;
+        this.creator = creator;
+    }
+}
@@ -71,7 +71,21 @@ public enum ErrorCode {
     FINALIZATION_NOT_FOUND(1058, "Yêu cầu tất toán không tồn tại", HttpStatus.NOT_FOUND),
     FINALIZATION_ALREADY_PENDING(1059, "Đã có yêu cầu tất toán đang chờ xử lý", HttpStatus.BAD_REQUEST),
     FINALIZATION_ALREADY_PROCESSED(1060, "Yêu cầu tất toán đã được xử lý", HttpStatus.BAD_REQUEST),
-    EXPENSE_LOCKED(1061, "Chi phí đã bị khóa, không thể chỉnh sửa", HttpStatus.BAD_REQUEST);
+    EXPENSE_LOCKED(1061, "Chi phí đã bị khóa, không thể chỉnh sửa", HttpStatus.BAD_REQUEST),
+    RECONVERSION_JOB_NOT_FOUND(1062, "Reconversion job not found", HttpStatus.NOT_FOUND),
+    INVALID_CURSOR(1063, "Cursor không hợp lệ", HttpStatus.BAD_REQUEST),
+    OCR_BATCH_EMPTY(1064, "Chưa chọn hóa đơn nào để xử lý", HttpStatus.BAD_REQUEST),
+    OCR_BATCH_TOO_LARGE(1065, "Số lượng hóa đơn vượt quá giới hạn cho một lần xử lý", HttpStatus.BAD_REQUEST),
+    SERVER_BUSY(1066, "Hệ thống đang bận, vui lòng thử lại sau", HttpStatus.SERVICE_UNAVAILABLE),
+    IMPORT_FILE_INVALID(1067, "File import không hợp lệ", HttpStatus.BAD_REQUEST),
+    IMPORT_TOO_MANY_ROWS(1068, "File import có quá nhiều dòng", HttpStatus.BAD_REQUEST),
+    SYNC_BATCH_EMPTY(1069, "Batch đồng bộ không có thay đổi nào", HttpStatus.BAD_REQUEST),
+    SYNC_BATCH_TOO_LARGE(1070, "Batch đồng bộ có quá nhiều thay đổi", HttpStatus.BAD_REQUEST),
+    IDEMPOTENCY_KEY_REQUIRED(1071, "Thiếu hoặc sai Idempotency-Key", HttpStatus.BAD_REQUEST),
+    IDEMPOTENCY_KEY_REUSED(1072, "Idempotency-Key đã được dùng cho một batch khác", HttpStatus.CONFLICT),
+    SYNC_OPERATION_INVALID(1073, "Thay đổi trong batch không hợp lệ", HttpStatus.BAD_REQUEST),
+    INVALID_DATE_RANGE(1074, "Khoảng thời gian không hợp lệ", HttpStatus.BAD_REQUEST),
+    GROUP_CURRENCY_LOCKED(1075, "Không thể đổi currency khi nhóm đã có settlement đang chờ hoặc đã hoàn tất", HttpStatus.CONFLICT);
 
     ErrorCode(int code, String message, HttpStatusCode statusCode) {
         this.code = code;
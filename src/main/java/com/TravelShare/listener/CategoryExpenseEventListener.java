@@ -2,22 +2,23 @@ package com.TravelShare.listener;
 
 import com.TravelShare.dto.request.NotificationCreationRequest;
 import com.TravelShare.event.CategoryExpenseCreatedEvent;
-import com.TravelShare.service.NotificationService;
+import com.TravelShare.service.NotificationDispatcher;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 @Component
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Slf4j
 public class CategoryExpenseEventListener {
     @Autowired
-    NotificationService notificationService;
+    NotificationDispatcher notificationDispatcher;
 
-    @EventListener
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
     public void handleCategoryExpenseCreated(CategoryExpenseCreatedEvent event) {
         log.info("ExpenseCreatedEvent received for expense id: {}", event.getCategory().getId());
         var category = event.getCategory();
@@ -31,6 +32,6 @@ public class CategoryExpenseEventListener {
                 .referenceId(category.getId())
                 .build();
         log.info("NotificationCreationRequest: {}", notiRequest);
-        notificationService.createNotification(notiRequest, creator);
+        notificationDispatcher.dispatch(notiRequest, creator);
     }
 }
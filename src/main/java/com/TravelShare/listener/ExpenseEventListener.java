@@ -4,22 +4,25 @@ import com.TravelShare.dto.request.NotificationCreationRequest;
 import com.TravelShare.event.ExpenseCreatedEvent;
 import com.TravelShare.event.ExpenseDeletedEvent;
 import com.TravelShare.event.ExpenseUpdatedEvent;
-import com.TravelShare.service.NotificationService;
+import com.TravelShare.event.ExpensesImportedEvent;
+import com.TravelShare.service.NotificationDispatcher;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 @Component
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Slf4j
 public class ExpenseEventListener {
     @Autowired
-    NotificationService notificationService;
+    NotificationDispatcher notificationDispatcher;
 
-    @EventListener
+    // Chạy sau khi transaction commit; việc ghi DB và đẩy WebSocket do NotificationDispatcher xử lý nền
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
     public void handleExpenseCreated(ExpenseCreatedEvent event) {
         log.info("ExpenseCreatedEvent received for expense id: {}", event.getExpense().getId());
         var expense = event.getExpense();
@@ -33,10 +36,10 @@ public class ExpenseEventListener {
                 .referenceId(expense.getId())
                 .build();
         log.info("NotificationCreationRequest: {}", notiRequest);
-        notificationService.createNotification(notiRequest, creator);
+        notificationDispatcher.dispatch(notiRequest, creator);
     }
 
-    @EventListener
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
     public void handleExpenseUpdated(ExpenseUpdatedEvent event) {
         log.info("ExpenseUpdatedEvent received for expense id: {}", event.getExpense().getId());
         var expense = event.getExpense();
@@ -50,10 +53,10 @@ public class ExpenseEventListener {
                 .referenceId(expense.getId())
                 .build();
         log.info("NotificationCreationRequest: {}", notiRequest);
-        notificationService.createNotification(notiRequest, creator);
+        notificationDispatcher.dispatch(notiRequest, creator);
     }
 
-    @EventListener
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
     public void handleExpenseDeleted(ExpenseDeletedEvent event) {
         log.info("ExpenseDeletedEvent received for expense id: {}", event.getExpense().getId());
         var expense = event.getExpense();
@@ -67,6 +70,20 @@ public class ExpenseEventListener {
                 .referenceId(expense.getId())
                 .build();
         log.info("NotificationCreationRequest: {}", notiRequest);
-        notificationService.createNotification(notiRequest, creator);
+        notificationDispatcher.dispatch(notiRequest, creator);
+    }
+
+    // Import hàng loạt: một thông báo tổng hợp thay vì một thông báo cho mỗi chi phí
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void handleExpensesImported(ExpensesImportedEvent event) {
+        log.info("ExpensesImportedEvent received for group id: {} ({} expenses)", event.getGroupId(), event.getCount());
+
+        NotificationCreationRequest notiRequest = NotificationCreationRequest.builder()
+                .type("EXPENSES_IMPORTED")
+                .content("Đã nhập " + event.getCount() + " chi phí (tổng " + event.getTotalAmount().toPlainString()
+                        + " " + event.getCurrency() + ") vào nhóm " + event.getGroupName())
+                .groupId(event.getGroupId())
+                .build();
+        notificationDispatcher.dispatch(notiRequest, event.getCreator());
     }
 }
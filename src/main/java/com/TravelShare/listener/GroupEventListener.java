@@ -2,22 +2,23 @@ package com.TravelShare.listener;
 
 import com.TravelShare.dto.request.NotificationCreationRequest;
 import com.TravelShare.event.GroupUpdatedEvent;
-import com.TravelShare.service.NotificationService;
+import com.TravelShare.service.NotificationDispatcher;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 @Component
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Slf4j
 public class GroupEventListener {
     @Autowired
-    NotificationService notificationService;
+    NotificationDispatcher notificationDispatcher;
 
-    @EventListener
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
     public void handleGroupUpdated(GroupUpdatedEvent event) {
         log.info("GroupUpdatedEvent received for Group id: {}", event.getGroup().getId());
         var group = event.getGroup();
@@ -30,6 +31,6 @@ public class GroupEventListener {
                 .referenceId(group.getId())
                 .build();
         log.info("NotificationCreationRequest: {}", notiRequest);
-        notificationService.createNotification(notiRequest, creator);
+        notificationDispatcher.dispatch(notiRequest, creator);
     }
 }
\ No newline at end of file
@@ -2,26 +2,31 @@ package com.TravelShare.listener;
 
 import com.TravelShare.dto.request.NotificationCreationRequest;
 import com.TravelShare.event.MediaUploadedEvent;
-import com.TravelShare.service.NotificationService;
+import com.TravelShare.service.NotificationDispatcher;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 @Component
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Slf4j
 public class MediaEventListener {
     @Autowired
-    NotificationService notificationService;
+    NotificationDispatcher notificationDispatcher;
 
-    @EventListener
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
     public void handleMediaUploaded(MediaUploadedEvent event) {
         log.info("MediaUploadedEvent received for Group id: {}", event.getMedia().getId());
         var media = event.getMedia();
         var creator = event.getUploader();
+        if (media.getGroup() == null) {
+            // Media không thuộc group nào (ảnh cá nhân, chứng từ expense): không có ai để thông báo
+            return;
+        }
 
         NotificationCreationRequest notiRequest = NotificationCreationRequest.builder()
                 .type("MEDIA_UPLOADED")
@@ -30,6 +35,6 @@ public class MediaEventListener {
                 .referenceId(media.getId())
                 .build();
         log.info("NotificationCreationRequest: {}", notiRequest);
-        notificationService.createNotification(notiRequest, creator);
+        notificationDispatcher.dispatch(notiRequest, creator);
     }
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.TravelShare.listener;
+
+import com.TravelShare.event.MediaUploadedEvent;
+import com.TravelShare.service.MediaVariantService;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Slf4j
+public class MediaVariantEventListener {
+    @Autowired
+    MediaVariantService mediaVariantService;
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void handleMediaUploaded(MediaUploadedEvent event) {
+        log.info("MediaUploadedEvent received for variant generation, media id: {}", event.getMedia().getId());
+        mediaVariantService.generateAsync(event.getMedia());
+    }
+}
@@ -0,0 +1,37 @@
+package com.TravelShare.listener;
+
+import com.TravelShare.event.ExpenseCreatedEvent;
+import com.TravelShare.event.ExpenseDeletedEvent;
+import com.TravelShare.event.ExpenseUpdatedEvent;
+import com.TravelShare.service.SpendingRollupService;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Slf4j
+public class SpendingRollupListener {
+    @Autowired
+    SpendingRollupService spendingRollupService;
+
+    // Chạy ngay trước commit, trong cùng transaction với thay đổi expense: rollup và expense luôn commit / rollback cùng nhau
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void handleExpenseCreated(ExpenseCreatedEvent event) {
+        spendingRollupService.recordExpenseCreated(event.getExpense());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void handleExpenseUpdated(ExpenseUpdatedEvent event) {
+        spendingRollupService.recordExpenseUpdated(event.getPreviousSpending(), event.getExpense());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void handleExpenseDeleted(ExpenseDeletedEvent event) {
+        spendingRollupService.recordExpenseDeleted(event.getExpense());
+    }
+}
@@ -8,7 +8,7 @@ import com.TravelShare.entity.ExpenseSplit;
 import com.TravelShare.dto.response.ExpenseSplitResponse;
 import org.mapstruct.*;
 
-@Mapper(componentModel = "spring")
+@Mapper(componentModel = "spring", uses = MediaMapper.class)
 public interface ExpenseMapper {
     @Mapping(target = "originalCurrency", ignore = true)
     @Mapping(target = "convertedCurrency", ignore = true)
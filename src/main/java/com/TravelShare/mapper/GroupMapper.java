@@ -7,7 +7,7 @@ import com.TravelShare.dto.response.GroupSummaryResponse;
 import com.TravelShare.entity.Group;
 import org.mapstruct.*;
 
-@Mapper(componentModel = "spring")
+@Mapper(componentModel = "spring", uses = MediaMapper.class)
 public interface GroupMapper {
     @Mapping(target = "id", ignore = true)
     @Mapping(target = "createdBy", ignore = true)
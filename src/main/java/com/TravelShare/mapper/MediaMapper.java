@@ -2,15 +2,34 @@ package com.TravelShare.mapper;
 
 import com.TravelShare.dto.response.MediaResponse;
 import com.TravelShare.entity.Media;
+import com.TravelShare.service.MediaVariantService;
+import org.mapstruct.AfterMapping;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
+import org.mapstruct.MappingTarget;
+import org.springframework.beans.factory.annotation.Autowired;
 
+/**
+ * Mapping Media duy nhất: các mapper khác (expense, group) khai báo uses = MediaMapper.class,
+ * nên media lồng trong response của chúng cũng có URL variant.
+ */
 @Mapper(componentModel = "spring")
-public interface MediaMapper {
+public abstract class MediaMapper {
+    @Autowired
+    protected MediaVariantService mediaVariantService;
+
     @Mapping(source = "uploadedBy", target = "uploadedBy")
-    MediaResponse toMediaResponse(Media media);
+    @Mapping(target = "variants", ignore = true)
+    public abstract MediaResponse toMediaResponse(Media media);
+
+    // Chỉ ghép URL từ fileUrl / contentHash, không đọc file. MapStruct dựng MediaResponse qua builder của Lombok
+    @AfterMapping
+    protected void fillVariants(Media media, @MappingTarget MediaResponse.MediaResponseBuilder response) {
+        response.variants(mediaVariantService.variantUrls(media));
+    }
+
     // For converting string URL to Media entity (simple mapping)
-    default Media toMedia(String mediaUrl) {
+    public Media toMedia(String mediaUrl) {
         if (mediaUrl == null) {
             return null;
         }
@@ -0,0 +1,43 @@
+package com.TravelShare.repository;
+
+import com.TravelShare.entity.CacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface CacheEntryRepository extends JpaRepository<CacheEntry, Long> {
+    Optional<CacheEntry> findByCacheNameAndCacheKeyAndExpiresAtAfter(String cacheName, String cacheKey, LocalDateTime now);
+
+    @Modifying
+    @Query(value = "INSERT INTO cache_entry (cache_name, cache_key, value_type, value, expires_at, created_at) " +
+            "VALUES (:cacheName, :cacheKey, :valueType, :value, :expiresAt, now()) " +
+            "ON CONFLICT (cache_name, cache_key) DO UPDATE " +
+            "SET value_type = EXCLUDED.value_type, value = EXCLUDED.value, " +
+            "expires_at = EXCLUDED.expires_at, created_at = EXCLUDED.created_at",
+            nativeQuery = true)
+    void upsert(@Param("cacheName") String cacheName,
+                @Param("cacheKey") String cacheKey,
+                @Param("valueType") String valueType,
+                @Param("value") String value,
+                @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Modifying
+    @Query("DELETE FROM CacheEntry e WHERE e.cacheName = :cacheName AND e.cacheKey = :cacheKey")
+    int deleteEntry(@Param("cacheName") String cacheName, @Param("cacheKey") String cacheKey);
+
+    @Modifying
+    @Query("DELETE FROM CacheEntry e WHERE e.cacheName = :cacheName")
+    int deleteAllInCache(@Param("cacheName") String cacheName);
+
+    @Modifying
+    @Query("DELETE FROM CacheEntry e WHERE e.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+
+    long countByCacheName(String cacheName);
+}
@@ -0,0 +1,26 @@
+package com.TravelShare.repository;
+
+import com.TravelShare.entity.ExchangeRateSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface ExchangeRateSnapshotRepository extends JpaRepository<ExchangeRateSnapshot, Long> {
+    List<ExchangeRateSnapshot> findByBaseCurrencyAndRateDate(String baseCurrency, LocalDate rateDate);
+
+    // Snapshot gần nhất của base currency (fallback khi không gọi được API)
+    @Query("SELECT s FROM ExchangeRateSnapshot s WHERE s.baseCurrency = :base AND s.rateDate = " +
+            "(SELECT MAX(s2.rateDate) FROM ExchangeRateSnapshot s2 WHERE s2.baseCurrency = :base)")
+    List<ExchangeRateSnapshot> findLatestByBaseCurrency(@Param("base") String baseCurrency);
+
+    // Snapshot có hiệu lực tại một ngày trong quá khứ (ngày gần nhất không sau :date)
+    @Query("SELECT s FROM ExchangeRateSnapshot s WHERE s.baseCurrency = :base AND s.rateDate = " +
+            "(SELECT MAX(s2.rateDate) FROM ExchangeRateSnapshot s2 WHERE s2.baseCurrency = :base AND s2.rateDate <= :date)")
+    List<ExchangeRateSnapshot> findLatestByBaseCurrencyOnOrBefore(@Param("base") String baseCurrency,
+                                                                 @Param("date") LocalDate date);
+}
@@ -1,13 +1,18 @@
 package com.TravelShare.repository;
 
 import com.TravelShare.entity.Expense;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,6 +20,85 @@ import java.util.Optional;
 public interface ExpenseRepository extends JpaRepository<Expense, Long>, JpaSpecificationExecutor<Expense> {
     Optional<String> findIdByPayerId(Long payerId);
     List<Expense> findAllByGroupId(Long groupId);
+
+    // Keyset theo id để duyệt expense của group theo từng chunk
+    List<Expense> findByGroupIdAndIdGreaterThan(Long groupId, Long id, Pageable pageable);
+
+    // Trang expense của group theo (expenseDate, id) giảm dần; chỉ lấy id để LIMIT chạy trên index
+    @Query("SELECT e.id FROM Expense e WHERE e.group.id = :groupId " +
+            "AND (e.expenseDate < :cursorDate OR (e.expenseDate = :cursorDate AND e.id < :cursorId)) " +
+            "ORDER BY e.expenseDate DESC, e.id DESC")
+    List<Long> findPageIdsByGroupId(@Param("groupId") Long groupId,
+                                    @Param("cursorDate") LocalDate cursorDate,
+                                    @Param("cursorId") Long cursorId,
+                                    Limit limit);
+
+    // Các quan hệ cần cho ExpenseResponse trong một câu lệnh, trừ attachments (tránh tích Descartes splits x attachments)
+    @Query("SELECT DISTINCT e FROM Expense e " +
+            "JOIN FETCH e.payer p " +
+            "LEFT JOIN FETCH p.user " +
+            "JOIN FETCH e.category " +
+            "JOIN FETCH e.originalCurrency " +
+            "JOIN FETCH e.convertedCurrency " +
+            "LEFT JOIN FETCH e.splits s " +
+            "LEFT JOIN FETCH s.participant sp " +
+            "LEFT JOIN FETCH sp.user " +
+            "WHERE e.id IN :ids")
+    List<Expense> findAllWithSplitsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Khởi tạo attachments cho các expense đã nạp ở trên (cùng persistence context)
+    @Query("SELECT DISTINCT e FROM Expense e " +
+            "LEFT JOIN FETCH e.attachments a " +
+            "LEFT JOIN FETCH a.uploadedBy " +
+            "WHERE e.id IN :ids")
+    List<Expense> findAllWithAttachmentsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Tổng chi của user theo currency gốc, tính trong DB; các bộ lọc null thì bỏ qua
+    @Query("SELECT e.originalCurrency.code AS currencyCode, " +
+            "SUM(e.originalAmount) AS originalTotal, " +
+            "SUM(e.convertedAmount) AS convertedTotal, " +
+            "COUNT(e) AS expenseCount " +
+            "FROM Expense e " +
+            "WHERE e.payer.user.id = :userId " +
+            "AND (:startDate IS NULL OR e.expenseDate >= :startDate) " +
+            "AND (:endDate IS NULL OR e.expenseDate <= :endDate) " +
+            "AND (:groupId IS NULL OR e.group.id = :groupId) " +
+            "AND (:categoryId IS NULL OR e.category.id = :categoryId) " +
+            "GROUP BY e.originalCurrency.code")
+    List<CurrencySpending> sumUserExpensesByCurrency(@Param("userId") String userId,
+                                                     @Param("startDate") LocalDate startDate,
+                                                     @Param("endDate") LocalDate endDate,
+                                                     @Param("groupId") Long groupId,
+                                                     @Param("categoryId") Long categoryId);
+
+    interface CurrencySpending {
+        String getCurrencyCode();
+        BigDecimal getOriginalTotal();
+        BigDecimal getConvertedTotal();
+        Long getExpenseCount();
+    }
+
+    // Tính lại bucket chi tiêu trực tiếp từ expense, để đối chiếu với spending_rollup
+    String SPENDING_AGGREGATE_SELECT = "SELECT e.expenseDate AS bucketDate, e.category.id AS categoryId, " +
+            "e.originalCurrency.code AS currencyCode, SUM(e.originalAmount) AS originalTotal, " +
+            "SUM(e.convertedAmount) AS convertedTotal, COUNT(e) AS expenseCount FROM Expense e ";
+    String SPENDING_AGGREGATE_GROUP_BY = " GROUP BY e.expenseDate, e.category.id, e.originalCurrency.code";
+
+    @Query(SPENDING_AGGREGATE_SELECT + "WHERE e.group.id = :groupId" + SPENDING_AGGREGATE_GROUP_BY)
+    List<SpendingAggregate> aggregateSpendingByGroupId(@Param("groupId") Long groupId);
+
+    @Query(SPENDING_AGGREGATE_SELECT + "WHERE e.payer.user.id = :userId" + SPENDING_AGGREGATE_GROUP_BY)
+    List<SpendingAggregate> aggregateSpendingByPayerUserId(@Param("userId") String userId);
+
+    interface SpendingAggregate {
+        LocalDate getBucketDate();
+        Long getCategoryId();
+        String getCurrencyCode();
+        BigDecimal getOriginalTotal();
+        BigDecimal getConvertedTotal();
+        Long getExpenseCount();
+    }
+
     @Query("SELECT e FROM Expense e WHERE e.payer.user.id = :userId")
     List<Expense> findAllByPayerUserId(@Param("userId") String userId);
 
@@ -24,4 +108,6 @@ public interface ExpenseRepository extends JpaRepository<Expense, Long>, JpaSpec
     List<Expense> findByGroupIdAndIsLocked(Long groupId, Boolean isLocked);
 
     long countByGroupIdAndIsLocked(Long groupId, Boolean isLocked);
+
+    long countByGroupId(Long groupId);
 }
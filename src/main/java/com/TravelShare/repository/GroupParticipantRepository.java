@@ -4,6 +4,8 @@ import com.TravelShare.entity.Group;
 import com.TravelShare.entity.GroupParticipant;
 import com.TravelShare.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,4 +18,10 @@ public interface GroupParticipantRepository extends JpaRepository<GroupParticipa
     Optional<GroupParticipant> findByName(String participantName);
     int countByGroupIdAndRole(Long groupId, String role);
     Optional<GroupParticipant> findByGroupIdAndUserId(Long groupId, String userId);
-} 
\ No newline at end of file
+
+    @Query("SELECT p FROM GroupParticipant p LEFT JOIN FETCH p.user WHERE p.group.id = :groupId ORDER BY p.id")
+    List<GroupParticipant> findAllWithUserByGroupId(@Param("groupId") Long groupId);
+
+    @Query("SELECT p.user.id FROM GroupParticipant p WHERE p.group.id = :groupId AND p.user IS NOT NULL")
+    List<String> findUserIdsByGroupId(@Param("groupId") Long groupId);
+}
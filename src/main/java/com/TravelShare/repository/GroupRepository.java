@@ -23,4 +23,23 @@ public interface GroupRepository extends JpaRepository<Group, Long> {
             "WHERE g.id = :groupId")
     Optional<Group> findByIdWithParticipants(@Param("groupId") Long groupId);
 
+    // Group kèm mọi quan hệ ExpenseResponse.group cần, để trang expense không nạp lười theo từng expense
+    @Query("SELECT g FROM Group g " +
+            "LEFT JOIN FETCH g.createdBy " +
+            "LEFT JOIN FETCH g.defaultCurrency " +
+            "LEFT JOIN FETCH g.category " +
+            "LEFT JOIN FETCH g.participants p " +
+            "LEFT JOIN FETCH p.user " +
+            "WHERE g.id = :groupId")
+    Optional<Group> findByIdForExpenseListing(@Param("groupId") Long groupId);
+
+    @Query("SELECT g FROM Group g " +
+            "LEFT JOIN FETCH g.groupImages i " +
+            "LEFT JOIN FETCH i.uploadedBy " +
+            "WHERE g.id = :groupId")
+    Optional<Group> findByIdWithImages(@Param("groupId") Long groupId);
+
+    @Query("SELECT g.id FROM Group g")
+    List<Long> findAllIds();
+
 } 
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.TravelShare.repository;
+
+import com.TravelShare.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, Long> {
+    Optional<IdempotencyRecord> findByUserIdAndIdempotencyKey(String userId, String idempotencyKey);
+
+    /**
+     * Giữ key cho transaction hiện tại. Trả về 0 nếu key đã tồn tại và chưa hết hạn; bản ghi đã hết hạn
+     * (scheduler chưa kịp xóa) được ghi đè như một key mới. Nếu một transaction khác đang giữ cùng key thì
+     * câu lệnh chờ transaction đó kết thúc, nên hai lần gửi lại đồng thời không cùng được áp dụng.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_record (user_id, idempotency_key, request_hash, created_at, expires_at) " +
+            "VALUES (:userId, :idempotencyKey, :requestHash, now(), :expiresAt) " +
+            "ON CONFLICT (user_id, idempotency_key) DO UPDATE SET request_hash = EXCLUDED.request_hash, " +
+            "response_body = NULL, created_at = EXCLUDED.created_at, expires_at = EXCLUDED.expires_at " +
+            "WHERE idempotency_record.expires_at < now()",
+            nativeQuery = true)
+    int claim(@Param("userId") String userId,
+              @Param("idempotencyKey") String idempotencyKey,
+              @Param("requestHash") String requestHash,
+              @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Modifying
+    @Query("UPDATE IdempotencyRecord r SET r.responseBody = :responseBody " +
+            "WHERE r.userId = :userId AND r.idempotencyKey = :idempotencyKey")
+    int saveResponse(@Param("userId") String userId,
+                     @Param("idempotencyKey") String idempotencyKey,
+                     @Param("responseBody") String responseBody);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -8,6 +8,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
 
 @Repository
 public interface InvalidatedTokenRepository extends JpaRepository<InvalidatedToken, String> {
@@ -16,4 +18,6 @@ public interface InvalidatedTokenRepository extends JpaRepository<InvalidatedTok
     @Transactional
     @Query("DELETE FROM InvalidatedToken i WHERE i.expiryTime < ?1")
     void deleteAllByExpiryTimeLessThan(LocalDateTime date);
+
+    List<InvalidatedToken> findAllByExpiryTimeAfter(Date date);
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.TravelShare.repository;
+
+import com.TravelShare.entity.MediaBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface MediaBlobRepository extends JpaRepository<MediaBlob, String> {
+    // Tạo blob mới hoặc tăng refCount nếu nội dung đã tồn tại
+    @Modifying
+    @Query(value = "INSERT INTO media_blob (content_hash, storage_path, size, ref_count, created_at) " +
+            "VALUES (:contentHash, :storagePath, :size, 1, now()) " +
+            "ON CONFLICT (content_hash) DO UPDATE SET ref_count = media_blob.ref_count + 1",
+            nativeQuery = true)
+    void acquire(@Param("contentHash") String contentHash,
+                 @Param("storagePath") String storagePath,
+                 @Param("size") long size);
+
+    @Modifying
+    @Query("UPDATE MediaBlob b SET b.refCount = b.refCount - 1 WHERE b.contentHash = :contentHash")
+    int release(@Param("contentHash") String contentHash);
+
+    @Modifying
+    @Query("DELETE FROM MediaBlob b WHERE b.contentHash = :contentHash AND b.refCount <= 0")
+    int deleteIfUnreferenced(@Param("contentHash") String contentHash);
+}
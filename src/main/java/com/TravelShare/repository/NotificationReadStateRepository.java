@@ -0,0 +1,53 @@
+package com.TravelShare.repository;
+
+import com.TravelShare.entity.NotificationReadState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface NotificationReadStateRepository extends JpaRepository<NotificationReadState, Long> {
+    List<NotificationReadState> findByUserId(String userId);
+
+    // Chỉ tiến mốc đã đọc về phía trước, không bao giờ lùi lại
+    @Modifying
+    @Query(value = "INSERT INTO notification_read_state (user_id, group_id, last_seen_notification_id, updated_at) " +
+            "VALUES (:userId, :groupId, :lastSeenId, now()) " +
+            "ON CONFLICT (user_id, group_id) DO UPDATE " +
+            "SET last_seen_notification_id = GREATEST(notification_read_state.last_seen_notification_id, " +
+            "EXCLUDED.last_seen_notification_id), updated_at = EXCLUDED.updated_at",
+            nativeQuery = true)
+    void advanceWatermark(@Param("userId") String userId,
+                          @Param("groupId") Long groupId,
+                          @Param("lastSeenId") Long lastSeenId);
+
+    // Đánh dấu đã đọc toàn bộ: mốc của mỗi group = id thông báo lớn nhất trong group
+    @Modifying
+    @Query(value = "INSERT INTO notification_read_state (user_id, group_id, last_seen_notification_id, updated_at) " +
+            "SELECT :userId, n.group_id, MAX(n.id), now() FROM notification n " +
+            "WHERE n.group_id IN (SELECT gp.group_id FROM group_participant gp WHERE gp.user_id = :userId) " +
+            "GROUP BY n.group_id " +
+            "ON CONFLICT (user_id, group_id) DO UPDATE " +
+            "SET last_seen_notification_id = GREATEST(notification_read_state.last_seen_notification_id, " +
+            "EXCLUDED.last_seen_notification_id), updated_at = EXCLUDED.updated_at",
+            nativeQuery = true)
+    void advanceAllWatermarks(@Param("userId") String userId);
+
+    // Số thông báo chưa đọc theo từng group (id > mốc đã đọc, không tính thông báo do chính user tạo)
+    @Query("SELECT n.group.id AS groupId, COUNT(n) AS unread FROM Notification n " +
+            "WHERE n.group.id IN (SELECT gp.group.id FROM GroupParticipant gp WHERE gp.user.id = :userId) " +
+            "AND (n.createdBy IS NULL OR n.createdBy.id <> :userId) " +
+            "AND n.id > COALESCE((SELECT r.lastSeenNotificationId FROM NotificationReadState r " +
+            "WHERE r.userId = :userId AND r.groupId = n.group.id), 0) " +
+            "GROUP BY n.group.id")
+    List<GroupUnreadCount> countUnreadByGroup(@Param("userId") String userId);
+
+    interface GroupUnreadCount {
+        Long getGroupId();
+        Long getUnread();
+    }
+}
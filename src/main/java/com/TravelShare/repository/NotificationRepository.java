@@ -2,9 +2,14 @@ package com.TravelShare.repository;
 
 import com.TravelShare.entity.Group;
 import com.TravelShare.entity.Notification;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -14,4 +19,39 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
     List<Notification> findByCreatedById(String userId);
     List<Notification> findByType(String type);
     List<Notification> findByGroupIn(List<Group> groups);
+
+    /**
+     * Feed thông báo của user theo keyset (createdAt, id) giảm dần.
+     * Group của user được lọc bằng subquery trên group_participant, không nạp danh sách group vào bộ nhớ.
+     */
+    @Query("SELECT n FROM Notification n " +
+            "JOIN FETCH n.group g " +
+            "LEFT JOIN FETCH g.createdBy " +
+            "LEFT JOIN FETCH n.createdBy cb " +
+            "WHERE g.id IN (SELECT gp.group.id FROM GroupParticipant gp WHERE gp.user.id = :userId) " +
+            "AND (cb IS NULL OR cb.id <> :userId) " +
+            "AND (:groupId IS NULL OR g.id = :groupId) " +
+            "AND (:type IS NULL OR n.type = :type) " +
+            "AND (n.createdAt < :cursorCreatedAt OR (n.createdAt = :cursorCreatedAt AND n.id < :cursorId)) " +
+            "ORDER BY n.createdAt DESC, n.id DESC")
+    List<Notification> findFeedForUser(@Param("userId") String userId,
+                                       @Param("groupId") Long groupId,
+                                       @Param("type") String type,
+                                       @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+                                       @Param("cursorId") Long cursorId,
+                                       Limit limit);
+
+    // Đếm thông báo mới hơn một vị trí trong feed mà không nạp bản ghi
+    @Query("SELECT COUNT(n) FROM Notification n " +
+            "WHERE n.group.id IN (SELECT gp.group.id FROM GroupParticipant gp WHERE gp.user.id = :userId) " +
+            "AND (n.createdBy IS NULL OR n.createdBy.id <> :userId) " +
+            "AND (:groupId IS NULL OR n.group.id = :groupId) " +
+            "AND (n.createdAt > :since OR (n.createdAt = :since AND n.id > :sinceId))")
+    long countNewerForUser(@Param("userId") String userId,
+                           @Param("groupId") Long groupId,
+                           @Param("since") LocalDateTime since,
+                           @Param("sinceId") Long sinceId);
+
+    @Query("SELECT MAX(n.id) FROM Notification n WHERE n.group.id = :groupId")
+    Long findMaxIdByGroupId(@Param("groupId") Long groupId);
 }
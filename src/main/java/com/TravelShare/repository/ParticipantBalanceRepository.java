@@ -0,0 +1,68 @@
+package com.TravelShare.repository;
+
+import com.TravelShare.dto.response.BalanceResponse;
+import com.TravelShare.entity.ParticipantBalance;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+
+@Repository
+public interface ParticipantBalanceRepository extends JpaRepository<ParticipantBalance, Long> {
+    List<ParticipantBalance> findByGroupId(Long groupId);
+
+    @Query("SELECT DISTINCT b.groupId FROM ParticipantBalance b")
+    Set<Long> findDistinctGroupIds();
+
+    // Cộng dồn delta một cách atomic, tạo dòng mới nếu participant chưa có số dư
+    @Modifying
+    @Query(value = "INSERT INTO participant_balance (participant_id, group_id, balance, updated_at) " +
+            "VALUES (:participantId, :groupId, :delta, now()) " +
+            "ON CONFLICT (participant_id) DO UPDATE " +
+            "SET balance = participant_balance.balance + EXCLUDED.balance, updated_at = EXCLUDED.updated_at",
+            nativeQuery = true)
+    void addDelta(@Param("participantId") Long participantId,
+                  @Param("groupId") Long groupId,
+                  @Param("delta") BigDecimal delta);
+
+    // Số dư của user trong từng group mà user tham gia, đọc trong một query duy nhất
+    String USER_GROUP_BALANCES_QUERY = "SELECT new com.TravelShare.dto.response.BalanceResponse(" +
+            "g.id, g.name, u.id, p.id, p.name, b.balance, c.code) " +
+            "FROM GroupParticipant p JOIN p.user u JOIN p.group g JOIN g.defaultCurrency c " +
+            "LEFT JOIN ParticipantBalance b ON b.participantId = p.id " +
+            "WHERE u.id = :userId ORDER BY g.id";
+
+    @Query(USER_GROUP_BALANCES_QUERY)
+    List<BalanceResponse> findUserGroupBalances(@Param("userId") String userId);
+
+    @Query(value = USER_GROUP_BALANCES_QUERY,
+            countQuery = "SELECT COUNT(p) FROM GroupParticipant p WHERE p.user.id = :userId")
+    Page<BalanceResponse> findUserGroupBalances(@Param("userId") String userId, Pageable pageable);
+
+    @Query("SELECT c.code AS currencyCode, SUM(b.balance) AS total " +
+            "FROM ParticipantBalance b, GroupParticipant p JOIN p.group g JOIN g.defaultCurrency c " +
+            "WHERE b.participantId = p.id AND p.user.id = :userId " +
+            "GROUP BY c.code")
+    List<CurrencyTotal> sumUserBalancesByCurrency(@Param("userId") String userId);
+
+    interface CurrencyTotal {
+        String getCurrencyCode();
+        BigDecimal getTotal();
+    }
+
+    // Chặn các cập nhật delta đồng thời cho tới khi rebuild commit (chúng chạy trong transaction ghi expense/settlement)
+    @Modifying
+    @Query(value = "LOCK TABLE participant_balance IN EXCLUSIVE MODE", nativeQuery = true)
+    void lockForRebuild();
+
+    @Modifying
+    @Query("DELETE FROM ParticipantBalance b WHERE b.groupId = :groupId")
+    void deleteAllByGroupId(@Param("groupId") Long groupId);
+}
@@ -4,6 +4,7 @@ import com.TravelShare.entity.Settlement;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface SettlementRepository extends JpaRepository<Settlement,Long> {
@@ -12,5 +13,6 @@ public interface SettlementRepository extends JpaRepository<Settlement,Long> {
     List<Settlement> findByToParticipantId(Long participantId);
     List<Settlement> findByGroupId(Long groupId);
     List<Settlement> findByFromParticipant_User_IdOrToParticipant_User_Id(String userId1, String userId2);
+    boolean existsByGroupIdAndStatusIn(Long groupId, Collection<Settlement.SettlementStatus> statuses);
     List<Settlement> findByStatusAndExpireAtBefore(Settlement.SettlementStatus status, LocalDateTime cutoffTime);
 }
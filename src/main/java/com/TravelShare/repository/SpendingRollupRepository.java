@@ -0,0 +1,71 @@
+package com.TravelShare.repository;
+
+import com.TravelShare.entity.SpendingRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface SpendingRollupRepository extends JpaRepository<SpendingRollup, Long> {
+    List<SpendingRollup> findByScopeTypeAndScopeIdAndBucketDateBetweenOrderByBucketDate(
+            SpendingRollup.ScopeType scopeType, String scopeId, LocalDate from, LocalDate to);
+
+    List<SpendingRollup> findByScopeTypeAndScopeId(SpendingRollup.ScopeType scopeType, String scopeId);
+
+    // Cộng delta nguyên tử vào bucket, tạo bucket nếu chưa có
+    @Modifying
+    @Query(value = "INSERT INTO spending_rollup (scope_type, scope_id, bucket_date, category_id, currency_code, " +
+            "original_total, converted_total, expense_count, updated_at) " +
+            "VALUES (:scopeType, :scopeId, :bucketDate, :categoryId, :currencyCode, " +
+            ":originalTotal, :convertedTotal, :expenseCount, now()) " +
+            "ON CONFLICT (scope_type, scope_id, bucket_date, category_id, currency_code) DO UPDATE " +
+            "SET original_total = spending_rollup.original_total + EXCLUDED.original_total, " +
+            "converted_total = spending_rollup.converted_total + EXCLUDED.converted_total, " +
+            "expense_count = spending_rollup.expense_count + EXCLUDED.expense_count, " +
+            "updated_at = EXCLUDED.updated_at",
+            nativeQuery = true)
+    void addDelta(@Param("scopeType") String scopeType,
+                  @Param("scopeId") String scopeId,
+                  @Param("bucketDate") LocalDate bucketDate,
+                  @Param("categoryId") Long categoryId,
+                  @Param("currencyCode") String currencyCode,
+                  @Param("originalTotal") BigDecimal originalTotal,
+                  @Param("convertedTotal") BigDecimal convertedTotal,
+                  @Param("expenseCount") long expenseCount);
+
+    // Chặn các cập nhật delta đồng thời cho tới khi rebuild commit (chúng chạy trước commit của transaction ghi expense)
+    @Modifying
+    @Query(value = "LOCK TABLE spending_rollup IN EXCLUSIVE MODE", nativeQuery = true)
+    void lockForRebuild();
+
+    @Modifying
+    @Query("DELETE FROM SpendingRollup r")
+    int deleteAllRows();
+
+    @Modifying
+    @Query(value = "INSERT INTO spending_rollup (scope_type, scope_id, bucket_date, category_id, currency_code, " +
+            "original_total, converted_total, expense_count, updated_at) " +
+            "SELECT 'GROUP', CAST(e.group_id AS VARCHAR), e.expense_date, e.category_id, e.original_currency_code, " +
+            "SUM(e.original_amount), SUM(e.converted_amount), COUNT(*), now() " +
+            "FROM expense e " +
+            "GROUP BY e.group_id, e.expense_date, e.category_id, e.original_currency_code",
+            nativeQuery = true)
+    int rebuildGroupRollups();
+
+    @Modifying
+    @Query(value = "INSERT INTO spending_rollup (scope_type, scope_id, bucket_date, category_id, currency_code, " +
+            "original_total, converted_total, expense_count, updated_at) " +
+            "SELECT 'USER', p.user_id, e.expense_date, e.category_id, e.original_currency_code, " +
+            "SUM(e.original_amount), SUM(e.converted_amount), COUNT(*), now() " +
+            "FROM expense e JOIN group_participant p ON p.id = e.payer_id " +
+            "WHERE p.user_id IS NOT NULL " +
+            "GROUP BY p.user_id, e.expense_date, e.category_id, e.original_currency_code",
+            nativeQuery = true)
+    int rebuildUserRollups();
+}
@@ -0,0 +1,23 @@
+package com.TravelShare.scheduler;
+
+import com.TravelShare.service.PersistentCacheStore;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class CacheEntryCleanupScheduler {
+    PersistentCacheStore persistentCacheStore;
+
+    @Scheduled(cron = "0 30 3 * * *") // Runs every day at 3:30 AM
+    public void cleanupExpiredCacheEntries() {
+        int deleted = persistentCacheStore.deleteExpired();
+        log.info("Deleted {} expired persistent cache entries", deleted);
+    }
+}
@@ -0,0 +1,33 @@
+package com.TravelShare.scheduler;
+
+import com.TravelShare.service.ExchangeRateService;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class ExchangeRateRefreshScheduler {
+    ExchangeRateService exchangeRateService;
+
+    // Nạp snapshot gần nhất trước để có tỷ giá ngay cả khi API chưa phản hồi, sau đó làm mới
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpExchangeRates() {
+        exchangeRateService.loadLatestSnapshot();
+        exchangeRateService.refreshRates();
+    }
+
+    @Scheduled(cron = "${app.exchange-rate.refresh-cron:0 0 */6 * * *}") // Mặc định mỗi 6 giờ
+    public void refreshExchangeRates() {
+        exchangeRateService.refreshRates();
+    }
+}
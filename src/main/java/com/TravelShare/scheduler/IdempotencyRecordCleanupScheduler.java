@@ -0,0 +1,23 @@
+package com.TravelShare.scheduler;
+
+import com.TravelShare.service.SyncBatchService;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class IdempotencyRecordCleanupScheduler {
+    SyncBatchService syncBatchService;
+
+    @Scheduled(cron = "0 45 3 * * *") // Runs every day at 3:45 AM
+    public void cleanupExpiredIdempotencyRecords() {
+        int deleted = syncBatchService.deleteExpiredRecords();
+        log.info("Deleted {} expired idempotency records", deleted);
+    }
+}
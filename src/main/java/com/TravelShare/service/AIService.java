@@ -4,31 +4,38 @@ import com.TravelShare.dto.request.ChatRequest;
 import com.TravelShare.dto.request.OCRRequest;
 import com.TravelShare.dto.response.OCRResponse;
 import com.TravelShare.dto.response.SimpleChatResponse;
+import com.TravelShare.entity.User;
+import com.TravelShare.repository.UserRepository;
 import com.TravelShare.service.ImageOptimizationService.OptimizedImage;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatResponse;
-import org.springframework.ai.content.Media;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.core.io.Resource;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
-import org.springframework.util.MimeType;
-import org.springframework.util.MimeTypeUtils;
+
+import java.util.Optional;
+import java.util.OptionalDouble;
 
 @Service
 @Slf4j
 public class AIService {
     private final ChatClient chatClient;
-    private final ObjectMapper objectMapper;
     private final ImageOptimizationService imageOptimizationService;
-
-    public AIService(ChatClient.Builder chatClientBuilder, ObjectMapper objectMapper, ImageOptimizationService imageOptimizationService) {
+    private final OcrSimilarityIndex ocrSimilarityIndex;
+    private final OcrGateway ocrGateway;
+    private final ReceiptPreParser receiptPreParser;
+    private final UserRepository userRepository;
+
+    public AIService(ChatClient.Builder chatClientBuilder, ImageOptimizationService imageOptimizationService,
+                     OcrSimilarityIndex ocrSimilarityIndex, OcrGateway ocrGateway, ReceiptPreParser receiptPreParser,
+                     UserRepository userRepository) {
         this.chatClient = chatClientBuilder.build();
-        this.objectMapper = objectMapper;
         this.imageOptimizationService = imageOptimizationService;
+        this.ocrSimilarityIndex = ocrSimilarityIndex;
+        this.ocrGateway = ocrGateway;
+        this.receiptPreParser = receiptPreParser;
+        this.userRepository = userRepository;
     }
 
 
@@ -54,6 +61,27 @@ public class AIService {
         }
     }
     public OCRResponse processReceiptImage(OCRRequest request) {
+        return processReceiptImage(request, currentUserId());
+    }
+
+    /**
+     * Id của người dùng đang đăng nhập, null nếu không xác định được. Phải gọi trên thread của request
+     * (SecurityContext không đi theo sang virtual thread).
+     */
+    public String currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
+            return null;
+        }
+        return userRepository.findByUsername(authentication.getName())
+                .map(User::getId)
+                .orElse(null);
+    }
+
+    /**
+     * OCR hóa đơn; userId giới hạn phạm vi cảnh báo trùng hóa đơn đã quét trước đó (null = không cảnh báo).
+     */
+    public OCRResponse processReceiptImage(OCRRequest request, String userId) {
         try {
             // Validate image
             if (!imageOptimizationService.isValidImage(request.file())) {
@@ -67,157 +95,28 @@ public class AIService {
             // Optimize image
             OptimizedImage optimizedImage = imageOptimizationService.optimizeImage(request.file());
             
-            // Use cache with optimized image
-            return processReceiptImageWithCache(optimizedImage);
-
-        } catch (Exception e) {
-            log.error("Error in OCR processing: ", e);
-            throw new RuntimeException("OCR processing failed", e);
-        }
-    }
-
-    @Cacheable(value = "ocr-cache", key = "#optimizedImage.cacheKey")
-    public OCRResponse processReceiptImageWithCache(OptimizedImage optimizedImage) {
-        try {
-            log.info("Processing OCR with cache key: {}", optimizedImage.getCacheKey());
-            
-            // Create Resource from optimized image
-            Resource imageResource = new InputStreamResource(optimizedImage.getImageStream());
-            
-            // Detect MimeType (assume JPEG after optimization)
-            MimeType mimeType = MimeTypeUtils.parseMimeType("image/jpeg");
-
-            // Create Media object
-            Media media = new Media(mimeType, imageResource);
-
-            // Create prompt
-            String promptText = createIntelligentOCRPrompt();
-
-            // Use ChatClient fluent API
-            String response = chatClient.prompt()
-                    .user(u -> u.text(promptText).media(media))
-                    .call()
-                    .content();
-
-            log.info("OCR Response: {}", response);
-            return parseOCRResponse(response);
-
-        } catch (Exception e) {
-            log.error("Error in cached OCR processing: ", e);
-            throw new RuntimeException("OCR processing failed", e);
-        }
-    }
-
-    private String createIntelligentOCRPrompt() {
-        return """
-            Extract receipt info as JSON. IMPORTANT: For amount field, convert Vietnamese number format to decimal:
-            - Remove commas (,),(.) used as thousand separators
-            - Vietnamese format "9,010,000" or "9.010.000" should become "9010000.0"
-            - Vietnamese format "1,500" or "1.500" should become "1500.0"
-            - Always return as decimal number (e.g., 9010000.0, not 9010000)
-            
-            {
-                "merchantName": "store name",
-                "amount": 9010000.0,
-                "date": "2024-01-01 12:00:00",
-                "description": "brief description",
-                "categoryName": "category"
-            }
-            
-            Categories: "Ăn uống", "Đi lại & Phương tiện", "Chỗ ở & Lưu trú", "Mua sắm", "Giải trí", "Khác"
-            
-            CRITICAL: When you see amounts like "9,010,000", "9.010.000", interpret this as Vietnamese thousand separators, not decimal points.
-            Convert to: 9010000.0 (nine million ten thousand)
-            
-            Return only valid JSON.
-            """;
-    }
-
-    private OCRResponse parseOCRResponse(String response) {
-        try {
-            // Clean response (remove markdown formatting if any)
-            String cleanJson = response.trim();
-            if (cleanJson.startsWith("```json")) {
-                cleanJson = cleanJson.substring(7);
+            // Hóa đơn có QR thanh toán / QR hóa đơn điện tử: đọc trực tiếp, không cần gọi model
+            Optional<OCRResponse> local = receiptPreParser.tryParse(optimizedImage.getQrPayload());
+            if (local.isPresent()) {
+                log.info("Receipt parsed locally from QR code");
+                return local.get();
             }
-            if (cleanJson.endsWith("```")) {
-                cleanJson = cleanJson.substring(0, cleanJson.length() - 3);
-            }
-            cleanJson = cleanJson.trim();
-
-            OCRResponse ocrResponse = objectMapper.readValue(cleanJson, OCRResponse.class);
-
-            // Validate category name - đảm bảo category tồn tại trong system
-            String validatedCategory = validateAndMapCategory(ocrResponse.categoryName());
-
-            // Return với category đã được validate và default values cho confidence/originalText
-            return new OCRResponse(
-                    ocrResponse.merchantName(),
-                    ocrResponse.amount(),
-                    ocrResponse.date(),
-                    ocrResponse.description(),
-                    validatedCategory
-            );
-
-        } catch (JsonProcessingException e) {
-            log.error("Failed to parse OCR response: {}", response, e);
-            throw new RuntimeException("Failed to parse OCR response", e);
-        }
-    }
-
-    /**
-     * Validate và map category name với system categories
-     */
-    private String validateAndMapCategory(String detectedCategory) {
-        if (detectedCategory == null) return "Khác";
 
-        // Exact matches
-        String[] validCategories = {
-                "Ăn uống",
-                "Đi lại & Phương tiện",
-                "Chỗ ở & Lưu trú",
-                "Mua sắm",
-                "Giải trí",
-                "Khác"
-        };
+            // Gateway đọc cache (ảnh trùng byte) và gộp các request trùng ảnh đang chạy thành một lần gọi model
+            OCRResponse response = ocrGateway.recognize(optimizedImage);
 
-        // Check exact match first
-        for (String validCategory : validCategories) {
-            if (validCategory.equals(detectedCategory)) {
-                return validCategory;
+            // Ảnh gần giống một hóa đơn đã quét: chỉ gắn độ tương đồng làm cảnh báo trùng, số liệu vẫn lấy từ model
+            OptionalDouble similarity = ocrSimilarityIndex.findSimilarity(userId, optimizedImage.getPerceptualHash());
+            ocrSimilarityIndex.add(userId, optimizedImage.getPerceptualHash());
+            if (similarity.isPresent()) {
+                log.info("OCR near-duplicate hint for user {} (similarity {})", userId, similarity.getAsDouble());
+                response = response.withSimilarity(similarity.getAsDouble());
             }
-        }
-
-        // Fuzzy matching for common variations
-        String lowerDetected = detectedCategory.toLowerCase();
-
-        if (lowerDetected.contains("ăn") || lowerDetected.contains("uống") ||
-                lowerDetected.contains("food") || lowerDetected.contains("restaurant")) {
-            return "Ăn uống";
-        }
-
-        if (lowerDetected.contains("taxi") || lowerDetected.contains("grab") ||
-                lowerDetected.contains("transport") || lowerDetected.contains("phương tiện")) {
-            return "Đi lại & Phương tiện";
-        }
+            return response;
 
-        if (lowerDetected.contains("hotel") || lowerDetected.contains("khách sạn") ||
-                lowerDetected.contains("accommodation") || lowerDetected.contains("lưu trú")) {
-            return "Chỗ ở & Lưu trú";
-        }
-
-        if (lowerDetected.contains("shop") || lowerDetected.contains("mua") ||
-                lowerDetected.contains("shopping") || lowerDetected.contains("siêu thị")) {
-            return "Mua sắm";
-        }
-
-        if (lowerDetected.contains("entertain") || lowerDetected.contains("giải trí") ||
-                lowerDetected.contains("cinema") || lowerDetected.contains("movie")) {
-            return "Giải trí";
+        } catch (Exception e) {
+            log.error("Error in OCR processing: ", e);
+            throw new RuntimeException("OCR processing failed", e);
         }
-
-        // Default fallback
-        log.warn("Unknown category detected: {}, falling back to 'Khác'", detectedCategory);
-        return "Khác";
     }
 }
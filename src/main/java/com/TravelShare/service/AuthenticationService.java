@@ -3,12 +3,10 @@ package com.TravelShare.service;
 import com.TravelShare.dto.request.*;
 import com.TravelShare.dto.response.AuthenticationResponse;
 import com.TravelShare.dto.response.IntrospectResponse;
-import com.TravelShare.entity.InvalidatedToken;
 import com.TravelShare.entity.RefreshToken;
 import com.TravelShare.entity.User;
 import com.TravelShare.exception.AppException;
 import com.TravelShare.exception.ErrorCode;
-import com.TravelShare.repository.InvalidatedTokenRepository;
 import com.TravelShare.repository.RefreshTokenRepository;
 import com.TravelShare.repository.UserRepository;
 import com.nimbusds.jose.*;
@@ -16,6 +14,7 @@ import com.nimbusds.jose.crypto.MACSigner;
 import com.nimbusds.jose.crypto.MACVerifier;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
@@ -24,8 +23,6 @@ import lombok.experimental.NonFinal;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.text.ParseException;
@@ -40,8 +37,9 @@ import java.util.UUID;
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class AuthenticationService {
     UserRepository userRepository;
-    InvalidatedTokenRepository invalidatedTokenRepository;
+    TokenRevocationService tokenRevocationService;
     RefreshTokenRepository refreshTokenRepository;
+    PasswordHashingService passwordHashingService;
 
     @NonFinal
     @Value("${jwt.signerKey}")
@@ -55,6 +53,15 @@ public class AuthenticationService {
     @Value("${jwt.refreshable-duration}")
     protected long REFRESHABLE_DURATION;
 
+    // MACVerifier thread-safe, dựng một lần trong init() thay vì mỗi lần verify
+    @NonFinal
+    JWSVerifier verifier;
+
+    @PostConstruct
+    void init() throws JOSEException {
+        verifier = new MACVerifier(SIGNER_KEY.getBytes());
+    }
+
     /*
     public IntrospectResponse introspect(IntrospectRequest request) throws JOSEException, ParseException {
         var token = request.getToken();
@@ -72,12 +79,11 @@ public class AuthenticationService {
     }*/
 
     public AuthenticationResponse authenticate(AuthenticationRequest request, HttpServletRequest httpRequest) {
-        PasswordEncoder passwordEncoder = new BCryptPasswordEncoder(10);
         var user = userRepository
                 .findByUsername(request.getUsername())
                 .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
 
-        boolean authenticated = passwordEncoder.matches(request.getPassword(), user.getPassword());
+        boolean authenticated = passwordHashingService.matches(request.getPassword(), user.getPassword());
 
         if (!authenticated) throw new AppException(ErrorCode.UNAUTHENTICATED);
 
@@ -85,6 +91,14 @@ public class AuthenticationService {
             throw new AppException(ErrorCode.USER_NOT_ACTIVE);
         }
 
+        // Hash cũ (bcrypt / tham số yếu hơn): hash lại bằng thuật toán hiện tại khi đã có mật khẩu gốc.
+        // Chỉ làm cho tài khoản đăng nhập được, để tài khoản bị khóa không tốn thêm một lần hash mỗi lần thử
+        if (passwordHashingService.needsUpgrade(user.getPassword())) {
+            user.setPassword(passwordHashingService.hash(request.getPassword()));
+            userRepository.save(user);
+            log.info("Upgraded password hash for user {}", user.getUsername());
+        }
+
         String fingerprint = generateFingerprint(httpRequest);
         String accessToken = generateAccessToken(user);
         String refreshToken = generateRefreshToken(user, fingerprint);
@@ -106,10 +120,7 @@ public class AuthenticationService {
             String accessJwtId = accessToken.getJWTClaimsSet().getJWTID();
             Date accessExpiryTime = accessToken.getJWTClaimsSet().getExpirationTime();
 
-            invalidatedTokenRepository.save(InvalidatedToken.builder()
-                    .id(accessJwtId)
-                    .expiryTime(accessExpiryTime)
-                    .build());
+            tokenRevocationService.revoke(accessJwtId, accessExpiryTime);
 
             // Revoke refresh token
             String refreshJwtId = refreshToken.getJWTClaimsSet().getJWTID();
@@ -266,7 +277,6 @@ public class AuthenticationService {
 
     // Verify token (either access or refresh)
     private SignedJWT verifyToken(String token) throws JOSEException, ParseException {
-        JWSVerifier verifier = new MACVerifier(SIGNER_KEY.getBytes());
         SignedJWT signedJWT = SignedJWT.parse(token);
 
         if (!signedJWT.verify(verifier)) {
@@ -284,7 +294,7 @@ public class AuthenticationService {
         String jwtId = claims.getJWTID();
 
         // Check if access token is invalidated
-        if ("access".equals(tokenType) && invalidatedTokenRepository.existsById(jwtId)) {
+        if ("access".equals(tokenType) && tokenRevocationService.isRevoked(jwtId)) {
             throw new AppException(ErrorCode.UNAUTHENTICATED);
         }
 
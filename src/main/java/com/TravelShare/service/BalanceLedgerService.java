@@ -0,0 +1,214 @@
+package com.TravelShare.service;
+
+import com.TravelShare.dto.response.BalanceReconciliationResponse;
+import com.TravelShare.entity.*;
+import com.TravelShare.exception.AppException;
+import com.TravelShare.exception.ErrorCode;
+import com.TravelShare.repository.*;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Sổ cái số dư theo participant (bảng participant_balance).
+ * ExpenseService và các luồng thay đổi trạng thái settlement ghi delta vào đây,
+ * nên việc đọc số dư chỉ còn O(participants) thay vì replay toàn bộ expense/settlement.
+ */
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class BalanceLedgerService {
+    ParticipantBalanceRepository participantBalanceRepository;
+    GroupParticipantRepository participantRepository;
+    GroupRepository groupRepository;
+    ExpenseRepository expenseRepository;
+    SettlementRepository settlementRepository;
+
+    public Map<Long, BigDecimal> getBalances(Group group) {
+        return getBalances(group.getId(), group.getParticipants());
+    }
+
+    public Map<Long, BigDecimal> getBalances(Long groupId, Collection<GroupParticipant> participants) {
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        for (GroupParticipant participant : participants) {
+            balances.put(participant.getId(), BigDecimal.ZERO);
+        }
+        for (ParticipantBalance row : participantBalanceRepository.findByGroupId(groupId)) {
+            // Bỏ qua participant đã rời nhóm
+            if (balances.containsKey(row.getParticipantId())) {
+                balances.put(row.getParticipantId(), row.getBalance());
+            }
+        }
+        return balances;
+    }
+
+    /**
+     * Phần đóng góp của một expense vào số dư từng participant, cùng quy tắc với recomputeBalances:
+     * người trả được cộng convertedAmount, mỗi người bị trừ phần split của mình.
+     */
+    public Map<Long, BigDecimal> contributionsOf(Expense expense) {
+        Map<Long, BigDecimal> contributions = new HashMap<>();
+        if (expense.getSplits() == null) {
+            return contributions;
+        }
+        for (ExpenseSplit split : expense.getSplits()) {
+            if (split.getParticipant() == null) continue;
+
+            Long participantId = split.getParticipant().getId();
+            if (split.isPayer()) {
+                contributions.merge(participantId, expense.getConvertedAmount(), BigDecimal::add);
+            }
+            contributions.merge(participantId, split.getAmount().negate(), BigDecimal::add);
+        }
+        return contributions;
+    }
+
+    @Transactional
+    public void recordExpenseCreated(Expense expense) {
+        applyDelta(expense.getGroup().getId(), contributionsOf(expense));
+    }
+
+    @Transactional
+    public void recordExpenseUpdated(Map<Long, BigDecimal> previousContributions, Expense expense) {
+        Map<Long, BigDecimal> delta = new HashMap<>(contributionsOf(expense));
+        previousContributions.forEach((participantId, amount) ->
+                delta.merge(participantId, amount.negate(), BigDecimal::add));
+        applyDelta(expense.getGroup().getId(), delta);
+    }
+
+    @Transactional
+    public void recordExpenseDeleted(Expense expense) {
+        Map<Long, BigDecimal> delta = new HashMap<>();
+        contributionsOf(expense).forEach((participantId, amount) -> delta.put(participantId, amount.negate()));
+        applyDelta(expense.getGroup().getId(), delta);
+    }
+
+    /**
+     * Delta đã gộp sẵn của nhiều expense (import hàng loạt): mỗi participant chỉ một lần cập nhật.
+     */
+    @Transactional
+    public void recordExpensesImported(Long groupId, Map<Long, BigDecimal> delta) {
+        applyDelta(groupId, delta);
+    }
+
+    /**
+     * Chỉ settlement COMPLETED mới ảnh hưởng số dư, nên chỉ ghi delta khi trạng thái
+     * chuyển vào hoặc ra khỏi COMPLETED.
+     */
+    @Transactional
+    public void recordSettlementStatusChange(Settlement settlement, Settlement.SettlementStatus previousStatus) {
+        boolean wasCompleted = previousStatus == Settlement.SettlementStatus.COMPLETED;
+        boolean isCompleted = settlement.getStatus() == Settlement.SettlementStatus.COMPLETED;
+        if (wasCompleted == isCompleted) {
+            return;
+        }
+
+        BigDecimal amount = isCompleted ? settlement.getAmount() : settlement.getAmount().negate();
+        Map<Long, BigDecimal> delta = new HashMap<>();
+        // Người trả được cộng lại, người nhận bị trừ
+        delta.merge(settlement.getFromParticipant().getId(), amount, BigDecimal::add);
+        delta.merge(settlement.getToParticipant().getId(), amount.negate(), BigDecimal::add);
+        applyDelta(settlement.getGroup().getId(), delta);
+    }
+
+    private void applyDelta(Long groupId, Map<Long, BigDecimal> delta) {
+        delta.forEach((participantId, amount) -> {
+            if (amount.signum() != 0) {
+                participantBalanceRepository.addDelta(participantId, groupId, amount);
+            }
+        });
+    }
+
+    /**
+     * Tính lại toàn bộ số dư từ expense và settlement COMPLETED (cách tính gốc),
+     * dùng để rebuild và đối chiếu với sổ cái.
+     */
+    public Map<Long, BigDecimal> recomputeBalances(Group group) {
+        Map<Long, BigDecimal> balances = new HashMap<>();
+
+        for (GroupParticipant participant : group.getParticipants()) {
+            balances.put(participant.getId(), BigDecimal.ZERO);
+        }
+
+        for (Expense expense : expenseRepository.findAllByGroupId(group.getId())) {
+            contributionsOf(expense).forEach((participantId, amount) ->
+                    balances.merge(participantId, amount, BigDecimal::add));
+        }
+
+        List<Settlement> settlements = settlementRepository.findByGroupIdAndStatus(group.getId(), Settlement.SettlementStatus.COMPLETED);
+        for (Settlement settlement : settlements) {
+            if (!settlement.getCurrency().equals(group.getDefaultCurrency())) {
+                log.warn("Settlement {} has different currency ({}) than group default currency ({}). Using original amount.",
+                        settlement.getId(), settlement.getCurrency().getCode(), group.getDefaultCurrency().getCode());
+            }
+            balances.merge(settlement.getFromParticipant().getId(), settlement.getAmount(), BigDecimal::add);
+            balances.merge(settlement.getToParticipant().getId(), settlement.getAmount().negate(), BigDecimal::add);
+        }
+
+        return balances;
+    }
+
+    /**
+     * Bảng sổ cái bị khóa trước khi đọc lại expense/settlement: transaction đã ghi delta phải commit xong
+     * thì rebuild mới chạy (và đọc thấy dữ liệu của nó), còn delta ghi sau đó chờ rebuild commit rồi mới cộng,
+     * nên không có delta nào bị mất hay tính hai lần.
+     */
+    @Transactional
+    public Map<Long, BigDecimal> rebuildGroup(Long groupId) {
+        Group group = groupRepository.findById(groupId)
+                .orElseThrow(() -> new AppException(ErrorCode.GROUP_NOT_EXISTED));
+
+        participantBalanceRepository.lockForRebuild();
+        Map<Long, BigDecimal> balances = recomputeBalances(group);
+        LocalDateTime now = LocalDateTime.now();
+
+        participantBalanceRepository.deleteAllByGroupId(groupId);
+        participantBalanceRepository.saveAll(balances.entrySet().stream()
+                .map(entry -> ParticipantBalance.builder()
+                        .participantId(entry.getKey())
+                        .groupId(groupId)
+                        .balance(entry.getValue())
+                        .updatedAt(now)
+                        .build())
+                .toList());
+
+        log.info("Rebuilt balance ledger for group {} ({} participants)", groupId, balances.size());
+        return balances;
+    }
+
+    @Transactional(readOnly = true)
+    public BalanceReconciliationResponse verifyGroup(Long groupId) {
+        Group group = groupRepository.findById(groupId)
+                .orElseThrow(() -> new AppException(ErrorCode.GROUP_NOT_EXISTED));
+
+        Map<Long, BigDecimal> ledger = getBalances(group);
+        Map<Long, BigDecimal> recomputed = recomputeBalances(group);
+
+        Set<Long> participantIds = new TreeSet<>(ledger.keySet());
+        participantIds.addAll(recomputed.keySet());
+        List<Long> mismatched = participantIds.stream()
+                .filter(id -> ledger.getOrDefault(id, BigDecimal.ZERO)
+                        .compareTo(recomputed.getOrDefault(id, BigDecimal.ZERO)) != 0)
+                .toList();
+
+        if (!mismatched.isEmpty()) {
+            log.warn("Balance ledger of group {} is out of sync for participants {}", groupId, mismatched);
+        }
+
+        return BalanceReconciliationResponse.builder()
+                .groupId(groupId)
+                .consistent(mismatched.isEmpty())
+                .mismatchedParticipantIds(mismatched)
+                .ledgerBalances(ledger)
+                .recomputedBalances(recomputed)
+                .build();
+    }
+}
@@ -0,0 +1,275 @@
+package com.TravelShare.service;
+
+import com.TravelShare.dto.request.OCRRequest;
+import com.TravelShare.dto.response.BulkOcrItemResponse;
+import com.TravelShare.dto.response.BulkOcrItemResponse.ItemStatus;
+import com.TravelShare.dto.response.BulkOcrSummaryResponse;
+import com.TravelShare.dto.response.OCRResponse;
+import com.TravelShare.exception.AppException;
+import com.TravelShare.exception.ErrorCode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * OCR nhiều hóa đơn trong một request. Mỗi file chạy trên một virtual thread, số lần gọi model đồng thời
+ * bị giới hạn bằng một semaphore dùng chung cho mọi request, mỗi lần gọi có timeout riêng.
+ * Permit chỉ được trả khi lời gọi thật sự kết thúc, kể cả lời gọi đã bị báo timeout, nên số lời gọi model
+ * đang chạy không bao giờ vượt max-concurrency.
+ * Kết quả được đẩy về qua SSE ngay khi từng file xong, không chờ file chậm nhất; thread của Tomcat được trả lại ngay.
+ */
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class BulkOcrService {
+    static final String RESULT_EVENT = "result";
+    static final String COMPLETE_EVENT = "complete";
+
+    AIService aiService;
+
+    ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @NonFinal
+    @Value("${app.ocr.bulk.max-concurrency:4}")
+    int maxConcurrency;
+
+    @NonFinal
+    @Value("${app.ocr.bulk.call-timeout-seconds:45}")
+    long callTimeoutSeconds;
+
+    @NonFinal
+    @Value("${app.ocr.bulk.max-files:50}")
+    int maxFiles;
+
+    @NonFinal
+    @Value("${app.ocr.bulk.stream-timeout-seconds:600}")
+    long streamTimeoutSeconds;
+
+    @NonFinal
+    Semaphore permits;
+
+    @PostConstruct
+    void init() {
+        permits = new Semaphore(maxConcurrency, true);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public SseEmitter processReceipts(List<MultipartFile> files) {
+        if (files == null || files.isEmpty()) {
+            throw new AppException(ErrorCode.OCR_BATCH_EMPTY);
+        }
+        if (files.size() > maxFiles) {
+            throw new AppException(ErrorCode.OCR_BATCH_TOO_LARGE);
+        }
+
+        SseEmitter emitter = new SseEmitter(TimeUnit.SECONDS.toMillis(streamTimeoutSeconds));
+        // Client ngắt kết nối hoặc stream hết hạn: các file chưa bắt đầu sẽ không gọi model nữa
+        AtomicBoolean cancelled = new AtomicBoolean();
+        emitter.onTimeout(() -> cancelled.set(true));
+        emitter.onError(ex -> cancelled.set(true));
+
+        // SecurityContext không đi theo sang virtual thread: lấy người dùng ngay trên thread của request
+        String userId = aiService.currentUserId();
+        // File tạm của multipart bị xóa khi request trả về (trước khi các virtual thread đọc tới): đọc vào bộ nhớ ngay
+        List<MultipartFile> buffered = buffer(files);
+        long startedAt = System.nanoTime();
+        AtomicInteger remaining = new AtomicInteger(files.size());
+        AtomicInteger succeeded = new AtomicInteger();
+        log.info("Bulk OCR started for {} files", files.size());
+
+        for (int i = 0; i < files.size(); i++) {
+            int index = i;
+            MultipartFile file = buffered.get(i);
+            executor.execute(() -> {
+                BulkOcrItemResponse item = processOne(index, file, userId, cancelled);
+                if (item != null) {
+                    if (item.getStatus() == ItemStatus.SUCCESS) {
+                        succeeded.incrementAndGet();
+                    }
+                    send(emitter, RESULT_EVENT, item, cancelled);
+                }
+
+                if (remaining.decrementAndGet() == 0) {
+                    BulkOcrSummaryResponse summary = BulkOcrSummaryResponse.builder()
+                            .total(files.size())
+                            .succeeded(succeeded.get())
+                            .failed(files.size() - succeeded.get())
+                            .durationMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt))
+                            .build();
+                    send(emitter, COMPLETE_EVENT, summary, cancelled);
+                    emitter.complete();
+                    log.info("Bulk OCR finished: {}/{} succeeded in {} ms",
+                            summary.getSucceeded(), summary.getTotal(), summary.getDurationMs());
+                }
+            });
+        }
+        return emitter;
+    }
+
+    // Trả về null nếu stream đã bị hủy trước khi file được xử lý
+    private BulkOcrItemResponse processOne(int index, MultipartFile file, String userId, AtomicBoolean cancelled) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (cancelled.get()) {
+            permits.release();
+            return null;
+        }
+
+        // Ai "nhận" permit trước thì trả nó: lời gọi khi kết thúc, hoặc bên hủy nếu lời gọi chưa kịp bắt đầu
+        AtomicBoolean permitClaimed = new AtomicBoolean();
+        long startedAt = System.nanoTime();
+        Future<OCRResponse> call;
+        try {
+            call = executor.submit(() -> {
+                if (!permitClaimed.compareAndSet(false, true)) {
+                    throw new CancellationException();
+                }
+                try {
+                    return aiService.processReceiptImage(new OCRRequest(file), userId);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            return null;
+        }
+
+        try {
+            OCRResponse response = call.get(callTimeoutSeconds, TimeUnit.SECONDS);
+            return item(index, file, startedAt).status(ItemStatus.SUCCESS).result(response).build();
+        } catch (TimeoutException e) {
+            abandon(call, permitClaimed);
+            log.warn("Bulk OCR timed out after {}s for file: {}", callTimeoutSeconds, file.getOriginalFilename());
+            return item(index, file, startedAt).status(ItemStatus.TIMEOUT)
+                    .error("Quá thời gian xử lý (" + callTimeoutSeconds + "s)").build();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof RuntimeException && e.getCause().getCause() != null
+                    ? e.getCause().getCause() : e.getCause();
+            log.warn("Bulk OCR failed for file: {}", file.getOriginalFilename(), e.getCause());
+            return item(index, file, startedAt).status(ItemStatus.FAILED).error(cause.getMessage()).build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon(call, permitClaimed);
+            return null;
+        }
+    }
+
+    // Ngắt lời gọi; permit vẫn bị giữ tới khi lời gọi thật sự dừng, trừ khi nó chưa từng bắt đầu
+    private void abandon(Future<OCRResponse> call, AtomicBoolean permitClaimed) {
+        call.cancel(true);
+        if (permitClaimed.compareAndSet(false, true)) {
+            permits.release();
+        }
+    }
+
+    private List<MultipartFile> buffer(List<MultipartFile> files) {
+        List<MultipartFile> buffered = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            try {
+                // File quá lớn sẽ bị AIService từ chối theo kích thước, không cần giữ nội dung
+                byte[] content = file.getSize() <= ImageOptimizationService.MAX_FILE_SIZE ? file.getBytes() : new byte[0];
+                buffered.add(new BufferedFile(file.getName(), file.getOriginalFilename(), file.getContentType(),
+                        file.getSize(), content));
+            } catch (IOException e) {
+                log.error("Failed to read uploaded file: {}", file.getOriginalFilename(), e);
+                throw new AppException(ErrorCode.FILE_UPLOAD_FAILED);
+            }
+        }
+        return buffered;
+    }
+
+    private BulkOcrItemResponse.BulkOcrItemResponseBuilder item(int index, MultipartFile file, long startedAt) {
+        return BulkOcrItemResponse.builder()
+                .index(index)
+                .fileName(file.getOriginalFilename())
+                .durationMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+    }
+
+    private void send(SseEmitter emitter, String event, Object data, AtomicBoolean cancelled) {
+        if (cancelled.get()) {
+            return;
+        }
+        try {
+            emitter.send(SseEmitter.event().name(event).data(data));
+        } catch (IOException | IllegalStateException e) {
+            // Client đã đóng kết nối
+            cancelled.set(true);
+            log.debug("Bulk OCR stream closed by client: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Bản sao trong bộ nhớ của một file upload, đọc được sau khi request multipart đã kết thúc.
+     */
+    record BufferedFile(String name, String originalFilename, String contentType, long size, byte[] content)
+            implements MultipartFile {
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getOriginalFilename() {
+            return originalFilename;
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        @Override
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public byte[] getBytes() {
+            return content;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public void transferTo(File dest) throws IOException {
+            Files.write(dest.toPath(), content);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.TravelShare.service;
+
+import com.TravelShare.configuration.TwoTierCache;
+import com.TravelShare.dto.response.CacheStatsResponse;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class CacheStatsService {
+    CacheManager cacheManager;
+    PersistentCacheStore persistentCacheStore;
+
+    public List<CacheStatsResponse> getStats() {
+        List<CacheStatsResponse> result = new ArrayList<>();
+        for (String name : cacheManager.getCacheNames()) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache == null || !(cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> memory)) {
+                continue;
+            }
+            CacheStats stats = memory.stats();
+            CacheStatsResponse.CacheStatsResponseBuilder builder = CacheStatsResponse.builder()
+                    .name(name)
+                    .persistent(cache instanceof TwoTierCache)
+                    .size(memory.estimatedSize())
+                    .hitCount(stats.hitCount())
+                    .missCount(stats.missCount())
+                    .hitRate(stats.hitRate())
+                    .evictionCount(stats.evictionCount());
+            if (cache instanceof TwoTierCache twoTier) {
+                builder.persistedEntries(persistentCacheStore.count(name))
+                        .storeHits(twoTier.getStoreHits())
+                        .storeMisses(twoTier.getStoreMisses())
+                        .storeWrites(twoTier.getStoreWrites())
+                        .storeErrors(twoTier.getStoreErrors());
+            }
+            result.add(builder.build());
+        }
+        return result;
+    }
+}
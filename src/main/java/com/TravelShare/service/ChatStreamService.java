@@ -0,0 +1,186 @@
+package com.TravelShare.service;
+
+import com.TravelShare.dto.request.ChatRequest;
+import com.TravelShare.dto.response.ChatStreamStatsResponse;
+import com.TravelShare.dto.response.SimpleChatResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Chat dạng stream: token được đẩy về client qua SSE ngay khi model sinh ra (event "token"),
+ * cuối cùng là event "done" kèm nội dung đầy đủ và số token đã dùng.
+ * Client ngắt kết nối thì subscription tới model bị hủy, không tiếp tục sinh token vô ích.
+ */
+@Service
+@Slf4j
+public class ChatStreamService {
+    static final String TOKEN_EVENT = "token";
+    static final String DONE_EVENT = "done";
+    static final String ERROR_EVENT = "error";
+
+    private final ChatClient chatClient;
+    private final long streamTimeoutMillis;
+
+    private final AtomicLong activeStreams = new AtomicLong();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong firstTokenCount = new AtomicLong();
+    private final AtomicLong totalFirstTokenNanos = new AtomicLong();
+    private final AtomicLong maxFirstTokenNanos = new AtomicLong();
+    private final AtomicLong promptTokens = new AtomicLong();
+    private final AtomicLong completionTokens = new AtomicLong();
+    private final AtomicLong totalTokens = new AtomicLong();
+
+    public ChatStreamService(ChatClient.Builder chatClientBuilder,
+                             @Value("${app.ai.chat.stream-timeout-seconds:120}") long streamTimeoutSeconds) {
+        this.chatClient = chatClientBuilder.build();
+        this.streamTimeoutMillis = TimeUnit.SECONDS.toMillis(streamTimeoutSeconds);
+    }
+
+    public SseEmitter streamChat(ChatRequest request) {
+        SseEmitter emitter = createEmitter();
+        long startedAt = System.nanoTime();
+        AtomicBoolean firstToken = new AtomicBoolean(true);
+        AtomicBoolean finished = new AtomicBoolean();
+        AtomicReference<ChatResponse> lastResponse = new AtomicReference<>();
+        StringBuilder content = new StringBuilder();
+
+        started.incrementAndGet();
+        activeStreams.incrementAndGet();
+
+        Disposable subscription = chatClient
+                .prompt(request.message())
+                .stream()
+                .chatResponse()
+                .subscribe(
+                        response -> {
+                            lastResponse.set(response);
+                            String text = textOf(response);
+                            if (text == null || text.isEmpty()) {
+                                return;
+                            }
+                            if (firstToken.compareAndSet(true, false)) {
+                                recordTimeToFirstToken(System.nanoTime() - startedAt);
+                            }
+                            content.append(text);
+                            send(emitter, TOKEN_EVENT, Map.of("content", text));
+                        },
+                        error -> {
+                            if (finished.compareAndSet(false, true)) {
+                                failed.incrementAndGet();
+                                activeStreams.decrementAndGet();
+                                log.error("Error streaming AI response", error);
+                                send(emitter, ERROR_EVENT, Map.of("message", "Không thể xử lý yêu cầu AI"));
+                                emitter.complete();
+                            }
+                        },
+                        () -> {
+                            if (finished.compareAndSet(false, true)) {
+                                completed.incrementAndGet();
+                                activeStreams.decrementAndGet();
+                                SimpleChatResponse done = toDoneResponse(content.toString(), lastResponse.get());
+                                send(emitter, DONE_EVENT, done);
+                                emitter.complete();
+                                log.info("AI stream completed in {} ms, {} tokens",
+                                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), done.totalTokens());
+                            }
+                        });
+
+        // Client ngắt kết nối hoặc hết thời gian: hủy request tới model
+        Runnable cancel = () -> {
+            if (finished.compareAndSet(false, true)) {
+                cancelled.incrementAndGet();
+                activeStreams.decrementAndGet();
+                subscription.dispose();
+                log.info("AI stream cancelled after {} ms",
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+            }
+        };
+        emitter.onTimeout(cancel);
+        emitter.onError(ex -> cancel.run());
+        emitter.onCompletion(cancel);
+        return emitter;
+    }
+
+    SseEmitter createEmitter() {
+        return new SseEmitter(streamTimeoutMillis);
+    }
+
+    public ChatStreamStatsResponse getStats() {
+        long count = firstTokenCount.get();
+        return ChatStreamStatsResponse.builder()
+                .activeStreams(activeStreams.get())
+                .started(started.get())
+                .completed(completed.get())
+                .cancelled(cancelled.get())
+                .failed(failed.get())
+                .averageTimeToFirstTokenMs(count == 0 ? 0
+                        : totalFirstTokenNanos.get() / (double) count / 1_000_000d)
+                .maxTimeToFirstTokenMs(TimeUnit.NANOSECONDS.toMillis(maxFirstTokenNanos.get()))
+                .promptTokens(promptTokens.get())
+                .completionTokens(completionTokens.get())
+                .totalTokens(totalTokens.get())
+                .build();
+    }
+
+    private void recordTimeToFirstToken(long nanos) {
+        firstTokenCount.incrementAndGet();
+        totalFirstTokenNanos.addAndGet(nanos);
+        maxFirstTokenNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    // Usage chỉ có ở chunk cuối (cần bật stream-usage cho OpenAI)
+    private SimpleChatResponse toDoneResponse(String content, ChatResponse last) {
+        String model = null;
+        String messageId = null;
+        Integer tokens = null;
+        if (last != null && last.getMetadata() != null) {
+            model = last.getMetadata().getModel();
+            messageId = last.getMetadata().getId();
+            Usage usage = last.getMetadata().getUsage();
+            if (usage != null && usage.getTotalTokens() != null) {
+                tokens = usage.getTotalTokens();
+                promptTokens.addAndGet(usage.getPromptTokens() != null ? usage.getPromptTokens() : 0);
+                completionTokens.addAndGet(usage.getCompletionTokens() != null ? usage.getCompletionTokens() : 0);
+                totalTokens.addAndGet(tokens);
+            }
+        }
+        return SimpleChatResponse.builder()
+                .content(content)
+                .model(model)
+                .totalTokens(tokens)
+                .messageId(messageId)
+                .build();
+    }
+
+    private static String textOf(ChatResponse response) {
+        if (response == null || response.getResult() == null || response.getResult().getOutput() == null) {
+            return null;
+        }
+        return response.getResult().getOutput().getText();
+    }
+
+    private static void send(SseEmitter emitter, String event, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(event).data(data));
+        } catch (IOException | IllegalStateException e) {
+            // Client đã đóng kết nối, onError/onCompletion sẽ hủy subscription
+            log.debug("AI stream closed by client: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.TravelShare.service;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class ExchangeRateApiSource implements ExchangeRateSource {
+    RestTemplate restTemplate;
+
+    @NonFinal
+    @Value("${app.exchange-rate.api-url:https://api.exchangerate-api.com/v4/latest/}")
+    String apiUrl;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    private static class ExternalApiResponse {
+        String base;
+        Map<String, BigDecimal> rates;
+    }
+
+    @Override
+    public Map<String, BigDecimal> fetchLatestRates(String baseCurrency) {
+        String url = apiUrl + baseCurrency;
+        log.info("🌐 Calling external API: {}", url);
+
+        ExternalApiResponse response = restTemplate.getForObject(url, ExternalApiResponse.class);
+        if (response == null || response.getRates() == null || response.getRates().isEmpty()) {
+            throw new IllegalStateException("Empty rate table for " + baseCurrency);
+        }
+        return response.getRates();
+    }
+}
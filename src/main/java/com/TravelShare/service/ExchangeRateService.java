@@ -2,43 +2,78 @@ package com.TravelShare.service;
 
 import com.TravelShare.dto.response.ExchangeRateResponse;
 import com.TravelShare.dto.response.CurrencyConversionResponse;
+import com.TravelShare.entity.Currency;
+import com.TravelShare.entity.ExchangeRateSnapshot;
 import com.TravelShare.repository.CurrencyRepository;
+import com.TravelShare.repository.ExchangeRateSnapshotRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
+/**
+ * Tỷ giá được giữ trong bộ nhớ dưới dạng ma trận [from][to] bất biến, dựng từ một bảng tỷ giá
+ * theo pivot currency. Scheduler làm mới ma trận hàng loạt và lưu snapshot theo ngày vào DB;
+ * khi nguồn bên ngoài lỗi thì snapshot gần nhất được dùng làm fallback.
+ * Việc tra cứu chỉ là đọc một tham chiếu volatile và hai lần Map.get, không khóa, không gọi mạng.
+ */
 @Service
 @RequiredArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 @Slf4j
 public class ExchangeRateService {
-    RestTemplate restTemplate;
+    ExchangeRateSource exchangeRateSource;
     CurrencyRepository currencyRepository;
+    ExchangeRateSnapshotRepository snapshotRepository;
+    TransactionTemplate transactionTemplate;
 
-    static final String API_URL = "https://api.exchangerate-api.com/v4/latest/";
+    static final long ON_DEMAND_REFRESH_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
 
-    @Data
-    @NoArgsConstructor
-    @AllArgsConstructor
-    @FieldDefaults(level = AccessLevel.PRIVATE)
-    private static class ExternalApiResponse {
-        String base;
-        Map<String, BigDecimal> rates;
+    AtomicLong lastRefreshAttempt = new AtomicLong();
+
+    // Ma trận tỷ giá lịch sử theo ngày của expense, snapshot quá khứ không đổi nên cache không cần TTL
+    Cache<LocalDate, RateMatrix> historicalMatrices = Caffeine.newBuilder()
+            .maximumSize(400)
+            .build();
+
+    @NonFinal
+    @Value("${app.exchange-rate.pivot-currency:USD}")
+    String pivotCurrency;
+
+    @NonFinal
+    volatile RateMatrix rateMatrix;
+
+    /**
+     * rates.get(from).get(to) = số đơn vị "to" cho 1 đơn vị "from".
+     */
+    private record RateMatrix(Map<String, Map<String, BigDecimal>> rates, LocalDate rateDate, LocalDateTime fetchedAt) {
     }
 
     // ✅ Trả về ExchangeRateResponse thay vì BigDecimal
-    @Cacheable(value = "exchange-rates", key = "#from + '_' + #to")
     public ExchangeRateResponse getExchangeRate(String from, String to) {
-        log.info("🔄 Getting exchange rate: {} -> {}", from, to);
+        return getExchangeRate(from, to, null);
+    }
 
+    /**
+     * Tỷ giá có hiệu lực tại ngày cho trước (snapshot gần nhất không sau ngày đó).
+     * date = null hoặc không cũ hơn ma trận hiện tại thì dùng tỷ giá hiện tại.
+     */
+    public ExchangeRateResponse getExchangeRate(String from, String to, LocalDate date) {
         try {
             // Same currency
             if (from.equalsIgnoreCase(to)) {
@@ -51,22 +86,26 @@ public class ExchangeRateService {
                         .build();
             }
 
-            // Validate currencies exist in database
-            validateCurrency(from);
-            validateCurrency(to);
-
-            BigDecimal rate = fetchRateFromAPI(from.toUpperCase(), to.toUpperCase());
+            RateMatrix matrix = matrixFor(date);
+            BigDecimal rate = lookup(matrix, from.toUpperCase(), to.toUpperCase());
+            if (rate == null) {
+                // Validate currencies exist in database
+                validateCurrency(from);
+                validateCurrency(to);
+                throw new IllegalStateException("No rate found for " + from + " to " + to);
+            }
 
             return ExchangeRateResponse.builder()
                     .fromCurrency(from.toUpperCase())
                     .toCurrency(to.toUpperCase())
                     .rate(rate)
                     .success(true)
-                    .timestamp(LocalDateTime.now())
+                    .timestamp(matrix.fetchedAt())
+                    .historicalFallback(date != null && matrix.rateDate().isAfter(date))
                     .build();
 
         } catch (Exception e) {
-            log.error("❌ Failed to fetch exchange rate: {}", e.getMessage());
+            log.error("❌ Failed to get exchange rate {} -> {}: {}", from, to, e.getMessage());
             return ExchangeRateResponse.builder()
                     .fromCurrency(from.toUpperCase())
                     .toCurrency(to.toUpperCase())
@@ -78,7 +117,11 @@ public class ExchangeRateService {
     }
 
     public CurrencyConversionResponse convertAmount(BigDecimal amount, String from, String to) {
-        ExchangeRateResponse rateResponse = getExchangeRate(from, to);
+        return convertAmount(amount, from, to, null);
+    }
+
+    public CurrencyConversionResponse convertAmount(BigDecimal amount, String from, String to, LocalDate date) {
+        ExchangeRateResponse rateResponse = getExchangeRate(from, to, date);
 
         if (!rateResponse.isSuccess()) {
             return CurrencyConversionResponse.builder()
@@ -94,7 +137,7 @@ public class ExchangeRateService {
         BigDecimal convertedAmount = amount.multiply(rateResponse.getRate())
                 .setScale(2, RoundingMode.HALF_UP);
 
-        log.info("💰 Converted: {} {} -> {} {} (rate: {})",
+        log.debug("💰 Converted: {} {} -> {} {} (rate: {})",
                 amount, from, convertedAmount, to, rateResponse.getRate());
 
         return CurrencyConversionResponse.builder()
@@ -104,7 +147,8 @@ public class ExchangeRateService {
                 .toCurrency(to.toUpperCase())
                 .exchangeRate(rateResponse.getRate())
                 .success(true)
-                .timestamp(LocalDateTime.now())
+                .timestamp(rateResponse.getTimestamp())
+                .historicalFallback(rateResponse.isHistoricalFallback())
                 .build();
     }
 
@@ -114,21 +158,153 @@ public class ExchangeRateService {
         return response.isSuccess() ? response.getRate() : BigDecimal.ONE;
     }
 
-    private BigDecimal fetchRateFromAPI(String from, String to) {
-        String url = API_URL + from;
-        log.info("🌐 Calling external API: {}", url);
+    /**
+     * Lấy bảng tỷ giá mới theo pivot currency, dựng lại ma trận và lưu snapshot của ngày hôm nay.
+     * Nếu nguồn bên ngoài lỗi, ma trận hiện tại (hoặc snapshot gần nhất) được giữ nguyên.
+     */
+    public boolean refreshRates() {
+        lastRefreshAttempt.set(System.currentTimeMillis());
+        try {
+            Set<String> supported = supportedCurrencies();
+            Map<String, BigDecimal> pivotRates = exchangeRateSource.fetchLatestRates(pivotCurrency).entrySet().stream()
+                    .filter(entry -> supported.contains(entry.getKey()) && entry.getValue() != null
+                            && entry.getValue().signum() > 0)
+                    .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().setScale(6, RoundingMode.HALF_UP)));
+
+            LocalDateTime fetchedAt = LocalDateTime.now();
+            rateMatrix = buildMatrix(pivotRates, fetchedAt.toLocalDate(), fetchedAt);
+            saveSnapshotInNewTransaction(pivotRates, fetchedAt);
+
+            log.info("✅ Refreshed exchange rates for {} currencies (pivot {})", pivotRates.size(), pivotCurrency);
+            return true;
+        } catch (Exception e) {
+            log.error("❌ Failed to refresh exchange rates, keeping last good snapshot: {}", e.getMessage());
+            if (rateMatrix == null) {
+                loadLatestSnapshot();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Nạp snapshot gần nhất trong DB vào bộ nhớ (dùng khi khởi động hoặc khi API lỗi).
+     */
+    public void loadLatestSnapshot() {
+        List<ExchangeRateSnapshot> snapshots = snapshotRepository.findLatestByBaseCurrency(pivotCurrency);
+        if (snapshots.isEmpty()) {
+            log.warn("No exchange rate snapshot found for pivot currency {}", pivotCurrency);
+            return;
+        }
+
+        Map<String, BigDecimal> pivotRates = snapshots.stream()
+                .collect(Collectors.toMap(ExchangeRateSnapshot::getQuoteCurrency, ExchangeRateSnapshot::getRate));
+        ExchangeRateSnapshot first = snapshots.get(0);
+        rateMatrix = buildMatrix(pivotRates, first.getRateDate(), first.getFetchedAt());
+        log.info("Loaded exchange rate snapshot of {} ({} currencies)", first.getRateDate(), pivotRates.size());
+    }
+
+    private RateMatrix matrixFor(LocalDate date) {
+        RateMatrix current = currentMatrix();
+        if (date == null || !date.isBefore(current.rateDate())) {
+            return current;
+        }
 
-        ExternalApiResponse response = restTemplate.getForObject(url, ExternalApiResponse.class);
+        RateMatrix historical = historicalMatrices.get(date, this::loadMatrixOnOrBefore);
+        if (historical == null) {
+            log.debug("No exchange rate snapshot on or before {}, using current rates", date);
+            return current;
+        }
+        return historical;
+    }
 
-        if (response != null && response.getRates() != null) {
-            BigDecimal rate = response.getRates().get(to);
-            if (rate != null) {
-                log.info("✅ Got rate from API: 1 {} = {} {}", from, rate, to);
-                return rate.setScale(6, RoundingMode.HALF_UP);
+    private RateMatrix loadMatrixOnOrBefore(LocalDate date) {
+        List<ExchangeRateSnapshot> snapshots = snapshotRepository.findLatestByBaseCurrencyOnOrBefore(pivotCurrency, date);
+        if (snapshots.isEmpty()) {
+            return null;
+        }
+        Map<String, BigDecimal> pivotRates = snapshots.stream()
+                .collect(Collectors.toMap(ExchangeRateSnapshot::getQuoteCurrency, ExchangeRateSnapshot::getRate));
+        ExchangeRateSnapshot first = snapshots.get(0);
+        return buildMatrix(pivotRates, first.getRateDate(), first.getFetchedAt());
+    }
+
+    private RateMatrix currentMatrix() {
+        RateMatrix matrix = rateMatrix;
+        if (matrix == null) {
+            // Chưa có dữ liệu: thử làm mới nhưng giới hạn tần suất để không dội request lên API khi nó đang lỗi
+            long last = lastRefreshAttempt.get();
+            long now = System.currentTimeMillis();
+            if (now - last >= ON_DEMAND_REFRESH_INTERVAL_MS && lastRefreshAttempt.compareAndSet(last, now)) {
+                refreshRates();
             }
+            matrix = rateMatrix;
+        }
+        if (matrix == null) {
+            throw new IllegalStateException("Exchange rates are not available");
         }
+        return matrix;
+    }
+
+    private BigDecimal lookup(RateMatrix matrix, String from, String to) {
+        Map<String, BigDecimal> row = matrix.rates().get(from);
+        return row != null ? row.get(to) : null;
+    }
+
+    private RateMatrix buildMatrix(Map<String, BigDecimal> pivotRates, LocalDate rateDate, LocalDateTime fetchedAt) {
+        Map<String, BigDecimal> withPivot = new HashMap<>(pivotRates);
+        withPivot.put(pivotCurrency, BigDecimal.ONE);
+
+        // rate(from -> to) = pivot[to] / pivot[from]
+        Map<String, Map<String, BigDecimal>> rates = new HashMap<>();
+        withPivot.forEach((from, fromRate) -> {
+            Map<String, BigDecimal> row = new HashMap<>();
+            withPivot.forEach((to, toRate) ->
+                    row.put(to, toRate.divide(fromRate, 6, RoundingMode.HALF_UP)));
+            rates.put(from, Map.copyOf(row));
+        });
+        return new RateMatrix(Map.copyOf(rates), rateDate, fetchedAt);
+    }
+
+    /**
+     * refreshRates có thể chạy bên trong transaction của caller (lần tra tỷ giá đầu tiên khi ma trận chưa có),
+     * nên snapshot được ghi trong transaction riêng: lỗi ghi DB chỉ được log lại, không làm transaction
+     * của caller bị đánh dấu rollback-only. Ma trận trong bộ nhớ vẫn được dùng bình thường.
+     */
+    private void saveSnapshotInNewTransaction(Map<String, BigDecimal> pivotRates, LocalDateTime fetchedAt) {
+        TransactionTemplate requiresNew = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            requiresNew.executeWithoutResult(status -> saveSnapshot(pivotRates, fetchedAt));
+        } catch (RuntimeException e) {
+            log.error("❌ Failed to save exchange rate snapshot of {}: {}", fetchedAt.toLocalDate(), e.getMessage());
+        }
+    }
+
+    private void saveSnapshot(Map<String, BigDecimal> pivotRates, LocalDateTime fetchedAt) {
+        LocalDate today = fetchedAt.toLocalDate();
+        Map<String, ExchangeRateSnapshot> existing = snapshotRepository
+                .findByBaseCurrencyAndRateDate(pivotCurrency, today).stream()
+                .collect(Collectors.toMap(ExchangeRateSnapshot::getQuoteCurrency, snapshot -> snapshot));
+
+        List<ExchangeRateSnapshot> snapshots = new ArrayList<>();
+        pivotRates.forEach((quote, rate) -> {
+            ExchangeRateSnapshot snapshot = existing.getOrDefault(quote, ExchangeRateSnapshot.builder()
+                    .baseCurrency(pivotCurrency)
+                    .quoteCurrency(quote)
+                    .rateDate(today)
+                    .build());
+            snapshot.setRate(rate);
+            snapshot.setFetchedAt(fetchedAt);
+            snapshots.add(snapshot);
+        });
+        snapshotRepository.saveAll(snapshots);
+    }
 
-        throw new RuntimeException("No rate found for " + from + " to " + to);
+    private Set<String> supportedCurrencies() {
+        return currencyRepository.findAll().stream()
+                .map(Currency::getCode)
+                .map(String::toUpperCase)
+                .collect(Collectors.toSet());
     }
 
     private void validateCurrency(String currency) {
@@ -140,4 +316,4 @@ public class ExchangeRateService {
             throw new IllegalArgumentException("Currency not supported: " + currency);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,15 @@
+package com.TravelShare.service;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Nguồn tỷ giá bên ngoài. Tách thành interface để có thể thay bằng stub khi test
+ * hoặc đổi nhà cung cấp mà không ảnh hưởng ExchangeRateService.
+ */
+public interface ExchangeRateSource {
+    /**
+     * Toàn bộ bảng tỷ giá mới nhất theo base: 1 baseCurrency = rate [quote].
+     */
+    Map<String, BigDecimal> fetchLatestRates(String baseCurrency);
+}
@@ -0,0 +1,618 @@
+package com.TravelShare.service;
+
+import com.TravelShare.dto.request.ExpenseImportRow;
+import com.TravelShare.dto.request.ExpenseSplitCreationRequest;
+import com.TravelShare.dto.response.ExchangeRateResponse;
+import com.TravelShare.dto.response.ExpenseImportResponse;
+import com.TravelShare.entity.*;
+import com.TravelShare.entity.Currency;
+import com.TravelShare.event.ExpensesImportedEvent;
+import com.TravelShare.exception.AppException;
+import com.TravelShare.exception.ErrorCode;
+import com.TravelShare.repository.*;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Import hàng loạt chi phí của một group từ file CSV hoặc JSON (mảng các dòng).
+ * File được đọc dạng stream từng dòng; participant, category, currency được nạp một lần cho cả file,
+ * tỷ giá tra một lần cho mỗi cặp (currency, ngày). Expense và split được ghi bằng JDBC batch theo từng chunk,
+ * sổ cái số dư cập nhật một lần cho mỗi participant, và cả lần import chỉ sinh một thông báo tổng hợp.
+ * Dòng không hợp lệ bị bỏ qua và được báo lại, các dòng hợp lệ vẫn được ghi.
+ */
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class ExpenseImportService {
+    static final int MAX_REPORTED_ERRORS = 100;
+    static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    static final String INSERT_EXPENSE_SQL = "INSERT INTO expense (title, description, converted_amount, original_amount, "
+            + "exchange_rate, exchange_rate_date, original_currency_code, converted_currency_code, group_id, payer_id, "
+            + "category_id, split_type, created_at, expense_date, created_by_id, is_locked) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, false)";
+    static final String INSERT_SPLIT_SQL = "INSERT INTO expense_split (expense_id, participant_id, amount, percentage, is_payer) "
+            + "VALUES (?, ?, ?, ?, ?)";
+
+    JdbcTemplate jdbcTemplate;
+    ObjectMapper objectMapper;
+    UserRepository userRepository;
+    GroupRepository groupRepository;
+    GroupParticipantRepository groupParticipantRepository;
+    CategoryRepository categoryRepository;
+    CurrencyRepository currencyRepository;
+    ExchangeRateService exchangeRateService;
+    BalanceLedgerService balanceLedgerService;
+    SpendingRollupService spendingRollupService;
+    ApplicationEventPublisher eventPublisher;
+
+    @NonFinal
+    @Value("${app.expense.import.max-rows:5000}")
+    int maxRows;
+
+    @NonFinal
+    @Value("${app.expense.import.batch-size:200}")
+    int batchSize;
+
+    private record PreparedSplit(Long participantId, BigDecimal amount, BigDecimal percentage, boolean payer) {
+    }
+
+    private record PreparedExpense(ExpenseImportRow row, Long categoryId, Long payerId, LocalDate expenseDate,
+                                   BigDecimal originalAmount, String originalCurrency, BigDecimal convertedAmount,
+                                   String convertedCurrency, BigDecimal exchangeRate, LocalDateTime exchangeRateDate,
+                                   Expense.SplitType splitType, List<PreparedSplit> splits) {
+    }
+
+    private record Conversion(BigDecimal rate, LocalDateTime rateDate) {
+    }
+
+    /**
+     * Dữ liệu tham chiếu của group, nạp một lần cho cả file.
+     */
+    private record ImportContext(Group group, User user, String groupCurrency, Long importerParticipantId,
+                                 Map<Long, GroupParticipant> participants, Set<Long> categoryIds,
+                                 Set<String> currencies, Map<String, Optional<Conversion>> conversions) {
+    }
+
+    @Transactional
+    public ExpenseImportResponse importExpenses(Long groupId, MultipartFile file) {
+        long startedAt = System.nanoTime();
+        if (file == null || file.isEmpty()) {
+            throw new AppException(ErrorCode.IMPORT_FILE_INVALID);
+        }
+        ImportContext context = loadContext(groupId);
+
+        List<ExpenseImportResponse.RowError> errors = new ArrayList<>();
+        List<PreparedExpense> chunk = new ArrayList<>(batchSize);
+        Map<Long, BigDecimal> balanceDelta = new HashMap<>();
+        List<SpendingRollupService.Contribution> spending = new ArrayList<>();
+        int totalRows = 0;
+        int imported = 0;
+        int failed = 0;
+        BigDecimal totalAmount = BigDecimal.ZERO;
+
+        try (RowIterator rows = openRows(file)) {
+            while (rows.hasNext()) {
+                totalRows++;
+                if (totalRows > maxRows) {
+                    throw new AppException(ErrorCode.IMPORT_TOO_MANY_ROWS);
+                }
+                try {
+                    PreparedExpense expense = prepare(rows.next(), context);
+                    chunk.add(expense);
+                    if (expense.convertedCurrency().equals(context.groupCurrency())) {
+                        totalAmount = totalAmount.add(expense.convertedAmount());
+                    }
+                } catch (AppException | IllegalArgumentException | RuntimeJsonMappingException e) {
+                    // Phần tử JSON sai kiểu (vd. amount là chữ): MappingIterator tự bỏ qua phần còn lại của phần tử đó
+                    failed++;
+                    if (errors.size() < MAX_REPORTED_ERRORS) {
+                        errors.add(new ExpenseImportResponse.RowError(totalRows, errorMessage(e)));
+                    }
+                }
+                if (chunk.size() >= batchSize) {
+                    imported += flush(chunk, context, balanceDelta, spending);
+                }
+            }
+            imported += flush(chunk, context, balanceDelta, spending);
+        } catch (UncheckedIOException | RuntimeJsonMappingException | IOException e) {
+            log.warn("Cannot read expense import file {}: {}", file.getOriginalFilename(), e.getMessage());
+            throw new AppException(ErrorCode.IMPORT_FILE_INVALID);
+        }
+
+        balanceLedgerService.recordExpensesImported(groupId, balanceDelta);
+        spendingRollupService.recordExpensesImported(spending);
+        if (imported > 0) {
+            eventPublisher.publishEvent(new ExpensesImportedEvent(this, groupId, context.group().getName(), imported,
+                    totalAmount, context.groupCurrency(), context.user()));
+        }
+
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+        log.info("Imported {} expenses into group {} ({} rows failed) in {} ms", imported, groupId, failed, durationMs);
+        return ExpenseImportResponse.builder()
+                .groupId(groupId)
+                .totalRows(totalRows)
+                .imported(imported)
+                .failed(failed)
+                .totalAmount(totalAmount)
+                .currency(context.groupCurrency())
+                .durationMs(durationMs)
+                .errors(errors)
+                .build();
+    }
+
+    private ImportContext loadContext(Long groupId) {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        Group group = groupRepository.findById(groupId)
+                .orElseThrow(() -> new AppException(ErrorCode.GROUP_NOT_EXISTED));
+
+        Map<Long, GroupParticipant> participants = groupParticipantRepository.findAllWithUserByGroupId(groupId).stream()
+                .collect(Collectors.toMap(GroupParticipant::getId, Function.identity(), (a, b) -> a, LinkedHashMap::new));
+        Long importerParticipantId = participants.values().stream()
+                .filter(participant -> participant.getUser() != null && user.getId().equals(participant.getUser().getId()))
+                .map(GroupParticipant::getId)
+                .findFirst()
+                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_IN_GROUP));
+
+        Set<Long> categoryIds = categoryRepository.findByGroupIdOrGroupIsNull(groupId).stream()
+                .map(Category::getId)
+                .collect(Collectors.toSet());
+        Set<String> currencies = currencyRepository.findAll().stream()
+                .map(Currency::getCode)
+                .collect(Collectors.toSet());
+
+        return new ImportContext(group, user, group.getDefaultCurrency().getCode(), importerParticipantId,
+                participants, categoryIds, currencies, new HashMap<>());
+    }
+
+    private PreparedExpense prepare(ExpenseImportRow row, ImportContext context) {
+        if (row.getTitle() == null || row.getTitle().isBlank()) {
+            throw new IllegalArgumentException("Title is required");
+        }
+        if (row.getAmount() == null || row.getAmount().signum() <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        if (row.getCategory() == null || !context.categoryIds().contains(row.getCategory())) {
+            throw new AppException(ErrorCode.CATEGORY_NOT_EXISTED);
+        }
+        String currency = row.getCurrency() == null || row.getCurrency().isBlank()
+                ? context.groupCurrency()
+                : row.getCurrency().trim().toUpperCase();
+        if (!context.currencies().contains(currency)) {
+            throw new AppException(ErrorCode.CURRENCY_NOT_EXISTED);
+        }
+        Long payerId = row.getParticipantId() != null ? row.getParticipantId() : context.importerParticipantId();
+        if (!context.participants().containsKey(payerId)) {
+            throw new AppException(ErrorCode.PARTICIPANT_NOT_EXISTED);
+        }
+        LocalDate expenseDate = row.getExpenseDate() != null ? row.getExpenseDate() : LocalDate.now();
+        BigDecimal originalAmount = row.getAmount().setScale(2, RoundingMode.HALF_UP);
+
+        // Quy đổi như ExpenseService.createExpense, lỗi tỷ giá thì giữ nguyên currency gốc
+        BigDecimal convertedAmount = originalAmount;
+        String convertedCurrency = currency;
+        BigDecimal exchangeRate = BigDecimal.ONE;
+        LocalDateTime exchangeRateDate = LocalDateTime.now();
+        if (!currency.equals(context.groupCurrency())) {
+            Optional<Conversion> conversion = conversionFor(currency, expenseDate, context);
+            if (conversion.isPresent()) {
+                exchangeRate = conversion.get().rate();
+                exchangeRateDate = conversion.get().rateDate();
+                convertedAmount = originalAmount.multiply(exchangeRate).setScale(2, RoundingMode.HALF_UP);
+                convertedCurrency = context.groupCurrency();
+            }
+        }
+
+        Expense.SplitType splitType = row.getSplitType() != null ? row.getSplitType() : Expense.SplitType.EQUAL;
+        List<PreparedSplit> splits = switch (splitType) {
+            case EQUAL -> equalSplits(convertedAmount, payerId, context);
+            case AMOUNT -> amountSplits(convertedAmount, payerId, row.getSplits(), context);
+            case PERCENTAGE -> percentageSplits(convertedAmount, payerId, row.getSplits(), context);
+        };
+
+        return new PreparedExpense(row, row.getCategory(), payerId, expenseDate, originalAmount, currency,
+                convertedAmount, convertedCurrency, exchangeRate, exchangeRateDate, splitType, splits);
+    }
+
+    private Optional<Conversion> conversionFor(String currency, LocalDate date, ImportContext context) {
+        return context.conversions().computeIfAbsent(currency + "@" + date, key -> {
+            ExchangeRateResponse rate = exchangeRateService.getExchangeRate(currency, context.groupCurrency(), date);
+            if (!rate.isSuccess()) {
+                log.warn("Currency conversion failed during import: {}", rate.getErrorMessage());
+                return Optional.empty();
+            }
+            return Optional.of(new Conversion(rate.getRate(), rate.getTimestamp()));
+        });
+    }
+
+    private List<PreparedSplit> equalSplits(BigDecimal convertedAmount, Long payerId, ImportContext context) {
+        BigDecimal count = BigDecimal.valueOf(context.participants().size());
+        BigDecimal equalAmount = convertedAmount.divide(count, 2, RoundingMode.HALF_UP);
+        BigDecimal percentage = HUNDRED.divide(count, 2, RoundingMode.HALF_UP);
+        return context.participants().keySet().stream()
+                .map(participantId -> new PreparedSplit(participantId, equalAmount, percentage, participantId.equals(payerId)))
+                .toList();
+    }
+
+    private List<PreparedSplit> amountSplits(BigDecimal convertedAmount, Long payerId,
+                                             List<ExpenseSplitCreationRequest> requests, ImportContext context) {
+        List<PreparedSplit> splits = new ArrayList<>();
+        for (ExpenseSplitCreationRequest request : requireSplits(requests, context)) {
+            if (request.getAmount() == null) {
+                throw new IllegalArgumentException("Split amount is required");
+            }
+            BigDecimal percentage = request.getAmount().divide(convertedAmount, 2, RoundingMode.HALF_UP).multiply(HUNDRED);
+            splits.add(new PreparedSplit(request.getParticipantId(), request.getAmount(), percentage,
+                    request.getParticipantId().equals(payerId)));
+        }
+        return splits;
+    }
+
+    private List<PreparedSplit> percentageSplits(BigDecimal convertedAmount, Long payerId,
+                                                 List<ExpenseSplitCreationRequest> requests, ImportContext context) {
+        List<PreparedSplit> splits = new ArrayList<>();
+        for (ExpenseSplitCreationRequest request : requireSplits(requests, context)) {
+            if (request.getPercentage() == null) {
+                throw new IllegalArgumentException("Split percentage is required");
+            }
+            BigDecimal amount = convertedAmount.multiply(request.getPercentage()).divide(HUNDRED, 2, RoundingMode.HALF_UP);
+            splits.add(new PreparedSplit(request.getParticipantId(), amount, request.getPercentage(),
+                    request.getParticipantId().equals(payerId)));
+        }
+        return splits;
+    }
+
+    private List<ExpenseSplitCreationRequest> requireSplits(List<ExpenseSplitCreationRequest> requests, ImportContext context) {
+        if (requests == null || requests.isEmpty()) {
+            throw new IllegalArgumentException("Splits are required for this split type");
+        }
+        for (ExpenseSplitCreationRequest request : requests) {
+            if (request.getParticipantId() == null || !context.participants().containsKey(request.getParticipantId())) {
+                throw new AppException(ErrorCode.PARTICIPANT_NOT_EXISTED);
+            }
+        }
+        return requests;
+    }
+
+    // Ghi một chunk: một batch cho expense, một batch cho split; gộp delta số dư vào balanceDelta và chi tiêu vào spending
+    private int flush(List<PreparedExpense> chunk, ImportContext context, Map<Long, BigDecimal> balanceDelta,
+                      List<SpendingRollupService.Contribution> spending) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        List<Long> expenseIds = insertExpenses(chunk, context);
+        insertSplits(chunk, expenseIds);
+
+        for (PreparedExpense expense : chunk) {
+            User payerUser = context.participants().get(expense.payerId()).getUser();
+            spending.add(new SpendingRollupService.Contribution(context.group().getId(),
+                    payerUser != null ? payerUser.getId() : null, expense.expenseDate(), expense.categoryId(),
+                    expense.originalCurrency(), expense.originalAmount(), expense.convertedAmount()));
+            for (PreparedSplit split : expense.splits()) {
+                if (split.payer()) {
+                    balanceDelta.merge(split.participantId(), expense.convertedAmount(), BigDecimal::add);
+                }
+                balanceDelta.merge(split.participantId(), split.amount().negate(), BigDecimal::add);
+            }
+        }
+        int size = chunk.size();
+        chunk.clear();
+        return size;
+    }
+
+    private List<Long> insertExpenses(List<PreparedExpense> chunk, ImportContext context) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        return jdbcTemplate.execute((ConnectionCallback<List<Long>>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_EXPENSE_SQL, new String[]{"id"})) {
+                for (PreparedExpense expense : chunk) {
+                    ps.setString(1, expense.row().getTitle().trim());
+                    ps.setString(2, expense.row().getDescription());
+                    ps.setBigDecimal(3, expense.convertedAmount());
+                    ps.setBigDecimal(4, expense.originalAmount());
+                    ps.setBigDecimal(5, expense.exchangeRate());
+                    ps.setTimestamp(6, Timestamp.valueOf(expense.exchangeRateDate()));
+                    ps.setString(7, expense.originalCurrency());
+                    ps.setString(8, expense.convertedCurrency());
+                    ps.setLong(9, context.group().getId());
+                    ps.setLong(10, expense.payerId());
+                    ps.setLong(11, expense.categoryId());
+                    ps.setString(12, expense.splitType().name());
+                    ps.setTimestamp(13, now);
+                    ps.setObject(14, expense.expenseDate());
+                    ps.setString(15, context.user().getId());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                List<Long> ids = new ArrayList<>(chunk.size());
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        ids.add(keys.getLong(1));
+                    }
+                }
+                if (ids.size() != chunk.size()) {
+                    throw new IllegalStateException("Expected " + chunk.size() + " generated ids, got " + ids.size());
+                }
+                return ids;
+            }
+        });
+    }
+
+    private void insertSplits(List<PreparedExpense> chunk, List<Long> expenseIds) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_SPLIT_SQL)) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    for (PreparedSplit split : chunk.get(i).splits()) {
+                        ps.setLong(1, expenseIds.get(i));
+                        ps.setLong(2, split.participantId());
+                        ps.setBigDecimal(3, split.amount());
+                        if (split.percentage() != null) {
+                            ps.setBigDecimal(4, split.percentage());
+                        } else {
+                            ps.setNull(4, Types.NUMERIC);
+                        }
+                        ps.setBoolean(5, split.payer());
+                        ps.addBatch();
+                    }
+                }
+                ps.executeBatch();
+            }
+            return null;
+        });
+    }
+
+    private RowIterator openRows(MultipartFile file) throws IOException {
+        String name = file.getOriginalFilename() != null ? file.getOriginalFilename().toLowerCase() : "";
+        String contentType = file.getContentType() != null ? file.getContentType() : "";
+        if (name.endsWith(".json") || contentType.contains("json")) {
+            // Mảng JSON ở gốc được đọc từng phần tử, không nạp cả file
+            MappingIterator<ExpenseImportRow> iterator = objectMapper.readerFor(ExpenseImportRow.class)
+                    .readValues(file.getInputStream());
+            return new RowIterator(iterator, iterator::close);
+        }
+        CsvRowReader reader = new CsvRowReader(
+                new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8)));
+        return new RowIterator(reader, reader::close);
+    }
+
+    private static String errorMessage(Exception e) {
+        if (e instanceof AppException appException) {
+            return appException.getErrorCode().getMessage();
+        }
+        if (e.getCause() instanceof JsonMappingException mappingException) {
+            return "Invalid value: " + mappingException.getOriginalMessage();
+        }
+        return e.getMessage();
+    }
+
+    private interface Closer {
+        void close() throws IOException;
+    }
+
+    private record RowIterator(Iterator<ExpenseImportRow> delegate, Closer closer)
+            implements Iterator<ExpenseImportRow>, Closeable {
+        // MappingIterator bọc lỗi cú pháp JSON trong RuntimeException: chuyển thành lỗi đọc file
+        @Override
+        public boolean hasNext() {
+            try {
+                return delegate.hasNext();
+            } catch (RuntimeJsonMappingException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                throw e.getCause() instanceof IOException io ? new UncheckedIOException(io) : e;
+            }
+        }
+
+        @Override
+        public ExpenseImportRow next() {
+            try {
+                return delegate.next();
+            } catch (RuntimeJsonMappingException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                throw e.getCause() instanceof IOException io ? new UncheckedIOException(io) : e;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            closer.close();
+        }
+    }
+
+    /**
+     * Đọc CSV theo RFC 4180 (dấu phẩy, trường trong ngoặc kép, "" là ký tự ngoặc kép) từng bản ghi một.
+     * Dòng đầu là header, tên cột không phân biệt hoa thường. Dòng sai định dạng được trả về dưới dạng
+     * IllegalArgumentException khi gọi next() để được báo lỗi theo dòng.
+     */
+    static class CsvRowReader implements Iterator<ExpenseImportRow> {
+        private final BufferedReader reader;
+        private final Map<String, Integer> header = new HashMap<>();
+        private List<String> nextRecord;
+
+        CsvRowReader(BufferedReader reader) throws IOException {
+            this.reader = reader;
+            List<String> names = readRecord();
+            if (names == null) {
+                throw new IOException("Empty CSV file");
+            }
+            for (int i = 0; i < names.size(); i++) {
+                header.put(names.get(i).replace("\uFEFF", "").trim().toLowerCase(), i);
+            }
+            if (!header.containsKey("title") || !header.containsKey("amount")) {
+                throw new IOException("CSV header must contain title and amount");
+            }
+            nextRecord = readRecord();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextRecord != null;
+        }
+
+        @Override
+        public ExpenseImportRow next() {
+            if (nextRecord == null) {
+                throw new NoSuchElementException();
+            }
+            List<String> record = nextRecord;
+            try {
+                nextRecord = readRecord();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return toRow(record);
+        }
+
+        void close() throws IOException {
+            reader.close();
+        }
+
+        private ExpenseImportRow toRow(List<String> record) {
+            try {
+                String splitType = field(record, "splittype");
+                return ExpenseImportRow.builder()
+                        .title(field(record, "title"))
+                        .description(field(record, "description"))
+                        .amount(decimal(field(record, "amount")))
+                        .currency(field(record, "currency"))
+                        .category(number(field(record, "category")))
+                        .expenseDate(field(record, "expensedate") != null ? LocalDate.parse(field(record, "expensedate")) : null)
+                        .participantId(number(field(record, "participantid")))
+                        .splitType(splitType != null ? Expense.SplitType.valueOf(splitType.toUpperCase()) : null)
+                        .splits(splits(field(record, "splits"), splitType))
+                        .build();
+            } catch (NumberFormatException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid value: " + e.getMessage());
+            }
+        }
+
+        private String field(List<String> record, String column) {
+            Integer index = header.get(column);
+            if (index == null || index >= record.size()) {
+                return null;
+            }
+            String value = record.get(index).trim();
+            return value.isEmpty() ? null : value;
+        }
+
+        private static BigDecimal decimal(String value) {
+            return value != null ? new BigDecimal(value) : null;
+        }
+
+        private static Long number(String value) {
+            return value != null ? Long.valueOf(value) : null;
+        }
+
+        // "12:50000;13:25000" -> số tiền (AMOUNT) hoặc phần trăm (PERCENTAGE) theo participant
+        private static List<ExpenseSplitCreationRequest> splits(String value, String splitType) {
+            if (value == null) {
+                return null;
+            }
+            boolean percentage = "PERCENTAGE".equalsIgnoreCase(splitType);
+            List<ExpenseSplitCreationRequest> splits = new ArrayList<>();
+            for (String part : value.split(";")) {
+                String[] pieces = part.split(":");
+                if (pieces.length != 2) {
+                    throw new IllegalArgumentException("Invalid split: " + part);
+                }
+                ExpenseSplitCreationRequest split = new ExpenseSplitCreationRequest();
+                split.setParticipantId(Long.valueOf(pieces[0].trim()));
+                if (percentage) {
+                    split.setPercentage(new BigDecimal(pieces[1].trim()));
+                } else {
+                    split.setAmount(new BigDecimal(pieces[1].trim()));
+                }
+                splits.add(split);
+            }
+            return splits;
+        }
+
+        // Một bản ghi có thể trải nhiều dòng nếu trường trong ngoặc kép chứa xuống dòng; bỏ qua dòng trống
+        private List<String> readRecord() throws IOException {
+            List<String> fields = new ArrayList<>();
+            StringBuilder current = new StringBuilder();
+            boolean quoted = false;
+            boolean any = false;
+            int c;
+            while ((c = reader.read()) != -1) {
+                any = true;
+                char ch = (char) c;
+                if (quoted) {
+                    if (ch == '"') {
+                        reader.mark(1);
+                        int next = reader.read();
+                        if (next == '"') {
+                            current.append('"');
+                        } else {
+                            quoted = false;
+                            if (next != -1) {
+                                reader.reset();
+                            }
+                        }
+                    } else {
+                        current.append(ch);
+                    }
+                } else if (ch == '"') {
+                    quoted = true;
+                } else if (ch == ',') {
+                    fields.add(current.toString());
+                    current.setLength(0);
+                } else if (ch == '\n' || ch == '\r') {
+                    if (ch == '\r') {
+                        reader.mark(1);
+                        if (reader.read() != '\n') {
+                            reader.reset();
+                        }
+                    }
+                    if (fields.isEmpty() && current.isEmpty()) {
+                        continue;
+                    }
+                    fields.add(current.toString());
+                    return fields;
+                } else {
+                    current.append(ch);
+                }
+            }
+            if (!any || (fields.isEmpty() && current.isEmpty())) {
+                return null;
+            }
+            fields.add(current.toString());
+            return fields;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.TravelShare.service;
+
+import com.TravelShare.dto.response.CurrencyConversionResponse;
+import com.TravelShare.dto.response.ExpenseReconversionJobResponse;
+import com.TravelShare.dto.response.ExpenseReconversionJobResponse.JobStatus;
+import com.TravelShare.entity.Expense;
+import com.TravelShare.entity.ExpenseSplit;
+import com.TravelShare.entity.Group;
+import com.TravelShare.exception.AppException;
+import com.TravelShare.exception.ErrorCode;
+import com.TravelShare.repository.ExpenseRepository;
+import com.TravelShare.repository.GroupRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Quy đổi lại toàn bộ expense của group sang default currency hiện tại (khi group đổi currency),
+ * dùng tỷ giá tại expenseDate. Chạy nền, duyệt theo từng chunk (keyset theo id), mỗi chunk một transaction,
+ * nên không bao giờ nạp toàn bộ group vào bộ nhớ. Tiến độ được báo qua getJob(); job đã kết thúc
+ * được giữ lại {@link #FINISHED_JOB_RETENTION_HOURS} giờ rồi tự bị xóa.
+ */
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class ExpenseReconversionService {
+    static final int CHUNK_SIZE = 200;
+    static final long FINISHED_JOB_RETENTION_HOURS = 24;
+    static final int MAX_REPORTED_FALLBACKS = 100;
+
+    ExpenseRepository expenseRepository;
+    GroupRepository groupRepository;
+    ExchangeRateService exchangeRateService;
+    BalanceLedgerService balanceLedgerService;
+    SpendingRollupService spendingRollupService;
+    TransactionTemplate transactionTemplate;
+
+    // Job đang chạy không bao giờ hết hạn, job đã xong hết hạn sau một khoảng thời gian kể từ lần ghi cuối
+    Cache<String, ExpenseReconversionJobResponse> jobs = Caffeine.newBuilder()
+            .expireAfter(new Expiry<String, ExpenseReconversionJobResponse>() {
+                @Override
+                public long expireAfterCreate(String jobId, ExpenseReconversionJobResponse job, long currentTime) {
+                    return retention(job);
+                }
+
+                @Override
+                public long expireAfterUpdate(String jobId, ExpenseReconversionJobResponse job, long currentTime,
+                                              long currentDuration) {
+                    return retention(job);
+                }
+
+                @Override
+                public long expireAfterRead(String jobId, ExpenseReconversionJobResponse job, long currentTime,
+                                            long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+    // Một luồng riêng: các job quy đổi chạy tuần tự, không chiếm thread của request
+    ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "expense-reconversion");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private record ChunkResult(int size, Long lastId, int converted, int failed, List<Long> fallbackIds) {
+    }
+
+    public ExpenseReconversionJobResponse startGroupReconversion(Long groupId) {
+        Group group = groupRepository.findById(groupId)
+                .orElseThrow(() -> new AppException(ErrorCode.GROUP_NOT_EXISTED));
+
+        ExpenseReconversionJobResponse job = ExpenseReconversionJobResponse.builder()
+                .jobId(UUID.randomUUID().toString())
+                .groupId(groupId)
+                .targetCurrency(group.getDefaultCurrency().getCode())
+                .status(JobStatus.RUNNING)
+                .totalExpenses(expenseRepository.countByGroupId(groupId))
+                .startedAt(LocalDateTime.now())
+                .build();
+        jobs.put(job.getJobId(), job);
+
+        executor.submit(() -> run(job.getJobId()));
+        return job;
+    }
+
+    public ExpenseReconversionJobResponse getJob(String jobId) {
+        ExpenseReconversionJobResponse job = jobs.getIfPresent(jobId);
+        if (job == null) {
+            throw new AppException(ErrorCode.RECONVERSION_JOB_NOT_FOUND);
+        }
+        return job;
+    }
+
+    private void run(String jobId) {
+        ExpenseReconversionJobResponse job = jobs.getIfPresent(jobId);
+        log.info("Start re-converting expenses of group {} to {}", job.getGroupId(), job.getTargetCurrency());
+        Long groupId = job.getGroupId();
+        try {
+            Long lastId = 0L;
+            while (true) {
+                Long after = lastId;
+                ChunkResult chunk = transactionTemplate.execute(status -> convertChunk(groupId, after));
+                if (chunk == null || chunk.size() == 0) {
+                    break;
+                }
+                lastId = chunk.lastId();
+                job = job.toBuilder()
+                        .processedExpenses(job.getProcessedExpenses() + chunk.size())
+                        .convertedExpenses(job.getConvertedExpenses() + chunk.converted())
+                        .failedExpenses(job.getFailedExpenses() + chunk.failed())
+                        .currentRateFallbackExpenses(job.getCurrentRateFallbackExpenses() + chunk.fallbackIds().size())
+                        .currentRateFallbackExpenseIds(appendFallbacks(job.getCurrentRateFallbackExpenseIds(),
+                                chunk.fallbackIds()))
+                        .build();
+                jobs.put(jobId, job);
+            }
+            jobs.put(jobId, job.toBuilder()
+                    .status(JobStatus.COMPLETED)
+                    .finishedAt(LocalDateTime.now())
+                    .build());
+            log.info("Re-converted {} expenses of group {} ({} failed, {} at current rate)", job.getConvertedExpenses(),
+                    job.getGroupId(), job.getFailedExpenses(), job.getCurrentRateFallbackExpenses());
+        } catch (Exception e) {
+            log.error("Expense re-conversion of group {} failed: {}", job.getGroupId(), e.getMessage(), e);
+            jobs.put(jobId, job.toBuilder()
+                    .status(JobStatus.FAILED)
+                    .errorMessage(e.getMessage())
+                    .finishedAt(LocalDateTime.now())
+                    .build());
+        }
+    }
+
+    private ChunkResult convertChunk(Long groupId, Long afterId) {
+        Group group = groupRepository.findById(groupId)
+                .orElseThrow(() -> new AppException(ErrorCode.GROUP_NOT_EXISTED));
+        String targetCurrency = group.getDefaultCurrency().getCode();
+
+        List<Expense> expenses = expenseRepository.findByGroupIdAndIdGreaterThan(
+                groupId, afterId, PageRequest.of(0, CHUNK_SIZE, Sort.by("id")));
+        if (expenses.isEmpty()) {
+            return new ChunkResult(0, afterId, 0, 0, List.of());
+        }
+
+        int converted = 0;
+        int failed = 0;
+        List<Long> fallbackIds = new ArrayList<>();
+        for (Expense expense : expenses) {
+            // Đã ở currency đích (vd: expense tạo sau khi group đổi currency)
+            if (targetCurrency.equals(expense.getConvertedCurrency().getCode())) {
+                continue;
+            }
+
+            CurrencyConversionResponse conversion = exchangeRateService.convertAmount(
+                    expense.getOriginalAmount(),
+                    expense.getOriginalCurrency().getCode(),
+                    targetCurrency,
+                    expense.getExpenseDate());
+            if (!conversion.isSuccess()) {
+                log.warn("Cannot re-convert expense {}: {}", expense.getId(), conversion.getErrorMessage());
+                failed++;
+                continue;
+            }
+            if (conversion.isHistoricalFallback()) {
+                log.warn("No historical rate for expense {} on {}, re-converted at the current rate",
+                        expense.getId(), expense.getExpenseDate());
+                fallbackIds.add(expense.getId());
+            }
+
+            Map<Long, BigDecimal> previousContributions = balanceLedgerService.contributionsOf(expense);
+            SpendingRollupService.Contribution previousSpending = SpendingRollupService.Contribution.of(expense);
+            BigDecimal previousAmount = expense.getConvertedAmount();
+            BigDecimal newAmount = conversion.getConvertedAmount().setScale(2, RoundingMode.HALF_UP);
+
+            expense.setConvertedAmount(newAmount);
+            expense.setConvertedCurrency(group.getDefaultCurrency());
+            expense.setExchangeRate(conversion.getExchangeRate());
+            expense.setExchangeRateDate(conversion.getTimestamp());
+            rescaleSplits(expense, previousAmount, newAmount);
+
+            balanceLedgerService.recordExpenseUpdated(previousContributions, expense);
+            spendingRollupService.recordExpenseUpdated(previousSpending, expense);
+            converted++;
+        }
+        return new ChunkResult(expenses.size(), expenses.get(expenses.size() - 1).getId(), converted, failed,
+                fallbackIds);
+    }
+
+    /**
+     * Giữ nguyên tỷ lệ chia giữa các participant, chỉ đổi đơn vị tiền. Mỗi split được làm tròn riêng,
+     * phần chênh lệch do làm tròn được dồn vào split của người trả (hoặc split lớn nhất nếu người trả
+     * không nằm trong danh sách chia), để tổng các split luôn bằng đúng newAmount.
+     */
+    private void rescaleSplits(Expense expense, BigDecimal previousAmount, BigDecimal newAmount) {
+        if (expense.getSplits() == null || expense.getSplits().isEmpty()) {
+            return;
+        }
+        BigDecimal total = BigDecimal.ZERO;
+        ExpenseSplit remainderHolder = null;
+        for (ExpenseSplit split : expense.getSplits()) {
+            if (previousAmount.signum() > 0) {
+                split.setAmount(split.getAmount().multiply(newAmount)
+                        .divide(previousAmount, 2, RoundingMode.HALF_UP));
+            } else if (split.getPercentage() != null) {
+                split.setAmount(newAmount.multiply(split.getPercentage())
+                        .divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP));
+            }
+            total = total.add(split.getAmount());
+            if (remainderHolder == null || (split.isPayer() && !remainderHolder.isPayer())
+                    || (split.isPayer() == remainderHolder.isPayer()
+                    && split.getAmount().compareTo(remainderHolder.getAmount()) > 0)) {
+                remainderHolder = split;
+            }
+        }
+
+        BigDecimal remainder = newAmount.subtract(total);
+        if (remainder.signum() != 0) {
+            remainderHolder.setAmount(remainderHolder.getAmount().add(remainder));
+        }
+    }
+
+    private static List<Long> appendFallbacks(List<Long> reported, List<Long> fallbackIds) {
+        List<Long> ids = reported != null ? new ArrayList<>(reported) : new ArrayList<>();
+        fallbackIds.stream()
+                .limit(Math.max(0, MAX_REPORTED_FALLBACKS - ids.size()))
+                .forEach(ids::add);
+        return ids.isEmpty() ? null : ids;
+    }
+
+    private static long retention(ExpenseReconversionJobResponse job) {
+        return job.getStatus() == JobStatus.RUNNING
+                ? Long.MAX_VALUE
+                : TimeUnit.HOURS.toNanos(FINISHED_JOB_RETENTION_HOURS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
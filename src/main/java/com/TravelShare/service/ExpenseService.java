@@ -5,6 +5,7 @@ import com.TravelShare.dto.request.ExpenseSplitCreationRequest;
 import com.TravelShare.dto.request.ExpenseSplitUpdateRequest;
 import com.TravelShare.dto.request.ExpenseUpdateRequest;
 import com.TravelShare.dto.response.CurrencyConversionResponse;
+import com.TravelShare.dto.response.ExpensePageResponse;
 import com.TravelShare.dto.response.ExpenseResponse;
 import com.TravelShare.dto.response.UserExpenseSummaryResponse;
 import com.TravelShare.entity.*;
@@ -23,11 +24,16 @@ import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
@@ -38,6 +44,8 @@ import java.util.stream.Collectors;
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 @Slf4j
 public class ExpenseService {
+    static final int MAX_PAGE_SIZE = 100;
+
     ExpenseMapper expenseMapper;
     ExpenseRepository expenseRepository;
     UserRepository userRepository;
@@ -48,6 +56,7 @@ public class ExpenseService {
     MediaRepository mediaRepository;
     ApplicationEventPublisher eventPublisher;
     ExchangeRateService exchangeRateService;
+    BalanceLedgerService balanceLedgerService;
 
     public ExpenseResponse getExpense(Long expenseId) {
         return expenseMapper.toExpenseResponse(expenseRepository
@@ -67,6 +76,63 @@ public class ExpenseService {
                 .map(expenseMapper::toExpenseResponse).toList();
     }
 
+    /**
+     * Expense của group phân trang keyset theo (expenseDate, id) giảm dần.
+     * cursor là giá trị nextCursor của trang trước, null để lấy trang đầu.
+     * Mỗi trang chạy số câu lệnh cố định: group (2), id của trang, expense kèm splits / participant, attachments;
+     * không phụ thuộc số expense hay số split.
+     */
+    @Transactional
+    public ExpensePageResponse getExpensePageByGroupId(Long groupId, String cursor, int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        PageCursor position = cursor == null || cursor.isBlank() ? PageCursor.START : decodeCursor(cursor);
+
+        // Nạp group trước để expense.getGroup() trỏ vào entity đã đầy đủ trong persistence context
+        groupRepository.findByIdForExpenseListing(groupId)
+                .orElseThrow(() -> new AppException(ErrorCode.GROUP_NOT_EXISTED));
+        groupRepository.findByIdWithImages(groupId);
+
+        // Lấy dư một id để biết còn trang sau hay không
+        List<Long> ids = expenseRepository.findPageIdsByGroupId(
+                groupId, position.expenseDate(), position.id(), Limit.of(pageSize + 1));
+        boolean hasMore = ids.size() > pageSize;
+        List<Long> pageIds = hasMore ? ids.subList(0, pageSize) : ids;
+        if (pageIds.isEmpty()) {
+            return ExpensePageResponse.builder().items(List.of()).hasMore(false).build();
+        }
+
+        Map<Long, Expense> expenses = expenseRepository.findAllWithSplitsByIdIn(pageIds).stream()
+                .collect(Collectors.toMap(Expense::getId, expense -> expense));
+        expenseRepository.findAllWithAttachmentsByIdIn(pageIds);
+
+        List<Expense> page = pageIds.stream().map(expenses::get).toList();
+        return ExpensePageResponse.builder()
+                .items(page.stream().map(expenseMapper::toExpenseResponse).toList())
+                .hasMore(hasMore)
+                .nextCursor(hasMore ? encodeCursor(page.get(page.size() - 1)) : null)
+                .build();
+    }
+
+    private static String encodeCursor(Expense expense) {
+        String raw = expense.getExpenseDate() + "_" + expense.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static PageCursor decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('_');
+            return new PageCursor(LocalDate.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (RuntimeException ex) {
+            throw new AppException(ErrorCode.INVALID_CURSOR);
+        }
+    }
+
+    private record PageCursor(LocalDate expenseDate, Long id) {
+        static final PageCursor START = new PageCursor(LocalDate.of(9999, 12, 31), Long.MAX_VALUE);
+    }
+
     private Specification<Expense> expenseFilterSpec(
             String userId,
             LocalDate startDate,
@@ -95,38 +161,65 @@ public class ExpenseService {
         };
     }
 
+    /**
+     * Tổng chi của user được tính bằng SUM ... GROUP BY currency gốc trong DB, không nạp expense nào.
+     * Danh sách chi tiết là phần tùy chọn, phân trang riêng (includeExpenses=true).
+     */
+    @Transactional
     public UserExpenseSummaryResponse getUserExpenseSummary(
             String userId,
             LocalDate startDate,
             LocalDate endDate,
             Long groupId,
-            Long categoryId
+            Long categoryId,
+            boolean includeExpenses,
+            int page,
+            int size
     ) {
-        Specification<Expense> spec = expenseFilterSpec(userId, startDate, endDate, groupId, categoryId);
-        List<Expense> expenses = expenseRepository.findAll(spec);
-
-        // Calculate multi-currency totals by original currency (what user actually spent)
-        Map<String, BigDecimal> totalsByOriginalCurrency = expenses.stream()
-                .collect(Collectors.groupingBy(
-                        expense -> expense.getOriginalCurrency().getCode(),
-                        Collectors.reducing(
-                                BigDecimal.ZERO,
-                                Expense::getOriginalAmount,
-                                BigDecimal::add
-                        )
-                ));
-
-        // Calculate overall total using converted amounts (for meaningful comparison)
-        // This represents total spending in a unified currency base
-        BigDecimal total = expenses.stream()
-                .map(Expense::getConvertedAmount)
+        List<ExpenseRepository.CurrencySpending> spending = expenseRepository.sumUserExpensesByCurrency(
+                userId, startDate, endDate, groupId, categoryId);
+
+        // Multi-currency totals by original currency (what user actually spent)
+        Map<String, BigDecimal> totalsByOriginalCurrency = spending.stream()
+                .collect(Collectors.toMap(
+                        ExpenseRepository.CurrencySpending::getCurrencyCode,
+                        ExpenseRepository.CurrencySpending::getOriginalTotal));
+
+        // Overall total using converted amounts (for meaningful comparison)
+        BigDecimal total = spending.stream()
+                .map(ExpenseRepository.CurrencySpending::getConvertedTotal)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
+        long expenseCount = spending.stream()
+                .mapToLong(ExpenseRepository.CurrencySpending::getExpenseCount)
+                .sum();
+
+        UserExpenseSummaryResponse.UserExpenseSummaryResponseBuilder summary = UserExpenseSummaryResponse.builder()
+                .total(total)
+                .totalsByOriginalCurrency(totalsByOriginalCurrency)
+                .expenseCount(expenseCount);
+        if (!includeExpenses) {
+            return summary.build();
+        }
 
-        List<ExpenseResponse> expenseResponses = expenses.stream()
-                .map(expenseMapper::toExpenseResponse)
-                .collect(Collectors.toList());
+        Specification<Expense> spec = expenseFilterSpec(userId, startDate, endDate, groupId, categoryId);
+        Page<Expense> expenses = expenseRepository.findAll(spec, PageRequest.of(Math.max(page, 0),
+                Math.min(Math.max(size, 1), MAX_PAGE_SIZE),
+                Sort.by(Sort.Order.desc("expenseDate"), Sort.Order.desc("id"))));
+
+        // Nạp splits / attachments của cả trang một lần trước khi map
+        List<Long> ids = expenses.map(Expense::getId).getContent();
+        if (!ids.isEmpty()) {
+            expenseRepository.findAllWithSplitsByIdIn(ids);
+            expenseRepository.findAllWithAttachmentsByIdIn(ids);
+        }
 
-        return new UserExpenseSummaryResponse(total, totalsByOriginalCurrency, expenseResponses);
+        return summary
+                .expenses(expenses.map(expenseMapper::toExpenseResponse).getContent())
+                .page(expenses.getNumber())
+                .size(expenses.getSize())
+                .totalElements(expenses.getTotalElements())
+                .totalPages(expenses.getTotalPages())
+                .build();
     }
 
     @Transactional
@@ -176,16 +269,18 @@ public class ExpenseService {
         // Handle currency conversion
         if (!expense.getOriginalCurrency().equals(expense.getConvertedCurrency())) {
             try {
+                // Use the rate in effect on the expense date, not today's rate
                 CurrencyConversionResponse conversionResponse = exchangeRateService.convertAmount(
                         expense.getOriginalAmount(),
                         expense.getOriginalCurrency().getCode(),
-                        expense.getConvertedCurrency().getCode()
+                        expense.getConvertedCurrency().getCode(),
+                        expense.getExpenseDate()
                 );
 
                 // Check if conversion was successful
                 if (conversionResponse.isSuccess()) {
                     expense.setExchangeRate(conversionResponse.getExchangeRate());
-                    expense.setExchangeRateDate(LocalDateTime.now());
+                    expense.setExchangeRateDate(conversionResponse.getTimestamp());
                     expense.setConvertedAmount(conversionResponse.getConvertedAmount().setScale(2, RoundingMode.HALF_UP));
                 } else {
                     // Fallback: use original amount as converted amount
@@ -229,6 +324,7 @@ public class ExpenseService {
         }
 
         expenseRepository.save(expense);
+        balanceLedgerService.recordExpenseCreated(expense);
 
         eventPublisher.publishEvent(new ExpenseCreatedEvent(this, expense, user));
         return expenseMapper.toExpenseResponse(expense);
@@ -303,6 +399,9 @@ public class ExpenseService {
         if (expense.getIsLocked() != null && expense.getIsLocked()) {
             throw new AppException(ErrorCode.EXPENSE_LOCKED);
         }
+        // Snapshot phần đóng góp vào số dư trước khi sửa để ghi delta vào sổ cái
+        Map<Long, BigDecimal> previousContributions = balanceLedgerService.contributionsOf(expense);
+        SpendingRollupService.Contribution previousSpending = SpendingRollupService.Contribution.of(expense);
         expenseMapper.updateExpense(expense, request);
 
         if(request.getParticipantId() != null){
@@ -380,7 +479,8 @@ public class ExpenseService {
             }
         }
         Expense expenseSaved = expenseRepository.save(expense);
-        eventPublisher.publishEvent(new ExpenseUpdatedEvent(this, expenseSaved, expenseSaved.getCreatedBy()));
+        balanceLedgerService.recordExpenseUpdated(previousContributions, expenseSaved);
+        eventPublisher.publishEvent(new ExpenseUpdatedEvent(this, expenseSaved, expenseSaved.getCreatedBy(), previousSpending));
         return expenseMapper.toExpenseResponse(expenseSaved);
     }
 
@@ -390,13 +490,14 @@ public class ExpenseService {
                 CurrencyConversionResponse conversionResponse = exchangeRateService.convertAmount(
                         expense.getOriginalAmount(),
                         expense.getOriginalCurrency().getCode(),
-                        expense.getGroup().getDefaultCurrency().getCode()
+                        expense.getGroup().getDefaultCurrency().getCode(),
+                        expense.getExpenseDate()
                 );
 
                 if (conversionResponse.isSuccess()) {
                     expense.setConvertedCurrency(expense.getGroup().getDefaultCurrency());
                     expense.setExchangeRate(conversionResponse.getExchangeRate());
-                    expense.setExchangeRateDate(LocalDateTime.now());
+                    expense.setExchangeRateDate(conversionResponse.getTimestamp());
                     expense.setConvertedAmount(conversionResponse.getConvertedAmount().setScale(2, RoundingMode.HALF_UP));
                 } else {
                     log.warn("Currency conversion failed during update: {}", conversionResponse.getErrorMessage());
@@ -492,6 +593,7 @@ public class ExpenseService {
         split.setPayer(isPayer);
     }
 
+    @Transactional
     public void deleteExpense(Long expenseId) {
         Expense expense = expenseRepository.findById(expenseId)
                 .orElseThrow(() -> new AppException(ErrorCode.EXPENSE_NOT_EXISTED));
@@ -499,6 +601,7 @@ public class ExpenseService {
         if (expense.getIsLocked() != null && expense.getIsLocked()) {
             throw new AppException(ErrorCode.EXPENSE_LOCKED);
         }
+        balanceLedgerService.recordExpenseDeleted(expense);
         expenseRepository.deleteById(expenseId);
         eventPublisher.publishEvent(new ExpenseDeletedEvent(this, expense, expense.getCreatedBy()));
     }
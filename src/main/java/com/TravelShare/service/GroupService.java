@@ -11,6 +11,7 @@ import com.TravelShare.repository.CategoryRepository;
 import com.TravelShare.repository.CurrencyRepository;
 import com.TravelShare.repository.GroupParticipantRepository;
 import com.TravelShare.repository.GroupRepository;
+import com.TravelShare.repository.SettlementRepository;
 import com.TravelShare.repository.UserRepository;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
@@ -37,9 +38,11 @@ public class GroupService {
     final CurrencyRepository currencyRepository;
     final GroupParticipantRepository groupParticipantRepository;
     final CategoryRepository categoryRepository;
+    final SettlementRepository settlementRepository;
     final ApplicationEventPublisher eventPublisher;
     final RequestService  requestService;
     final EmailService emailService;
+    final ExpenseReconversionService expenseReconversionService;
 
     @Value("${app.invitation.base-url}")
     private String invitationBaseUrl;
@@ -300,9 +303,25 @@ public class GroupService {
         if(request.getCategoryId() != null)
         group.setCategory(categoryRepository.findById(request.getCategoryId()
                 ).orElseThrow(() -> new AppException(ErrorCode.CATEGORY_NOT_EXISTED)));
+        boolean currencyChanged = false;
+        if (request.getDefaultCurrency() != null
+                && !request.getDefaultCurrency().equalsIgnoreCase(group.getDefaultCurrency().getCode())) {
+            // Chỉ expense được quy đổi lại; settlement vẫn giữ số tiền theo currency cũ trong sổ cái
+            if (settlementRepository.existsByGroupIdAndStatusIn(groupId,
+                    List.of(Settlement.SettlementStatus.PENDING, Settlement.SettlementStatus.COMPLETED))) {
+                throw new AppException(ErrorCode.GROUP_CURRENCY_LOCKED);
+            }
+            group.setDefaultCurrency(currencyRepository.findByCode(request.getDefaultCurrency().toUpperCase())
+                    .orElseThrow(() -> new AppException(ErrorCode.CURRENCY_NOT_EXISTED)));
+            currencyChanged = true;
+        }
         groupMapper.updateGroup(group, request);
         eventPublisher.publishEvent(new GroupUpdatedEvent(this, group, user));
-        return groupMapper.toGroupResponse(groupRepository.save(group));
+        GroupResponse response = groupMapper.toGroupResponse(groupRepository.save(group));
+        if (currencyChanged) {
+            expenseReconversionService.startGroupReconversion(groupId);
+        }
+        return response;
     }
 
     public void deleteGroup(Long groupId) {
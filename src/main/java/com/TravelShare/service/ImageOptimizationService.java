@@ -1,13 +1,24 @@
 package com.TravelShare.service;
 
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.ChecksumException;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.FormatException;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.client.j2se.BufferedImageLuminanceSource;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
 import javax.imageio.stream.ImageOutputStream;
 import java.awt.*;
 import java.awt.image.BufferedImage;
@@ -15,8 +26,12 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.Map;
 
 @Service
 @Slf4j
@@ -25,40 +40,48 @@ public class ImageOptimizationService {
     private static final int MAX_WIDTH = 1920;
     private static final int MAX_HEIGHT = 1080;
     private static final float COMPRESSION_QUALITY = 0.8f;
-    private static final long MAX_FILE_SIZE = 5 * 1024 * 1024; // 5MB
+    static final long MAX_FILE_SIZE = 5 * 1024 * 1024; // 5MB
+    private static final int DHASH_COLUMNS = 9;
+    private static final int DHASH_ROWS = 8;
+    private static final Map<DecodeHintType, Object> QR_HINTS = Map.of(
+            DecodeHintType.TRY_HARDER, Boolean.TRUE,
+            DecodeHintType.CHARACTER_SET, "UTF-8");
 
     /**
      * Tối ưu hóa hình ảnh: resize và compress
      */
     public OptimizedImage optimizeImage(MultipartFile file) throws IOException {
         try {
-            // Đọc ảnh gốc
-            BufferedImage originalImage = ImageIO.read(file.getInputStream());
+            // Đọc ảnh gốc, giải mã thưa (subsampling) ngay từ đầu nếu ảnh lớn hơn nhiều so với kích thước đích
+            BufferedImage originalImage;
+            try (InputStream input = file.getInputStream()) {
+                originalImage = readScaled(input, MAX_WIDTH, MAX_HEIGHT);
+            }
             if (originalImage == null) {
                 throw new IOException("Không thể đọc file ảnh");
             }
 
-            log.info("Original image: {}x{}, size: {} bytes", 
+            log.info("Decoded image: {}x{}, size: {} bytes", 
                     originalImage.getWidth(), originalImage.getHeight(), file.getSize());
 
             // Resize nếu cần
             BufferedImage resizedImage = resizeIfNeeded(originalImage);
             
-            // Compress ảnh
-            byte[] optimizedBytes = compressImage(resizedImage, COMPRESSION_QUALITY);
-            
-            // Tạo InputStream từ optimized bytes
-            InputStream optimizedStream = new ByteArrayInputStream(optimizedBytes);
+            // Compress ảnh thẳng vào buffer, rồi đọc lại từ chính buffer đó (không copy thêm)
+            ExposedByteArrayOutputStream output = new ExposedByteArrayOutputStream(
+                    resizedImage.getWidth() * resizedImage.getHeight() / 4);
+            writeJpeg(resizedImage, COMPRESSION_QUALITY, output);
             
             // Tạo cache key
-            String cacheKey = generateCacheKey(optimizedBytes);
+            String cacheKey = generateCacheKey(output.buffer(), output.size());
             
             log.info("Optimized image: {}x{}, size: {} bytes (reduced by {}%)", 
                     resizedImage.getWidth(), resizedImage.getHeight(), 
-                    optimizedBytes.length, 
-                    ((file.getSize() - optimizedBytes.length) * 100 / file.getSize()));
+                    output.size(), 
+                    ((file.getSize() - output.size()) * 100 / file.getSize()));
 
-            return new OptimizedImage(optimizedStream, optimizedBytes.length, cacheKey);
+            return new OptimizedImage(output.toInputStream(), output.size(), cacheKey,
+                    perceptualHash(resizedImage), decodeQrCode(resizedImage));
             
         } catch (Exception e) {
             log.error("Error optimizing image: {}", e.getMessage());
@@ -66,46 +89,122 @@ public class ImageOptimizationService {
         }
     }
 
+    /**
+     * Giải mã ảnh từ file với subsampling vừa đủ cho khung maxWidth x maxHeight
+     */
+    public BufferedImage readScaled(Path path, int maxWidth, int maxHeight) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(path.toFile())) {
+            return readScaled(input, maxWidth, maxHeight);
+        }
+    }
+
+    /**
+     * Giải mã ảnh với subsampling vừa đủ cho khung maxWidth x maxHeight.
+     * Đọc kích thước từ header trước, nên ảnh 48MP không bao giờ được giải mã ở độ phân giải đầy đủ.
+     * Trả về null nếu không có ImageReader nào đọc được định dạng này.
+     */
+    public BufferedImage readScaled(InputStream stream, int maxWidth, int maxHeight) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(stream)) {
+            return readScaled(input, maxWidth, maxHeight);
+        }
+    }
+
+    private BufferedImage readScaled(ImageInputStream input, int maxWidth, int maxHeight) throws IOException {
+        if (input == null) {
+            return null;
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            return null;
+        }
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(input, true, true);
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+
+            ImageReadParam param = reader.getDefaultReadParam();
+            int subsampling = subsamplingFor(width, height, maxWidth, maxHeight);
+            if (subsampling > 1) {
+                log.info("Decoding {}x{} image with subsampling {}", width, height, subsampling);
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            }
+            return reader.read(0, param);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Hệ số subsampling lớn nhất mà ảnh giải mã vẫn không nhỏ hơn kích thước đích,
+     * để bước resize sau đó vẫn giữ được chất lượng
+     */
+    static int subsamplingFor(int width, int height, int maxWidth, int maxHeight) {
+        double scale = Math.min((double) maxWidth / width, (double) maxHeight / height);
+        if (scale >= 1) {
+            return 1;
+        }
+        return Math.max(1, (int) Math.floor(1 / scale));
+    }
+
     /**
      * Resize ảnh nếu vượt quá kích thước tối đa
      */
     private BufferedImage resizeIfNeeded(BufferedImage original) {
+        return resizeToFit(original, MAX_WIDTH, MAX_HEIGHT);
+    }
+
+    /**
+     * Thu nhỏ ảnh cho vừa khung maxWidth x maxHeight, giữ nguyên tỷ lệ. Ảnh đã nhỏ hơn khung thì trả về nguyên bản.
+     */
+    public BufferedImage resizeToFit(BufferedImage original, int maxWidth, int maxHeight) {
         int width = original.getWidth();
         int height = original.getHeight();
         
         // Kiểm tra xem có cần resize không
-        if (width <= MAX_WIDTH && height <= MAX_HEIGHT) {
+        if (width <= maxWidth && height <= maxHeight) {
             return original;
         }
         
         // Tính toán kích thước mới giữ nguyên tỷ lệ
-        double scale = Math.min((double) MAX_WIDTH / width, (double) MAX_HEIGHT / height);
-        int newWidth = (int) (width * scale);
-        int newHeight = (int) (height * scale);
+        double scale = Math.min((double) maxWidth / width, (double) maxHeight / height);
+        int newWidth = Math.max(1, (int) (width * scale));
+        int newHeight = Math.max(1, (int) (height * scale));
         
         log.info("Resizing from {}x{} to {}x{}", width, height, newWidth, newHeight);
         
+        // Thu nhỏ nhiều bước, mỗi bước một nửa (bilinear), để tránh răng cưa khi tỷ lệ thu nhỏ lớn
+        // mà không tốn như một lần bicubic trên ảnh gốc
+        BufferedImage current = original;
+        while (current.getWidth() / 2 >= newWidth && current.getHeight() / 2 >= newHeight) {
+            current = draw(current, current.getWidth() / 2, current.getHeight() / 2,
+                    RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        }
+        
+        // Bước cuối về đúng kích thước với bicubic
+        return draw(current, newWidth, newHeight, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+    }
+
+    private BufferedImage draw(BufferedImage source, int width, int height, Object interpolation) {
         // Tạo ảnh mới với kích thước đã resize
-        BufferedImage resized = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_RGB);
+        BufferedImage resized = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
         Graphics2D g = resized.createGraphics();
         
         // Cải thiện chất lượng render
-        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
         g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
         g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         
-        g.drawImage(original, 0, 0, newWidth, newHeight, null);
+        g.drawImage(source, 0, 0, width, height, null);
         g.dispose();
         
         return resized;
     }
 
     /**
-     * Compress ảnh với chất lượng được chỉ định
+     * Ghi ảnh dạng JPEG với chất lượng được chỉ định ra output
      */
-    private byte[] compressImage(BufferedImage image, float quality) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        
+    public void writeJpeg(BufferedImage image, float quality, OutputStream output) throws IOException {
         // Lấy ImageWriter cho JPEG
         ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
         ImageWriteParam param = writer.getDefaultWriteParam();
@@ -115,24 +214,75 @@ public class ImageOptimizationService {
         param.setCompressionQuality(quality);
         
         // Ghi ảnh
-        ImageOutputStream ios = ImageIO.createImageOutputStream(baos);
-        writer.setOutput(ios);
-        writer.write(null, new IIOImage(image, null, null), param);
-        
-        // Cleanup
-        writer.dispose();
-        ios.close();
-        
-        return baos.toByteArray();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            // Cleanup
+            writer.dispose();
+        }
+    }
+
+    /**
+     * dHash 64 bit: chia ảnh thành lưới 9x8 ô, lấy độ sáng trung bình mỗi ô và so sánh hai ô liền kề theo hàng.
+     * Ảnh chụp lại cùng một hóa đơn (khác độ nén, độ sáng, kích thước) cho hash chỉ lệch vài bit.
+     */
+    public long perceptualHash(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double[][] luminance = new double[DHASH_ROWS][DHASH_COLUMNS];
+        int[][] counts = new int[DHASH_ROWS][DHASH_COLUMNS];
+
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int cellY = y * DHASH_ROWS / height;
+            for (int x = 0; x < width; x++) {
+                int cellX = x * DHASH_COLUMNS / width;
+                int rgb = row[x];
+                int r = (rgb >> 16) & 0xFF;
+                int g = (rgb >> 8) & 0xFF;
+                int b = rgb & 0xFF;
+                luminance[cellY][cellX] += 0.299 * r + 0.587 * g + 0.114 * b;
+                counts[cellY][cellX]++;
+            }
+        }
+
+        long hash = 0;
+        for (int y = 0; y < DHASH_ROWS; y++) {
+            for (int x = 0; x < DHASH_COLUMNS - 1; x++) {
+                double left = luminance[y][x] / Math.max(1, counts[y][x]);
+                double right = luminance[y][x + 1] / Math.max(1, counts[y][x + 1]);
+                hash = (hash << 1) | (left > right ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Đọc mã QR in trên hóa đơn (VietQR, hóa đơn điện tử...). Trả về null nếu ảnh không có QR đọc được.
+     */
+    public String decodeQrCode(BufferedImage image) {
+        try {
+            BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(new BufferedImageLuminanceSource(image)));
+            return new QRCodeReader().decode(bitmap, QR_HINTS).getText();
+        } catch (NotFoundException | ChecksumException | FormatException e) {
+            return null;
+        }
     }
 
     /**
      * Tạo cache key từ nội dung ảnh
      */
     public String generateCacheKey(byte[] imageBytes) {
+        return generateCacheKey(imageBytes, imageBytes.length);
+    }
+
+    private String generateCacheKey(byte[] imageBytes, int length) {
         try {
             MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] hashBytes = md.digest(imageBytes);
+            md.update(imageBytes, 0, length);
+            byte[] hashBytes = md.digest();
             
             StringBuilder sb = new StringBuilder();
             for (byte b : hashBytes) {
@@ -143,7 +293,7 @@ public class ImageOptimizationService {
         } catch (NoSuchAlgorithmException e) {
             log.error("Error generating cache key", e);
             // Fallback: sử dụng hashCode
-            return String.valueOf(java.util.Arrays.hashCode(imageBytes));
+            return String.valueOf(java.util.Arrays.hashCode(java.util.Arrays.copyOf(imageBytes, length)));
         }
     }
 
@@ -166,6 +316,23 @@ public class ImageOptimizationService {
         return file.getSize() <= MAX_FILE_SIZE;
     }
 
+    /**
+     * ByteArrayOutputStream cho phép đọc lại buffer nội bộ mà không copy
+     */
+    private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+        ExposedByteArrayOutputStream(int initialSize) {
+            super(Math.max(initialSize, 32 * 1024));
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+
+        InputStream toInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+
     /**
      * Class để chứa ảnh đã tối ưu
      */
@@ -173,11 +340,16 @@ public class ImageOptimizationService {
         private final InputStream imageStream;
         private final long size;
         private final String cacheKey;
+        private final long perceptualHash;
+        private final String qrPayload;
 
-        public OptimizedImage(InputStream imageStream, long size, String cacheKey) {
+        public OptimizedImage(InputStream imageStream, long size, String cacheKey, long perceptualHash,
+                              String qrPayload) {
             this.imageStream = imageStream;
             this.size = size;
             this.cacheKey = cacheKey;
+            this.perceptualHash = perceptualHash;
+            this.qrPayload = qrPayload;
         }
 
         public InputStream getImageStream() {
@@ -191,5 +363,13 @@ public class ImageOptimizationService {
         public String getCacheKey() {
             return cacheKey;
         }
+
+        public long getPerceptualHash() {
+            return perceptualHash;
+        }
+
+        public String getQrPayload() {
+            return qrPayload;
+        }
     }
 } 
\ No newline at end of file
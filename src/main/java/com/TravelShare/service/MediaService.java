@@ -14,9 +14,13 @@ import com.TravelShare.repository.GroupRepository;
 import com.TravelShare.repository.MediaRepository;
 import com.TravelShare.repository.UserRepository;
 import org.springframework.context.ApplicationEventPublisher;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
@@ -28,253 +32,143 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @RequiredArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Slf4j
 public class MediaService {
+    static final long SENDFILE_THRESHOLD = 48 * 1024;
+    static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
     final MediaRepository mediaRepository;
     final UserRepository userRepository;
     final MediaMapper mediaMapper;
     final GroupRepository groupRepository;
     final ExpenseRepository expenseRepository;
     final ApplicationEventPublisher eventPublisher;
-
-    @Value("${app.file.storage-dir}")
-    private String storageDir;
+    final MediaStorageService mediaStorageService;
+    final MediaVariantService mediaVariantService;
 
     @Value("${app.file.download-prefix}")
     private String urlPrefix;
 
     @Transactional
     public MediaResponse uploadMedia(MultipartFile file, String description) {
-        try {
-            String username = SecurityContextHolder.getContext().getAuthentication().getName();
-            User currentUser = userRepository.findByUsername(username)
-                    .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
-
-            Path uploadPath = Paths.get(storageDir);
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
-            }
-
-            // Generate unique filename
-            String originalFilename = file.getOriginalFilename();
-            String fileExtension = StringUtils.getFilenameExtension(originalFilename);
-            String uniqueFilename = UUID.randomUUID().toString() + (fileExtension != null ? "." + fileExtension : "");
-
-            //Store file
-            Path filePath = uploadPath.resolve(uniqueFilename).normalize().toAbsolutePath();
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-
-
-            // Determine media type from content type
-            Media.MediaType mediaType = determineMediaType(file.getContentType());
-
-            // Create and save media entity
-            Media media = Media.builder()
-                    .fileName(uniqueFilename)
-                    .originalFileName(originalFilename)
-                    .contentType(file.getContentType())
-                    .mediaType(mediaType)
-                    .fileSize(file.getSize())
-                    .filePath(filePath.toString())
-                    .fileUrl(urlPrefix + uniqueFilename)
-                    .description(description)
-                    .uploadedAt(LocalDateTime.now())
-                    .uploadedBy(currentUser)
-                    .build();
-            media = mediaRepository.save(media);
-            eventPublisher.publishEvent(new MediaUploadedEvent(this, media, currentUser));
-            return mediaMapper.toMediaResponse(media);
-
-        } catch (IOException e) {
-            log.error("Failed to store file", e);
-            throw new AppException(ErrorCode.FILE_UPLOAD_FAILED);
-        }
+        User currentUser = getCurrentUser();
+        return storeMedia(file, description, currentUser, Media.builder());
     }
+
     @Transactional
     public MediaResponse uploadGroupMedia (MultipartFile file, Long groupId, String description){
-        try {
-            String username = SecurityContextHolder.getContext().getAuthentication().getName();
-            User currentUser = userRepository.findByUsername(username)
-                    .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
-            Group group = groupRepository.findById(groupId)
-                    .orElseThrow(() -> new AppException(ErrorCode.GROUP_NOT_EXISTED));
-            Path uploadPath = Paths.get(storageDir);
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
-            }
-
-            // Generate unique filename
-            String originalFilename = file.getOriginalFilename();
-            String fileExtension = StringUtils.getFilenameExtension(originalFilename);
-            String uniqueFilename = UUID.randomUUID().toString() + (fileExtension != null ? "." + fileExtension : "");
-
-            //Store file
-            Path filePath = uploadPath.resolve(uniqueFilename).normalize().toAbsolutePath();
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-
-            Media.MediaType mediaType = determineMediaType(file.getContentType());
-            // Create and save media entity
-            Media media = Media.builder()
-                    .fileName(uniqueFilename)
-                    .originalFileName(originalFilename)
-                    .contentType(file.getContentType())
-                    .mediaType(mediaType)
-                    .fileSize(file.getSize())
-                    .group(group)
-                    .filePath(filePath.toString())
-                    .fileUrl(urlPrefix + uniqueFilename)
-                    .description(description)
-                    .uploadedAt(LocalDateTime.now())
-                    .uploadedBy(currentUser)
-                    .build();
-            media = mediaRepository.save(media);
-            eventPublisher.publishEvent(new MediaUploadedEvent(this, media, currentUser));
-            return mediaMapper.toMediaResponse(media);
-        }
-        catch (IOException e) {
-            log.error("Failed to store file", e);
-            throw new AppException(ErrorCode.FILE_UPLOAD_FAILED);
-        }
+        User currentUser = getCurrentUser();
+        Group group = groupRepository.findById(groupId)
+                .orElseThrow(() -> new AppException(ErrorCode.GROUP_NOT_EXISTED));
+        return storeMedia(file, description, currentUser, Media.builder().group(group));
     }
 
     @Transactional
     public MediaResponse uploadExpenseMedia (MultipartFile file, Long expenseId, String description) {
-        try {
-            String username = SecurityContextHolder.getContext().getAuthentication().getName();
-            User currentUser = userRepository.findByUsername(username)
-                    .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
-            Expense expense = expenseRepository.findById(expenseId)
-                    .orElseThrow(() -> new AppException(ErrorCode.EXPENSE_NOT_EXISTED));
-            Path uploadPath = Paths.get(storageDir);
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
-            }
-
-            // Generate unique filename
-            String originalFilename = file.getOriginalFilename();
-            String fileExtension = StringUtils.getFilenameExtension(originalFilename);
-            String uniqueFilename = UUID.randomUUID().toString() + (fileExtension != null ? "." + fileExtension : "");
-
-            //Store file
-            Path filePath = uploadPath.resolve(uniqueFilename).normalize().toAbsolutePath();
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-
-            Media.MediaType mediaType = determineMediaType(file.getContentType());
-            // Create and save media entity
-            Media media = Media.builder()
-                    .fileName(uniqueFilename)
-                    .originalFileName(originalFilename)
-                    .contentType(file.getContentType())
-                    .mediaType(mediaType)
-                    .fileSize(file.getSize())
-                    .expense(expense)
-                    .filePath(filePath.toString())
-                    .fileUrl(urlPrefix + uniqueFilename)
-                    .description(description)
-                    .uploadedAt(LocalDateTime.now())
-                    .uploadedBy(currentUser)
-                    .build();
-            media = mediaRepository.save(media);
-
-            return mediaMapper.toMediaResponse(media);
-        }
-        catch (IOException e) {
-            log.error("Failed to store file", e);
-            throw new AppException(ErrorCode.FILE_UPLOAD_FAILED);
-        }
+        User currentUser = getCurrentUser();
+        Expense expense = expenseRepository.findById(expenseId)
+                .orElseThrow(() -> new AppException(ErrorCode.EXPENSE_NOT_EXISTED));
+        return storeMedia(file, description, currentUser, Media.builder().expense(expense));
     }
 
     @Transactional
     public MediaResponse uploadUserMedia (MultipartFile file, String description) {
-        try {
-            String username = SecurityContextHolder.getContext().getAuthentication().getName();
-            User currentUser = userRepository.findByUsername(username)
-                    .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
-            Path uploadPath = Paths.get(storageDir);
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
-            }
+        User currentUser = getCurrentUser();
+        return storeMedia(file, description, currentUser, Media.builder().user(currentUser));
+    }
 
-            // Generate unique filename
-            String originalFilename = file.getOriginalFilename();
-            String fileExtension = StringUtils.getFilenameExtension(originalFilename);
-            String uniqueFilename = UUID.randomUUID().toString() + (fileExtension != null ? "." + fileExtension : "");
-
-            //Store file
-            Path filePath = uploadPath.resolve(uniqueFilename).normalize().toAbsolutePath();
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-
-            Media.MediaType mediaType = determineMediaType(file.getContentType());
-            // Create and save media entity
-            Media media = Media.builder()
-                    .fileName(uniqueFilename)
-                    .originalFileName(originalFilename)
-                    .contentType(file.getContentType())
-                    .mediaType(mediaType)
-                    .fileSize(file.getSize())
-                    .user(currentUser)
-                    .filePath(filePath.toString())
-                    .fileUrl(urlPrefix + uniqueFilename)
-                    .description(description)
-                    .uploadedAt(LocalDateTime.now())
-                    .uploadedBy(currentUser)
-                    .build();
-            media = mediaRepository.save(media);
-
-            return mediaMapper.toMediaResponse(media);
-        }
-        catch (IOException e) {
-            log.error("Failed to store file", e);
-            throw new AppException(ErrorCode.FILE_UPLOAD_FAILED);
-        }
+    /**
+     * Luồng upload dùng chung: lưu nội dung qua MediaStorageService (dedup theo SHA-256),
+     * fileName vẫn là định danh riêng của từng Media để dùng trong URL download.
+     */
+    private MediaResponse storeMedia(MultipartFile file, String description, User currentUser,
+                                     Media.MediaBuilder owner) {
+        MediaStorageService.StoredBlob blob = mediaStorageService.store(file);
+
+        // Generate unique filename
+        String originalFilename = file.getOriginalFilename();
+        String fileExtension = StringUtils.getFilenameExtension(originalFilename);
+        String uniqueFilename = UUID.randomUUID().toString() + (fileExtension != null ? "." + fileExtension : "");
+
+        Media media = owner
+                .fileName(uniqueFilename)
+                .originalFileName(originalFilename)
+                .contentType(file.getContentType())
+                .mediaType(determineMediaType(file.getContentType()))
+                .fileSize(blob.size())
+                .filePath(blob.path().toString())
+                .fileUrl(urlPrefix + uniqueFilename)
+                .contentHash(blob.contentHash())
+                .description(description)
+                .uploadedAt(LocalDateTime.now())
+                .uploadedBy(currentUser)
+                .build();
+        media = mediaRepository.save(media);
+        eventPublisher.publishEvent(new MediaUploadedEvent(this, media, currentUser));
+        return toMediaResponse(media);
+    }
+
+    private MediaResponse toMediaResponse(Media media) {
+        return mediaMapper.toMediaResponse(media);
+    }
+
+    private User getCurrentUser() {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        return userRepository.findByUsername(username)
+                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
     }
 
     @Transactional(readOnly = true)
     public MediaResponse getMedia (Long id){
         Media media = mediaRepository.findById(id)
                 .orElseThrow(() -> new AppException(ErrorCode.MEDIA_NOT_EXISTED));
-        return mediaMapper.toMediaResponse(media);
+        return toMediaResponse(media);
     }
 
 
     @Transactional(readOnly = true)
     public List<MediaResponse> getGroupMedia (Long groupId){
         return mediaRepository.findByGroupId(groupId).stream()
-                .map(mediaMapper::toMediaResponse)
+                .map(this::toMediaResponse)
                 .toList();
     }
 
     @Transactional(readOnly = true)
     public List<MediaResponse> getExpenseMedia ( Long expenseId){
         return mediaRepository.findByExpenseId(expenseId).stream()
-                .map(mediaMapper::toMediaResponse)
+                .map(this::toMediaResponse)
                 .toList();
     }
 
     @Transactional(readOnly = true)
     public List<MediaResponse> getUserMedia ( String userId){
         return mediaRepository.findByUserIdOrderByUploadedAtDesc(userId).stream()
-                .map(mediaMapper::toMediaResponse)
+                .map(this::toMediaResponse)
                 .toList();
     }
 
     @Transactional(readOnly = true)
     public List<MediaResponse> getUserUploads ( String userId){
         return mediaRepository.findByUploadedById(userId).stream()
-                .map(mediaMapper::toMediaResponse)
+                .map(this::toMediaResponse)
                 .toList();
     }
 
@@ -284,18 +178,21 @@ public class MediaService {
                 .orElseThrow(() -> new AppException(ErrorCode.MEDIA_NOT_EXISTED));
 
         // Check if user has permission
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User currentUser = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        User currentUser = getCurrentUser();
 
         if (media.getUploadedBy().getId().equals(currentUser.getId()) || currentUser.getRole().equals("ADMIN")) {
-            // Delete physical file
-            try {
-                Path filePath = Paths.get(media.getFilePath());
-                Files.deleteIfExists(filePath);
-            } catch (IOException e) {
-                log.error("Failed to delete file", e);
-                // Continue with database deletion even if file deletion fails
+            if (media.getContentHash() != null) {
+                // Blob dùng chung: chỉ xóa file khi Media cuối cùng tham chiếu bị xóa
+                mediaStorageService.release(media.getContentHash());
+            } else {
+                // Delete physical file
+                try {
+                    Path filePath = Paths.get(media.getFilePath());
+                    Files.deleteIfExists(filePath);
+                } catch (IOException e) {
+                    log.error("Failed to delete file", e);
+                    // Continue with database deletion even if file deletion fails
+                }
             }
         } else{
             throw new AppException(ErrorCode.UNAUTHORIZED);
@@ -326,24 +223,71 @@ public class MediaService {
         }
     }
 
-    public ResponseEntity<Resource> downloadFile (String fileName) throws IOException {
+    /**
+     * Tải file: hỗ trợ ETag/Last-Modified (304), Range (206, do Spring cắt theo ResourceRegion)
+     * và sendfile của Tomcat cho file lớn khi tải toàn bộ, để nội dung đi thẳng từ page cache ra socket.
+     */
+    public ResponseEntity<Resource> downloadFile (String fileName, String variant, HttpServletRequest request)
+            throws IOException {
         Media media = mediaRepository.findByFileName(fileName)
                 .orElseThrow(() -> new AppException(ErrorCode.MEDIA_NOT_EXISTED));
 
-        Path filePath = Paths.get(media.getFilePath());
-        Resource resource= new UrlResource(filePath.toUri());
+        // Variant chưa sinh xong hoặc không hợp lệ thì trả về file gốc
+        Optional<MediaVariantService.Variant> requestedVariant = variant == null
+                ? Optional.empty() : MediaVariantService.Variant.fromKey(variant);
+        Optional<Path> variantPath = requestedVariant.flatMap(v -> mediaVariantService.findVariant(media, v));
 
-        if (!resource.exists() || !resource.isReadable()) {
+        Path filePath = variantPath.orElseGet(() -> Paths.get(media.getFilePath()));
+        if (!Files.isReadable(filePath)) {
             throw new AppException(ErrorCode.FILE_NOT_FOUND);
         }
-        String contentType = media.getContentType();
+        long fileSize = Files.size(filePath);
+        long lastModified = Files.getLastModifiedTime(filePath).toMillis();
+        // Blob theo nội dung không bao giờ thay đổi nên ETag lấy thẳng từ hash
+        String etag;
+        if (variantPath.isPresent()) {
+            etag = "\"" + media.getContentHash() + "-" + requestedVariant.get().getKey() + "\"";
+        } else if (media.getContentHash() != null) {
+            etag = "\"" + media.getContentHash() + "\"";
+        } else {
+            etag = "\"" + media.getId() + "-" + fileSize + "-" + lastModified + "\"";
+        }
+        // Ảnh gốc trả thay cho variant chưa có: không cho cache lâu dưới URL của variant
+        boolean variantPending = requestedVariant.isPresent() && variantPath.isEmpty()
+                && mediaVariantService.supportsVariants(media);
+        CacheControl cacheControl = media.getContentHash() != null && !variantPending
+                ? CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable()
+                : CacheControl.noCache();
 
         String name = media.getOriginalFileName() != null ?
                 media.getOriginalFileName() : media.getFileName();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(variantPath.isPresent()
+                ? MediaType.IMAGE_JPEG : MediaType.parseMediaType(media.getContentType()));
+        headers.set(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + name + "\"");
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.setETag(etag);
+        headers.setLastModified(lastModified);
+        headers.setCacheControl(cacheControl);
+
+        if (new ServletWebRequest(request).checkNotModified(etag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+        }
+
+        boolean fullGet = HttpMethod.GET.matches(request.getMethod()) && request.getHeader(HttpHeaders.RANGE) == null;
+        if (fullGet && fileSize >= SENDFILE_THRESHOLD
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            // Tomcat tự ghi file bằng sendfile sau khi controller trả về response không có body
+            request.setAttribute(SENDFILE_FILENAME_ATTR, filePath.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, 0L);
+            request.setAttribute(SENDFILE_END_ATTR, fileSize);
+            headers.setContentLength(fileSize);
+            return ResponseEntity.ok().headers(headers).build();
+        }
+
+        // Có header Range thì Spring trả 206 với đúng đoạn byte được yêu cầu
         return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(contentType))
-                .header(HttpHeaders.CONTENT_DISPOSITION,
-                        "inline; filename=\"" + name + "\"")
-                .body(resource);
+                .headers(headers)
+                .body(new FileSystemResource(filePath));
     }
 }
@@ -0,0 +1,251 @@
+package com.TravelShare.service;
+
+import com.TravelShare.exception.AppException;
+import com.TravelShare.exception.ErrorCode;
+import com.TravelShare.repository.MediaBlobRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lưu file upload theo nội dung: stream một lần qua SHA-256 vào file tạm (NIO channel),
+ * ngay trước khi transaction commit thì rename atomic vào blobs/{2 ký tự đầu}/{hash}.
+ * Các upload trùng nội dung dùng chung một blob, đếm tham chiếu trong bảng media_blob.
+ * Nếu không đưa được file vào chỗ thì transaction bị rollback, và nếu transaction rollback sau khi file
+ * đã được đưa vào thì file bị xóa lại, nên dòng media_blob đã commit luôn trỏ tới một file có thật.
+ */
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class MediaStorageService {
+    static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+    static final int LOCK_STRIPES = 64;
+
+    MediaBlobRepository mediaBlobRepository;
+
+    // Khóa theo hash trong JVM: tránh việc xóa blob chen giữa lúc một upload trùng nội dung đang đưa file vào chỗ
+    ReentrantLock[] locks = createLocks();
+
+    @NonFinal
+    @Value("${app.file.storage-dir}")
+    String storageDir;
+
+    public record StoredBlob(String contentHash, Path path, long size) {
+    }
+
+    /**
+     * Ghi file upload và tăng refCount của blob. Phải gọi trong transaction;
+     * file được đưa vào vị trí cuối cùng trong beforeCommit, và bị gỡ ra nếu transaction vẫn rollback.
+     */
+    public StoredBlob store(MultipartFile file) {
+        Path temp = null;
+        try {
+            Path tempDir = Files.createDirectories(Paths.get(storageDir, "tmp"));
+            temp = tempDir.resolve(UUID.randomUUID() + ".part");
+
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            long size = 0;
+            try (ReadableByteChannel in = Channels.newChannel(new DigestInputStream(file.getInputStream(), digest));
+                 FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                long transferred;
+                while ((transferred = out.transferFrom(in, size, TRANSFER_CHUNK)) > 0) {
+                    size += transferred;
+                }
+            }
+
+            String contentHash = HexFormat.of().formatHex(digest.digest());
+            Path target = blobPath(contentHash);
+            mediaBlobRepository.acquire(contentHash, target.toString(), size);
+
+            Path staged = temp;
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                boolean promoted;
+
+                // Lỗi ở đây làm transaction rollback thay vì commit một blob không có file
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    promoted = promote(contentHash, staged, target);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        settleCommitted(contentHash, staged, target);
+                    } else {
+                        rollBack(contentHash, staged, target, promoted);
+                    }
+                }
+            });
+            return new StoredBlob(contentHash, target, size);
+        } catch (IOException | NoSuchAlgorithmException e) {
+            log.error("Failed to store file", e);
+            deleteQuietly(temp);
+            throw new AppException(ErrorCode.FILE_UPLOAD_FAILED);
+        } catch (RuntimeException e) {
+            deleteQuietly(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * Giảm refCount; nếu không còn Media nào tham chiếu thì xóa file sau khi transaction commit.
+     */
+    public void release(String contentHash) {
+        mediaBlobRepository.release(contentHash);
+        if (mediaBlobRepository.deleteIfUnreferenced(contentHash) == 0) {
+            return;
+        }
+        Path target = blobPath(contentHash);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                ReentrantLock lock = lockFor(contentHash);
+                lock.lock();
+                try {
+                    // Có thể đã có upload trùng nội dung tạo lại blob trong lúc này
+                    if (!mediaBlobRepository.existsById(contentHash)) {
+                        Files.deleteIfExists(target);
+                        deleteVariants(contentHash);
+                    }
+                } catch (IOException e) {
+                    log.error("Failed to delete blob {}", contentHash, e);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        });
+    }
+
+    public Path blobPath(String contentHash) {
+        return Paths.get(storageDir, "blobs", contentHash.substring(0, 2), contentHash)
+                .normalize().toAbsolutePath();
+    }
+
+    /**
+     * Ảnh phái sinh (thumbnail...) của blob, dùng chung cho mọi Media cùng nội dung.
+     */
+    public Path variantPath(String contentHash, String variant) {
+        return variantDir(contentHash).resolve(variant + ".jpg");
+    }
+
+    private Path variantDir(String contentHash) {
+        return Paths.get(storageDir, "variants", contentHash.substring(0, 2), contentHash)
+                .normalize().toAbsolutePath();
+    }
+
+    private void deleteVariants(String contentHash) throws IOException {
+        Path dir = variantDir(contentHash);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    /**
+     * Đưa file tạm vào vị trí blob. Trả về true nếu file do transaction này đưa vào; false nếu blob đã có sẵn,
+     * khi đó file tạm được giữ tới lúc transaction kết thúc phòng khi blob kia bị gỡ đi vì rollback.
+     */
+    private boolean promote(String contentHash, Path staged, Path target) {
+        ReentrantLock lock = lockFor(contentHash);
+        lock.lock();
+        try {
+            if (Files.exists(target)) {
+                return false;
+            }
+            Files.createDirectories(target.getParent());
+            Files.move(staged, target, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        } catch (IOException e) {
+            log.error("Failed to move blob {} into place", contentHash, e);
+            throw new AppException(ErrorCode.FILE_UPLOAD_FAILED);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Blob có thể vừa bị một upload trùng nội dung (rollback) gỡ đi: dùng file tạm của mình để đặt lại
+    private void settleCommitted(String contentHash, Path staged, Path target) {
+        ReentrantLock lock = lockFor(contentHash);
+        lock.lock();
+        try {
+            if (Files.exists(staged) && !Files.exists(target)) {
+                Files.createDirectories(target.getParent());
+                Files.move(staged, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            log.error("Failed to restore blob {}", contentHash, e);
+        } finally {
+            lock.unlock();
+            deleteQuietly(staged);
+        }
+    }
+
+    // Chỉ gỡ file mình đã đưa vào, và chỉ khi không còn dòng media_blob nào (đã commit) tham chiếu tới nó
+    private void rollBack(String contentHash, Path staged, Path target, boolean promoted) {
+        deleteQuietly(staged);
+        if (!promoted) {
+            return;
+        }
+        ReentrantLock lock = lockFor(contentHash);
+        lock.lock();
+        try {
+            if (!mediaBlobRepository.existsById(contentHash)) {
+                Files.deleteIfExists(target);
+            }
+        } catch (RuntimeException | IOException e) {
+            log.error("Failed to remove blob {} after rollback", contentHash, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock lockFor(String contentHash) {
+        return locks[Math.floorMod(contentHash.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static ReentrantLock[] createLocks() {
+        ReentrantLock[] stripes = new ReentrantLock[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        return stripes;
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete temp file {}", path, e);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.TravelShare.service;
+
+import com.TravelShare.entity.Media;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sinh các kích thước thu nhỏ (thumbnail, small, medium) cho ảnh đã upload, chạy nền trên executor giới hạn
+ * theo số core. Variant lưu cạnh blob theo content hash nên các Media trùng nội dung chỉ sinh một lần.
+ * Khi variant chưa có (đang sinh hoặc bị bỏ do hàng đợi đầy), download trả về ảnh gốc và
+ * đưa việc sinh variant vào hàng đợi lại, nên variant bị bỏ sẽ được sinh ở lần tải sau.
+ */
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class MediaVariantService {
+    static final float VARIANT_QUALITY = 0.8f;
+    static final int QUEUE_CAPACITY = 200;
+
+    MediaStorageService mediaStorageService;
+    ImageOptimizationService imageOptimizationService;
+
+    ThreadPoolExecutor executor = createExecutor();
+    // Blob đang nằm trong hàng đợi hoặc đang được sinh variant, tránh xếp hàng trùng
+    Set<String> pending = ConcurrentHashMap.newKeySet();
+    // Blob không sinh được variant (định dạng không hỗ trợ, lỗi giải mã): không thử lại ở mỗi lần tải
+    Cache<String, Boolean> failedBlobs = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofHours(1))
+            .build();
+
+    // Sắp xếp từ lớn đến nhỏ: mỗi variant được thu nhỏ từ variant trước, không phải từ ảnh gốc
+    @Getter
+    public enum Variant {
+        MEDIUM("medium", 1080),
+        SMALL("small", 480),
+        THUMB("thumb", 200);
+
+        final String key;
+        final int maxSize;
+
+        Variant(String key, int maxSize) {
+            this.key = key;
+            this.maxSize = maxSize;
+        }
+
+        public static Optional<Variant> fromKey(String key) {
+            return Arrays.stream(values())
+                    .filter(variant -> variant.key.equalsIgnoreCase(key))
+                    .findFirst();
+        }
+    }
+
+    public boolean supportsVariants(Media media) {
+        return media.getContentHash() != null
+                && media.getMediaType() == Media.MediaType.IMAGE;
+    }
+
+    /**
+     * URL của từng variant: download endpoint với query param variant.
+     */
+    public Map<String, String> variantUrls(Media media) {
+        if (!supportsVariants(media)) {
+            return Map.of();
+        }
+        Map<String, String> urls = new LinkedHashMap<>();
+        for (Variant variant : Variant.values()) {
+            urls.put(variant.key, media.getFileUrl() + "?variant=" + variant.key);
+        }
+        return urls;
+    }
+
+    /**
+     * Đường dẫn variant nếu đã được sinh xong; nếu chưa thì xếp hàng sinh lại (không chờ).
+     */
+    public Optional<Path> findVariant(Media media, Variant variant) {
+        if (!supportsVariants(media)) {
+            return Optional.empty();
+        }
+        Path path = mediaStorageService.variantPath(media.getContentHash(), variant.key);
+        if (Files.exists(path)) {
+            return Optional.of(path);
+        }
+        submit(media.getContentHash());
+        return Optional.empty();
+    }
+
+    /**
+     * Đưa việc sinh variant vào hàng đợi. Chỉ đọc các trường cơ bản của Media ở thread gọi.
+     */
+    public void generateAsync(Media media) {
+        if (!supportsVariants(media)) {
+            return;
+        }
+        submit(media.getContentHash());
+    }
+
+    private void submit(String contentHash) {
+        if (failedBlobs.getIfPresent(contentHash) != null || !pending.add(contentHash)) {
+            return;
+        }
+        Path source = mediaStorageService.blobPath(contentHash);
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(contentHash, source);
+                } finally {
+                    pending.remove(contentHash);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(contentHash);
+            log.warn("Media variant queue full, variants of blob {} will be generated on a later download",
+                    contentHash);
+        }
+    }
+
+    private void generate(String contentHash, Path source) {
+        if (Arrays.stream(Variant.values())
+                .allMatch(variant -> Files.exists(mediaStorageService.variantPath(contentHash, variant.key)))) {
+            return;
+        }
+        try {
+            // Giải mã thưa ngay về cỡ variant lớn nhất, không giữ ảnh gốc độ phân giải đầy đủ trong heap
+            int largest = Variant.MEDIUM.maxSize;
+            BufferedImage image = imageOptimizationService.readScaled(source, largest, largest);
+            if (image == null) {
+                log.warn("Unsupported image format for blob {}, skipping variants", contentHash);
+                failedBlobs.put(contentHash, Boolean.TRUE);
+                return;
+            }
+            for (Variant variant : Variant.values()) {
+                image = imageOptimizationService.resizeToFit(image, variant.maxSize, variant.maxSize);
+                writeAtomically(image, mediaStorageService.variantPath(contentHash, variant.key));
+            }
+            log.info("Generated image variants for blob {}", contentHash);
+        } catch (Exception e) {
+            log.error("Failed to generate variants for blob {}", contentHash, e);
+            failedBlobs.put(contentHash, Boolean.TRUE);
+        }
+    }
+
+    private void writeAtomically(BufferedImage image, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), "variant", ".part");
+        try {
+            try (OutputStream output = Files.newOutputStream(temp)) {
+                imageOptimizationService.writeJpeg(image, VARIANT_QUALITY, output);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "media-variant-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                // Hàng đợi đầy: submit() log lại blob bị bỏ, ảnh vẫn được phục vụ bằng bản gốc
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
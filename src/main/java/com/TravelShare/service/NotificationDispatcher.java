@@ -0,0 +1,296 @@
+package com.TravelShare.service;
+
+import com.TravelShare.dto.request.NotificationCreationRequest;
+import com.TravelShare.dto.response.GroupSummaryResponse;
+import com.TravelShare.dto.response.NotificationPipelineStatsResponse;
+import com.TravelShare.dto.response.NotificationResponse;
+import com.TravelShare.dto.response.UserSummaryResponse;
+import com.TravelShare.entity.Group;
+import com.TravelShare.entity.User;
+import com.TravelShare.mapper.GroupMapper;
+import com.TravelShare.repository.GroupRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Pipeline gửi thông báo bất đồng bộ: listener chỉ đưa thông báo vào một hàng đợi có giới hạn,
+ * các worker gom theo batch, ghi DB bằng JDBC batch insert rồi mới đẩy qua WebSocket.
+ * Khi hàng đợi đầy, thông báo bị bỏ (và được đếm) thay vì chặn thread của request.
+ */
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class NotificationDispatcher {
+    static final String INSERT_SQL = "INSERT INTO notification (type, content, group_id, created_by, reference_id, created_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?)";
+
+    JdbcTemplate jdbcTemplate;
+    PlatformTransactionManager transactionManager;
+    GroupRepository groupRepository;
+    GroupMapper groupMapper;
+    WebSocketNotificationService webSocketNotificationService;
+    NotificationReadStateService notificationReadStateService;
+
+    @NonFinal
+    @Value("${app.notification.queue-capacity:10000}")
+    int queueCapacity;
+
+    @NonFinal
+    @Value("${app.notification.workers:2}")
+    int workerCount;
+
+    @NonFinal
+    @Value("${app.notification.batch-size:100}")
+    int batchSize;
+
+    @NonFinal
+    BlockingQueue<PendingNotification> queue;
+
+    @NonFinal
+    TransactionTemplate readOnlyTransaction;
+
+    @NonFinal
+    volatile boolean running;
+
+    List<Thread> workers = new ArrayList<>();
+
+    AtomicLong enqueued = new AtomicLong();
+    AtomicLong dropped = new AtomicLong();
+    AtomicLong persisted = new AtomicLong();
+    AtomicLong failed = new AtomicLong();
+    AtomicLong batches = new AtomicLong();
+    AtomicLong totalLatencyNanos = new AtomicLong();
+    AtomicLong maxLatencyNanos = new AtomicLong();
+
+    private record PendingNotification(NotificationCreationRequest request, String creatorId,
+                                       UserSummaryResponse creator, LocalDateTime createdAt, long enqueuedAtNanos) {
+    }
+
+    @PostConstruct
+    void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::drainLoop, "notification-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        log.info("Notification pipeline started: capacity={}, workers={}, batchSize={}",
+                queueCapacity, workerCount, batchSize);
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+        for (Thread worker : workers) {
+            try {
+                worker.join(5_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // Ghi nốt những gì còn trong hàng đợi trước khi tắt
+        List<PendingNotification> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            persistAndPush(remaining);
+        }
+    }
+
+    /**
+     * Đưa thông báo vào hàng đợi, không bao giờ chặn. Trả về false nếu hàng đợi đầy và thông báo bị bỏ.
+     * Chỉ đọc các trường cơ bản của creator ở đây để worker không phải chạm vào entity của request.
+     */
+    public boolean dispatch(NotificationCreationRequest request, User creator) {
+        PendingNotification pending = new PendingNotification(
+                request,
+                creator != null ? creator.getId() : null,
+                creator != null ? UserSummaryResponse.from(creator) : null,
+                LocalDateTime.now(),
+                System.nanoTime());
+
+        if (!queue.offer(pending)) {
+            long total = dropped.incrementAndGet();
+            log.warn("Notification queue full ({}), dropped {} notification for group {} (total dropped: {})",
+                    queueCapacity, request.getType(), request.getGroupId(), total);
+            return false;
+        }
+        enqueued.incrementAndGet();
+        return true;
+    }
+
+    public NotificationPipelineStatsResponse getStats() {
+        long persistedCount = persisted.get();
+        return NotificationPipelineStatsResponse.builder()
+                .queueDepth(queue.size())
+                .queueCapacity(queueCapacity)
+                .workers(workerCount)
+                .enqueued(enqueued.get())
+                .dropped(dropped.get())
+                .persisted(persistedCount)
+                .failed(failed.get())
+                .batches(batches.get())
+                .averageLatencyMs(persistedCount == 0 ? 0
+                        : totalLatencyNanos.get() / (double) persistedCount / 1_000_000d)
+                .maxLatencyMs(TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get()))
+                .build();
+    }
+
+    private void drainLoop() {
+        List<PendingNotification> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                PendingNotification first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                persistAndPush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Notification worker error: ", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void persistAndPush(List<PendingNotification> pendingBatch) {
+        List<PendingNotification> batch = pendingBatch;
+        List<Long> ids;
+        try {
+            ids = insertBatch(batch);
+        } catch (Exception ex) {
+            // Một dòng lỗi làm hỏng cả JDBC batch: ghi lại từng dòng để chỉ bỏ những dòng thật sự lỗi
+            log.warn("Notification batch of {} failed, retrying row by row: {}", batch.size(), ex.getMessage());
+            batch = new ArrayList<>(pendingBatch.size());
+            ids = new ArrayList<>(pendingBatch.size());
+            for (PendingNotification pending : pendingBatch) {
+                try {
+                    ids.addAll(insertBatch(List.of(pending)));
+                    batch.add(pending);
+                } catch (Exception rowEx) {
+                    failed.incrementAndGet();
+                    log.error("Error when saving {} notification for group {}: ",
+                            pending.request().getType(), pending.request().getGroupId(), rowEx);
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+        }
+        batches.incrementAndGet();
+
+        long now = System.nanoTime();
+        for (PendingNotification pending : batch) {
+            long latency = now - pending.enqueuedAtNanos();
+            totalLatencyNanos.addAndGet(latency);
+            maxLatencyNanos.accumulateAndGet(latency, Math::max);
+        }
+        persisted.addAndGet(batch.size());
+
+        Set<Long> groupIds = batch.stream()
+                .map(pending -> pending.request().getGroupId())
+                .collect(Collectors.toSet());
+        Map<Long, GroupSummaryResponse> groups = loadGroupSummaries(groupIds);
+        try {
+            notificationReadStateService.invalidateGroups(groupIds);
+        } catch (Exception ex) {
+            log.warn("Could not invalidate unread counts for notification batch: {}", ex.getMessage());
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            PendingNotification pending = batch.get(i);
+            NotificationCreationRequest request = pending.request();
+            NotificationResponse response = NotificationResponse.builder()
+                    .id(i < ids.size() ? ids.get(i) : null)
+                    .type(request.getType())
+                    .content(request.getContent())
+                    .group(groups.get(request.getGroupId()))
+                    .createdBy(pending.creator())
+                    .referenceId(request.getReferenceId())
+                    .createdAt(pending.createdAt().toString())
+                    .build();
+            try {
+                webSocketNotificationService.sendNotificationToGroup(request.getGroupId(), response);
+            } catch (Exception ex) {
+                log.error("Error when pushing notification {} over WebSocket: ", response.getId(), ex);
+            }
+        }
+    }
+
+    private List<Long> insertBatch(List<PendingNotification> batch) {
+        return jdbcTemplate.execute((ConnectionCallback<List<Long>>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_SQL, new String[]{"id"})) {
+                for (PendingNotification pending : batch) {
+                    NotificationCreationRequest request = pending.request();
+                    ps.setString(1, request.getType());
+                    ps.setString(2, request.getContent());
+                    ps.setLong(3, request.getGroupId());
+                    if (pending.creatorId() != null) {
+                        ps.setString(4, pending.creatorId());
+                    } else {
+                        ps.setNull(4, Types.VARCHAR);
+                    }
+                    if (request.getReferenceId() != null) {
+                        ps.setLong(5, request.getReferenceId());
+                    } else {
+                        ps.setNull(5, Types.BIGINT);
+                    }
+                    ps.setTimestamp(6, Timestamp.valueOf(pending.createdAt()));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                List<Long> ids = new ArrayList<>(batch.size());
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        ids.add(keys.getLong(1));
+                    }
+                }
+                return ids;
+            }
+        });
+    }
+
+    // Nạp thông tin group của cả batch bằng một truy vấn
+    private Map<Long, GroupSummaryResponse> loadGroupSummaries(Set<Long> groupIds) {
+        try {
+            return readOnlyTransaction.execute(status -> groupRepository.findAllById(groupIds).stream()
+                    .collect(Collectors.toMap(Group::getId, groupMapper::toGroupSummaryResponse, (a, b) -> a)));
+        } catch (Exception ex) {
+            log.warn("Could not load group summaries for notification batch: {}", ex.getMessage());
+            return Map.of();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.TravelShare.service;
+
+import com.TravelShare.dto.request.NotificationReadRequest;
+import com.TravelShare.dto.response.UnreadCountResponse;
+import com.TravelShare.entity.User;
+import com.TravelShare.exception.AppException;
+import com.TravelShare.exception.ErrorCode;
+import com.TravelShare.repository.GroupParticipantRepository;
+import com.TravelShare.repository.NotificationReadStateRepository;
+import com.TravelShare.repository.NotificationRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trạng thái đã đọc thông báo theo mốc (last-seen id) cho từng (user, group), kèm cache số chưa đọc trong bộ nhớ.
+ * Cache của mọi thành viên trong group bị xóa khi group có thông báo mới; lần đọc sau sẽ đếm lại bằng một query.
+ */
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class NotificationReadStateService {
+    NotificationReadStateRepository readStateRepository;
+    NotificationRepository notificationRepository;
+    GroupParticipantRepository groupParticipantRepository;
+
+    Cache<String, UnreadCountResponse> unreadCounts = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofMinutes(30))
+            .build();
+
+    public UnreadCountResponse getUnreadCount(User user) {
+        return unreadCounts.get(user.getId(), this::loadUnreadCount);
+    }
+
+    /**
+     * Mốc được giới hạn bởi id thông báo lớn nhất hiện có của group: id lớn hơn (client gửi sai hoặc đoán trước)
+     * sẽ làm các thông báo sau này bị coi là đã đọc.
+     */
+    @Transactional
+    public UnreadCountResponse markRead(User user, NotificationReadRequest request) {
+        if (!groupParticipantRepository.existsByGroupIdAndUserId(request.getGroupId(), user.getId())) {
+            throw new AppException(ErrorCode.PARTICIPANT_NOT_IN_GROUP);
+        }
+        Long newestId = notificationRepository.findMaxIdByGroupId(request.getGroupId());
+        if (newestId == null || request.getLastSeenNotificationId() <= 0) {
+            return getUnreadCount(user);
+        }
+        readStateRepository.advanceWatermark(user.getId(), request.getGroupId(),
+                Math.min(request.getLastSeenNotificationId(), newestId));
+        unreadCounts.invalidate(user.getId());
+        return loadAndCache(user.getId());
+    }
+
+    @Transactional
+    public UnreadCountResponse markAllRead(User user) {
+        readStateRepository.advanceAllWatermarks(user.getId());
+        unreadCounts.invalidate(user.getId());
+        return loadAndCache(user.getId());
+    }
+
+    /**
+     * Gọi sau khi group có thông báo mới: xóa cache số chưa đọc của các thành viên.
+     */
+    public void invalidateGroup(Long groupId) {
+        invalidateGroups(List.of(groupId));
+    }
+
+    public void invalidateGroups(Collection<Long> groupIds) {
+        for (Long groupId : groupIds) {
+            unreadCounts.invalidateAll(groupParticipantRepository.findUserIdsByGroupId(groupId));
+        }
+    }
+
+    private UnreadCountResponse loadAndCache(String userId) {
+        UnreadCountResponse response = loadUnreadCount(userId);
+        unreadCounts.put(userId, response);
+        return response;
+    }
+
+    private UnreadCountResponse loadUnreadCount(String userId) {
+        Map<Long, Long> byGroup = new HashMap<>();
+        long total = 0;
+        for (NotificationReadStateRepository.GroupUnreadCount row : readStateRepository.countUnreadByGroup(userId)) {
+            byGroup.put(row.getGroupId(), row.getUnread());
+            total += row.getUnread();
+        }
+        return UnreadCountResponse.builder()
+                .total(total)
+                .byGroup(byGroup)
+                .build();
+    }
+}
@@ -1,8 +1,10 @@
 package com.TravelShare.service;
 
 import com.TravelShare.dto.request.NotificationCreationRequest;
+import com.TravelShare.dto.response.NotificationFeedResponse;
 import com.TravelShare.dto.response.NotificationResponse;
 import com.TravelShare.entity.Group;
+import com.TravelShare.entity.GroupParticipant;
 import com.TravelShare.entity.Notification;
 import com.TravelShare.entity.User;
 import com.TravelShare.exception.AppException;
@@ -11,14 +13,21 @@ import com.TravelShare.mapper.NotificationMapper;
 import com.TravelShare.repository.GroupRepository;
 import com.TravelShare.repository.NotificationRepository;
 import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -27,10 +36,13 @@ import java.util.stream.Collectors;
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Slf4j
 public class NotificationService {
+    static final int MAX_FEED_PAGE_SIZE = 100;
+
     final NotificationRepository notificationRepository;
     final NotificationMapper notificationMapper;
     final GroupRepository groupRepository;
     final WebSocketNotificationService webSocketNotificationService;
+    final NotificationReadStateService notificationReadStateService;
 
     public NotificationResponse createNotification(NotificationCreationRequest request, User creator) {
         Group group = groupRepository.findById(request.getGroupId())
@@ -43,6 +55,7 @@ public class NotificationService {
         try {
             Notification saved = notificationRepository.save(notification);
             log.info("Notification saved with id: {}", saved.getId());
+            notificationReadStateService.invalidateGroup(group.getId());
             NotificationResponse response = notificationMapper.toNotificationResponse(saved);
 
             // Gửi thông báo qua WebSocket
@@ -75,18 +88,18 @@ public class NotificationService {
             LocalDate fromDate,
             LocalDate toDate
     ) {
-        List<Group> tempGroups = groupRepository.findByParticipants_User_Id(user.getId());
-        if (groupId != null) {
-            tempGroups = tempGroups.stream()
-                    .filter(g -> g.getId().equals(groupId))
-                    .collect(Collectors.toList());
-        }
-        final List<Group> groups = tempGroups;
-
         Specification<Notification> spec = (root, query, cb) -> {
             List<Predicate> predicates = new ArrayList<>();
-            predicates.add(root.get("group").in(groups));
+            // Group của user lấy bằng subquery thay vì nạp toàn bộ Group entity
+            Subquery<Long> userGroups = query.subquery(Long.class);
+            Root<GroupParticipant> participant = userGroups.from(GroupParticipant.class);
+            userGroups.select(participant.get("group").get("id"))
+                    .where(cb.equal(participant.get("user").get("id"), user.getId()));
+            predicates.add(root.get("group").get("id").in(userGroups));
             predicates.add(cb.notEqual(root.get("createdBy").get("id"), user.getId()));
+            if (groupId != null) {
+                predicates.add(cb.equal(root.get("group").get("id"), groupId));
+            }
             if (type != null) {
                 predicates.add(cb.equal(root.get("type"), type));
             }
@@ -99,10 +112,62 @@ public class NotificationService {
             return cb.and(predicates.toArray(new Predicate[0]));
         };
 
-        List<Notification> notifications = notificationRepository.findAll(spec);
+        List<Notification> notifications = notificationRepository.findAll(spec,
+                Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id")));
 
         return notifications.stream()
                 .map(notificationMapper::toNotificationResponse)
                 .collect(Collectors.toList());
     }
+
+    /**
+     * Feed thông báo phân trang keyset theo (createdAt, id) giảm dần.
+     * cursor là giá trị nextCursor của trang trước, null để lấy trang đầu.
+     */
+    public NotificationFeedResponse getNotificationFeed(User user, Long groupId, String type, String cursor, int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_FEED_PAGE_SIZE);
+        FeedCursor position = cursor == null || cursor.isBlank() ? FeedCursor.START : decodeCursor(cursor);
+
+        // Lấy dư một bản ghi để biết còn trang sau hay không
+        List<Notification> rows = notificationRepository.findFeedForUser(
+                user.getId(), groupId, type, position.createdAt(), position.id(), Limit.of(pageSize + 1));
+        boolean hasMore = rows.size() > pageSize;
+        List<Notification> page = hasMore ? rows.subList(0, pageSize) : rows;
+
+        return NotificationFeedResponse.builder()
+                .items(page.stream().map(notificationMapper::toNotificationResponse).toList())
+                .hasMore(hasMore)
+                .nextCursor(hasMore ? encodeCursor(page.get(page.size() - 1)) : null)
+                .build();
+    }
+
+    /**
+     * Số thông báo mới hơn cursor since của feed (mặc định: toàn bộ), chỉ chạy COUNT.
+     * Khác với số chưa đọc theo mốc đã đọc của NotificationReadStateService: hàm này không lưu trạng thái.
+     */
+    public long countNewNotifications(User user, Long groupId, String since) {
+        FeedCursor position = since == null || since.isBlank() ? FeedCursor.EPOCH : decodeCursor(since);
+        return notificationRepository.countNewerForUser(user.getId(), groupId, position.createdAt(), position.id());
+    }
+
+    private static String encodeCursor(Notification notification) {
+        String raw = notification.getCreatedAt() + "_" + notification.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static FeedCursor decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('_');
+            return new FeedCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (RuntimeException ex) {
+            throw new AppException(ErrorCode.INVALID_CURSOR);
+        }
+    }
+
+    private record FeedCursor(LocalDateTime createdAt, Long id) {
+        static final FeedCursor START = new FeedCursor(LocalDateTime.of(9999, 12, 31, 0, 0), Long.MAX_VALUE);
+        static final FeedCursor EPOCH = new FeedCursor(LocalDateTime.of(1970, 1, 1, 0, 0), 0L);
+    }
 }
@@ -0,0 +1,234 @@
+package com.TravelShare.service;
+
+import com.TravelShare.dto.response.OCRResponse;
+import com.TravelShare.service.ImageOptimizationService.OptimizedImage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.content.Media;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Điểm duy nhất gọi model cho OCR hóa đơn. Kết quả được đọc/ghi trực tiếp vào "ocr-cache"
+ * (không qua @Cacheable nên không phụ thuộc proxy), và các request đồng thời cho cùng một ảnh
+ * dùng chung một lần gọi model: request đầu tiên gọi, các request sau chờ cùng một future.
+ */
+@Service
+@Slf4j
+public class OcrGateway {
+    static final String CACHE_NAME = "ocr-cache";
+
+    private final ChatClient chatClient;
+    private final ObjectMapper objectMapper;
+    private final Cache cache;
+
+    // Các lần gọi model đang chạy, theo cache key của ảnh
+    private final ConcurrentMap<String, CompletableFuture<OCRResponse>> inFlight = new ConcurrentHashMap<>();
+
+    public OcrGateway(ChatClient.Builder chatClientBuilder, ObjectMapper objectMapper, CacheManager cacheManager) {
+        this.chatClient = chatClientBuilder.build();
+        this.objectMapper = objectMapper;
+        this.cache = cacheManager.getCache(CACHE_NAME);
+    }
+
+    public OCRResponse recognize(OptimizedImage optimizedImage) {
+        String cacheKey = optimizedImage.getCacheKey();
+        OCRResponse cached = cache.get(cacheKey, OCRResponse.class);
+        if (cached != null) {
+            log.info("OCR cache hit: {}", cacheKey);
+            return cached;
+        }
+
+        CompletableFuture<OCRResponse> future = new CompletableFuture<>();
+        CompletableFuture<OCRResponse> existing = inFlight.putIfAbsent(cacheKey, future);
+        if (existing != null) {
+            log.info("OCR request coalesced with in-flight call: {}", cacheKey);
+            return await(existing);
+        }
+
+        try {
+            // Có thể một request khác vừa ghi cache xong trước khi ta đăng ký future
+            OCRResponse response = cache.get(cacheKey, OCRResponse.class);
+            if (response == null) {
+                response = callModel(optimizedImage);
+                cache.put(cacheKey, response);
+            }
+            future.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            // Lỗi không được giữ lại: request sau sẽ gọi lại model
+            inFlight.remove(cacheKey, future);
+        }
+    }
+
+    private OCRResponse await(CompletableFuture<OCRResponse> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private OCRResponse callModel(OptimizedImage optimizedImage) {
+        try {
+            log.info("Processing OCR with cache key: {}", optimizedImage.getCacheKey());
+
+            // Create Resource from optimized image
+            Resource imageResource = new InputStreamResource(optimizedImage.getImageStream());
+
+            // Detect MimeType (assume JPEG after optimization)
+            MimeType mimeType = MimeTypeUtils.parseMimeType("image/jpeg");
+
+            // Create Media object
+            Media media = new Media(mimeType, imageResource);
+
+            // Create prompt
+            String promptText = createIntelligentOCRPrompt();
+
+            // Use ChatClient fluent API
+            String response = chatClient.prompt()
+                    .user(u -> u.text(promptText).media(media))
+                    .call()
+                    .content();
+
+            log.info("OCR Response: {}", response);
+            return parseOCRResponse(response);
+
+        } catch (Exception e) {
+            log.error("Error in OCR model call: ", e);
+            throw new RuntimeException("OCR processing failed", e);
+        }
+    }
+
+    private String createIntelligentOCRPrompt() {
+        return """
+            Extract receipt info as JSON. IMPORTANT: For amount field, convert Vietnamese number format to decimal:
+            - Remove commas (,),(.) used as thousand separators
+            - Vietnamese format "9,010,000" or "9.010.000" should become "9010000.0"
+            - Vietnamese format "1,500" or "1.500" should become "1500.0"
+            - Always return as decimal number (e.g., 9010000.0, not 9010000)
+
+            {
+                "merchantName": "store name",
+                "amount": 9010000.0,
+                "date": "2024-01-01 12:00:00",
+                "description": "brief description",
+                "categoryName": "category"
+            }
+
+            Categories: "Ăn uống", "Đi lại & Phương tiện", "Chỗ ở & Lưu trú", "Mua sắm", "Giải trí", "Khác"
+
+            CRITICAL: When you see amounts like "9,010,000", "9.010.000", interpret this as Vietnamese thousand separators, not decimal points.
+            Convert to: 9010000.0 (nine million ten thousand)
+
+            Return only valid JSON.
+            """;
+    }
+
+    private OCRResponse parseOCRResponse(String response) {
+        try {
+            // Clean response (remove markdown formatting if any)
+            String cleanJson = response.trim();
+            if (cleanJson.startsWith("```json")) {
+                cleanJson = cleanJson.substring(7);
+            }
+            if (cleanJson.endsWith("```")) {
+                cleanJson = cleanJson.substring(0, cleanJson.length() - 3);
+            }
+            cleanJson = cleanJson.trim();
+
+            OCRResponse ocrResponse = objectMapper.readValue(cleanJson, OCRResponse.class);
+
+            // Validate category name - đảm bảo category tồn tại trong system
+            String validatedCategory = validateAndMapCategory(ocrResponse.categoryName());
+
+            // Return với category đã được validate và default values cho confidence/originalText
+            return new OCRResponse(
+                    ocrResponse.merchantName(),
+                    ocrResponse.amount(),
+                    ocrResponse.date(),
+                    ocrResponse.description(),
+                    validatedCategory,
+                    null
+            );
+
+        } catch (JsonProcessingException e) {
+            log.error("Failed to parse OCR response: {}", response, e);
+            throw new RuntimeException("Failed to parse OCR response", e);
+        }
+    }
+
+    /**
+     * Validate và map category name với system categories
+     */
+    static String validateAndMapCategory(String detectedCategory) {
+        if (detectedCategory == null) return "Khác";
+
+        // Exact matches
+        String[] validCategories = {
+                "Ăn uống",
+                "Đi lại & Phương tiện",
+                "Chỗ ở & Lưu trú",
+                "Mua sắm",
+                "Giải trí",
+                "Khác"
+        };
+
+        // Check exact match first
+        for (String validCategory : validCategories) {
+            if (validCategory.equals(detectedCategory)) {
+                return validCategory;
+            }
+        }
+
+        // Fuzzy matching for common variations
+        String lowerDetected = detectedCategory.toLowerCase();
+
+        if (lowerDetected.contains("ăn") || lowerDetected.contains("uống") ||
+                lowerDetected.contains("food") || lowerDetected.contains("restaurant")) {
+            return "Ăn uống";
+        }
+
+        if (lowerDetected.contains("taxi") || lowerDetected.contains("grab") ||
+                lowerDetected.contains("transport") || lowerDetected.contains("phương tiện")) {
+            return "Đi lại & Phương tiện";
+        }
+
+        if (lowerDetected.contains("hotel") || lowerDetected.contains("khách sạn") ||
+                lowerDetected.contains("accommodation") || lowerDetected.contains("lưu trú")) {
+            return "Chỗ ở & Lưu trú";
+        }
+
+        if (lowerDetected.contains("shop") || lowerDetected.contains("mua") ||
+                lowerDetected.contains("shopping") || lowerDetected.contains("siêu thị")) {
+            return "Mua sắm";
+        }
+
+        if (lowerDetected.contains("entertain") || lowerDetected.contains("giải trí") ||
+                lowerDetected.contains("cinema") || lowerDetected.contains("movie")) {
+            return "Giải trí";
+        }
+
+        // Default fallback
+        log.warn("Unknown category detected: {}, falling back to 'Khác'", detectedCategory);
+        return "Khác";
+    }
+}
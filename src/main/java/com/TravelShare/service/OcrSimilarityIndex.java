@@ -0,0 +1,89 @@
+package com.TravelShare.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.OptionalDouble;
+
+/**
+ * Gợi ý "có thể trùng hóa đơn đã quét": perceptual hash (dHash 64 bit) của các ảnh gần đây của từng người dùng,
+ * chỉ giữ trong bộ nhớ. Không dùng lại kết quả OCR cũ: hai hóa đơn khác nhau cùng mẫu in (cùng quán, cùng máy in)
+ * có dHash rất gần nhau nhưng số tiền khác; ảnh trùng byte đã được cache "ocr-cache" của OcrGateway xử lý.
+ * Mỗi người dùng chỉ giữ một số ít hash mới nhất, nên một lần tìm chỉ duyệt vài trăm số long, không đụng DB.
+ */
+@Service
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class OcrSimilarityIndex {
+    static final int HASH_BITS = 64;
+
+    int maxDistance;
+    int maxEntriesPerUser;
+    Cache<String, RecentHashes> recentByUser;
+
+    public OcrSimilarityIndex(@Value("${app.ocr.similarity.max-distance:6}") int maxDistance,
+                              @Value("${app.ocr.similarity.max-entries-per-user:200}") int maxEntriesPerUser,
+                              @Value("${app.ocr.similarity.max-users:10000}") long maxUsers,
+                              @Value("${app.ocr.similarity.retention-days:30}") long retentionDays) {
+        this.maxDistance = maxDistance;
+        this.maxEntriesPerUser = maxEntriesPerUser;
+        this.recentByUser = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterAccess(Duration.ofDays(retentionDays))
+                .build();
+    }
+
+    /**
+     * Độ tương đồng (1 - Hamming / 64) với ảnh gần nhất trong các ảnh gần đây của userId,
+     * rỗng nếu không có ảnh nào trong phạm vi max-distance.
+     */
+    public OptionalDouble findSimilarity(String userId, long perceptualHash) {
+        if (userId == null) {
+            return OptionalDouble.empty();
+        }
+        RecentHashes recent = recentByUser.getIfPresent(userId);
+        int distance = recent != null ? recent.nearestDistance(perceptualHash) : Integer.MAX_VALUE;
+        if (distance > maxDistance) {
+            return OptionalDouble.empty();
+        }
+        return OptionalDouble.of(1.0 - (double) distance / HASH_BITS);
+    }
+
+    public void add(String userId, long perceptualHash) {
+        if (userId == null) {
+            return;
+        }
+        recentByUser.get(userId, key -> new RecentHashes(maxEntriesPerUser)).add(perceptualHash);
+    }
+
+    // Vòng tròn cố định kích thước, ghi đè hash cũ nhất khi đầy
+    private static final class RecentHashes {
+        final long[] hashes;
+        int size;
+        int next;
+
+        RecentHashes(int capacity) {
+            this.hashes = new long[capacity];
+        }
+
+        synchronized void add(long hash) {
+            hashes[next] = hash;
+            next = (next + 1) % hashes.length;
+            size = Math.min(size + 1, hashes.length);
+        }
+
+        synchronized int nearestDistance(long hash) {
+            int best = Integer.MAX_VALUE;
+            for (int i = 0; i < size; i++) {
+                best = Math.min(best, Long.bitCount(hashes[i] ^ hash));
+            }
+            return best;
+        }
+    }
+}
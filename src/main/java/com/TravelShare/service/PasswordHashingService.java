@@ -0,0 +1,109 @@
+package com.TravelShare.service;
+
+import com.TravelShare.exception.AppException;
+import com.TravelShare.exception.ErrorCode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Điểm duy nhất để hash / kiểm tra mật khẩu. Việc hash tốn CPU (argon2id / bcrypt) chạy trên một pool giới hạn
+ * theo số core với hàng đợi ngắn: khi đăng nhập dồn dập, request vượt quá sức chứa bị từ chối ngay (SERVER_BUSY)
+ * thay vì tất cả cùng tranh CPU với các request khác.
+ */
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class PasswordHashingService {
+    PasswordEncoder passwordEncoder;
+
+    @NonFinal
+    @Value("${app.security.password.hashing-threads:0}")
+    int hashingThreads;
+
+    @NonFinal
+    @Value("${app.security.password.queue-capacity:64}")
+    int queueCapacity;
+
+    @NonFinal
+    @Value("${app.security.password.timeout-ms:5000}")
+    long timeoutMs;
+
+    @NonFinal
+    ThreadPoolExecutor executor;
+
+    @PostConstruct
+    void start() {
+        int threads = hashingThreads > 0 ? hashingThreads : Math.max(1, Runtime.getRuntime().availableProcessors());
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        log.info("Password hashing pool started: threads={}, queueCapacity={}", threads, queueCapacity);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    public String hash(String rawPassword) {
+        return run(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    public boolean matches(String rawPassword, String encodedPassword) {
+        if (rawPassword == null || encodedPassword == null) {
+            return false;
+        }
+        return run(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Hash được tạo bằng thuật toán / tham số cũ hơn cấu hình hiện tại, nên hash lại khi người dùng đăng nhập.
+     */
+    public boolean needsUpgrade(String encodedPassword) {
+        return encodedPassword != null && passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T run(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            log.warn("Password hashing queue full ({}), rejecting request", queueCapacity);
+            throw new AppException(ErrorCode.SERVER_BUSY);
+        }
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            log.warn("Password hashing timed out after {} ms", timeoutMs);
+            throw new AppException(ErrorCode.SERVER_BUSY);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new AppException(ErrorCode.SERVER_BUSY);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
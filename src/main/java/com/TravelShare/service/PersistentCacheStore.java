@@ -0,0 +1,67 @@
+package com.TravelShare.service;
+
+import com.TravelShare.entity.CacheEntry;
+import com.TravelShare.repository.CacheEntryRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Tầng lưu trữ bền vững (PostgreSQL) cho TwoTierCache. Mỗi thao tác chạy trong transaction riêng
+ * để lỗi ở tầng cache không kéo theo rollback transaction của nghiệp vụ đang gọi.
+ */
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class PersistentCacheStore {
+    CacheEntryRepository cacheEntryRepository;
+    ObjectMapper objectMapper;
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public Optional<Object> get(String cacheName, String key) throws ClassNotFoundException, JsonProcessingException {
+        Optional<CacheEntry> entry = cacheEntryRepository
+                .findByCacheNameAndCacheKeyAndExpiresAtAfter(cacheName, key, LocalDateTime.now());
+        if (entry.isEmpty()) {
+            return Optional.empty();
+        }
+        Class<?> type = Class.forName(entry.get().getValueType());
+        return Optional.of(objectMapper.readValue(entry.get().getValue(), type));
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void put(String cacheName, String key, Object value, Duration ttl) throws JsonProcessingException {
+        cacheEntryRepository.upsert(cacheName, key, value.getClass().getName(),
+                objectMapper.writeValueAsString(value), LocalDateTime.now().plus(ttl));
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void evict(String cacheName, String key) {
+        cacheEntryRepository.deleteEntry(cacheName, key);
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void clear(String cacheName) {
+        cacheEntryRepository.deleteAllInCache(cacheName);
+    }
+
+    @Transactional
+    public int deleteExpired() {
+        return cacheEntryRepository.deleteExpired(LocalDateTime.now());
+    }
+
+    @Transactional(readOnly = true)
+    public long count(String cacheName) {
+        return cacheEntryRepository.countByCacheName(cacheName);
+    }
+}
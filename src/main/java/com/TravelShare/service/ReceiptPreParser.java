@@ -0,0 +1,329 @@
+package com.TravelShare.service;
+
+import com.TravelShare.dto.response.OCRResponse;
+import com.TravelShare.dto.response.ReceiptPreParserStatsResponse;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.text.ParsePosition;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalQuery;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Đọc hóa đơn không cần model từ nội dung mã QR in trên hóa đơn:
+ * - VietQR / EMVCo (QR thanh toán động): số tiền (tag 54), tên người nhận (tag 59), nội dung (tag 62-08), có kiểm tra CRC.
+ * - QR hóa đơn điện tử dạng key=value (văn bản hoặc URL tra cứu): tổng tiền, ngày lập, người bán.
+ * Chỉ trả kết quả khi chắc chắn (CRC đúng và có số tiền, hoặc có cả tổng tiền lẫn ngày), còn lại để model xử lý.
+ */
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class ReceiptPreParser {
+    static final String EMV_PREFIX = "000201";
+    static final String EMV_CRC_TAG = "6304";
+    static final String VND_CURRENCY = "704";
+
+    static final Pattern FIELD_SEPARATOR = Pattern.compile("[\\r\\n|;&]+");
+    static final Pattern KEY_VALUE = Pattern.compile("\\s*([^=:]+?)\\s*[=:]\\s*(.+?)\\s*");
+    // Định dạng số kiểu Việt Nam: "9.010.000" hoặc "9,010,000" là phân cách hàng nghìn
+    static final Pattern GROUPED_NUMBER = Pattern.compile("\\d{1,3}([.,])\\d{3}(\\1\\d{3})*");
+    static final Pattern PLAIN_NUMBER = Pattern.compile("\\d+([.,]\\d{1,2})?");
+    static final Pattern CURRENCY_NOISE = Pattern.compile("(?i)\\s|vnd|vnđ|đ|₫");
+    static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}");
+    static final Pattern NON_KEY_CHARS = Pattern.compile("[^a-z0-9]");
+    static final Pattern NON_WORD_CHARS = Pattern.compile("[^a-z0-9]+");
+
+    // Theo thứ tự ưu tiên
+    static final List<String> TOTAL_KEYS = List.of(
+            "tongtienthanhtoan", "tgtttbso", "tongcong", "tongtien", "sotien", "totalamount", "total", "amount");
+    static final List<String> DATE_KEYS = List.of(
+            "ngay", "ngayhd", "ngaylap", "ngayhoadon", "nlap", "date", "invoicedate");
+    static final List<String> SELLER_KEYS = List.of(
+            "tennban", "tennguoiban", "nguoiban", "donvibanhang", "seller", "sellername", "merchant", "merchantname");
+
+    static final String DEFAULT_CATEGORY = "Khác";
+    // Tên người bán (bỏ dấu, chữ thường) -> category, so theo nguyên từ; thứ tự là thứ tự ưu tiên.
+    // Không đi qua OcrGateway.validateAndMapCategory: hàm đó map nhãn category của model, không phải tên quán
+    static final List<Map.Entry<String, List<String>>> MERCHANT_CATEGORY_KEYWORDS = List.of(
+            Map.entry("Ăn uống", List.of("nha hang", "restaurant", "quan an", "com tam", "pho", "bun", "banh mi",
+                    "lau", "cafe", "coffee", "ca phe", "tra sua", "bakery", "starbucks", "highlands", "phuc long",
+                    "kfc", "lotteria", "jollibee", "pizza", "food")),
+            Map.entry("Đi lại & Phương tiện", List.of("grab", "taxi", "xanh sm", "gojek", "be group", "vietjet",
+                    "vietnam airlines", "bamboo airways", "xang dau", "petrolimex", "ve xe", "ve tau", "futa",
+                    "phuong trang", "bai xe", "parking")),
+            Map.entry("Chỗ ở & Lưu trú", List.of("khach san", "hotel", "homestay", "resort", "nha nghi", "hostel",
+                    "motel", "villa", "agoda", "airbnb")),
+            Map.entry("Mua sắm", List.of("sieu thi", "supermarket", "winmart", "coopmart", "bach hoa xanh", "aeon",
+                    "circle k", "familymart", "ministop", "cua hang", "shop", "store", "the gioi di dong",
+                    "dien may xanh")),
+            Map.entry("Giải trí", List.of("cgv", "bhd", "cinema", "rap phim", "karaoke", "bida", "vinwonders",
+                    "sun world")));
+
+    static final List<DateTimeFormatter> DATE_TIME_FORMATS = List.of(
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"),
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"),
+            DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss"),
+            DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm"));
+    static final List<DateTimeFormatter> DATE_FORMATS = List.of(
+            DateTimeFormatter.ofPattern("yyyy-MM-dd"),
+            DateTimeFormatter.ofPattern("dd/MM/yyyy"),
+            DateTimeFormatter.ofPattern("dd-MM-yyyy"),
+            DateTimeFormatter.ofPattern("yyyyMMdd"));
+
+    AtomicLong attempts = new AtomicLong();
+    AtomicLong qrDetected = new AtomicLong();
+    AtomicLong localHits = new AtomicLong();
+    AtomicLong totalParseNanos = new AtomicLong();
+
+    /**
+     * Trả về kết quả đọc từ QR nếu đủ tin cậy, rỗng nếu cần gọi model.
+     */
+    public Optional<OCRResponse> tryParse(String qrPayload) {
+        long startedAt = System.nanoTime();
+        attempts.incrementAndGet();
+        try {
+            if (qrPayload == null || qrPayload.isBlank()) {
+                return Optional.empty();
+            }
+            qrDetected.incrementAndGet();
+            String payload = qrPayload.trim();
+            Optional<OCRResponse> result = payload.startsWith(EMV_PREFIX)
+                    ? parseEmvPayment(payload)
+                    : parseInvoiceFields(payload);
+            if (result.isPresent()) {
+                localHits.incrementAndGet();
+            } else {
+                log.info("QR code found but not confident enough, falling back to model");
+            }
+            return result;
+        } catch (RuntimeException e) {
+            log.warn("Failed to pre-parse receipt QR code: {}", e.getMessage());
+            return Optional.empty();
+        } finally {
+            totalParseNanos.addAndGet(System.nanoTime() - startedAt);
+        }
+    }
+
+    public ReceiptPreParserStatsResponse getStats() {
+        long total = attempts.get();
+        long hits = localHits.get();
+        return ReceiptPreParserStatsResponse.builder()
+                .attempts(total)
+                .qrDetected(qrDetected.get())
+                .localHits(hits)
+                .fallbacks(total - hits)
+                .hitRate(total == 0 ? 0 : hits / (double) total)
+                .averageParseMicros(total == 0 ? 0
+                        : totalParseNanos.get() / (double) total / TimeUnit.MICROSECONDS.toNanos(1))
+                .build();
+    }
+
+    private Optional<OCRResponse> parseEmvPayment(String payload) {
+        if (!hasValidCrc(payload)) {
+            return Optional.empty();
+        }
+        Map<String, String> tags = parseTlv(payload);
+        if (tags == null) {
+            return Optional.empty();
+        }
+        // Số tiền bằng ngoại tệ: để model xử lý
+        String currency = tags.get("53");
+        if (currency != null && !VND_CURRENCY.equals(currency)) {
+            return Optional.empty();
+        }
+        BigDecimal amount = parseAmount(tags.get("54"));
+        if (amount == null || amount.signum() <= 0) {
+            return Optional.empty();
+        }
+        String merchant = tags.get("59");
+        Map<String, String> additional = tags.containsKey("62") ? parseTlv(tags.get("62")) : null;
+        String purpose = additional != null ? additional.get("08") : null;
+
+        // QR thanh toán không mang ngày giao dịch
+        return Optional.of(new OCRResponse(
+                merchant,
+                amount,
+                null,
+                purpose != null ? purpose : merchant,
+                categoryForMerchant(merchant),
+                null));
+    }
+
+    private Optional<OCRResponse> parseInvoiceFields(String payload) {
+        boolean url = payload.contains("://");
+        String content = url && payload.indexOf('?') >= 0 ? payload.substring(payload.indexOf('?') + 1) : payload;
+
+        Map<String, String> fields = new HashMap<>();
+        for (String token : FIELD_SEPARATOR.split(content)) {
+            Matcher matcher = KEY_VALUE.matcher(token);
+            if (matcher.matches()) {
+                String value = url ? URLDecoder.decode(matcher.group(2), StandardCharsets.UTF_8) : matcher.group(2);
+                fields.putIfAbsent(normalizeKey(matcher.group(1)), value);
+            }
+        }
+
+        BigDecimal amount = firstParsed(fields, TOTAL_KEYS, ReceiptPreParser::parseAmount);
+        LocalDateTime date = firstParsed(fields, DATE_KEYS, ReceiptPreParser::parseDate);
+        if (amount == null || amount.signum() <= 0 || date == null) {
+            return Optional.empty();
+        }
+        String seller = firstParsed(fields, SELLER_KEYS, String::trim);
+        return Optional.of(new OCRResponse(
+                seller,
+                amount,
+                date,
+                seller,
+                categoryForMerchant(seller),
+                null));
+    }
+
+    private static <T> T firstParsed(Map<String, String> fields, List<String> keys, Function<String, T> parser) {
+        for (String key : keys) {
+            String value = fields.get(key);
+            T parsed = value != null ? parser.apply(value) : null;
+            if (parsed != null) {
+                return parsed;
+            }
+        }
+        return null;
+    }
+
+    static BigDecimal parseAmount(String raw) {
+        if (raw == null) {
+            return null;
+        }
+        String value = CURRENCY_NOISE.matcher(raw).replaceAll("");
+        if (GROUPED_NUMBER.matcher(value).matches()) {
+            return new BigDecimal(value.replace(".", "").replace(",", ""));
+        }
+        if (PLAIN_NUMBER.matcher(value).matches()) {
+            return new BigDecimal(value.replace(',', '.'));
+        }
+        return null;
+    }
+
+    static LocalDateTime parseDate(String raw) {
+        String value = raw.trim();
+        // Bỏ phần múi giờ / mili giây nếu có
+        String dateTime = value.length() > 19 ? value.substring(0, 19) : value;
+        for (DateTimeFormatter format : DATE_TIME_FORMATS) {
+            LocalDateTime parsed = parseExactly(dateTime, format, LocalDateTime::from);
+            if (parsed != null) {
+                return parsed;
+            }
+        }
+        String date = value.length() > 10 ? value.substring(0, 10) : value;
+        for (DateTimeFormatter format : DATE_FORMATS) {
+            LocalDate parsed = parseExactly(date, format, LocalDate::from);
+            if (parsed != null) {
+                return parsed.atStartOfDay();
+            }
+        }
+        return null;
+    }
+
+    // Thử định dạng bằng parseUnresolved (không ném exception) trước, chỉ parse đầy đủ khi khớp toàn bộ chuỗi
+    private static <T> T parseExactly(String text, DateTimeFormatter format, TemporalQuery<T> query) {
+        ParsePosition position = new ParsePosition(0);
+        if (format.parseUnresolved(text, position) == null || position.getIndex() != text.length()) {
+            return null;
+        }
+        try {
+            return format.parse(text, query);
+        } catch (DateTimeParseException e) {
+            // Đúng khuôn nhưng giá trị không hợp lệ, ví dụ 31/02
+            return null;
+        }
+    }
+
+    // "Tổng tiền", "TONG_TIEN", "tongTien" đều thành "tongtien"
+    private static String normalizeKey(String key) {
+        return NON_KEY_CHARS.matcher(stripMarks(key)).replaceAll("");
+    }
+
+    /**
+     * Đoán category từ tên người bán theo từ khóa, không khớp từ nào thì là "Khác".
+     */
+    static String categoryForMerchant(String merchant) {
+        if (merchant == null || merchant.isBlank()) {
+            return DEFAULT_CATEGORY;
+        }
+        String words = " " + NON_WORD_CHARS.matcher(stripMarks(merchant)).replaceAll(" ").trim() + " ";
+        for (Map.Entry<String, List<String>> entry : MERCHANT_CATEGORY_KEYWORDS) {
+            for (String keyword : entry.getValue()) {
+                if (words.contains(" " + keyword + " ")) {
+                    return entry.getKey();
+                }
+            }
+        }
+        return DEFAULT_CATEGORY;
+    }
+
+    private static String stripMarks(String text) {
+        String stripped = COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .replace('đ', 'd')
+                .replace('Đ', 'D');
+        return stripped.toLowerCase(Locale.ROOT);
+    }
+
+    // EMVCo TLV: 2 ký tự id, 2 ký tự độ dài, rồi giá trị
+    private static Map<String, String> parseTlv(String data) {
+        Map<String, String> tags = new HashMap<>();
+        int index = 0;
+        while (index + 4 <= data.length()) {
+            int length;
+            try {
+                length = Integer.parseInt(data.substring(index + 2, index + 4));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            int end = index + 4 + length;
+            if (end > data.length()) {
+                return null;
+            }
+            tags.put(data.substring(index, index + 2), data.substring(index + 4, end));
+            index = end;
+        }
+        return index == data.length() ? tags : null;
+    }
+
+    // CRC-16/CCITT-FALSE trên toàn bộ payload tính đến hết "6304"
+    private static boolean hasValidCrc(String payload) {
+        int crcIndex = payload.length() - 8;
+        if (crcIndex < 0 || !payload.startsWith(EMV_CRC_TAG, crcIndex)) {
+            return false;
+        }
+        int expected;
+        try {
+            expected = Integer.parseInt(payload.substring(crcIndex + 4), 16);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        int crc = 0xFFFF;
+        for (byte b : payload.substring(0, crcIndex + 4).getBytes(StandardCharsets.UTF_8)) {
+            crc ^= (b & 0xFF) << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+            crc &= 0xFFFF;
+        }
+        return crc == expected;
+    }
+}
@@ -15,6 +15,7 @@ import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -35,6 +36,7 @@ public class RequestService {
     final NotificationService notificationService;
     final SettlementRepository settlementRepository;
     final ExpenseFinalizationService expenseFinalizationService;
+    final BalanceLedgerService balanceLedgerService;
 
 
     public RequestResponse createRequest(RequestCreationRequest request, User sender) {
@@ -183,6 +185,7 @@ public class RequestService {
                 .collect(Collectors.toList());
     }
 
+    @Transactional
     public RequestResponse acceptRequest(Long requestId, User receiver) {
         Request req = requestRepository.findById(requestId)
                 .orElseThrow(() -> new AppException(ErrorCode.REQUEST_NOT_EXISTED));
@@ -226,17 +229,15 @@ public class RequestService {
 
                     Settlement settlement = settlementRepository.findById(pendingConfirmRequest.getReferenceId())
                             .orElseThrow(() -> new AppException(ErrorCode.SETTLEMENT_NOT_FOUND));
-                    settlement.setStatus(Settlement.SettlementStatus.COMPLETED);
                     settlement.setSettledAt(LocalDateTime.now());
-                    settlementRepository.save(settlement);
+                    changeSettlementStatus(settlement, Settlement.SettlementStatus.COMPLETED);
                 } else {
                     // Luồng 2: referenceId là settlementId
                     Optional<Settlement> settlementOpt = settlementRepository.findById(req.getReferenceId());
                     if (settlementOpt.isPresent()) {
                         Settlement settlement = settlementOpt.get();
-                        settlement.setStatus(Settlement.SettlementStatus.COMPLETED);
                         settlement.setSettledAt(LocalDateTime.now());
-                        settlementRepository.save(settlement);
+                        changeSettlementStatus(settlement, Settlement.SettlementStatus.COMPLETED);
                     } else {
                         throw new AppException(ErrorCode.SETTLEMENT_NOT_FOUND);
                     }
@@ -251,6 +252,7 @@ public class RequestService {
         return requestMapper.toRequestResponse(req);
     }
 
+    @Transactional
     public RequestResponse declineRequest(Long requestId, User receiver) {
         Request req = requestRepository.findById(requestId)
                 .orElseThrow(() -> new AppException(ErrorCode.REQUEST_NOT_EXISTED));
@@ -274,8 +276,7 @@ public class RequestService {
             if (req.getReferenceId() != null) {
                 Settlement settlement = settlementRepository.findById(req.getReferenceId())
                         .orElseThrow(() -> new AppException(ErrorCode.SETTLEMENT_NOT_FOUND));
-                settlement.setStatus(Settlement.SettlementStatus.FAILED);
-                settlementRepository.save(settlement);
+                changeSettlementStatus(settlement, Settlement.SettlementStatus.FAILED);
             }
 
             // Gửi notification
@@ -301,17 +302,15 @@ public class RequestService {
 
                     Settlement settlement = settlementRepository.findById(pendingConfirmRequest.getReferenceId())
                             .orElseThrow(() -> new AppException(ErrorCode.SETTLEMENT_NOT_FOUND));
-                    settlement.setStatus(Settlement.SettlementStatus.FAILED);
                     settlement.setSettledAt(LocalDateTime.now());
-                    settlementRepository.save(settlement);
+                    changeSettlementStatus(settlement, Settlement.SettlementStatus.FAILED);
                 } else {
                     // Luồng 2: referenceId là settlementId
                     Optional<Settlement> settlementOpt = settlementRepository.findById(req.getReferenceId());
                     if (settlementOpt.isPresent()) {
                         Settlement settlement = settlementOpt.get();
-                        settlement.setStatus(Settlement.SettlementStatus.FAILED);
                         settlement.setSettledAt(LocalDateTime.now());
-                        settlementRepository.save(settlement);
+                        changeSettlementStatus(settlement, Settlement.SettlementStatus.FAILED);
                     } else {
                         throw new AppException(ErrorCode.SETTLEMENT_NOT_FOUND);
                     }
@@ -327,6 +326,7 @@ public class RequestService {
         return requestMapper.toRequestResponse(req);
     }
 
+    @Transactional
     public void cancelRequest(Long requestId, User sender) {
         Request req = requestRepository.findById(requestId)
                 .orElseThrow(() -> new AppException(ErrorCode.REQUEST_NOT_EXISTED));
@@ -344,8 +344,7 @@ public class RequestService {
             if (req.getReferenceId() != null) {
                 Settlement settlement = settlementRepository.findById(req.getReferenceId())
                         .orElseThrow(() -> new AppException(ErrorCode.SETTLEMENT_NOT_FOUND));
-                settlement.setStatus(Settlement.SettlementStatus.FAILED);
-                settlementRepository.save(settlement);
+                changeSettlementStatus(settlement, Settlement.SettlementStatus.FAILED);
             }
 
             // Gửi notification
@@ -447,6 +446,14 @@ public class RequestService {
         requestRepository.delete(req);
     }
 
+    // Đổi trạng thái settlement và ghi delta tương ứng vào sổ cái số dư
+    private void changeSettlementStatus(Settlement settlement, Settlement.SettlementStatus status) {
+        Settlement.SettlementStatus previousStatus = settlement.getStatus();
+        settlement.setStatus(status);
+        settlementRepository.save(settlement);
+        balanceLedgerService.recordSettlementStatusChange(settlement, previousStatus);
+    }
+
     // Method để accept payment request khi VNPay callback thành công
     public void acceptPaymentRequestBySettlementId(Long settlementId) {
         Optional<Request> reqOpt = requestRepository.findByReferenceIdAndType(settlementId, "PAYMENT_REQUEST");
@@ -0,0 +1,182 @@
+package com.TravelShare.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Engine lập kế hoạch thanh toán (debt simplification) chạy trên số dư dạng long minor-unit.
+ * Không truy cập DB: SettlementService nạp participant và số dư một lần rồi gọi plan().
+ *
+ * <ul>
+ *     <li>GREEDY: ghép người nợ lớn nhất với người được nhận lớn nhất (thuật toán cũ), O(n log n).</li>
+ *     <li>MIN_TRANSACTIONS: chia participant thành nhiều nhóm con có tổng bằng 0 nhất có thể,
+ *     mỗi nhóm k người chỉ cần k-1 giao dịch, nên tổng số giao dịch là nhỏ nhất. Độ phức tạp O(2^n * n),
+ *     vì vậy chỉ áp dụng khi số participant có số dư khác 0 không vượt quá {@link #MAX_EXACT_PARTICIPANTS},
+ *     ngược lại tự động quay về GREEDY.</li>
+ * </ul>
+ */
+@Component
+@Slf4j
+public class SettlementPlanner {
+    public static final int MINOR_UNIT_SCALE = 2;
+    static final int MAX_EXACT_PARTICIPANTS = 18;
+
+    public enum PlanMode {
+        GREEDY, MIN_TRANSACTIONS
+    }
+
+    /**
+     * Một giao dịch đề xuất, from/to là chỉ số trong mảng balances truyền vào.
+     */
+    public record Transfer(int from, int to, long amount) {
+    }
+
+    public static long toMinorUnits(BigDecimal amount) {
+        return amount.setScale(MINOR_UNIT_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal fromMinorUnits(long amount) {
+        return BigDecimal.valueOf(amount, MINOR_UNIT_SCALE);
+    }
+
+    public List<Transfer> plan(long[] balances, PlanMode mode) {
+        int[] nonZero = nonZeroIndexes(balances);
+        if (mode == PlanMode.MIN_TRANSACTIONS) {
+            if (nonZero.length <= MAX_EXACT_PARTICIPANTS) {
+                return planMinTransactions(balances, nonZero);
+            }
+            log.info("Too many participants ({}) for exact settlement planning, falling back to greedy", nonZero.length);
+        }
+        return planGreedy(balances, nonZero);
+    }
+
+    private List<Transfer> planGreedy(long[] balances, int[] indexes) {
+        int debtorCount = 0;
+        int creditorCount = 0;
+        for (int index : indexes) {
+            if (balances[index] < 0) debtorCount++;
+            else creditorCount++;
+        }
+
+        int[] debtors = new int[debtorCount];
+        int[] creditors = new int[creditorCount];
+        int d = 0;
+        int c = 0;
+        for (int index : indexes) {
+            if (balances[index] < 0) debtors[d++] = index;
+            else creditors[c++] = index;
+        }
+        // Ưu tiên khoản nợ/khoản nhận lớn nhất trước
+        sortByAmountDesc(debtors, balances);
+        sortByAmountDesc(creditors, balances);
+
+        long[] debt = new long[debtorCount];
+        long[] credit = new long[creditorCount];
+        for (int i = 0; i < debtorCount; i++) debt[i] = -balances[debtors[i]];
+        for (int j = 0; j < creditorCount; j++) credit[j] = balances[creditors[j]];
+
+        List<Transfer> transfers = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < debtorCount && j < creditorCount) {
+            long amount = Math.min(debt[i], credit[j]);
+            transfers.add(new Transfer(debtors[i], creditors[j], amount));
+
+            debt[i] -= amount;
+            credit[j] -= amount;
+            if (debt[i] == 0) i++;
+            if (credit[j] == 0) j++;
+        }
+        return transfers;
+    }
+
+    private List<Transfer> planMinTransactions(long[] balances, int[] indexes) {
+        int n = indexes.length;
+        int full = (1 << n) - 1;
+        long[] sum = new long[full + 1];
+        int[] groups = new int[full + 1];
+
+        // groups[mask] = số nhóm con tổng bằng 0 (rời nhau) nhiều nhất có thể tách từ mask
+        for (int mask = 1; mask <= full; mask++) {
+            int lowest = Integer.numberOfTrailingZeros(mask);
+            sum[mask] = sum[mask & (mask - 1)] + balances[indexes[lowest]];
+
+            int best = 0;
+            for (int rest = mask; rest != 0; rest &= rest - 1) {
+                int bit = Integer.numberOfTrailingZeros(rest);
+                best = Math.max(best, groups[mask ^ (1 << bit)]);
+            }
+            groups[mask] = best + (sum[mask] == 0 ? 1 : 0);
+        }
+
+        // Truy vết thứ tự thêm phần tử, mỗi lần tổng tiền tố về 0 là đóng một nhóm con
+        int[] order = new int[n];
+        int position = n;
+        int mask = full;
+        while (mask != 0) {
+            int closing = sum[mask] == 0 ? 1 : 0;
+            for (int rest = mask; rest != 0; rest &= rest - 1) {
+                int bit = Integer.numberOfTrailingZeros(rest);
+                int previous = mask ^ (1 << bit);
+                if (groups[previous] + closing == groups[mask]) {
+                    order[--position] = indexes[bit];
+                    mask = previous;
+                    break;
+                }
+            }
+        }
+
+        List<Transfer> transfers = new ArrayList<>();
+        long running = 0;
+        int start = 0;
+        for (int k = 0; k < n; k++) {
+            running += balances[order[k]];
+            if (running == 0 || k == n - 1) {
+                transfers.addAll(planGreedy(balances, Arrays.copyOfRange(order, start, k + 1)));
+                start = k + 1;
+            }
+        }
+        return transfers;
+    }
+
+    private static int[] nonZeroIndexes(long[] balances) {
+        int count = 0;
+        for (long balance : balances) {
+            if (balance != 0) count++;
+        }
+        int[] indexes = new int[count];
+        int k = 0;
+        for (int i = 0; i < balances.length; i++) {
+            if (balances[i] != 0) indexes[k++] = i;
+        }
+        return indexes;
+    }
+
+    /**
+     * Merge sort ổn định trên mảng chỉ số, so sánh theo |balance| giảm dần (tránh boxing của Comparator).
+     */
+    private static void sortByAmountDesc(int[] indexes, long[] balances) {
+        int[] buffer = new int[indexes.length];
+        for (int width = 1; width < indexes.length; width <<= 1) {
+            for (int left = 0; left < indexes.length - width; left += width << 1) {
+                int mid = left + width;
+                int right = Math.min(left + (width << 1), indexes.length);
+                int a = left;
+                int b = mid;
+                int k = left;
+                while (a < mid && b < right) {
+                    buffer[k++] = Math.abs(balances[indexes[b]]) > Math.abs(balances[indexes[a]]) ? indexes[b++] : indexes[a++];
+                }
+                while (a < mid) buffer[k++] = indexes[a++];
+                while (b < right) buffer[k++] = indexes[b++];
+                System.arraycopy(buffer, left, indexes, left, right - left);
+            }
+        }
+    }
+}
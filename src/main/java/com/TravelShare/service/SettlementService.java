@@ -3,8 +3,10 @@ package com.TravelShare.service;
 import com.TravelShare.dto.request.RequestCreationRequest;
 import com.TravelShare.dto.request.SettlementCreationRequest;
 import com.TravelShare.dto.request.SettlementUpdateRequest;
+import com.TravelShare.dto.response.BalanceReconciliationResponse;
 import com.TravelShare.dto.response.BalanceResponse;
 import com.TravelShare.dto.response.SettlementResponse;
+import com.TravelShare.dto.response.UserBalanceDashboardResponse;
 import com.TravelShare.dto.response.UserSummaryResponse;
 import com.TravelShare.entity.*;
 import com.TravelShare.entity.Currency;
@@ -17,6 +19,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.coyote.BadRequestException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -31,59 +35,61 @@ import java.util.stream.Collectors;
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 @Slf4j
 public class SettlementService {
+    static final int MAX_PAGE_SIZE = 100;
+
     SettlementMapper settlementMapper;
     SettlementRepository settlementRepository;
     GroupRepository groupRepository;
     GroupParticipantRepository participantRepository;
     CurrencyRepository currencyRepository;
     ExpenseRepository expenseRepository;
-    UserRepository    userRepository;
     RequestService requestService;
+    BalanceLedgerService balanceLedgerService;
+    ParticipantBalanceRepository participantBalanceRepository;
+    SettlementPlanner settlementPlanner;
 
     public List<SettlementResponse> suggestSettlements(Long tripId) {
         return suggestSettlements(tripId, null); // Gọi lại hàm chính với username = null
     }
 
     public List<SettlementResponse> suggestSettlements(Long groupId, String username) {
+        return suggestSettlements(groupId, username, SettlementPlanner.PlanMode.GREEDY);
+    }
+
+    public List<SettlementResponse> suggestSettlements(Long groupId, String username, SettlementPlanner.PlanMode mode) {
         Group group = groupRepository.findById(groupId)
                 .orElseThrow(() -> new AppException(ErrorCode.GROUP_NOT_EXISTED));
 
+        // Nạp toàn bộ participant (kèm user) một lần, không query lại trong vòng lặp
+        List<GroupParticipant> participants = participantRepository.findAllWithUserByGroupId(groupId);
+        Map<Long, BigDecimal> balances = balanceLedgerService.getBalances(groupId, participants);
 
-        // Calculate balances using converted amounts for consistency in group currency
-        Map<Long, BigDecimal> balances = calculateBalances(group);
-
-        List<Map.Entry<Long, BigDecimal>> debtors = new ArrayList<>();
-        List<Map.Entry<Long, BigDecimal>> creditors = new ArrayList<>();
-
-        for (var entry : balances.entrySet()) {
-            if (entry.getValue().compareTo(BigDecimal.ZERO) < 0) {
-                debtors.add(entry);
-            } else if (entry.getValue().compareTo(BigDecimal.ZERO) > 0) {
-                creditors.add(entry);
-            }
+        long[] minorBalances = new long[participants.size()];
+        for (int i = 0; i < participants.size(); i++) {
+            minorBalances[i] = SettlementPlanner.toMinorUnits(balances.get(participants.get(i).getId()));
         }
 
-        // Sort by amount (largest debts and credits first for efficient settlement)
-        debtors.sort((a, b) -> b.getValue().abs().compareTo(a.getValue().abs()));
-        creditors.sort((a, b) -> b.getValue().compareTo(a.getValue()));
+        Long userParticipantId = null;
+        if (username != null) {
+            userParticipantId = participants.stream()
+                    .filter(p -> p.getUser() != null && username.equals(p.getUser().getUsername()))
+                    .map(GroupParticipant::getId)
+                    .findFirst()
+                    .orElseThrow(() -> new AppException(ErrorCode.PARTICIPANT_NOT_EXISTED));
+        }
 
+        String currencyCode = group.getDefaultCurrency().getCode(); // Always use group default currency
         List<SettlementResponse> suggestions = new ArrayList<>();
+        for (SettlementPlanner.Transfer transfer : settlementPlanner.plan(minorBalances, mode)) {
+            GroupParticipant from = participants.get(transfer.from());
+            GroupParticipant to = participants.get(transfer.to());
+            if (userParticipantId != null
+                    && !from.getId().equals(userParticipantId)
+                    && !to.getId().equals(userParticipantId)) {
+                continue;
+            }
 
-        int i = 0, j = 0;
-        while (i < debtors.size() && j < creditors.size()) {
-            Long debtorId = debtors.get(i).getKey();
-            Long creditorId = creditors.get(j).getKey();
-
-            BigDecimal debtAmount = debtors.get(i).getValue().abs();
-            BigDecimal creditAmount = creditors.get(j).getValue();
-            BigDecimal settlementAmount = debtAmount.min(creditAmount);
-
-            GroupParticipant from = participantRepository.findById(debtorId)
-                    .orElseThrow(() -> new AppException(ErrorCode.PARTICIPANT_NOT_EXISTED));
-            GroupParticipant to = participantRepository.findById(creditorId)
-                    .orElseThrow(() -> new AppException(ErrorCode.PARTICIPANT_NOT_EXISTED));
-
-            SettlementResponse suggestion = SettlementResponse.builder()
+            suggestions.add(SettlementResponse.builder()
                     .groupId(group.getId())
                     .groupName(group.getName())
                     .fromParticipantId(from.getId())
@@ -96,96 +102,28 @@ public class SettlementService {
                     .toParticipantUser(
                             to.getUser() != null ? UserSummaryResponse.from(to.getUser()) : null
                     )
-                    .amount(settlementAmount)
-                    .currencyCode(group.getDefaultCurrency().getCode()) // Always use group default currency
+                    .amount(SettlementPlanner.fromMinorUnits(transfer.amount()))
+                    .currencyCode(currencyCode)
                     .description("Gợi ý thanh toán từ hệ thống")
-                    .build();
-
-            suggestions.add(suggestion);
-
-            // Update remaining balances
-            debtors.get(i).setValue(debtors.get(i).getValue().add(settlementAmount));
-            creditors.get(j).setValue(creditors.get(j).getValue().subtract(settlementAmount));
-
-            // Move to next participant if balance is settled (within 0.01 tolerance)
-            if (debtors.get(i).getValue().abs().compareTo(new BigDecimal("0.01")) < 0) i++;
-            if (creditors.get(j).getValue().compareTo(new BigDecimal("0.01")) < 0) j++;
-        }
-        if (username != null) {
-            User user = userRepository.findByUsername(username)
-                    .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
-
-            // Tìm participant của user theo email
-            GroupParticipant currentParticipant = participantRepository.findByGroupIdAndUserId(groupId, user.getId())
-                    .orElseThrow(() -> new AppException(ErrorCode.PARTICIPANT_NOT_EXISTED));
-
-            Long userParticipantId = currentParticipant.getId();
-
-            suggestions = suggestions.stream()
-                    .filter(s -> s.getFromParticipantId().equals(userParticipantId)
-                            || s.getToParticipantId().equals(userParticipantId))
-                    .collect(Collectors.toList());
+                    .build());
         }
         return suggestions;
-}
+    }
 
     public Map<Long, BigDecimal> calculateBalances(Group group) {
-        Map<Long, BigDecimal> balances = new HashMap<>();
-
-        // Initialize all participant balances to zero
-        for (GroupParticipant participant : group.getParticipants()) {
-            balances.put(participant.getId(), BigDecimal.ZERO);
-        }
-
-        // Process all expenses in the group
-        List<Expense> expenses = expenseRepository.findAllByGroupId(group.getId());
-
-        for (Expense expense : expenses) {
-            for (ExpenseSplit split : expense.getSplits()) {
-                if (split.getParticipant() == null) continue;
-
-                Long participantId = split.getParticipant().getId();
-                BigDecimal splitAmount = split.getAmount();
-
-                // Use convertedAmount for settlement calculations (group currency consistency)
-                // All expenses are already converted to group default currency
-                BigDecimal expenseAmountInGroupCurrency = expense.getConvertedAmount();
-
-                // If they paid, add the total expense amount to their balance
-                if (split.isPayer()) {
-                    balances.put(participantId, balances.get(participantId).add(expenseAmountInGroupCurrency));
-                }
-
-                // Subtract their share from their balance (what they owe)
-                balances.put(participantId, balances.get(participantId).subtract(splitAmount));
-            }
-        }
-
-        // Apply completed settlements to adjust balances
-        List<Settlement> settlements = settlementRepository.findByGroupIdAndStatus(group.getId(), Settlement.SettlementStatus.COMPLETED);
-
-        for (Settlement settlement : settlements) {
-            Long fromId = settlement.getFromParticipant().getId();
-            Long toId = settlement.getToParticipant().getId();
-            BigDecimal amount = settlement.getAmount();
-
-            // Convert settlement amount to group currency if needed
-            BigDecimal settlementAmountInGroupCurrency = amount;
-            if (!settlement.getCurrency().equals(group.getDefaultCurrency())) {
-                // Settlement amounts should already be in group currency, but handle edge cases
-                log.warn("Settlement {} has different currency ({}) than group default currency ({}). Using original amount.",
-                        settlement.getId(), settlement.getCurrency().getCode(), group.getDefaultCurrency().getCode());
-                // In future versions, implement conversion here if needed
-            }
-
-            // Người trả đã trả tiền → cộng lại vào số dư (they get credit)
-            balances.put(fromId, balances.get(fromId).add(settlementAmountInGroupCurrency));
+        // Read from the incrementally maintained ledger (see BalanceLedgerService)
+        return balanceLedgerService.getBalances(group);
+    }
 
-            // Người nhận đã nhận tiền → trừ khỏi số dư (their debt is reduced)
-            balances.put(toId, balances.get(toId).subtract(settlementAmountInGroupCurrency));
-        }
+    public BalanceReconciliationResponse verifyBalances(Long groupId) {
+        return balanceLedgerService.verifyGroup(groupId);
+    }
 
-        return balances;
+    public List<BalanceResponse> rebuildBalances(Long groupId) {
+        balanceLedgerService.rebuildGroup(groupId);
+        Group group = groupRepository.findById(groupId)
+                .orElseThrow(() -> new AppException(ErrorCode.GROUP_NOT_EXISTED));
+        return convertToBalanceResponse(group, calculateBalances(group));
     }
 
     /**
@@ -258,34 +196,39 @@ public class SettlementService {
     }
 
     public List<BalanceResponse> getUserBalancesByGroup(String userId) {
-        List<Group> groups = groupRepository.findByParticipants_User_Id(userId);
-        List<BalanceResponse> result = new ArrayList<>();
-
-        for (Group group : groups) {
-            // Tìm participantId của user trong group này
-            Optional<GroupParticipant> myParticipantOpt = group.getParticipants().stream()
-                    .filter(p -> p.getUser() != null && p.getUser().getId().equals(userId))
-                    .findFirst();
-            if (myParticipantOpt.isEmpty()) continue;
-            GroupParticipant myParticipant = myParticipantOpt.get();
+        List<BalanceResponse> balances = participantBalanceRepository.findUserGroupBalances(userId);
+        balances.forEach(this::defaultMissingBalance);
+        return balances;
+    }
 
-            // Tính balances cho group
-            Map<Long, BigDecimal> balances = calculateBalances(group);
+    public UserBalanceDashboardResponse getUserBalanceDashboard(String userId, int page, int size, boolean includeTotals) {
+        Page<BalanceResponse> balances = participantBalanceRepository.findUserGroupBalances(userId,
+                PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), MAX_PAGE_SIZE)));
+        balances.forEach(this::defaultMissingBalance);
+
+        Map<String, BigDecimal> totalsByCurrency = null;
+        if (includeTotals) {
+            totalsByCurrency = participantBalanceRepository.sumUserBalancesByCurrency(userId).stream()
+                    .collect(Collectors.toMap(
+                            ParticipantBalanceRepository.CurrencyTotal::getCurrencyCode,
+                            ParticipantBalanceRepository.CurrencyTotal::getTotal));
+        }
 
-            // Lấy số dư của user trong group này
-            BigDecimal balance = balances.getOrDefault(myParticipant.getId(), BigDecimal.ZERO);
+        return UserBalanceDashboardResponse.builder()
+                .balances(balances.getContent())
+                .page(balances.getNumber())
+                .size(balances.getSize())
+                .totalElements(balances.getTotalElements())
+                .totalPages(balances.getTotalPages())
+                .totalsByCurrency(totalsByCurrency)
+                .build();
+    }
 
-            result.add(BalanceResponse.builder()
-                    .groupId(group.getId())
-                    .groupName(group.getName())
-                    .participantUserId(userId)
-                    .participantId(myParticipant.getId())
-                    .participantName(myParticipant.getName())
-                    .balance(balance)
-                    .currencyCode(group.getDefaultCurrency().getCode())
-                    .build());
+    // Participant chưa phát sinh giao dịch nào thì chưa có dòng trong sổ cái
+    private void defaultMissingBalance(BalanceResponse balance) {
+        if (balance.getBalance() == null) {
+            balance.setBalance(BigDecimal.ZERO);
         }
-        return result;
     }
 
     @Transactional
@@ -293,23 +236,29 @@ public class SettlementService {
         Settlement settlement = settlementRepository.findById(settlementId)
                 .orElseThrow(() -> new AppException(ErrorCode.SETTLEMENT_NOT_FOUND));
 
+        Settlement.SettlementStatus previousStatus = settlement.getStatus();
         settlement.setStatus(request.getStatus());
         if (request.getStatus() == Settlement.SettlementStatus.COMPLETED) {
             settlement.setSettledAt(LocalDateTime.now());
         }
 
-        return settlementMapper.toSettlementResponse(settlementRepository.save(settlement));
+        settlement = settlementRepository.save(settlement);
+        balanceLedgerService.recordSettlementStatusChange(settlement, previousStatus);
+        return settlementMapper.toSettlementResponse(settlement);
     }
 
+    @Transactional
     public void updateSettlementStatusVnPay(Long settlementId, Settlement.SettlementStatus status, String vnpayTransactionId) {
         Settlement settlement = settlementRepository.findById(settlementId)
                 .orElseThrow(() -> new AppException(ErrorCode.SETTLEMENT_NOT_FOUND));
+        Settlement.SettlementStatus previousStatus = settlement.getStatus();
         settlement.setStatus(status);
         settlement.setVnpayTransactionId(vnpayTransactionId);
         if (status == Settlement.SettlementStatus.COMPLETED) {
             settlement.setSettledAt(LocalDateTime.now());
         }
         settlementRepository.save(settlement);
+        balanceLedgerService.recordSettlementStatusChange(settlement, previousStatus);
     }
 
     public List<SettlementResponse> getGroupSettlements(Long groupId) {
@@ -353,6 +302,7 @@ public class SettlementService {
                 .build();
 
         settlement = settlementRepository.save(settlement);
+        balanceLedgerService.recordSettlementStatusChange(settlement, null);
         User fromUser = from.getUser();
         User toUser = to.getUser();
         String groupName = group.getName();
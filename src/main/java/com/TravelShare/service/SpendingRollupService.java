@@ -0,0 +1,332 @@
+package com.TravelShare.service;
+
+import com.TravelShare.dto.response.SpendingBucketResponse;
+import com.TravelShare.dto.response.SpendingReconciliationResponse;
+import com.TravelShare.dto.response.SpendingSeriesResponse;
+import com.TravelShare.dto.response.SpendingSeriesResponse.Granularity;
+import com.TravelShare.entity.Expense;
+import com.TravelShare.entity.SpendingRollup;
+import com.TravelShare.entity.SpendingRollup.ScopeType;
+import com.TravelShare.entity.User;
+import com.TravelShare.exception.AppException;
+import com.TravelShare.exception.ErrorCode;
+import com.TravelShare.repository.ExpenseRepository;
+import com.TravelShare.repository.GroupParticipantRepository;
+import com.TravelShare.repository.SpendingRollupRepository;
+import com.TravelShare.repository.UserRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Tổng chi theo ngày / category / currency gốc (bảng spending_rollup) cho từng group và từng user (người trả).
+ * Expense tạo / sửa / xóa ghi delta vào đây trong cùng transaction, nên biểu đồ chỉ đọc các bucket trong khoảng
+ * thời gian cần xem thay vì quét bảng expense; rebuild và verify dùng cách tính gốc từ expense.
+ */
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class SpendingRollupService {
+    SpendingRollupRepository spendingRollupRepository;
+    ExpenseRepository expenseRepository;
+    UserRepository userRepository;
+    GroupParticipantRepository groupParticipantRepository;
+
+    @NonFinal
+    @Value("${app.analytics.max-range-days:731}")
+    long maxRangeDays;
+
+    /**
+     * Phần đóng góp của một expense vào các bucket, chụp lại trước khi sửa để trừ đúng bucket cũ.
+     */
+    public record Contribution(Long groupId, String payerUserId, LocalDate expenseDate, Long categoryId,
+                               String currencyCode, BigDecimal originalAmount, BigDecimal convertedAmount) {
+        public static Contribution of(Expense expense) {
+            return new Contribution(
+                    expense.getGroup().getId(),
+                    expense.getPayer() != null && expense.getPayer().getUser() != null
+                            ? expense.getPayer().getUser().getId() : null,
+                    expense.getExpenseDate(),
+                    expense.getCategory().getId(),
+                    expense.getOriginalCurrency().getCode(),
+                    expense.getOriginalAmount(),
+                    expense.getConvertedAmount());
+        }
+    }
+
+    private record BucketKey(ScopeType scopeType, String scopeId, LocalDate bucketDate, Long categoryId,
+                             String currencyCode) {
+        String label() {
+            return bucketDate + "|" + categoryId + "|" + currencyCode;
+        }
+    }
+
+    private record BucketDelta(BigDecimal originalTotal, BigDecimal convertedTotal, long expenseCount) {
+        static final BucketDelta ZERO = new BucketDelta(BigDecimal.ZERO, BigDecimal.ZERO, 0);
+
+        BucketDelta plus(BucketDelta other) {
+            return new BucketDelta(originalTotal.add(other.originalTotal), convertedTotal.add(other.convertedTotal),
+                    expenseCount + other.expenseCount);
+        }
+
+        boolean isZero() {
+            return originalTotal.signum() == 0 && convertedTotal.signum() == 0 && expenseCount == 0;
+        }
+
+        boolean matches(BucketDelta other) {
+            return originalTotal.compareTo(other.originalTotal) == 0
+                    && convertedTotal.compareTo(other.convertedTotal) == 0
+                    && expenseCount == other.expenseCount;
+        }
+    }
+
+    @Transactional
+    public void recordExpenseCreated(Expense expense) {
+        apply(List.of(Contribution.of(expense)), List.of());
+    }
+
+    @Transactional
+    public void recordExpenseUpdated(Contribution previous, Expense expense) {
+        Contribution current = Contribution.of(expense);
+        if (current.equals(previous)) {
+            return;
+        }
+        apply(List.of(current), previous != null ? List.of(previous) : List.of());
+    }
+
+    @Transactional
+    public void recordExpenseDeleted(Expense expense) {
+        apply(List.of(), List.of(Contribution.of(expense)));
+    }
+
+    /**
+     * Nhiều expense cùng lúc (import hàng loạt): delta được gộp theo bucket, mỗi bucket chỉ một lần cập nhật.
+     */
+    @Transactional
+    public void recordExpensesImported(List<Contribution> contributions) {
+        apply(contributions, List.of());
+    }
+
+    // Cộng các expense được thêm, trừ các expense bị bỏ; bucket có delta bằng 0 thì không ghi
+    private void apply(List<Contribution> added, List<Contribution> removed) {
+        Map<BucketKey, BucketDelta> deltas = new LinkedHashMap<>();
+        added.forEach(contribution -> collect(deltas, contribution, 1));
+        removed.forEach(contribution -> collect(deltas, contribution, -1));
+
+        deltas.forEach((key, delta) -> {
+            if (!delta.isZero()) {
+                spendingRollupRepository.addDelta(key.scopeType().name(), key.scopeId(), key.bucketDate(),
+                        key.categoryId(), key.currencyCode(), delta.originalTotal(), delta.convertedTotal(),
+                        delta.expenseCount());
+            }
+        });
+    }
+
+    private void collect(Map<BucketKey, BucketDelta> deltas, Contribution contribution, int sign) {
+        BigDecimal factor = BigDecimal.valueOf(sign);
+        BucketDelta delta = new BucketDelta(contribution.originalAmount().multiply(factor),
+                contribution.convertedAmount().multiply(factor), sign);
+
+        deltas.merge(new BucketKey(ScopeType.GROUP, contribution.groupId().toString(), contribution.expenseDate(),
+                contribution.categoryId(), contribution.currencyCode()), delta, BucketDelta::plus);
+        if (contribution.payerUserId() != null) {
+            deltas.merge(new BucketKey(ScopeType.USER, contribution.payerUserId(), contribution.expenseDate(),
+                    contribution.categoryId(), contribution.currencyCode()), delta, BucketDelta::plus);
+        }
+    }
+
+    /**
+     * Chuỗi thời gian chi tiêu trong [from, to], gộp các bucket ngày theo granularity.
+     * Chỉ đọc các dòng rollup trong khoảng này (theo unique index), không đụng tới bảng expense.
+     * Với USER không có convertedTotal: mỗi group quy đổi về currency mặc định riêng, cộng lại không có nghĩa.
+     */
+    @Transactional(readOnly = true)
+    public SpendingSeriesResponse getSeries(ScopeType scopeType, String scopeId, LocalDate from, LocalDate to,
+                                            Granularity granularity) {
+        checkReadAccess(scopeType, scopeId);
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(29);
+        if (start.isAfter(end) || ChronoUnit.DAYS.between(start, end) >= maxRangeDays) {
+            throw new AppException(ErrorCode.INVALID_DATE_RANGE);
+        }
+
+        List<SpendingRollup> rows = spendingRollupRepository
+                .findByScopeTypeAndScopeIdAndBucketDateBetweenOrderByBucketDate(scopeType, scopeId, start, end);
+
+        Map<LocalDate, List<SpendingRollup>> byBucket = rows.stream()
+                .filter(row -> row.getExpenseCount() != 0)
+                .collect(Collectors.groupingBy(row -> bucketStart(row.getBucketDate(), granularity),
+                        TreeMap::new, Collectors.toList()));
+
+        List<SpendingBucketResponse> buckets = byBucket.entrySet().stream()
+                .map(entry -> toBucket(entry.getKey(), entry.getValue(), scopeType == ScopeType.GROUP))
+                .toList();
+
+        return SpendingSeriesResponse.builder()
+                .scopeType(scopeType)
+                .scopeId(scopeId)
+                .granularity(granularity)
+                .from(start)
+                .to(end)
+                .buckets(buckets)
+                .build();
+    }
+
+    private SpendingBucketResponse toBucket(LocalDate bucketStart, List<SpendingRollup> rows, boolean withConverted) {
+        // Nhiều ngày trong cùng bucket: gộp theo (category, currency)
+        Map<List<Object>, SpendingBucketResponse.CategorySpending> categories = new LinkedHashMap<>();
+        Map<String, BigDecimal> totalsByCurrency = new TreeMap<>();
+        long expenseCount = 0;
+        for (SpendingRollup row : rows) {
+            categories.merge(List.of(row.getCategoryId(), row.getCurrencyCode()),
+                    SpendingBucketResponse.CategorySpending.builder()
+                            .categoryId(row.getCategoryId())
+                            .currencyCode(row.getCurrencyCode())
+                            .originalTotal(row.getOriginalTotal())
+                            .convertedTotal(withConverted ? row.getConvertedTotal() : null)
+                            .expenseCount(row.getExpenseCount())
+                            .build(),
+                    (a, b) -> SpendingBucketResponse.CategorySpending.builder()
+                            .categoryId(a.getCategoryId())
+                            .currencyCode(a.getCurrencyCode())
+                            .originalTotal(a.getOriginalTotal().add(b.getOriginalTotal()))
+                            .convertedTotal(withConverted ? a.getConvertedTotal().add(b.getConvertedTotal()) : null)
+                            .expenseCount(a.getExpenseCount() + b.getExpenseCount())
+                            .build());
+            totalsByCurrency.merge(row.getCurrencyCode(), row.getOriginalTotal(), BigDecimal::add);
+            expenseCount += row.getExpenseCount();
+        }
+        return SpendingBucketResponse.builder()
+                .bucketStart(bucketStart)
+                .expenseCount(expenseCount)
+                .totalsByCurrency(totalsByCurrency)
+                .categories(new ArrayList<>(categories.values()))
+                .build();
+    }
+
+    private static LocalDate bucketStart(LocalDate date, Granularity granularity) {
+        return switch (granularity) {
+            case DAY -> date;
+            case WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH -> date.withDayOfMonth(1);
+        };
+    }
+
+    /**
+     * Đối chiếu rollup của một group / user với tổng tính lại trực tiếp từ expense.
+     */
+    @Transactional(readOnly = true)
+    public SpendingReconciliationResponse verify(ScopeType scopeType, String scopeId) {
+        checkReadAccess(scopeType, scopeId);
+        List<ExpenseRepository.SpendingAggregate> aggregates = scopeType == ScopeType.GROUP
+                ? expenseRepository.aggregateSpendingByGroupId(parseGroupId(scopeId))
+                : expenseRepository.aggregateSpendingByPayerUserId(scopeId);
+
+        Map<BucketKey, BucketDelta> recomputed = aggregates.stream().collect(Collectors.toMap(
+                row -> new BucketKey(scopeType, scopeId, row.getBucketDate(), row.getCategoryId(), row.getCurrencyCode()),
+                row -> new BucketDelta(row.getOriginalTotal(), row.getConvertedTotal(), row.getExpenseCount())));
+        Map<BucketKey, BucketDelta> stored = spendingRollupRepository.findByScopeTypeAndScopeId(scopeType, scopeId)
+                .stream().collect(Collectors.toMap(
+                        row -> new BucketKey(scopeType, scopeId, row.getBucketDate(), row.getCategoryId(), row.getCurrencyCode()),
+                        row -> new BucketDelta(row.getOriginalTotal(), row.getConvertedTotal(), row.getExpenseCount())));
+
+        Set<BucketKey> keys = new HashSet<>(recomputed.keySet());
+        keys.addAll(stored.keySet());
+        List<String> mismatched = keys.stream()
+                .filter(key -> !stored.getOrDefault(key, BucketDelta.ZERO)
+                        .matches(recomputed.getOrDefault(key, BucketDelta.ZERO)))
+                .map(BucketKey::label)
+                .sorted()
+                .toList();
+
+        if (!mismatched.isEmpty()) {
+            log.warn("Spending rollup of {} {} is out of sync for buckets {}", scopeType, scopeId, mismatched);
+        }
+        return SpendingReconciliationResponse.builder()
+                .scopeType(scopeType)
+                .scopeId(scopeId)
+                .consistent(mismatched.isEmpty())
+                .checkedBuckets(keys.size())
+                .mismatchedBuckets(mismatched)
+                .build();
+    }
+
+    /**
+     * Tính lại toàn bộ rollup từ bảng expense bằng hai câu INSERT ... SELECT GROUP BY.
+     * Bảng rollup bị khóa trong lúc rebuild: expense ghi đồng thời chờ tới khi rebuild commit rồi mới cộng delta,
+     * nên không bị tính thiếu hay tính hai lần.
+     */
+    @Transactional
+    public int rebuildAll() {
+        spendingRollupRepository.lockForRebuild();
+        spendingRollupRepository.deleteAllRows();
+        int groupRows = spendingRollupRepository.rebuildGroupRollups();
+        int userRows = spendingRollupRepository.rebuildUserRollups();
+        log.info("Rebuilt spending rollups: {} group buckets, {} user buckets", groupRows, userRows);
+        return groupRows + userRows;
+    }
+
+    /**
+     * Rebuild gọi qua API: chỉ admin hệ thống, vì nó khóa bảng rollup và chặn mọi expense ghi đồng thời.
+     */
+    @Transactional
+    public int rebuildAllAsAdmin() {
+        if (!isAdmin(getCurrentUser())) {
+            throw new AppException(ErrorCode.UNAUTHORIZED);
+        }
+        return rebuildAll();
+    }
+
+    public boolean isEmpty() {
+        return spendingRollupRepository.count() == 0;
+    }
+
+    // Chỉ chính user đó, thành viên group đó hoặc admin được xem chi tiêu
+    private void checkReadAccess(ScopeType scopeType, String scopeId) {
+        User currentUser = getCurrentUser();
+        if (isAdmin(currentUser)) {
+            return;
+        }
+        if (scopeType == ScopeType.USER) {
+            if (!currentUser.getId().equals(scopeId)) {
+                throw new AppException(ErrorCode.UNAUTHORIZED);
+            }
+        } else if (!Boolean.TRUE.equals(
+                groupParticipantRepository.existsByGroupIdAndUserId(parseGroupId(scopeId), currentUser.getId()))) {
+            throw new AppException(ErrorCode.NOT_GROUP_MEMBER);
+        }
+    }
+
+    private User getCurrentUser() {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        return userRepository.findByUsername(username)
+                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+    }
+
+    private static boolean isAdmin(User user) {
+        return "ADMIN".equals(user.getRole());
+    }
+
+    private static Long parseGroupId(String scopeId) {
+        try {
+            return Long.valueOf(scopeId);
+        } catch (NumberFormatException e) {
+            throw new AppException(ErrorCode.GROUP_NOT_EXISTED);
+        }
+    }
+}
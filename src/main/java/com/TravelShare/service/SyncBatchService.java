@@ -0,0 +1,273 @@
+package com.TravelShare.service;
+
+import com.TravelShare.dto.request.*;
+import com.TravelShare.dto.response.*;
+import com.TravelShare.dto.response.SyncOperationResult.OperationStatus;
+import com.TravelShare.entity.IdempotencyRecord;
+import com.TravelShare.entity.User;
+import com.TravelShare.exception.AppException;
+import com.TravelShare.exception.ErrorCode;
+import com.TravelShare.repository.IdempotencyRecordRepository;
+import com.TravelShare.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Áp dụng các thay đổi client ghi lại khi offline trong một request và một transaction:
+ * hoặc tất cả được commit, hoặc không gì cả (kèm kết quả của từng operation để client biết cái nào lỗi).
+ * Idempotency key được giữ trong cùng transaction, nên batch gửi lại sau khi đã commit chỉ đọc lại kết quả đã lưu.
+ */
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class SyncBatchService {
+    static final int MAX_KEY_LENGTH = 128;
+
+    ExpenseService expenseService;
+    SettlementService settlementService;
+    IdempotencyRecordRepository idempotencyRecordRepository;
+    UserRepository userRepository;
+    ObjectMapper objectMapper;
+    TransactionTemplate transactionTemplate;
+
+    AtomicLong batches = new AtomicLong();
+    AtomicLong committedBatches = new AtomicLong();
+    AtomicLong replayedBatches = new AtomicLong();
+    AtomicLong operationsApplied = new AtomicLong();
+    AtomicLong totalBatchNanos = new AtomicLong();
+
+    @NonFinal
+    @Value("${app.sync.max-operations:200}")
+    int maxOperations;
+
+    @NonFinal
+    @Value("${app.sync.idempotency-ttl-hours:72}")
+    long idempotencyTtlHours;
+
+    public SyncBatchResponse applyBatch(String idempotencyKey, SyncBatchRequest request) {
+        long startedAt = System.nanoTime();
+        if (idempotencyKey == null || idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new AppException(ErrorCode.IDEMPOTENCY_KEY_REQUIRED);
+        }
+        List<SyncOperationRequest> operations = request != null ? request.getOperations() : null;
+        if (operations == null || operations.isEmpty()) {
+            throw new AppException(ErrorCode.SYNC_BATCH_EMPTY);
+        }
+        if (operations.size() > maxOperations) {
+            throw new AppException(ErrorCode.SYNC_BATCH_TOO_LARGE);
+        }
+
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        String requestHash = hash(operations);
+
+        SyncBatchResponse response = transactionTemplate.execute(status -> {
+            int claimed = idempotencyRecordRepository.claim(user.getId(), idempotencyKey, requestHash,
+                    LocalDateTime.now().plusHours(idempotencyTtlHours));
+            if (claimed == 0) {
+                return replay(user.getId(), idempotencyKey, requestHash);
+            }
+
+            SyncBatchResponse result = applyOperations(idempotencyKey, operations);
+            if (!result.isCommitted()) {
+                // Key cũng được trả lại: client có thể sửa operation lỗi và gửi lại với cùng key
+                status.setRollbackOnly();
+                return result;
+            }
+            idempotencyRecordRepository.saveResponse(user.getId(), idempotencyKey, toJson(result));
+            return result;
+        });
+
+        long elapsed = System.nanoTime() - startedAt;
+        batches.incrementAndGet();
+        totalBatchNanos.addAndGet(elapsed);
+        if (response.isReplayed()) {
+            replayedBatches.incrementAndGet();
+        } else if (response.isCommitted()) {
+            committedBatches.incrementAndGet();
+            operationsApplied.addAndGet(response.getApplied());
+        }
+        response = response.toBuilder().durationMs(TimeUnit.NANOSECONDS.toMillis(elapsed)).build();
+        log.info("Sync batch {} for user {}: {} operations, committed={}, replayed={}, {} ms",
+                idempotencyKey, username, response.getTotal(), response.isCommitted(), response.isReplayed(),
+                response.getDurationMs());
+        return response;
+    }
+
+    public SyncStatsResponse getStats() {
+        long total = batches.get();
+        long applied = operationsApplied.get();
+        double totalMs = totalBatchNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        return SyncStatsResponse.builder()
+                .batches(total)
+                .committedBatches(committedBatches.get())
+                .rolledBackBatches(total - committedBatches.get() - replayedBatches.get())
+                .replayedBatches(replayedBatches.get())
+                .operationsApplied(applied)
+                .averageBatchMs(total == 0 ? 0 : totalMs / total)
+                .averageOperationMs(applied == 0 ? 0 : totalMs / applied)
+                .build();
+    }
+
+    public int deleteExpiredRecords() {
+        return transactionTemplate.execute(status -> idempotencyRecordRepository.deleteExpired(LocalDateTime.now()));
+    }
+
+    // Dừng ở operation lỗi đầu tiên: các thay đổi sau có thể phụ thuộc vào nó
+    private SyncBatchResponse applyOperations(String idempotencyKey, List<SyncOperationRequest> operations) {
+        List<SyncOperationResult> results = new ArrayList<>(operations.size());
+        Map<String, Long> createdIds = new HashMap<>();
+        int failedIndex = -1;
+
+        for (int i = 0; i < operations.size(); i++) {
+            SyncOperationRequest operation = operations.get(i);
+            SyncOperationResult.SyncOperationResultBuilder item = SyncOperationResult.builder()
+                    .index(i)
+                    .clientOperationId(operation.getClientOperationId())
+                    .type(operation.getType());
+            if (failedIndex >= 0) {
+                results.add(item.status(OperationStatus.SKIPPED).build());
+                continue;
+            }
+            try {
+                Object result = apply(operation, createdIds);
+                results.add(item.status(OperationStatus.APPLIED).result(result).build());
+            } catch (AppException e) {
+                failedIndex = i;
+                results.add(item.status(OperationStatus.FAILED)
+                        .errorCode(e.getErrorCode().getCode())
+                        .error(e.getErrorCode().getMessage())
+                        .build());
+            } catch (RuntimeException e) {
+                failedIndex = i;
+                log.warn("Sync operation {} ({}) failed", i, operation.getType(), e);
+                results.add(item.status(OperationStatus.FAILED)
+                        .errorCode(ErrorCode.UNCATEGORIZED_EXCEPTION.getCode())
+                        .error(e.getMessage())
+                        .build());
+            }
+        }
+
+        boolean committed = failedIndex < 0;
+        if (!committed) {
+            for (int i = 0; i < failedIndex; i++) {
+                SyncOperationResult rolledBack = results.get(i);
+                rolledBack.setStatus(OperationStatus.ROLLED_BACK);
+                rolledBack.setResult(null);
+            }
+        }
+        return SyncBatchResponse.builder()
+                .idempotencyKey(idempotencyKey)
+                .committed(committed)
+                .replayed(false)
+                .total(operations.size())
+                .applied(committed ? operations.size() : 0)
+                .results(results)
+                .build();
+    }
+
+    private Object apply(SyncOperationRequest operation, Map<String, Long> createdIds) {
+        if (operation.getType() == null) {
+            throw new AppException(ErrorCode.SYNC_OPERATION_INVALID);
+        }
+        return switch (operation.getType()) {
+            case CREATE_EXPENSE -> {
+                ExpenseResponse expense = expenseService.createExpense(payload(operation, ExpenseCreationRequest.class));
+                remember(operation, expense.getId(), createdIds);
+                yield expense;
+            }
+            case UPDATE_EXPENSE -> expenseService.updateExpense(target(operation, createdIds),
+                    payload(operation, ExpenseUpdateRequest.class));
+            case DELETE_EXPENSE -> {
+                expenseService.deleteExpense(target(operation, createdIds));
+                yield null;
+            }
+            case CREATE_SETTLEMENT -> {
+                SettlementResponse settlement = settlementService.createSettlement(
+                        payload(operation, SettlementCreationRequest.class));
+                remember(operation, settlement.getId(), createdIds);
+                yield settlement;
+            }
+            case UPDATE_SETTLEMENT_STATUS -> settlementService.updateSettlementStatus(target(operation, createdIds),
+                    payload(operation, SettlementUpdateRequest.class));
+        };
+    }
+
+    private <T> T payload(SyncOperationRequest operation, Class<T> type) {
+        if (operation.getPayload() == null || operation.getPayload().isNull()) {
+            throw new AppException(ErrorCode.SYNC_OPERATION_INVALID);
+        }
+        try {
+            return objectMapper.treeToValue(operation.getPayload(), type);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            throw new AppException(ErrorCode.SYNC_OPERATION_INVALID);
+        }
+    }
+
+    private Long target(SyncOperationRequest operation, Map<String, Long> createdIds) {
+        if (operation.getTargetId() != null) {
+            return operation.getTargetId();
+        }
+        Long id = operation.getTargetOperationId() != null ? createdIds.get(operation.getTargetOperationId()) : null;
+        if (id == null) {
+            throw new AppException(ErrorCode.SYNC_OPERATION_INVALID);
+        }
+        return id;
+    }
+
+    private void remember(SyncOperationRequest operation, Long id, Map<String, Long> createdIds) {
+        if (operation.getClientOperationId() != null) {
+            createdIds.put(operation.getClientOperationId(), id);
+        }
+    }
+
+    private SyncBatchResponse replay(String userId, String idempotencyKey, String requestHash) {
+        IdempotencyRecord record = idempotencyRecordRepository.findByUserIdAndIdempotencyKey(userId, idempotencyKey)
+                .orElseThrow(() -> new AppException(ErrorCode.IDEMPOTENCY_KEY_REUSED));
+        if (!record.getRequestHash().equals(requestHash) || record.getResponseBody() == null) {
+            throw new AppException(ErrorCode.IDEMPOTENCY_KEY_REUSED);
+        }
+        try {
+            return objectMapper.readValue(record.getResponseBody(), SyncBatchResponse.class).toBuilder()
+                    .replayed(true)
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored sync response is not readable", e);
+        }
+    }
+
+    private String toJson(SyncBatchResponse response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize sync response", e);
+        }
+    }
+
+    private String hash(List<SyncOperationRequest> operations) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(objectMapper.writeValueAsBytes(operations)));
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Cannot hash sync batch", e);
+        }
+    }
+}
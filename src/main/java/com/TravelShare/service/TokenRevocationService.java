@@ -0,0 +1,166 @@
+package com.TravelShare.service;
+
+import com.TravelShare.entity.InvalidatedToken;
+import com.TravelShare.repository.InvalidatedTokenRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Danh sách jti của access token đã logout, giữ trong bộ nhớ để kiểm tra mỗi request không cần truy vấn DB.
+ * Logout được phát qua Postgres NOTIFY trên kênh token_revoked; mỗi instance giữ một connection LISTEN riêng
+ * nên token bị chặn ở mọi instance gần như ngay lập tức.
+ * Bảng invalidated_token vẫn được nạp lại định kỳ (revocation-refresh-ms) để bù thông báo bị lỡ khi
+ * connection LISTEN đứt: trong lúc đó, token đã logout ở instance khác còn dùng được tối đa một chu kỳ nạp lại.
+ * Mỗi jti chỉ cần giữ đến khi token hết hạn.
+ */
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class TokenRevocationService {
+    static final String CHANNEL = "token_revoked";
+    static final long RECONNECT_DELAY_MS = 5_000;
+
+    InvalidatedTokenRepository invalidatedTokenRepository;
+    DataSource dataSource;
+    JdbcTemplate jdbcTemplate;
+
+    // jti -> thời điểm hết hạn (epoch millis)
+    Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    @NonFinal
+    @Value("${app.security.revocation-listen:true}")
+    boolean listen;
+
+    @NonFinal
+    volatile boolean running;
+
+    @NonFinal
+    Thread listener;
+
+    @PostConstruct
+    void load() {
+        reload();
+        log.info("Loaded {} revoked access tokens", revoked.size());
+        if (listen) {
+            running = true;
+            listener = new Thread(this::listenLoop, "token-revocation-listener");
+            listener.setDaemon(true);
+            listener.start();
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+        }
+    }
+
+    public boolean isRevoked(String jwtId) {
+        return jwtId != null && revoked.containsKey(jwtId);
+    }
+
+    public void revoke(String jwtId, Date expiryTime) {
+        invalidatedTokenRepository.save(InvalidatedToken.builder()
+                .id(jwtId)
+                .expiryTime(expiryTime)
+                .build());
+        long expiry = expiryTime != null ? expiryTime.getTime() : Long.MAX_VALUE;
+        revoked.put(jwtId, expiry);
+        try {
+            jdbcTemplate.query("SELECT pg_notify(?, ?)", rs -> null, CHANNEL, jwtId + ":" + expiry);
+        } catch (RuntimeException e) {
+            // Instance khác vẫn nhận được qua lần nạp lại định kỳ
+            log.warn("Could not broadcast token revocation: {}", e.getMessage());
+        }
+    }
+
+    // Chỉ thêm, không bao giờ bỏ một jti chưa hết hạn
+    @Scheduled(fixedDelayString = "${app.security.revocation-refresh-ms:60000}",
+            initialDelayString = "${app.security.revocation-refresh-ms:60000}")
+    public void reload() {
+        long now = System.currentTimeMillis();
+        try {
+            for (InvalidatedToken token : invalidatedTokenRepository.findAllByExpiryTimeAfter(new Date(now))) {
+                revoked.put(token.getId(), token.getExpiryTime().getTime());
+            }
+        } catch (Exception e) {
+            log.warn("Could not reload revoked tokens: {}", e.getMessage());
+        }
+        revoked.values().removeIf(expiry -> expiry < now);
+    }
+
+    // Giữ một connection riêng ngoài transaction; đứt thì kết nối lại rồi nạp lại toàn bộ để bù thông báo bị lỡ
+    private void listenLoop() {
+        boolean reconnecting = false;
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                if (reconnecting) {
+                    reload();
+                }
+                log.info("Listening for token revocations on channel {}", CHANNEL);
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications((int) RECONNECT_DELAY_MS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            apply(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Token revocation listener disconnected, retrying in {} ms: {}",
+                        RECONNECT_DELAY_MS, e.getMessage());
+            }
+            reconnecting = true;
+            try {
+                Thread.sleep(RECONNECT_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // Payload: "<jti>:<hết hạn epoch millis>"
+    private void apply(String payload) {
+        int separator = payload.lastIndexOf(':');
+        if (separator <= 0) {
+            log.warn("Ignoring malformed token revocation: {}", payload);
+            return;
+        }
+        try {
+            revoked.put(payload.substring(0, separator), Long.parseLong(payload.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed token revocation: {}", payload);
+        }
+    }
+}
@@ -17,7 +17,6 @@ import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.ui.Model;
 
@@ -33,7 +32,7 @@ import java.util.Optional;
 public class UserService {
     UserRepository userRepository;
     UserMapper userMapper;
-    PasswordEncoder passwordEncoder;
+    PasswordHashingService passwordHashingService;
     EmailService emailService;
     MediaRepository mediaRepository;
     UserTokenService userTokenService;
@@ -52,7 +51,7 @@ public class UserService {
         }
 
         User user = userMapper.toUser(request);
-        user.setPassword(passwordEncoder.encode(user.getPassword()));
+        user.setPassword(passwordHashingService.hash(user.getPassword()));
         user.setCreatedAt(LocalDateTime.now());
         user.setActive(false);
         if (user.getRole() == null) {
@@ -86,9 +85,9 @@ public class UserService {
                 .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
         userMapper.updateUser(user, request);
         if (request.getNewPassword() != null && !request.getNewPassword().isBlank()) {
-            boolean isCorrect = passwordEncoder.matches(request.getOldPassword(), user.getPassword());
+            boolean isCorrect = passwordHashingService.matches(request.getOldPassword(), user.getPassword());
             if (isCorrect)
-            user.setPassword(passwordEncoder.encode(request.getNewPassword()));
+            user.setPassword(passwordHashingService.hash(request.getNewPassword()));
             else {
                 throw new AppException(ErrorCode.PASSWORD_NOT_MATCH);
             }
@@ -117,7 +116,7 @@ public class UserService {
     public void resetPassword(ResetPasswordRequest request){
         UserToken resetToken = userTokenService.verifyToken(request.getToken());
         User user = resetToken.getUser();
-        user.setPassword(passwordEncoder.encode(request.getNewPassword()));
+        user.setPassword(passwordHashingService.hash(request.getNewPassword()));
         userRepository.save(user);
     }
 
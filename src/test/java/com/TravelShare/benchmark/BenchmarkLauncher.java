@@ -0,0 +1,22 @@
+package com.TravelShare.benchmark;
+
+import java.util.Arrays;
+
+/**
+ * Chạy một lớp benchmark JMH với tham số dòng lệnh của JMH (vd. "-prof gc", "-wi 1 -i 1").
+ * JMH fork JVM mới theo java.class.path, nên chạy từ IDE hoặc bằng java với classpath test, không qua exec:java:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test.classpath -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/test.classpath) com.TravelShare.benchmark.XxxBenchmark
+ * </pre>
+ */
+final class BenchmarkLauncher {
+    private BenchmarkLauncher() {
+    }
+
+    static void run(Class<?> benchmark, String[] args) throws Exception {
+        String[] jmhArgs = Arrays.copyOf(args, args.length + 1);
+        jmhArgs[args.length] = benchmark.getSimpleName();
+        org.openjdk.jmh.Main.main(jmhArgs);
+    }
+}
@@ -0,0 +1,161 @@
+package com.TravelShare.benchmark;
+
+import ch.qos.logback.classic.Logger;
+import com.TravelShare.service.ImageOptimizationService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh giải mã đầy đủ + một lần bicubic (cách cũ) với giải mã thưa theo header + thu nhỏ nhiều bước
+ * (ImageOptimizationService.readScaled / resizeToFit) trên ảnh chụp điện thoại cỡ lớn.
+ * Mục tiêu là bộ nhớ đỉnh của một lần xử lý, không phải tốc độ cấp phát ("-prof gc" chỉ cho allocation rate),
+ * nên chạy SingleShotTime: mỗi invocation một ảnh, trước đó GC và reset peak của các heap pool ({@link MemoryProbe}).
+ * Cuối mỗi trial in ra, theo từng cỡ ảnh gốc, heap đỉnh trên mức nền và kích thước raster của ảnh giải mã / ảnh kết quả.
+ * Chạy bằng main(), xem {@link BenchmarkLauncher}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = {"-Xmx1g", "-Djava.awt.headless=true"})
+@State(Scope.Benchmark)
+public class ImageScalingBenchmark {
+    ImageOptimizationService imageOptimizationService = new ImageOptimizationService();
+
+    @Param({"4000x3000", "8000x6000"})
+    String sourceSize;
+
+    byte[] jpeg;
+
+    @Setup
+    public void setUp() throws IOException {
+        // Log INFO "Resizing from" của resizeToFit không cần cho số đo
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+        String[] size = sourceSize.split("x");
+        jpeg = syntheticPhoto(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+    }
+
+    @Benchmark
+    public BufferedImage fullDecodeThenBicubic(MemoryProbe probe) throws IOException {
+        BufferedImage original = ImageIO.read(new ByteArrayInputStream(jpeg));
+        double scale = Math.min(1920d / original.getWidth(), 1080d / original.getHeight());
+        int width = (int) (original.getWidth() * scale);
+        int height = (int) (original.getHeight() * scale);
+        BufferedImage resized = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = resized.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.drawImage(original, 0, 0, width, height, null);
+        g.dispose();
+        return probe.record(original, resized);
+    }
+
+    @Benchmark
+    public BufferedImage subsampledDecodeThenResize(MemoryProbe probe) throws IOException {
+        BufferedImage decoded = imageOptimizationService.readScaled(new ByteArrayInputStream(jpeg), 1920, 1080);
+        return probe.record(decoded, imageOptimizationService.resizeToFit(decoded, 1920, 1080));
+    }
+
+    // Luồng sinh variant: giải mã thưa về 1080 rồi thu nhỏ dần xuống 480 và 200
+    @Benchmark
+    public BufferedImage variantChain(MemoryProbe probe) throws IOException {
+        BufferedImage decoded = imageOptimizationService.readScaled(new ByteArrayInputStream(jpeg), 1080, 1080);
+        BufferedImage image = decoded;
+        for (int size : new int[]{1080, 480, 200}) {
+            image = imageOptimizationService.resizeToFit(image, size, size);
+        }
+        return probe.record(decoded, image);
+    }
+
+    /**
+     * Heap đỉnh của từng invocation: GC và reset peak của mọi heap pool trước, cộng peak các pool sau rồi trừ mức nền.
+     * Tổng peak từng pool là cận trên (các pool có thể đạt đỉnh ở thời điểm khác nhau) và còn gồm rác chưa kịp thu
+     * trong invocation; raster của ảnh giải mã và ảnh kết quả là phần chắc chắn phải giữ cùng lúc.
+     */
+    @State(Scope.Thread)
+    public static class MemoryProbe {
+        static final double MB = 1024 * 1024;
+
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+        long baseline;
+        long maxPeakHeap;
+        long totalPeakHeap;
+        int invocations;
+        long decodedRaster;
+        long resultRaster;
+
+        @Setup(Level.Invocation)
+        public void beforeInvocation() {
+            System.gc();
+            heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+            baseline = heapPools.stream().mapToLong(pool -> pool.getUsage().getUsed()).sum();
+        }
+
+        @TearDown(Level.Invocation)
+        public void afterInvocation() {
+            long peak = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum() - baseline;
+            maxPeakHeap = Math.max(maxPeakHeap, peak);
+            totalPeakHeap += peak;
+            invocations++;
+        }
+
+        @TearDown(Level.Trial)
+        public void report(BenchmarkParams params) {
+            System.out.printf("%n%s [%s]: peak heap %.1f MB (max), %.1f MB (avg); decoded raster %.1f MB, "
+                            + "result raster %.1f MB%n",
+                    params.getBenchmark().substring(params.getBenchmark().lastIndexOf('.') + 1),
+                    params.getParam("sourceSize"), maxPeakHeap / MB, totalPeakHeap / MB / invocations,
+                    decodedRaster / MB, resultRaster / MB);
+        }
+
+        BufferedImage record(BufferedImage decoded, BufferedImage result) {
+            decodedRaster = rasterBytes(decoded);
+            resultRaster = rasterBytes(result);
+            return result;
+        }
+
+        static long rasterBytes(BufferedImage image) {
+            DataBuffer buffer = image.getRaster().getDataBuffer();
+            return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+        }
+    }
+
+    // Gradient kèm nhiễu để JPEG có kích thước và độ phức tạp gần với ảnh chụp thật
+    static byte[] syntheticPhoto(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(7);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int noise = random.nextInt(32);
+                int r = (x * 255 / width + noise) & 0xFF;
+                int g = (y * 255 / height + noise) & 0xFF;
+                int b = ((x + y) * 127 / (width + height) + noise) & 0xFF;
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", output);
+        return output.toByteArray();
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkLauncher.run(ImageScalingBenchmark.class, args);
+    }
+}
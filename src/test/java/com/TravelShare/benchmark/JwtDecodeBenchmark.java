@@ -0,0 +1,90 @@
+package com.TravelShare.benchmark;
+
+import com.TravelShare.configuration.CustomJwtDecoder;
+import com.TravelShare.service.TokenRevocationService;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtTimestampValidator;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chi phí xác thực access token mỗi request: giải mã + kiểm tra chữ ký HS512 đầy đủ bằng Nimbus
+ * so với CustomJwtDecoder khi token đã nằm trong cache (chỉ còn tra cache và kiểm tra jti đã logout).
+ * Chạy bằng main(), xem {@link BenchmarkLauncher}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtDecodeBenchmark {
+    static final String SIGNER_KEY = "benchmark-signer-key-0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    NimbusJwtDecoder nimbusJwtDecoder;
+    CustomJwtDecoder customJwtDecoder;
+    String token;
+
+    @Setup
+    public void setUp() throws JOSEException {
+        nimbusJwtDecoder = NimbusJwtDecoder.withSecretKey(new SecretKeySpec(SIGNER_KEY.getBytes(), "HS512"))
+                .macAlgorithm(MacAlgorithm.HS512)
+                .build();
+        nimbusJwtDecoder.setJwtValidator(new JwtTimestampValidator(Duration.ZERO));
+
+        // Danh sách jti đã logout rỗng; repository/DataSource không được dùng khi chỉ kiểm tra jti
+        customJwtDecoder = new CustomJwtDecoder();
+        ReflectionTestUtils.setField(customJwtDecoder, "signerKey", SIGNER_KEY);
+        ReflectionTestUtils.setField(customJwtDecoder, "tokenRevocationService",
+                new TokenRevocationService(null, null, null));
+        ReflectionTestUtils.invokeMethod(customJwtDecoder, "init");
+
+        token = accessToken();
+        customJwtDecoder.decode(token);
+    }
+
+    @Benchmark
+    public Jwt verifySignature() {
+        return nimbusJwtDecoder.decode(token);
+    }
+
+    @Benchmark
+    public Jwt decodeCached() {
+        return customJwtDecoder.decode(token);
+    }
+
+    // Cùng dạng claim với AuthenticationService.generateAccessToken
+    static String accessToken() throws JOSEException {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject("benchmark-user")
+                .issuer("yalam.com")
+                .issueTime(new Date())
+                .expirationTime(Date.from(Instant.now().plus(Duration.ofHours(1))))
+                .jwtID(UUID.randomUUID().toString())
+                .claim("role", "USER")
+                .claim("tokenType", "access")
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.HS512), claims);
+        jwt.sign(new MACSigner(SIGNER_KEY.getBytes()));
+        return jwt.serialize();
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkLauncher.run(JwtDecodeBenchmark.class, args);
+    }
+}
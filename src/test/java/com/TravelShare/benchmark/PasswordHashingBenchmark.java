@@ -0,0 +1,66 @@
+package com.TravelShare.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chi phí một lần hash / kiểm tra mật khẩu với encoder dựng giống SecurityConfig.passwordEncoder
+ * (tham số mặc định trong application.yaml), để chọn hashing-threads và queue-capacity cho PasswordHashingService.
+ * "legacy" là hash BCrypt không tiền tố của dữ liệu cũ, được nâng cấp khi người dùng đăng nhập.
+ * Chạy bằng main(), xem {@link BenchmarkLauncher}; thêm "-t 4" để đo khi nhiều lần đăng nhập tranh CPU.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasswordHashingBenchmark {
+    static final String PASSWORD = "Tr@velShare-2024";
+
+    @Param({"argon2", "bcrypt"})
+    String algorithm;
+
+    PasswordEncoder passwordEncoder;
+    String encoded;
+    String legacyEncoded;
+
+    @Setup
+    public void setUp() {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(10);
+        Map<String, PasswordEncoder> encoders = Map.of(
+                "bcrypt", bcrypt,
+                "argon2", new Argon2PasswordEncoder(16, 32, 1, 19456, 2));
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(algorithm, encoders);
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        passwordEncoder = encoder;
+
+        encoded = passwordEncoder.encode(PASSWORD);
+        legacyEncoded = bcrypt.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public String hash() {
+        return passwordEncoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return passwordEncoder.matches(PASSWORD, encoded);
+    }
+
+    @Benchmark
+    public boolean matchesLegacy() {
+        return passwordEncoder.matches(PASSWORD, legacyEncoded);
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkLauncher.run(PasswordHashingBenchmark.class, args);
+    }
+}
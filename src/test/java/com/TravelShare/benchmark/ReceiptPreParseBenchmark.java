@@ -0,0 +1,83 @@
+package com.TravelShare.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.TravelShare.dto.response.OCRResponse;
+import com.TravelShare.service.ImageOptimizationService.OptimizedImage;
+import com.TravelShare.service.OcrGateway;
+import com.TravelShare.service.ReceiptPreParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.cache.support.NoOpCacheManager;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh chi phí đọc hóa đơn từ QR (ReceiptPreParser) với đường OCR qua OcrGateway.
+ * Model trong đường OCR là model giả trả JSON ngay lập tức, nên con số chỉ là phần chạy cục bộ
+ * (dựng prompt, ChatClient, parse JSON); lời gọi model thật còn cộng thêm vài giây mạng và suy luận.
+ * Chạy bằng main(), xem {@link BenchmarkLauncher}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReceiptPreParseBenchmark {
+    // VietQR động hợp lệ: 150.000 VND cho "PHO THIN", nội dung "An trua nhom", CRC đúng
+    static final String VIETQR_PAYLOAD = "00020101021238570010A00000072701270006970436011300110012345670208QRIBFTTA"
+            + "530370454061500005802VN5908PHO THIN62160812An trua nhom6304F7F1";
+    static final String INVOICE_PAYLOAD = """
+            Tên người bán: Công ty TNHH Phở Thìn
+            Ngày lập: 15/03/2024 19:45
+            Tổng tiền thanh toán: 1.250.000 đ
+            """;
+    static final String MODEL_JSON = """
+            {"merchantName": "Phở Thìn", "amount": 150000.0, "date": "2024-03-15 19:45:00",
+             "description": "Ăn trưa nhóm", "categoryName": "Ăn uống"}
+            """;
+
+    ReceiptPreParser receiptPreParser = new ReceiptPreParser();
+    OcrGateway ocrGateway;
+    byte[] image = new byte[64 * 1024];
+
+    @Setup
+    public void setUp() {
+        // Log INFO mỗi lần gọi của OcrGateway sẽ lấn át chính phần cần đo
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+        ChatModel model = prompt -> new ChatResponse(List.of(new Generation(new AssistantMessage(MODEL_JSON))));
+        // Không cache để mỗi lần đo đều đi hết đường gọi model
+        ocrGateway = new OcrGateway(ChatClient.builder(model), new ObjectMapper().findAndRegisterModules(),
+                new NoOpCacheManager());
+    }
+
+    @Benchmark
+    public Optional<OCRResponse> preParseVietQr() {
+        return receiptPreParser.tryParse(VIETQR_PAYLOAD);
+    }
+
+    @Benchmark
+    public Optional<OCRResponse> preParseInvoice() {
+        return receiptPreParser.tryParse(INVOICE_PAYLOAD);
+    }
+
+    @Benchmark
+    public OCRResponse ocrWithStubbedModel() {
+        return ocrGateway.recognize(new OptimizedImage(new ByteArrayInputStream(image), image.length,
+                "benchmark", 0L, null));
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkLauncher.run(ReceiptPreParseBenchmark.class, args);
+    }
+}
@@ -0,0 +1,68 @@
+package com.TravelShare.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.TravelShare.service.SettlementPlanner;
+import com.TravelShare.service.SettlementPlanner.PlanMode;
+import com.TravelShare.service.SettlementPlanner.Transfer;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thời gian lập kế hoạch thanh toán của SettlementPlanner theo số participant, GREEDY so với MIN_TRANSACTIONS.
+ * Số dư ngẫu nhiên (seed cố định) có tổng bằng 0, mọi participant đều có số dư khác 0.
+ * Trên MAX_EXACT_PARTICIPANTS (18) người, MIN_TRANSACTIONS quay về GREEDY, nên ở 100 và 1.000 hai mode
+ * chỉ khác nhau phần kiểm tra ngưỡng; 10 người là trường hợp thuật toán chính xác O(2^n * n) thực sự chạy.
+ * Chạy bằng main(), xem {@link BenchmarkLauncher}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SettlementPlannerBenchmark {
+    @Param({"10", "100", "1000"})
+    int participants;
+
+    SettlementPlanner planner = new SettlementPlanner();
+    long[] balances;
+
+    @Setup
+    public void setUp() {
+        // Log INFO "falling back to greedy" mỗi lần gọi sẽ lấn át chính phần cần đo
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+        balances = balances(participants, new Random(42));
+    }
+
+    @Benchmark
+    public List<Transfer> greedy() {
+        return planner.plan(balances, PlanMode.GREEDY);
+    }
+
+    @Benchmark
+    public List<Transfer> minTransactions() {
+        return planner.plan(balances, PlanMode.MIN_TRANSACTIONS);
+    }
+
+    // Số dư tới 5.000.000 VND (minor unit), người cuối bù phần còn lại để tổng bằng 0
+    static long[] balances(int count, Random random) {
+        long[] balances = new long[count];
+        long sum = 0;
+        for (int i = 0; i < count - 1; i++) {
+            long amount = (random.nextInt(5_000_000) + 1) * 100L;
+            balances[i] = random.nextBoolean() ? amount : -amount;
+            sum += balances[i];
+        }
+        balances[count - 1] = sum == 0 ? 0 : -sum;
+        return balances;
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkLauncher.run(SettlementPlannerBenchmark.class, args);
+    }
+}
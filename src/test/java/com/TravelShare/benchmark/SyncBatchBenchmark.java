@@ -0,0 +1,199 @@
+package com.TravelShare.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.TravelShare.dto.request.ExpenseCreationRequest;
+import com.TravelShare.dto.request.SettlementCreationRequest;
+import com.TravelShare.dto.request.SyncBatchRequest;
+import com.TravelShare.dto.request.SyncOperationRequest;
+import com.TravelShare.dto.request.SyncOperationRequest.OperationType;
+import com.TravelShare.dto.response.ExpenseResponse;
+import com.TravelShare.dto.response.SettlementResponse;
+import com.TravelShare.dto.response.SyncBatchResponse;
+import com.TravelShare.entity.User;
+import com.TravelShare.repository.IdempotencyRecordRepository;
+import com.TravelShare.repository.UserRepository;
+import com.TravelShare.service.ExpenseService;
+import com.TravelShare.service.SettlementService;
+import com.TravelShare.service.SyncBatchService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Áp dụng N thay đổi offline (nửa tạo expense, nửa tạo settlement) qua SyncBatchService.applyBatch
+ * (một transaction cho cả batch, cộng giữ idempotency key và lưu response) so với N lần gọi
+ * ExpenseService / SettlementService riêng, mỗi lần một transaction như khi client gửi từng request.
+ * Service được thay bằng bản ghi một dòng qua JDBC, nên số đo là phần chi phí transaction (lấy connection,
+ * begin, commit xuống đĩa) và phần xử lý của SyncBatchService, không gồm logic nghiệp vụ, HTTP hay xác thực JWT
+ * mà mỗi request riêng còn phải trả thêm.
+ * Mặc định chạy trên H2 dạng file; đo trên Postgres bằng -Dbenchmark.jdbc.url=jdbc:postgresql://...
+ * (kèm -Dbenchmark.jdbc.user, -Dbenchmark.jdbc.password), truyền qua "-jvmArgsAppend".
+ * Chạy bằng main(), xem {@link BenchmarkLauncher}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SyncBatchBenchmark {
+    static final String USER_ID = "benchmark-user";
+
+    @Param({"10", "50"})
+    int operations;
+
+    HikariDataSource dataSource;
+    JdbcTemplate jdbcTemplate;
+    TransactionTemplate transactionTemplate;
+    ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    ExpenseService expenseService;
+    SettlementService settlementService;
+    SyncBatchService syncBatchService;
+    SyncBatchRequest request;
+
+    @Setup
+    public void setUp() {
+        // Log INFO của mỗi batch sẽ lấn át chính phần cần đo
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(System.getProperty("benchmark.jdbc.url", "jdbc:h2:file:./target/sync-benchmark/db"));
+        dataSource.setUsername(System.getProperty("benchmark.jdbc.user", "sa"));
+        dataSource.setPassword(System.getProperty("benchmark.jdbc.password", ""));
+        dataSource.setMaximumPoolSize(2);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        createTables();
+
+        expenseService = mock(ExpenseService.class);
+        when(expenseService.createExpense(any())).thenAnswer(invocation -> {
+            ExpenseCreationRequest expense = invocation.getArgument(0);
+            return ExpenseResponse.builder()
+                    .id(insert("INSERT INTO sync_benchmark_expense (title, amount) VALUES (?, ?)",
+                            expense.getTitle(), expense.getAmount()))
+                    .build();
+        });
+        settlementService = mock(SettlementService.class);
+        when(settlementService.createSettlement(any())).thenAnswer(invocation -> {
+            SettlementCreationRequest settlement = invocation.getArgument(0);
+            return SettlementResponse.builder()
+                    .id(insert("INSERT INTO sync_benchmark_settlement (description, amount) VALUES (?, ?)",
+                            settlement.getDescription(), settlement.getAmount()))
+                    .build();
+        });
+
+        IdempotencyRecordRepository idempotencyRecordRepository = mock(IdempotencyRecordRepository.class);
+        when(idempotencyRecordRepository.claim(anyString(), anyString(), anyString(), any())).thenAnswer(invocation ->
+                jdbcTemplate.update("INSERT INTO sync_benchmark_idempotency (user_id, idempotency_key, request_hash) "
+                        + "VALUES (?, ?, ?)", invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2)));
+        when(idempotencyRecordRepository.saveResponse(anyString(), anyString(), anyString())).thenAnswer(invocation ->
+                jdbcTemplate.update("UPDATE sync_benchmark_idempotency SET response_body = ? "
+                        + "WHERE user_id = ? AND idempotency_key = ?", invocation.getArgument(2),
+                        invocation.getArgument(0), invocation.getArgument(1)));
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findByUsername("benchmark")).thenReturn(Optional.of(User.builder().id(USER_ID).build()));
+
+        syncBatchService = new SyncBatchService(expenseService, settlementService, idempotencyRecordRepository,
+                userRepository, objectMapper, transactionTemplate);
+        ReflectionTestUtils.setField(syncBatchService, "maxOperations", 200);
+        ReflectionTestUtils.setField(syncBatchService, "idempotencyTtlHours", 72L);
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("benchmark", null));
+
+        request = new SyncBatchRequest(operations(operations));
+    }
+
+    @TearDown
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+        dataSource.close();
+    }
+
+    @Benchmark
+    public SyncBatchResponse batch() {
+        return syncBatchService.applyBatch(UUID.randomUUID().toString(), request);
+    }
+
+    // Như client gửi từng request: đọc payload rồi gọi service trong transaction riêng
+    @Benchmark
+    public List<Object> separateCalls() throws JsonProcessingException {
+        List<Object> results = new ArrayList<>(operations);
+        for (SyncOperationRequest operation : request.getOperations()) {
+            if (operation.getType() == OperationType.CREATE_EXPENSE) {
+                ExpenseCreationRequest expense = objectMapper.treeToValue(operation.getPayload(),
+                        ExpenseCreationRequest.class);
+                results.add(transactionTemplate.execute(status -> expenseService.createExpense(expense)));
+            } else {
+                SettlementCreationRequest settlement = objectMapper.treeToValue(operation.getPayload(),
+                        SettlementCreationRequest.class);
+                results.add(transactionTemplate.execute(status -> settlementService.createSettlement(settlement)));
+            }
+        }
+        return results;
+    }
+
+    private List<SyncOperationRequest> operations(int count) {
+        List<SyncOperationRequest> operations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            boolean expense = i % 2 == 0;
+            Object payload = expense
+                    ? ExpenseCreationRequest.builder().title("Phở " + i).amount(new BigDecimal("100000"))
+                            .groupId(7L).currency("VND").category(1L).build()
+                    : SettlementCreationRequest.builder().groupId(7L).fromParticipantId(11L).toParticipantId(12L)
+                            .amount(new BigDecimal("50000")).currencyCode("VND").description("Trả tiền " + i).build();
+            operations.add(SyncOperationRequest.builder()
+                    .clientOperationId("op-" + i)
+                    .type(expense ? OperationType.CREATE_EXPENSE : OperationType.CREATE_SETTLEMENT)
+                    .payload(objectMapper.valueToTree(payload))
+                    .build());
+        }
+        return operations;
+    }
+
+    private void createTables() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS sync_benchmark_expense (id BIGINT GENERATED BY DEFAULT AS "
+                + "IDENTITY PRIMARY KEY, title VARCHAR(255), amount NUMERIC(12, 2))");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS sync_benchmark_settlement (id BIGINT GENERATED BY DEFAULT AS "
+                + "IDENTITY PRIMARY KEY, description VARCHAR(255), amount NUMERIC(12, 2))");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS sync_benchmark_idempotency (user_id VARCHAR(36), "
+                + "idempotency_key VARCHAR(128), request_hash VARCHAR(64), response_body TEXT, "
+                + "PRIMARY KEY (user_id, idempotency_key))");
+    }
+
+    private Long insert(String sql, String text, BigDecimal amount) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql, new String[]{"id"});
+            statement.setString(1, text);
+            statement.setBigDecimal(2, amount);
+            return statement;
+        }, keyHolder);
+        return keyHolder.getKey().longValue();
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkLauncher.run(SyncBatchBenchmark.class, args);
+    }
+}
@@ -0,0 +1,196 @@
+package com.TravelShare.service;
+
+import com.TravelShare.dto.request.ChatRequest;
+import com.TravelShare.dto.response.ChatStreamStatsResponse;
+import com.TravelShare.dto.response.SimpleChatResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class ChatStreamServiceTest {
+    Sinks.Many<ChatResponse> upstream = Sinks.many().unicast().onBackpressureBuffer();
+    AtomicBoolean upstreamCancelled = new AtomicBoolean();
+    RecordingEmitter emitter = new RecordingEmitter();
+    ChatStreamService service = new ChatStreamService(ChatClient.builder(new FakeStreamingModel()), 120) {
+        @Override
+        SseEmitter createEmitter() {
+            return emitter;
+        }
+    };
+
+    @Test
+    void streamsTokensInOrderThenDone() {
+        service.streamChat(new ChatRequest("xin chào"));
+
+        upstream.tryEmitNext(chunk("Xin"));
+        upstream.tryEmitNext(chunk(" chào"));
+        // Chunk cuối của OpenAI: không có text, chỉ có usage
+        upstream.tryEmitNext(lastChunk(new DefaultUsage(5, 7)));
+        upstream.tryEmitComplete();
+
+        await().atMost(Duration.ofSeconds(5)).until(emitter::isCompleted);
+        assertThat(emitter.names()).containsExactly("token", "token", "done");
+        assertThat(emitter.events.get(0).data()).isEqualTo(Map.of("content", "Xin"));
+        assertThat(emitter.events.get(1).data()).isEqualTo(Map.of("content", " chào"));
+        SimpleChatResponse done = (SimpleChatResponse) emitter.events.get(2).data();
+        assertThat(done.content()).isEqualTo("Xin chào");
+        assertThat(done.model()).isEqualTo("fake-model");
+        assertThat(done.totalTokens()).isEqualTo(12);
+
+        ChatStreamStatsResponse stats = service.getStats();
+        assertThat(stats.getCompleted()).isEqualTo(1);
+        assertThat(stats.getActiveStreams()).isZero();
+        assertThat(stats.getTotalTokens()).isEqualTo(12);
+    }
+
+    @Test
+    void upstreamErrorSendsErrorEventAndCompletes() {
+        service.streamChat(new ChatRequest("xin chào"));
+
+        upstream.tryEmitNext(chunk("Xin"));
+        upstream.tryEmitError(new IllegalStateException("rate limited"));
+
+        await().atMost(Duration.ofSeconds(5)).until(emitter::isCompleted);
+        assertThat(emitter.names()).containsExactly("token", "error");
+        assertThat(emitter.events.get(1).data()).isEqualTo(Map.of("message", "Không thể xử lý yêu cầu AI"));
+
+        ChatStreamStatsResponse stats = service.getStats();
+        assertThat(stats.getFailed()).isEqualTo(1);
+        assertThat(stats.getCompleted()).isZero();
+        assertThat(stats.getActiveStreams()).isZero();
+    }
+
+    @Test
+    void timeoutDisposesUpstreamSubscription() {
+        service.streamChat(new ChatRequest("xin chào"));
+        upstream.tryEmitNext(chunk("Xin"));
+        await().atMost(Duration.ofSeconds(5)).until(() -> emitter.events.size() == 1);
+
+        emitter.timeout();
+
+        assertThat(upstreamCancelled).isTrue();
+        // Model không còn ai lắng nghe: token sau khi hủy không được gửi đi
+        assertThat(upstream.tryEmitNext(chunk(" chào")).isFailure()).isTrue();
+        assertThat(emitter.names()).containsExactly("token");
+
+        ChatStreamStatsResponse stats = service.getStats();
+        assertThat(stats.getCancelled()).isEqualTo(1);
+        assertThat(stats.getActiveStreams()).isZero();
+    }
+
+    @Test
+    void clientDisconnectDisposesUpstreamSubscription() {
+        service.streamChat(new ChatRequest("xin chào"));
+
+        emitter.fail(new IllegalStateException("broken pipe"));
+
+        assertThat(upstreamCancelled).isTrue();
+        assertThat(service.getStats().getCancelled()).isEqualTo(1);
+    }
+
+    private static ChatResponse chunk(String text) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
+
+    private static ChatResponse lastChunk(DefaultUsage usage) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(""))),
+                ChatResponseMetadata.builder().id("msg-1").model("fake-model").usage(usage).build());
+    }
+
+    // Model giả: stream lấy từ sink do test điều khiển, ghi nhận khi subscription bị hủy
+    class FakeStreamingModel implements ChatModel {
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Flux<ChatResponse> stream(Prompt prompt) {
+            return upstream.asFlux().doOnCancel(() -> upstreamCancelled.set(true));
+        }
+    }
+
+    record Event(String name, Object data) {
+    }
+
+    // Emitter không gắn với servlet: ghi lại các event đã gửi, cho phép test kích hoạt timeout/lỗi như container
+    static class RecordingEmitter extends SseEmitter {
+        final List<Event> events = new CopyOnWriteArrayList<>();
+        volatile boolean completed;
+        Runnable timeoutCallback;
+        Consumer<Throwable> errorCallback;
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            Set<DataWithMediaType> parts = builder.build();
+            String name = null;
+            Object data = null;
+            // Các phần text là khung SSE ("event:...\ndata:", "\n\n"), phần còn lại là payload
+            for (DataWithMediaType part : parts) {
+                if (part.getData() instanceof String text) {
+                    if (text.startsWith("event:")) {
+                        name = text.substring("event:".length(), text.indexOf('\n'));
+                    }
+                } else {
+                    data = part.getData();
+                }
+            }
+            events.add(new Event(name, data));
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+
+        @Override
+        public void onTimeout(Runnable callback) {
+            timeoutCallback = callback;
+        }
+
+        @Override
+        public void onError(Consumer<Throwable> callback) {
+            errorCallback = callback;
+        }
+
+        @Override
+        public void onCompletion(Runnable callback) {
+        }
+
+        boolean isCompleted() {
+            return completed;
+        }
+
+        List<String> names() {
+            return events.stream().map(Event::name).toList();
+        }
+
+        void timeout() {
+            timeoutCallback.run();
+        }
+
+        void fail(Throwable error) {
+            errorCallback.accept(error);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.TravelShare.service;
+
+import com.TravelShare.dto.response.ExpenseImportResponse;
+import com.TravelShare.entity.*;
+import com.TravelShare.entity.Currency;
+import com.TravelShare.event.ExpensesImportedEvent;
+import com.TravelShare.exception.AppException;
+import com.TravelShare.exception.ErrorCode;
+import com.TravelShare.repository.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ExpenseImportServiceTest {
+    static final long GROUP_ID = 7L;
+    static final long ALICE = 11L;
+    static final long BOB = 12L;
+    static final long FOOD = 1L;
+
+    JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    UserRepository userRepository = mock(UserRepository.class);
+    GroupRepository groupRepository = mock(GroupRepository.class);
+    GroupParticipantRepository groupParticipantRepository = mock(GroupParticipantRepository.class);
+    CategoryRepository categoryRepository = mock(CategoryRepository.class);
+    CurrencyRepository currencyRepository = mock(CurrencyRepository.class);
+    ExchangeRateService exchangeRateService = mock(ExchangeRateService.class);
+    BalanceLedgerService balanceLedgerService = mock(BalanceLedgerService.class);
+    SpendingRollupService spendingRollupService = mock(SpendingRollupService.class);
+    ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+
+    ExpenseImportService service = new ExpenseImportService(jdbcTemplate, Jackson2ObjectMapperBuilder.json().build(),
+            userRepository, groupRepository, groupParticipantRepository, categoryRepository, currencyRepository,
+            exchangeRateService, balanceLedgerService, spendingRollupService, eventPublisher);
+
+    // Tiêu đề các expense đã được đưa vào batch insert
+    List<String> insertedTitles = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ReflectionTestUtils.setField(service, "maxRows", 5000);
+        ReflectionTestUtils.setField(service, "batchSize", 2);
+
+        User alice = User.builder().id("u-alice").username("alice").build();
+        User bob = User.builder().id("u-bob").username("bob").build();
+        Currency vnd = Currency.builder().code("VND").build();
+        Group group = Group.builder().id(GROUP_ID).name("Đà Lạt").defaultCurrency(vnd).build();
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("alice", null));
+
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(alice));
+        when(groupRepository.findById(GROUP_ID)).thenReturn(Optional.of(group));
+        when(groupParticipantRepository.findAllWithUserByGroupId(GROUP_ID)).thenReturn(List.of(
+                GroupParticipant.builder().id(ALICE).user(alice).build(),
+                GroupParticipant.builder().id(BOB).user(bob).build()));
+        when(categoryRepository.findByGroupIdOrGroupIsNull(GROUP_ID))
+                .thenReturn(List.of(Category.builder().id(FOOD).build()));
+        when(currencyRepository.findAll()).thenReturn(List.of(vnd));
+
+        stubJdbcBatches();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void jsonElementWithWrongTypeIsReportedAndOtherRowsImported() {
+        String json = """
+                [
+                  {"title": "Phở", "amount": 100000, "category": 1},
+                  {"title": "Taxi", "amount": "một trăm", "category": 1},
+                  {"title": "Cà phê", "amount": 50000, "category": 1, "expenseDate": "hôm qua"},
+                  {"title": "Bánh mì", "amount": 30000, "category": 1}
+                ]
+                """;
+
+        ExpenseImportResponse response = service.importExpenses(GROUP_ID, json("expenses.json", json));
+
+        assertThat(response.getTotalRows()).isEqualTo(4);
+        assertThat(response.getImported()).isEqualTo(2);
+        assertThat(response.getFailed()).isEqualTo(2);
+        assertThat(response.getErrors()).extracting(ExpenseImportResponse.RowError::getRow).containsExactly(2, 3);
+        assertThat(response.getErrors()).allSatisfy(error -> assertThat(error.getMessage()).startsWith("Invalid value"));
+        assertThat(insertedTitles).containsExactly("Phở", "Bánh mì");
+        assertThat(response.getTotalAmount()).isEqualByComparingTo("130000");
+    }
+
+    @Test
+    void malformedJsonFailsWholeFile() {
+        String json = "[{\"title\": \"Phở\", \"amount\": 100000, \"category\": 1}, {\"title\": ";
+
+        assertThatThrownBy(() -> service.importExpenses(GROUP_ID, json("expenses.json", json)))
+                .isInstanceOfSatisfying(AppException.class,
+                        e -> assertThat(e.getErrorCode()).isEqualTo(ErrorCode.IMPORT_FILE_INVALID));
+    }
+
+    @Test
+    void csvRowsWithInvalidValuesAreReported() {
+        String csv = """
+                title,amount,category,expenseDate
+                Phở,100000,1,2024-03-15
+                Taxi,abc,1,
+                Vé xe,50000,99,
+                "Cà phê, bánh",40000,1,
+                """;
+
+        ExpenseImportResponse response = service.importExpenses(GROUP_ID, csv(csv));
+
+        assertThat(response.getImported()).isEqualTo(2);
+        assertThat(response.getFailed()).isEqualTo(2);
+        assertThat(response.getErrors()).extracting(ExpenseImportResponse.RowError::getRow).containsExactly(2, 3);
+        assertThat(response.getErrors().get(0).getMessage()).startsWith("Invalid value");
+        assertThat(response.getErrors().get(1).getMessage()).isEqualTo(ErrorCode.CATEGORY_NOT_EXISTED.getMessage());
+        assertThat(insertedTitles).containsExactly("Phở", "Cà phê, bánh");
+    }
+
+    @Test
+    void rejectsFileAboveRowLimit() {
+        ReflectionTestUtils.setField(service, "maxRows", 2);
+        String csv = "title,amount,category\nA,1,1\nB,2,1\nC,3,1\n";
+
+        assertThatThrownBy(() -> service.importExpenses(GROUP_ID, csv(csv)))
+                .isInstanceOfSatisfying(AppException.class,
+                        e -> assertThat(e.getErrorCode()).isEqualTo(ErrorCode.IMPORT_TOO_MANY_ROWS));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void updatesLedgerOncePerImportAndPublishesOneEvent() {
+        String csv = """
+                title,amount,category,participantId
+                Phở,100000,1,
+                Khách sạn,600000,1,12
+                Taxi,80000,1,11
+                """;
+
+        service.importExpenses(GROUP_ID, csv(csv));
+
+        ArgumentCaptor<Map<Long, BigDecimal>> delta = ArgumentCaptor.forClass(Map.class);
+        verify(balanceLedgerService).recordExpensesImported(eq(GROUP_ID), delta.capture());
+        // Chia đều cho 2 người: Alice trả 180.000, Bob trả 600.000, mỗi người chịu 390.000
+        assertThat(delta.getValue().get(ALICE)).isEqualByComparingTo("-210000");
+        assertThat(delta.getValue().get(BOB)).isEqualByComparingTo("210000");
+        verify(spendingRollupService).recordExpensesImported(argThat(contributions -> contributions.size() == 3));
+
+        ArgumentCaptor<ExpensesImportedEvent> event = ArgumentCaptor.forClass(ExpensesImportedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        verifyNoMoreInteractions(eventPublisher);
+    }
+
+    @Test
+    void nothingIsPublishedWhenNoRowImported() {
+        ExpenseImportResponse response = service.importExpenses(GROUP_ID, csv("title,amount,category\nA,-5,1\n"));
+
+        assertThat(response.getImported()).isZero();
+        assertThat(response.getFailed()).isEqualTo(1);
+        verifyNoInteractions(eventPublisher);
+    }
+
+    private static MockMultipartFile json(String name, String content) {
+        return new MockMultipartFile("file", name, "application/json", content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MockMultipartFile csv(String content) {
+        return new MockMultipartFile("file", "expenses.csv", "text/csv", content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // JDBC giả: ghi lại tiêu đề expense của batch insert và trả id tự tăng cho mỗi dòng đã addBatch
+    private void stubJdbcBatches() throws Exception {
+        AtomicLong nextId = new AtomicLong(1000);
+        AtomicInteger pending = new AtomicInteger();
+        AtomicInteger lastBatch = new AtomicInteger();
+        List<String> pendingTitles = new ArrayList<>();
+
+        PreparedStatement expenseStatement = mock(PreparedStatement.class);
+        doAnswer(invocation -> {
+            if (invocation.<Integer>getArgument(0) == 1) {
+                pendingTitles.add(invocation.getArgument(1));
+            }
+            return null;
+        }).when(expenseStatement).setString(anyInt(), any());
+        doAnswer(invocation -> pending.incrementAndGet()).when(expenseStatement).addBatch();
+        when(expenseStatement.executeBatch()).thenAnswer(invocation -> {
+            lastBatch.set(pending.getAndSet(0));
+            insertedTitles.addAll(pendingTitles);
+            pendingTitles.clear();
+            return new int[lastBatch.get()];
+        });
+        when(expenseStatement.getGeneratedKeys()).thenAnswer(invocation -> generatedKeys(nextId, lastBatch.get()));
+
+        PreparedStatement splitStatement = mock(PreparedStatement.class);
+        when(splitStatement.executeBatch()).thenReturn(new int[0]);
+
+        Connection connection = mock(Connection.class);
+        when(connection.prepareStatement(eq(ExpenseImportService.INSERT_EXPENSE_SQL), any(String[].class)))
+                .thenReturn(expenseStatement);
+        when(connection.prepareStatement(ExpenseImportService.INSERT_SPLIT_SQL)).thenReturn(splitStatement);
+        when(jdbcTemplate.execute(any(ConnectionCallback.class)))
+                .thenAnswer(invocation -> invocation.<ConnectionCallback<?>>getArgument(0).doInConnection(connection));
+    }
+
+    private static ResultSet generatedKeys(AtomicLong nextId, int count) throws Exception {
+        ResultSet keys = mock(ResultSet.class);
+        AtomicInteger remaining = new AtomicInteger(count);
+        when(keys.next()).thenAnswer(invocation -> remaining.getAndDecrement() > 0);
+        when(keys.getLong(1)).thenAnswer(invocation -> nextId.getAndIncrement());
+        return keys;
+    }
+}
@@ -0,0 +1,196 @@
+package com.TravelShare.service;
+
+import com.TravelShare.dto.response.ExpensePageResponse;
+import com.TravelShare.entity.*;
+import com.TravelShare.entity.Currency;
+import com.TravelShare.mapper.ExpenseMapperImpl;
+import com.TravelShare.mapper.MediaMapperImpl;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Số câu lệnh SQL của một trang expense phải cố định, không tăng theo số expense, split hay attachment trong trang.
+ * Chạy trên H2 (không cần Postgres), đếm bằng Hibernate Statistics.
+ */
+@DataJpaTest(properties = {
+        // cache_entry có cột "value", là từ khóa của H2
+        "spring.datasource.url=jdbc:h2:mem:expense-page;NON_KEYWORDS=VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        // Ghi đè PostgreSQLDialect trong application.yaml
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ExpenseService.class, ExpenseMapperImpl.class, MediaMapperImpl.class})
+class ExpensePageQueryCountTest {
+    // group (2) + id của trang + expense kèm splits + attachments
+    static final long STATEMENTS_PER_PAGE = 5;
+    static final int EXPENSES = 30;
+
+    @Autowired
+    ExpenseService expenseService;
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean
+    ExchangeRateService exchangeRateService;
+
+    @MockitoBean
+    BalanceLedgerService balanceLedgerService;
+
+    @MockitoBean
+    MediaVariantService mediaVariantService;
+
+    Long groupId;
+
+    @BeforeEach
+    void setUp() {
+        when(mediaVariantService.variantUrls(any())).thenAnswer(invocation ->
+                Map.of("thumb", invocation.<Media>getArgument(0).getFileUrl() + "?variant=thumb"));
+
+        Currency vnd = entityManager.persist(Currency.builder().code("VND").name("Việt Nam Đồng").symbol("₫").build());
+        Category category = entityManager.persist(Category.builder()
+                .name("Ăn uống")
+                .description("Ăn uống")
+                .type(Category.CategoryType.EXPENSE)
+                .build());
+        User creator = persistUser("alice");
+        Group group = entityManager.persist(Group.builder()
+                .name("Đà Lạt")
+                .createdBy(creator)
+                .createdAt(LocalDateTime.now())
+                .joinCode("DALAT1")
+                .defaultCurrency(vnd)
+                .category(category)
+                .build());
+        groupId = group.getId();
+
+        List<GroupParticipant> participants = new ArrayList<>();
+        for (String username : List.of("alice", "bob", "carol")) {
+            User user = username.equals("alice") ? creator : persistUser(username);
+            participants.add(entityManager.persist(GroupParticipant.builder()
+                    .group(group)
+                    .user(user)
+                    .name(username)
+                    .role("MEMBER")
+                    .joinedAt(LocalDateTime.now())
+                    .build()));
+        }
+
+        for (int i = 0; i < EXPENSES; i++) {
+            GroupParticipant payer = participants.get(i % participants.size());
+            Expense expense = entityManager.persist(Expense.builder()
+                    .title("Expense " + i)
+                    .originalAmount(new BigDecimal("90000"))
+                    .convertedAmount(new BigDecimal("90000"))
+                    .originalCurrency(vnd)
+                    .convertedCurrency(vnd)
+                    .group(group)
+                    .payer(payer)
+                    .category(category)
+                    .splitType(Expense.SplitType.EQUAL)
+                    // Vài expense cùng ngày để cursor phải so cả id
+                    .expenseDate(LocalDate.of(2024, 3, 1).plusDays(i / 3))
+                    .createdBy(payer.getUser())
+                    .build());
+            for (GroupParticipant participant : participants) {
+                entityManager.persist(ExpenseSplit.builder()
+                        .expense(expense)
+                        .participant(participant)
+                        .amount(new BigDecimal("30000"))
+                        .payer(participant == payer)
+                        .build());
+            }
+            entityManager.persist(Media.builder()
+                    .fileName("receipt-" + i + ".jpg")
+                    .contentType("image/jpeg")
+                    .mediaType(Media.MediaType.IMAGE)
+                    .fileSize(1024L)
+                    .filePath("/receipts/" + i + ".jpg")
+                    .fileUrl("/media/receipts/" + i + ".jpg")
+                    .uploadedAt(LocalDateTime.now())
+                    .uploadedBy(payer.getUser())
+                    .expense(expense)
+                    .build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void statementCountDoesNotDependOnPageSize() {
+        for (int size : new int[]{1, 5, 20, EXPENSES}) {
+            ExpensePageResponse page = countedPage(null, size);
+
+            assertThat(page.getItems()).hasSize(size);
+            assertThat(page.getItems()).allSatisfy(item -> {
+                assertThat(item.getSplits()).hasSize(3);
+                assertThat(item.getAttachments()).singleElement()
+                        .satisfies(attachment -> assertThat(attachment.getVariants()).containsKey("thumb"));
+            });
+            assertThat(statistics().getPrepareStatementCount()).as("page size %d", size)
+                    .isEqualTo(STATEMENTS_PER_PAGE);
+        }
+    }
+
+    @Test
+    void followingPagesRunSameStatementsAndCoverEveryExpense() {
+        Set<Long> seen = new HashSet<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            ExpensePageResponse page = countedPage(cursor, 7);
+            assertThat(statistics().getPrepareStatementCount()).as("page %d", pages)
+                    .isEqualTo(STATEMENTS_PER_PAGE);
+            page.getItems().forEach(item -> assertThat(seen.add(item.getId())).isTrue());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertThat(seen).hasSize(EXPENSES);
+        assertThat(pages).isEqualTo(5);
+    }
+
+    private ExpensePageResponse countedPage(String cursor, int size) {
+        // Persistence context rỗng để mỗi trang nạp lại mọi thứ như một request mới
+        entityManager.clear();
+        statistics().clear();
+        // Mapper chạy trong service, nên quan hệ lazy nào response chạm tới cũng đã được tính
+        return expenseService.getExpensePageByGroupId(groupId, cursor, size);
+    }
+
+    private User persistUser(String username) {
+        return entityManager.persist(User.builder()
+                .username(username)
+                .email(username + "@travelshare.vn")
+                .active(true)
+                .build());
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+}
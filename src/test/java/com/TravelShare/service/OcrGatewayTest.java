@@ -0,0 +1,199 @@
+package com.TravelShare.service;
+
+import com.TravelShare.dto.response.OCRResponse;
+import com.TravelShare.service.ImageOptimizationService.OptimizedImage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.support.NoOpCacheManager;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OcrGatewayTest {
+    static final String MODEL_JSON = """
+            {"merchantName": "Phở Thìn", "amount": 150000.0, "date": "2024-05-01 12:00:00",
+             "description": "Ăn trưa", "categoryName": "Ăn uống"}
+            """;
+    static final int CONCURRENT_REQUESTS = 16;
+
+    AtomicInteger modelCalls = new AtomicInteger();
+    CountDownLatch releaseModel = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        releaseModel.countDown();
+        threads.forEach(Thread::interrupt);
+    }
+
+    @Test
+    void concurrentIdenticalRequestsShareOneModelCall() throws Exception {
+        // Không có cache: chỉ việc gộp request đang chạy mới ngăn được các lần gọi trùng
+        OcrGateway gateway = gateway(blockingModel(), new NoOpCacheManager());
+        ConcurrentLinkedQueue<OCRResponse> results = new ConcurrentLinkedQueue<>();
+        ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+
+        for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+            start(() -> {
+                try {
+                    results.add(gateway.recognize(image("same-receipt")));
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            });
+        }
+        awaitAllWaiting();
+        releaseModel.countDown();
+        joinAll();
+
+        assertThat(errors).isEmpty();
+        assertThat(modelCalls).hasValue(1);
+        assertThat(results).hasSize(CONCURRENT_REQUESTS)
+                .allSatisfy(response -> {
+                    assertThat(response.merchantName()).isEqualTo("Phở Thìn");
+                    assertThat(response.amount()).isEqualByComparingTo("150000");
+                });
+    }
+
+    @Test
+    void differentImagesAreNotCoalesced() throws Exception {
+        OcrGateway gateway = gateway(blockingModel(), new NoOpCacheManager());
+
+        for (int i = 0; i < 3; i++) {
+            String key = "receipt-" + i;
+            start(() -> gateway.recognize(image(key)));
+        }
+        awaitAllWaiting();
+        releaseModel.countDown();
+        joinAll();
+
+        assertThat(modelCalls).hasValue(3);
+    }
+
+    @Test
+    void failureReachesEveryWaiterAndIsNotRemembered() throws Exception {
+        AtomicInteger failuresLeft = new AtomicInteger(1);
+        ChatModel model = prompt -> {
+            modelCalls.incrementAndGet();
+            awaitRelease();
+            if (failuresLeft.getAndDecrement() > 0) {
+                throw new IllegalStateException("model unavailable");
+            }
+            return response(MODEL_JSON);
+        };
+        OcrGateway gateway = gateway(model, new NoOpCacheManager());
+        ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+
+        for (int i = 0; i < 4; i++) {
+            start(() -> {
+                try {
+                    gateway.recognize(image("flaky"));
+                } catch (RuntimeException e) {
+                    errors.add(e);
+                }
+            });
+        }
+        awaitAllWaiting();
+        releaseModel.countDown();
+        joinAll();
+
+        assertThat(modelCalls).hasValue(1);
+        assertThat(errors).hasSize(4);
+
+        // Lỗi không được giữ lại trong inFlight: lần sau gọi lại model
+        assertThat(gateway.recognize(image("flaky")).merchantName()).isEqualTo("Phở Thìn");
+        assertThat(modelCalls).hasValue(2);
+    }
+
+    @Test
+    void cachedResultSkipsModel() {
+        releaseModel.countDown();
+        OcrGateway gateway = gateway(blockingModel(), new ConcurrentMapCacheManager(OcrGateway.CACHE_NAME));
+
+        gateway.recognize(image("cached"));
+        gateway.recognize(image("cached"));
+
+        assertThat(modelCalls).hasValue(1);
+    }
+
+    @Test
+    void unparseableModelOutputFails() {
+        releaseModel.countDown();
+        OcrGateway gateway = gateway(prompt -> response("không phải JSON"), new NoOpCacheManager());
+
+        assertThatThrownBy(() -> gateway.recognize(image("garbage")))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessage("OCR processing failed");
+    }
+
+    private OcrGateway gateway(ChatModel model, CacheManager cacheManager) {
+        return new OcrGateway(ChatClient.builder(model), new ObjectMapper().findAndRegisterModules(), cacheManager);
+    }
+
+    // Model giả: đếm số lần gọi và giữ lời gọi lại cho tới khi test cho phép trả về
+    private ChatModel blockingModel() {
+        return prompt -> {
+            modelCalls.incrementAndGet();
+            awaitRelease();
+            return response(MODEL_JSON);
+        };
+    }
+
+    private void awaitRelease() {
+        try {
+            if (!releaseModel.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("model was never released");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ChatResponse response(String text) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
+
+    private static OptimizedImage image(String cacheKey) {
+        return new OptimizedImage(new ByteArrayInputStream(new byte[]{1, 2, 3}), 3, cacheKey, 0L, null);
+    }
+
+    private void start(Runnable task) {
+        Thread thread = new Thread(task);
+        threads.add(thread);
+        thread.start();
+    }
+
+    // Chờ tới khi mọi thread đều đang chặn: một thread trong model, các thread còn lại chờ future chung
+    private void awaitAllWaiting() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!threads.stream().allMatch(thread -> thread.getState() == Thread.State.WAITING
+                || thread.getState() == Thread.State.TIMED_WAITING)) {
+            assertThat(System.nanoTime()).as("threads did not block in time").isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private void joinAll() throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+            assertThat(thread.isAlive()).isFalse();
+        }
+    }
+}
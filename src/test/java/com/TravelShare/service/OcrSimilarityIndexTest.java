@@ -0,0 +1,44 @@
+package com.TravelShare.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OcrSimilarityIndexTest {
+    static final long RECEIPT = 0x5A5A_F0F0_1234_ABCDL;
+
+    OcrSimilarityIndex index = new OcrSimilarityIndex(6, 3, 100, 30);
+
+    @Test
+    void reportsSimilarityOfNearestRecentReceipt() {
+        index.add("u-alice", RECEIPT ^ 0b1111);
+        index.add("u-alice", RECEIPT ^ 0b11);
+
+        assertThat(index.findSimilarity("u-alice", RECEIPT)).hasValue(1.0 - 2.0 / 64);
+    }
+
+    @Test
+    void ignoresReceiptsBeyondMaxDistance() {
+        index.add("u-alice", RECEIPT ^ 0b111_1111);
+
+        assertThat(index.findSimilarity("u-alice", RECEIPT)).isEmpty();
+    }
+
+    @Test
+    void onlyComparesWithSameUser() {
+        index.add("u-bob", RECEIPT);
+
+        assertThat(index.findSimilarity("u-alice", RECEIPT)).isEmpty();
+        assertThat(index.findSimilarity(null, RECEIPT)).isEmpty();
+    }
+
+    @Test
+    void keepsOnlyMostRecentHashesPerUser() {
+        index.add("u-alice", RECEIPT);
+        for (int i = 1; i <= 3; i++) {
+            index.add("u-alice", ~RECEIPT ^ i);
+        }
+
+        assertThat(index.findSimilarity("u-alice", RECEIPT)).isEmpty();
+    }
+}
@@ -0,0 +1,223 @@
+package com.TravelShare.service;
+
+import com.TravelShare.dto.response.OCRResponse;
+import com.TravelShare.dto.response.ReceiptPreParserStatsResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.NullAndEmptySource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReceiptPreParserTest {
+    ReceiptPreParser parser = new ReceiptPreParser();
+
+    @Test
+    void crcHelperMatchesStandardCheckValue() {
+        // Giá trị kiểm tra chuẩn của CRC-16/CCITT-FALSE
+        assertThat(crc("123456789")).isEqualTo("29B1");
+    }
+
+    @Test
+    void parsesVietQrWithValidCrc() {
+        String payload = vietQr(tlv("53", "704") + tlv("54", "150000") + tlv("58", "VN")
+                + tlv("59", "PHO THIN") + tlv("62", tlv("01", "HD0042") + tlv("08", "An trua nhom")));
+
+        OCRResponse response = parser.tryParse(payload).orElseThrow();
+
+        assertThat(response.amount()).isEqualByComparingTo("150000");
+        assertThat(response.merchantName()).isEqualTo("PHO THIN");
+        assertThat(response.description()).isEqualTo("An trua nhom");
+        assertThat(response.date()).isNull();
+        assertThat(response.similarity()).isNull();
+    }
+
+    @Test
+    void rejectsVietQrWithBadCrc() {
+        String payload = vietQr(tlv("53", "704") + tlv("54", "150000") + tlv("59", "PHO THIN"));
+        // Sửa số tiền nhưng giữ nguyên CRC cũ
+        String tampered = payload.replace(tlv("54", "150000"), tlv("54", "950000"));
+
+        assertThat(parser.tryParse(payload)).isPresent();
+        assertThat(parser.tryParse(tampered)).isEmpty();
+    }
+
+    @Test
+    void rejectsVietQrWithoutCrcTag() {
+        String payload = ReceiptPreParser.EMV_PREFIX + tlv("01", "12") + tlv("54", "150000");
+
+        assertThat(parser.tryParse(payload)).isEmpty();
+    }
+
+    @Test
+    void vietQrWithoutCurrencyTagIsTreatedAsVnd() {
+        String payload = vietQr(tlv("54", "75000") + tlv("59", "GRAB TAXI"));
+
+        OCRResponse response = parser.tryParse(payload).orElseThrow();
+
+        assertThat(response.amount()).isEqualByComparingTo("75000");
+        // Không có tag 62-08: mô tả lấy theo tên người nhận
+        assertThat(response.description()).isEqualTo("GRAB TAXI");
+        assertThat(response.categoryName()).isEqualTo("Đi lại & Phương tiện");
+    }
+
+    @Test
+    void leavesForeignCurrencyVietQrToModel() {
+        String payload = vietQr(tlv("53", "840") + tlv("54", "25.50") + tlv("59", "STARBUCKS"));
+
+        assertThat(parser.tryParse(payload)).isEmpty();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "0", "-5000", "abc"})
+    void leavesVietQrWithoutUsableAmountToModel(String amount) {
+        String payload = vietQr(tlv("53", "704") + (amount.isEmpty() ? "" : tlv("54", amount)) + tlv("59", "PHO THIN"));
+
+        assertThat(parser.tryParse(payload)).isEmpty();
+    }
+
+    @Test
+    void rejectsVietQrWithTruncatedTlv() {
+        // Độ dài khai báo 20 nhưng giá trị chỉ có 8 ký tự; CRC vẫn đúng
+        String payload = vietQr(tlv("54", "150000") + "5920PHO THIN");
+
+        assertThat(parser.tryParse(payload)).isEmpty();
+    }
+
+    @Test
+    void parsesInvoiceFieldsWithAccentedKeys() {
+        String payload = """
+                Tên người bán: Công ty TNHH Phở Thìn
+                Ngày lập: 15/03/2024 19:45
+                Tổng tiền thanh toán: 1.250.000 đ
+                """;
+
+        OCRResponse response = parser.tryParse(payload).orElseThrow();
+
+        assertThat(response.amount()).isEqualByComparingTo("1250000");
+        assertThat(response.date()).isEqualTo(LocalDateTime.of(2024, 3, 15, 19, 45));
+        assertThat(response.merchantName()).isEqualTo("Công ty TNHH Phở Thìn");
+    }
+
+    @Test
+    void parsesInvoiceFieldsWithUnaccentedKeys() {
+        String payload = "TENNBAN=Cong ty ABC;NLAP=2024-03-15;TGTTTBSO=1,250,000";
+
+        OCRResponse response = parser.tryParse(payload).orElseThrow();
+
+        assertThat(response.amount()).isEqualByComparingTo("1250000");
+        assertThat(response.date()).isEqualTo(LocalDateTime.of(2024, 3, 15, 0, 0));
+        assertThat(response.merchantName()).isEqualTo("Cong ty ABC");
+    }
+
+    @Test
+    void parsesInvoiceLookupUrl() {
+        String payload = "https://hoadondientu.example.vn/tracuu?tennban=C%C3%B4ng+ty+ABC"
+                + "&nlap=2024-03-15T10%3A20%3A30&tgtttbso=1250000";
+
+        OCRResponse response = parser.tryParse(payload).orElseThrow();
+
+        assertThat(response.amount()).isEqualByComparingTo("1250000");
+        assertThat(response.date()).isEqualTo(LocalDateTime.of(2024, 3, 15, 10, 20, 30));
+        assertThat(response.merchantName()).isEqualTo("Công ty ABC");
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "Công ty TNHH Phở Thìn|Ăn uống",
+            "HIGHLANDS COFFEE VINCOM|Ăn uống",
+            "Khách sạn Mường Thanh|Chỗ ở & Lưu trú",
+            "WINMART+ 12 NGUYEN TRAI|Mua sắm",
+            "CGV Vincom Ba Trieu|Giải trí",
+            "Cong ty ABC|Khác",
+            // "pho" chỉ khớp nguyên từ, không khớp trong "Phong"
+            "Cong ty Thanh Phong|Khác"
+    })
+    void guessesCategoryFromMerchantKeywords(String merchant, String category) {
+        assertThat(ReceiptPreParser.categoryForMerchant(merchant)).isEqualTo(category);
+    }
+
+    @Test
+    void prefersTotalPaymentOverOtherAmounts() {
+        String payload = "Số tiền: 1.000.000\nTổng tiền thanh toán: 1.100.000\nNgày: 2024-03-15";
+
+        assertThat(parser.tryParse(payload).orElseThrow().amount()).isEqualByComparingTo("1100000");
+    }
+
+    @Test
+    void leavesInvoiceWithoutDateToModel() {
+        assertThat(parser.tryParse("Tổng tiền: 1.250.000\nNgười bán: Công ty ABC")).isEmpty();
+    }
+
+    @ParameterizedTest
+    @NullAndEmptySource
+    @ValueSource(strings = {"   ", "https://example.vn/menu", "WIFI:S:PhoThin;T:WPA;P:12345678;;"})
+    void leavesNonReceiptQrToModel(String payload) {
+        assertThat(parser.tryParse(payload)).isEmpty();
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "9.010.000|9010000",
+            "9,010,000|9010000",
+            "1.500|1500",
+            "150.000 VND|150000",
+            "150000đ|150000",
+            "1500.50|1500.50",
+            "12,5|12.5"
+    })
+    void parsesVietnameseAmounts(String raw, String expected) {
+        assertThat(ReceiptPreParser.parseAmount(raw)).isEqualByComparingTo(expected);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"abc", "1.2.3", "9.01.000"})
+    void rejectsMalformedAmounts(String raw) {
+        assertThat(ReceiptPreParser.parseAmount(raw)).isNull();
+    }
+
+    @Test
+    void countsLocalHitsAndFallbacks() {
+        parser.tryParse(vietQr(tlv("54", "150000") + tlv("59", "PHO THIN")));
+        parser.tryParse("Tổng tiền: 1.250.000");
+        parser.tryParse(null);
+
+        ReceiptPreParserStatsResponse stats = parser.getStats();
+        assertThat(stats.getAttempts()).isEqualTo(3);
+        assertThat(stats.getQrDetected()).isEqualTo(2);
+        assertThat(stats.getLocalHits()).isEqualTo(1);
+        assertThat(stats.getFallbacks()).isEqualTo(2);
+    }
+
+    static String tlv(String id, String value) {
+        return id + String.format("%02d", value.length()) + value;
+    }
+
+    // QR động theo chuẩn VietQR: header, thông tin tài khoản NAPAS (tag 38), các tag truyền vào, rồi CRC (tag 63)
+    static String vietQr(String tags) {
+        String account = tlv("00", "A000000727") + tlv("01", tlv("00", "970436") + tlv("01", "0011001234567"))
+                + tlv("02", "QRIBFTTA");
+        String body = ReceiptPreParser.EMV_PREFIX + tlv("01", "12") + tlv("38", account) + tags
+                + ReceiptPreParser.EMV_CRC_TAG;
+        return body + crc(body);
+    }
+
+    // CRC-16/CCITT-FALSE (poly 0x1021, init 0xFFFF), 4 ký tự hex in hoa
+    static String crc(String data) {
+        int crc = 0xFFFF;
+        for (byte b : data.getBytes(StandardCharsets.UTF_8)) {
+            for (int bit = 7; bit >= 0; bit--) {
+                boolean carry = ((crc >> 15) & 1) != ((b >> bit) & 1);
+                crc = (crc << 1) & 0xFFFF;
+                if (carry) {
+                    crc ^= 0x1021;
+                }
+            }
+        }
+        return String.format("%04X", crc);
+    }
+}
@@ -0,0 +1,144 @@
+package com.TravelShare.service;
+
+import com.TravelShare.service.SettlementPlanner.PlanMode;
+import com.TravelShare.service.SettlementPlanner.Transfer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SettlementPlannerTest {
+    SettlementPlanner planner = new SettlementPlanner();
+
+    @ParameterizedTest
+    @EnumSource(PlanMode.class)
+    void settlesAllBalancesToZero(PlanMode mode) {
+        long[] balances = {1500, -700, -300, 2500, -3000, 0};
+
+        List<Transfer> transfers = planner.plan(balances, mode);
+
+        assertThat(apply(balances, transfers)).containsOnly(0L);
+        assertThat(transfers).allSatisfy(transfer -> {
+            assertThat(transfer.amount()).isPositive();
+            assertThat(balances[transfer.from()]).isNegative();
+            assertThat(balances[transfer.to()]).isPositive();
+        });
+    }
+
+    @Test
+    void minTransactionsUsesFewerTransfersThanGreedyWhenSubgroupsCancelOut() {
+        // {+4, -4} và {+6, -3, -3} tự triệt tiêu: tối thiểu 3 giao dịch, greedy cần 4
+        long[] balances = {600, 400, -400, -300, -300};
+
+        List<Transfer> greedy = planner.plan(balances, PlanMode.GREEDY);
+        List<Transfer> minimal = planner.plan(balances, PlanMode.MIN_TRANSACTIONS);
+
+        assertThat(greedy).hasSize(4);
+        assertThat(minimal).hasSize(3);
+        assertThat(apply(balances, minimal)).containsOnly(0L);
+    }
+
+    @Test
+    void minTransactionsMatchesExhaustiveSearch() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            long[] balances = randomBalances(random, 2 + random.nextInt(7));
+
+            List<Transfer> transfers = planner.plan(balances, PlanMode.MIN_TRANSACTIONS);
+
+            assertThat(apply(balances, transfers)).as(Arrays.toString(balances)).containsOnly(0L);
+            assertThat(transfers).as(Arrays.toString(balances)).hasSize(minTransfers(balances.clone(), 0));
+            assertThat(transfers.size()).isLessThanOrEqualTo(planner.plan(balances, PlanMode.GREEDY).size());
+        }
+    }
+
+    @Test
+    void fallsBackToGreedyAboveExactLimit() {
+        long[] balances = new long[SettlementPlanner.MAX_EXACT_PARTICIPANTS + 2];
+        for (int i = 0; i < balances.length; i++) {
+            balances[i] = i % 2 == 0 ? 100 + i : -(100 + i - 1);
+        }
+
+        List<Transfer> transfers = planner.plan(balances, PlanMode.MIN_TRANSACTIONS);
+
+        assertThat(transfers).isEqualTo(planner.plan(balances, PlanMode.GREEDY));
+        assertThat(apply(balances, transfers)).containsOnly(0L);
+    }
+
+    @ParameterizedTest
+    @EnumSource(PlanMode.class)
+    void zeroBalancesNeedNoTransfers(PlanMode mode) {
+        assertThat(planner.plan(new long[0], mode)).isEmpty();
+        assertThat(planner.plan(new long[]{0, 0, 0}, mode)).isEmpty();
+    }
+
+    @ParameterizedTest
+    @EnumSource(PlanMode.class)
+    void oneSidedBalancesNeedNoTransfers(PlanMode mode) {
+        assertThat(planner.plan(new long[]{500, 0, 250}, mode)).isEmpty();
+        assertThat(planner.plan(new long[]{-500, -250}, mode)).isEmpty();
+    }
+
+    @ParameterizedTest
+    @EnumSource(PlanMode.class)
+    void singleDebtorPaysEveryCreditor(PlanMode mode) {
+        long[] balances = {-900, 300, 0, 600};
+
+        List<Transfer> transfers = planner.plan(balances, mode);
+
+        assertThat(transfers).containsExactlyInAnyOrder(new Transfer(0, 3, 600), new Transfer(0, 1, 300));
+    }
+
+    @Test
+    void convertsBetweenAmountsAndMinorUnits() {
+        assertThat(SettlementPlanner.toMinorUnits(new BigDecimal("12.345"))).isEqualTo(1235);
+        assertThat(SettlementPlanner.toMinorUnits(new BigDecimal("-0.004"))).isZero();
+        assertThat(SettlementPlanner.fromMinorUnits(-1050)).isEqualByComparingTo("-10.50");
+    }
+
+    private static long[] apply(long[] balances, List<Transfer> transfers) {
+        long[] remaining = balances.clone();
+        for (Transfer transfer : transfers) {
+            remaining[transfer.from()] += transfer.amount();
+            remaining[transfer.to()] -= transfer.amount();
+        }
+        return remaining;
+    }
+
+    private static long[] randomBalances(Random random, int size) {
+        long[] balances = new long[size];
+        long total = 0;
+        for (int i = 0; i < size - 1; i++) {
+            // Giá trị nhỏ để thường xuyên có nhóm con tổng bằng 0
+            balances[i] = (random.nextInt(9) - 4) * 100L;
+            total += balances[i];
+        }
+        balances[size - 1] = -total;
+        return balances;
+    }
+
+    // Tìm kiếm vét cạn: tất toán balances[start] với từng người trái dấu, lấy số giao dịch nhỏ nhất
+    private static int minTransfers(long[] balances, int start) {
+        while (start < balances.length && balances[start] == 0) {
+            start++;
+        }
+        if (start == balances.length) {
+            return 0;
+        }
+        int best = Integer.MAX_VALUE;
+        for (int i = start + 1; i < balances.length; i++) {
+            if (balances[i] != 0 && Long.signum(balances[i]) != Long.signum(balances[start])) {
+                balances[i] += balances[start];
+                best = Math.min(best, 1 + minTransfers(balances, start + 1));
+                balances[i] -= balances[start];
+            }
+        }
+        return best;
+    }
+}
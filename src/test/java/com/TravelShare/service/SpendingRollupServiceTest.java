@@ -0,0 +1,303 @@
+package com.TravelShare.service;
+
+import com.TravelShare.dto.response.SpendingBucketResponse;
+import com.TravelShare.dto.response.SpendingReconciliationResponse;
+import com.TravelShare.dto.response.SpendingSeriesResponse;
+import com.TravelShare.dto.response.SpendingSeriesResponse.Granularity;
+import com.TravelShare.entity.*;
+import com.TravelShare.entity.Currency;
+import com.TravelShare.entity.SpendingRollup.ScopeType;
+import com.TravelShare.exception.AppException;
+import com.TravelShare.exception.ErrorCode;
+import com.TravelShare.repository.*;
+import com.TravelShare.service.SpendingRollupService.Contribution;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SpendingRollupServiceTest {
+    static final long GROUP_ID = 7L;
+    static final LocalDate MARCH_1 = LocalDate.of(2024, 3, 1);
+
+    SpendingRollupRepository spendingRollupRepository = mock(SpendingRollupRepository.class);
+    ExpenseRepository expenseRepository = mock(ExpenseRepository.class);
+    UserRepository userRepository = mock(UserRepository.class);
+    GroupParticipantRepository groupParticipantRepository = mock(GroupParticipantRepository.class);
+
+    SpendingRollupService service = new SpendingRollupService(spendingRollupRepository, expenseRepository,
+            userRepository, groupParticipantRepository);
+
+    // Bảng spending_rollup và expense giả
+    Map<List<Object>, SpendingRollup> rollups = new LinkedHashMap<>();
+    Map<Long, Expense> expenses = new HashMap<>();
+
+    User admin = User.builder().id("u-admin").username("admin").role("ADMIN").build();
+    User alice = User.builder().id("u-alice").username("alice").role("USER").build();
+    User bob = User.builder().id("u-bob").username("bob").role("USER").build();
+    Currency vnd = Currency.builder().code("VND").build();
+    Currency usd = Currency.builder().code("USD").build();
+    Category food = Category.builder().id(1L).build();
+    Category transport = Category.builder().id(2L).build();
+    Group group = Group.builder().id(GROUP_ID).defaultCurrency(vnd).build();
+    GroupParticipant aliceParticipant = GroupParticipant.builder().id(11L).group(group).user(alice).build();
+    GroupParticipant bobParticipant = GroupParticipant.builder().id(12L).group(group).user(bob).build();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "maxRangeDays", 731L);
+        for (User user : List.of(admin, alice, bob)) {
+            when(userRepository.findByUsername(user.getUsername())).thenReturn(Optional.of(user));
+        }
+        when(groupParticipantRepository.existsByGroupIdAndUserId(anyLong(), anyString())).thenReturn(false);
+        when(groupParticipantRepository.existsByGroupIdAndUserId(GROUP_ID, alice.getId())).thenReturn(true);
+        when(groupParticipantRepository.existsByGroupIdAndUserId(GROUP_ID, bob.getId())).thenReturn(true);
+        actAs(admin);
+
+        doAnswer(invocation -> {
+            ScopeType scopeType = ScopeType.valueOf(invocation.getArgument(0));
+            String scopeId = invocation.getArgument(1);
+            LocalDate bucketDate = invocation.getArgument(2);
+            Long categoryId = invocation.getArgument(3);
+            String currencyCode = invocation.getArgument(4);
+            SpendingRollup row = rollups.computeIfAbsent(List.of(scopeType, scopeId, bucketDate, categoryId, currencyCode),
+                    key -> SpendingRollup.builder()
+                            .scopeType(scopeType)
+                            .scopeId(scopeId)
+                            .bucketDate(bucketDate)
+                            .categoryId(categoryId)
+                            .currencyCode(currencyCode)
+                            .originalTotal(BigDecimal.ZERO)
+                            .convertedTotal(BigDecimal.ZERO)
+                            .build());
+            row.setOriginalTotal(row.getOriginalTotal().add(invocation.getArgument(5)));
+            row.setConvertedTotal(row.getConvertedTotal().add(invocation.getArgument(6)));
+            row.setExpenseCount(row.getExpenseCount() + invocation.<Long>getArgument(7));
+            return null;
+        }).when(spendingRollupRepository).addDelta(anyString(), anyString(), any(), anyLong(), anyString(), any(), any(),
+                anyLong());
+        when(spendingRollupRepository.findByScopeTypeAndScopeId(any(), anyString())).thenAnswer(invocation ->
+                rows(row -> row.getScopeType() == invocation.getArgument(0)
+                        && row.getScopeId().equals(invocation.getArgument(1))));
+        when(spendingRollupRepository.findByScopeTypeAndScopeIdAndBucketDateBetweenOrderByBucketDate(
+                any(), anyString(), any(), any())).thenAnswer(invocation -> {
+            LocalDate from = invocation.getArgument(2);
+            LocalDate to = invocation.getArgument(3);
+            return rows(row -> row.getScopeType() == invocation.getArgument(0)
+                    && row.getScopeId().equals(invocation.getArgument(1))
+                    && !row.getBucketDate().isBefore(from) && !row.getBucketDate().isAfter(to));
+        });
+        when(expenseRepository.aggregateSpendingByGroupId(anyLong())).thenAnswer(invocation ->
+                aggregate(expense -> expense.getGroup().getId().equals(invocation.getArgument(0))));
+        when(expenseRepository.aggregateSpendingByPayerUserId(anyString())).thenAnswer(invocation ->
+                aggregate(expense -> expense.getPayer().getUser().getId().equals(invocation.getArgument(0))));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void rollupStaysConsistentThroughCreateUpdateAndDelete() {
+        Expense pho = create(1L, aliceParticipant, MARCH_1, food, vnd, "100000", "100000");
+        Expense taxi = create(2L, bobParticipant, MARCH_1, transport, usd, "10", "250000");
+        create(3L, aliceParticipant, MARCH_1.plusDays(1), food, vnd, "50000", "50000");
+        assertConsistent();
+
+        // Sửa ngày, category và người trả cùng lúc
+        Contribution previous = Contribution.of(pho);
+        pho.setExpenseDate(MARCH_1.plusDays(3));
+        pho.setCategory(transport);
+        pho.setPayer(bobParticipant);
+        service.recordExpenseUpdated(previous, pho);
+        assertConsistent();
+
+        // Sửa số tiền của expense ngoại tệ
+        previous = Contribution.of(taxi);
+        taxi.setOriginalAmount(new BigDecimal("12"));
+        taxi.setConvertedAmount(new BigDecimal("300000"));
+        service.recordExpenseUpdated(previous, taxi);
+        assertConsistent();
+
+        expenses.remove(taxi.getId());
+        service.recordExpenseDeleted(taxi);
+        assertConsistent();
+
+        assertThat(row(ScopeType.USER, alice.getId(), MARCH_1, food.getId(), "VND").getExpenseCount()).isZero();
+        assertThat(row(ScopeType.USER, bob.getId(), MARCH_1.plusDays(3), transport.getId(), "VND").getOriginalTotal())
+                .isEqualByComparingTo("100000");
+    }
+
+    @Test
+    void verifyReportsBucketsMissedByAnUpdate() {
+        Expense pho = create(1L, aliceParticipant, MARCH_1, food, vnd, "100000", "100000");
+        // Expense đổi ngày nhưng rollup không được báo
+        pho.setExpenseDate(MARCH_1.plusDays(1));
+
+        SpendingReconciliationResponse result = service.verify(ScopeType.GROUP, String.valueOf(GROUP_ID));
+
+        assertThat(result.isConsistent()).isFalse();
+        assertThat(result.getMismatchedBuckets()).containsExactly(MARCH_1 + "|1|VND", MARCH_1.plusDays(1) + "|1|VND");
+    }
+
+    @Test
+    void importedExpensesAreMergedIntoOneDeltaPerBucket() {
+        List<Contribution> imported = List.of(
+                Contribution.of(add(1L, aliceParticipant, MARCH_1, food, vnd, "100000", "100000")),
+                Contribution.of(add(2L, aliceParticipant, MARCH_1, food, vnd, "40000", "40000")),
+                Contribution.of(add(3L, bobParticipant, MARCH_1, food, vnd, "60000", "60000")));
+
+        service.recordExpensesImported(imported);
+
+        // Group: 1 bucket; user: alice 1 bucket, bob 1 bucket
+        verify(spendingRollupRepository, times(3)).addDelta(anyString(), anyString(), any(), anyLong(), anyString(),
+                any(), any(), anyLong());
+        SpendingRollup groupRow = row(ScopeType.GROUP, String.valueOf(GROUP_ID), MARCH_1, food.getId(), "VND");
+        assertThat(groupRow.getOriginalTotal()).isEqualByComparingTo("200000");
+        assertThat(groupRow.getExpenseCount()).isEqualTo(3);
+        assertThat(row(ScopeType.USER, alice.getId(), MARCH_1, food.getId(), "VND").getExpenseCount()).isEqualTo(2);
+        assertConsistent();
+    }
+
+    @Test
+    void userSeriesLeavesOutConvertedTotal() {
+        create(1L, aliceParticipant, MARCH_1, food, vnd, "100000", "100000");
+        create(2L, aliceParticipant, MARCH_1, food, usd, "10", "250000");
+        actAs(alice);
+
+        SpendingSeriesResponse userSeries = service.getSeries(ScopeType.USER, alice.getId(), MARCH_1, MARCH_1,
+                Granularity.DAY);
+        SpendingSeriesResponse groupSeries = service.getSeries(ScopeType.GROUP, String.valueOf(GROUP_ID), MARCH_1,
+                MARCH_1, Granularity.DAY);
+
+        SpendingBucketResponse userBucket = userSeries.getBuckets().get(0);
+        assertThat(userBucket.getTotalsByCurrency()).containsOnlyKeys("USD", "VND");
+        assertThat(userBucket.getCategories()).allSatisfy(category -> assertThat(category.getConvertedTotal()).isNull());
+        assertThat(groupSeries.getBuckets().get(0).getCategories())
+                .extracting(SpendingBucketResponse.CategorySpending::getConvertedTotal)
+                .usingComparatorForType(BigDecimal::compareTo, BigDecimal.class)
+                .containsExactlyInAnyOrder(new BigDecimal("100000"), new BigDecimal("250000"));
+    }
+
+    @Test
+    void onlyThatUserOrGroupMembersCanReadSpending() {
+        actAs(alice);
+
+        assertThatThrownBy(() -> service.getSeries(ScopeType.USER, bob.getId(), null, null, Granularity.DAY))
+                .isInstanceOfSatisfying(AppException.class,
+                        e -> assertThat(e.getErrorCode()).isEqualTo(ErrorCode.UNAUTHORIZED));
+        assertThatThrownBy(() -> service.verify(ScopeType.USER, bob.getId()))
+                .isInstanceOfSatisfying(AppException.class,
+                        e -> assertThat(e.getErrorCode()).isEqualTo(ErrorCode.UNAUTHORIZED));
+        assertThatThrownBy(() -> service.verify(ScopeType.GROUP, "8"))
+                .isInstanceOfSatisfying(AppException.class,
+                        e -> assertThat(e.getErrorCode()).isEqualTo(ErrorCode.NOT_GROUP_MEMBER));
+
+        assertThat(service.verify(ScopeType.USER, alice.getId()).isConsistent()).isTrue();
+        assertThat(service.getSeries(ScopeType.GROUP, String.valueOf(GROUP_ID), null, null, Granularity.WEEK))
+                .isNotNull();
+        verify(expenseRepository, never()).aggregateSpendingByPayerUserId(bob.getId());
+    }
+
+    @Test
+    void onlyAdminCanRebuildThroughApi() {
+        actAs(alice);
+        assertThatThrownBy(() -> service.rebuildAllAsAdmin())
+                .isInstanceOfSatisfying(AppException.class,
+                        e -> assertThat(e.getErrorCode()).isEqualTo(ErrorCode.UNAUTHORIZED));
+        verifyNoInteractions(spendingRollupRepository);
+
+        actAs(admin);
+        when(spendingRollupRepository.rebuildGroupRollups()).thenReturn(4);
+        when(spendingRollupRepository.rebuildUserRollups()).thenReturn(5);
+
+        assertThat(service.rebuildAllAsAdmin()).isEqualTo(9);
+        verify(spendingRollupRepository).lockForRebuild();
+    }
+
+    private void actAs(User user) {
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(user.getUsername(), null));
+    }
+
+    // Như ExpenseService.createExpense: lưu expense rồi ghi delta
+    private Expense create(Long id, GroupParticipant payer, LocalDate date, Category category, Currency currency,
+                           String originalAmount, String convertedAmount) {
+        Expense expense = add(id, payer, date, category, currency, originalAmount, convertedAmount);
+        service.recordExpenseCreated(expense);
+        return expense;
+    }
+
+    private Expense add(Long id, GroupParticipant payer, LocalDate date, Category category, Currency currency,
+                        String originalAmount, String convertedAmount) {
+        Expense expense = Expense.builder()
+                .id(id)
+                .group(group)
+                .payer(payer)
+                .expenseDate(date)
+                .category(category)
+                .originalCurrency(currency)
+                .convertedCurrency(vnd)
+                .originalAmount(new BigDecimal(originalAmount))
+                .convertedAmount(new BigDecimal(convertedAmount))
+                .build();
+        expenses.put(id, expense);
+        return expense;
+    }
+
+    private void assertConsistent() {
+        for (SpendingReconciliationResponse result : List.of(
+                service.verify(ScopeType.GROUP, String.valueOf(GROUP_ID)),
+                service.verify(ScopeType.USER, alice.getId()),
+                service.verify(ScopeType.USER, bob.getId()))) {
+            assertThat(result.isConsistent())
+                    .as("%s %s: %s", result.getScopeType(), result.getScopeId(), result.getMismatchedBuckets())
+                    .isTrue();
+        }
+    }
+
+    private SpendingRollup row(ScopeType scopeType, String scopeId, LocalDate date, Long categoryId, String currency) {
+        return rollups.get(List.of(scopeType, scopeId, date, categoryId, currency));
+    }
+
+    private List<SpendingRollup> rows(Predicate<SpendingRollup> filter) {
+        return rollups.values().stream()
+                .filter(filter)
+                .sorted(Comparator.comparing(SpendingRollup::getBucketDate))
+                .toList();
+    }
+
+    // Như câu GROUP BY (ngày, category, currency gốc) trong ExpenseRepository
+    private List<ExpenseRepository.SpendingAggregate> aggregate(Predicate<Expense> filter) {
+        return expenses.values().stream()
+                .filter(filter)
+                .collect(Collectors.groupingBy(expense -> List.<Object>of(expense.getExpenseDate(),
+                        expense.getCategory().getId(), expense.getOriginalCurrency().getCode())))
+                .values().stream()
+                .map(group -> (ExpenseRepository.SpendingAggregate) new Aggregate(
+                        group.get(0).getExpenseDate(),
+                        group.get(0).getCategory().getId(),
+                        group.get(0).getOriginalCurrency().getCode(),
+                        group.stream().map(Expense::getOriginalAmount).reduce(BigDecimal.ZERO, BigDecimal::add),
+                        group.stream().map(Expense::getConvertedAmount).reduce(BigDecimal.ZERO, BigDecimal::add),
+                        (long) group.size()))
+                .toList();
+    }
+
+    record Aggregate(LocalDate getBucketDate, Long getCategoryId, String getCurrencyCode, BigDecimal getOriginalTotal,
+                     BigDecimal getConvertedTotal, Long getExpenseCount) implements ExpenseRepository.SpendingAggregate {
+    }
+}
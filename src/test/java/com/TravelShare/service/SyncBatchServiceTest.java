@@ -0,0 +1,212 @@
+package com.TravelShare.service;
+
+import com.TravelShare.dto.request.*;
+import com.TravelShare.dto.request.SyncOperationRequest.OperationType;
+import com.TravelShare.dto.response.ExpenseResponse;
+import com.TravelShare.dto.response.SyncBatchResponse;
+import com.TravelShare.dto.response.SyncOperationResult;
+import com.TravelShare.dto.response.SyncOperationResult.OperationStatus;
+import com.TravelShare.entity.IdempotencyRecord;
+import com.TravelShare.entity.User;
+import com.TravelShare.exception.AppException;
+import com.TravelShare.exception.ErrorCode;
+import com.TravelShare.repository.IdempotencyRecordRepository;
+import com.TravelShare.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SyncBatchServiceTest {
+    static final String USER_ID = "u-alice";
+    static final String KEY = "batch-2024-03-15-001";
+
+    ExpenseService expenseService = mock(ExpenseService.class);
+    SettlementService settlementService = mock(SettlementService.class);
+    IdempotencyRecordRepository idempotencyRecordRepository = mock(IdempotencyRecordRepository.class);
+    UserRepository userRepository = mock(UserRepository.class);
+    TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    SyncBatchService service = new SyncBatchService(expenseService, settlementService, idempotencyRecordRepository,
+            userRepository, objectMapper, transactionTemplate);
+
+    // Bảng idempotency_record giả, theo idempotency key; bị khôi phục khi transaction rollback
+    Map<String, IdempotencyRecord> records = new HashMap<>();
+    AtomicLong nextExpenseId = new AtomicLong(500);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "maxOperations", 200);
+        ReflectionTestUtils.setField(service, "idempotencyTtlHours", 72L);
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("alice", null));
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(User.builder().id(USER_ID).build()));
+
+        when(transactionTemplate.execute(any())).thenAnswer(invocation -> {
+            Map<String, IdempotencyRecord> snapshot = new HashMap<>(records);
+            SimpleTransactionStatus status = new SimpleTransactionStatus();
+            Object result = invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(status);
+            if (status.isRollbackOnly()) {
+                records.clear();
+                records.putAll(snapshot);
+            }
+            return result;
+        });
+        when(idempotencyRecordRepository.claim(eq(USER_ID), anyString(), anyString(), any())).thenAnswer(invocation -> {
+            String key = invocation.getArgument(1);
+            if (records.containsKey(key)) {
+                return 0;
+            }
+            records.put(key, IdempotencyRecord.builder()
+                    .userId(USER_ID)
+                    .idempotencyKey(key)
+                    .requestHash(invocation.getArgument(2))
+                    .expiresAt(invocation.getArgument(3))
+                    .build());
+            return 1;
+        });
+        when(idempotencyRecordRepository.saveResponse(eq(USER_ID), anyString(), anyString())).thenAnswer(invocation -> {
+            records.get(invocation.<String>getArgument(1)).setResponseBody(invocation.getArgument(2));
+            return 1;
+        });
+        when(idempotencyRecordRepository.findByUserIdAndIdempotencyKey(eq(USER_ID), anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(records.get(invocation.<String>getArgument(1))));
+
+        when(expenseService.createExpense(any())).thenAnswer(invocation -> ExpenseResponse.builder()
+                .id(nextExpenseId.getAndIncrement())
+                .title(invocation.<ExpenseCreationRequest>getArgument(0).getTitle())
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void resentBatchReplaysStoredResultWithoutApplyingAgain() {
+        SyncBatchRequest request = batch(createExpense("op-1", "Phở"), deleteCreated("op-2", "op-1"));
+
+        SyncBatchResponse first = service.applyBatch(KEY, request);
+        SyncBatchResponse second = service.applyBatch(KEY, request);
+
+        assertThat(first.isCommitted()).isTrue();
+        assertThat(first.isReplayed()).isFalse();
+        assertThat(first.getApplied()).isEqualTo(2);
+        verify(expenseService).deleteExpense(500L);
+
+        assertThat(second.isCommitted()).isTrue();
+        assertThat(second.isReplayed()).isTrue();
+        assertThat(second.getResults()).extracting(SyncOperationResult::getStatus)
+                .containsExactly(OperationStatus.APPLIED, OperationStatus.APPLIED);
+        verify(expenseService, times(1)).createExpense(any());
+        verify(expenseService, times(1)).deleteExpense(anyLong());
+
+        assertThat(service.getStats().getCommittedBatches()).isEqualTo(1);
+        assertThat(service.getStats().getReplayedBatches()).isEqualTo(1);
+        assertThat(service.getStats().getOperationsApplied()).isEqualTo(2);
+    }
+
+    @Test
+    void keyReusedForDifferentBatchIsRejected() {
+        service.applyBatch(KEY, batch(createExpense("op-1", "Phở")));
+
+        assertThatThrownBy(() -> service.applyBatch(KEY, batch(createExpense("op-1", "Bánh mì"))))
+                .isInstanceOfSatisfying(AppException.class,
+                        e -> assertThat(e.getErrorCode()).isEqualTo(ErrorCode.IDEMPOTENCY_KEY_REUSED));
+        verify(expenseService, times(1)).createExpense(any());
+    }
+
+    @Test
+    void failedOperationRollsBackWholeBatchAndReleasesKey() {
+        when(expenseService.updateExpense(eq(99L), any())).thenThrow(new AppException(ErrorCode.EXPENSE_NOT_EXISTED));
+        SyncBatchRequest failing = batch(
+                createExpense("op-1", "Phở"),
+                SyncOperationRequest.builder()
+                        .clientOperationId("op-2")
+                        .type(OperationType.UPDATE_EXPENSE)
+                        .targetId(99L)
+                        .payload(objectMapper.createObjectNode().put("title", "Phở bò"))
+                        .build(),
+                createExpense("op-3", "Cà phê"));
+
+        SyncBatchResponse response = service.applyBatch(KEY, failing);
+
+        assertThat(response.isCommitted()).isFalse();
+        assertThat(response.getApplied()).isZero();
+        assertThat(response.getResults()).extracting(SyncOperationResult::getStatus)
+                .containsExactly(OperationStatus.ROLLED_BACK, OperationStatus.FAILED, OperationStatus.SKIPPED);
+        assertThat(response.getResults().get(0).getResult()).isNull();
+        assertThat(response.getResults().get(1).getErrorCode()).isEqualTo(ErrorCode.EXPENSE_NOT_EXISTED.getCode());
+        verify(expenseService, times(1)).createExpense(any());
+        verify(idempotencyRecordRepository, never()).saveResponse(any(), any(), any());
+        assertThat(records).isEmpty();
+        assertThat(service.getStats().getRolledBackBatches()).isEqualTo(1);
+
+        // Client sửa operation lỗi và gửi lại với cùng key
+        SyncBatchResponse retried = service.applyBatch(KEY, batch(createExpense("op-1", "Phở"),
+                createExpense("op-3", "Cà phê")));
+
+        assertThat(retried.isCommitted()).isTrue();
+        assertThat(retried.isReplayed()).isFalse();
+        assertThat(records.get(KEY).getResponseBody()).isNotNull();
+    }
+
+    @Test
+    void rejectsMissingKeyAndEmptyBatch() {
+        assertThatThrownBy(() -> service.applyBatch(" ", batch(createExpense("op-1", "Phở"))))
+                .isInstanceOfSatisfying(AppException.class,
+                        e -> assertThat(e.getErrorCode()).isEqualTo(ErrorCode.IDEMPOTENCY_KEY_REQUIRED));
+        assertThatThrownBy(() -> service.applyBatch(KEY, batch()))
+                .isInstanceOfSatisfying(AppException.class,
+                        e -> assertThat(e.getErrorCode()).isEqualTo(ErrorCode.SYNC_BATCH_EMPTY));
+        verifyNoInteractions(transactionTemplate);
+    }
+
+    private static SyncBatchRequest batch(SyncOperationRequest... operations) {
+        SyncBatchRequest request = new SyncBatchRequest();
+        request.setOperations(List.of(operations));
+        return request;
+    }
+
+    private SyncOperationRequest createExpense(String operationId, String title) {
+        ObjectNode payload = objectMapper.createObjectNode()
+                .put("title", title)
+                .put("amount", 100000)
+                .put("groupId", 7)
+                .put("currency", "VND")
+                .put("category", 1);
+        return SyncOperationRequest.builder()
+                .clientOperationId(operationId)
+                .type(OperationType.CREATE_EXPENSE)
+                .payload(payload)
+                .build();
+    }
+
+    private static SyncOperationRequest deleteCreated(String operationId, String targetOperationId) {
+        return SyncOperationRequest.builder()
+                .clientOperationId(operationId)
+                .type(OperationType.DELETE_EXPENSE)
+                .targetOperationId(targetOperationId)
+                .build();
+    }
+}